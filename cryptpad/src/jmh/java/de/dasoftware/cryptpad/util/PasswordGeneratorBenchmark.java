@@ -0,0 +1,73 @@
+package de.dasoftware.cryptpad.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of single, bulk, Writer and parallel password generation
+ *
+ * Run with: mvn -Pjmh test-compile exec:exec
+ *
+ * @author DA-Software
+ * @version 1.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PasswordGeneratorBenchmark {
+
+    @Param({"10000"})
+    public int count;
+
+    @Param({"20"})
+    public int length;
+
+    private PasswordGenerator generator;
+
+    @Setup
+    public void setUp() {
+        generator = new PasswordGenerator();
+        generator.setCapitalsAllowed(true);
+        generator.setNumbersAllowed(true);
+        generator.setSpecialCharsAllowed(true);
+    }
+
+    @Benchmark
+    public void single(Blackhole blackhole) {
+        for (int i = 0; i < count; i++) {
+            blackhole.consume(generator.generatePassword(length));
+        }
+    }
+
+    @Benchmark
+    public char[][] bulk() {
+        return generator.generatePasswords(count, length);
+    }
+
+    @Benchmark
+    public void writer() throws IOException {
+        generator.generatePasswords(count, length, Writer.nullWriter());
+    }
+
+    @Benchmark
+    public char[][] parallel() {
+        return generator.generatePasswordsParallel(count, length);
+    }
+}
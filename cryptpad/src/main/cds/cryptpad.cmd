@@ -0,0 +1,12 @@
+@echo off
+rem Launcher for DA-CryptPad
+rem Uses the class data sharing archive next to the JAR if present
+
+set "HERE=%~dp0"
+set "JAVA=javaw"
+if defined JAVA_HOME set "JAVA=%JAVA_HOME%\bin\javaw"
+
+set "CDS_OPTS="
+if exist "%HERE%cryptpad.jsa" set "CDS_OPTS=-XX:SharedArchiveFile="%HERE%cryptpad.jsa" -Xshare:auto"
+
+start "" "%JAVA%" %CDS_OPTS% -jar "%HERE%cryptpad.jar" %*
@@ -0,0 +1,17 @@
+#!/bin/bash
+# Launcher for DA-CryptPad
+# Uses the class data sharing archive next to the JAR if present, which
+# saves loading and verifying the Swing, FlatLaf and editor classes on start
+
+HERE="$(dirname "$(readlink -f "$0")")"
+JAVA="java"
+if [ -n "$JAVA_HOME" ]; then
+    JAVA="$JAVA_HOME/bin/java"
+fi
+
+CDS_OPTS=()
+if [ -f "$HERE/cryptpad.jsa" ]; then
+    CDS_OPTS=(-XX:SharedArchiveFile="$HERE/cryptpad.jsa" -Xshare:auto)
+fi
+
+exec "$JAVA" "${CDS_OPTS[@]}" -jar "$HERE/cryptpad.jar" "$@"
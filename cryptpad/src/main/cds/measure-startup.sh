@@ -0,0 +1,44 @@
+#!/bin/bash
+# Measures the time until the main window is painted, with and without
+# class data sharing. Needs a display. Usage: ./measure-startup.sh [runs]
+#
+# off      no class data sharing at all
+# jdk      default archive of the JDK classes only
+# app      archive of the application classes (cryptpad.jsa)
+
+HERE="$(dirname "$(readlink -f "$0")")"
+RUNS="${1:-10}"
+JAVA="java"
+if [ -n "$JAVA_HOME" ]; then
+    JAVA="$JAVA_HOME/bin/java"
+fi
+
+# Prints the JVM uptime at the first paint of the main window
+first_paint() {
+    "$JAVA" "$@" -Dcryptpad.startup.timing=true -Dcryptpad.startup.training=true \
+        -jar "$HERE/cryptpad.jar" 2>/dev/null \
+        | sed -n 's/^Startup firstpaint: .*(JVM uptime \([0-9]*\) ms)$/\1/p'
+}
+
+measure() {
+    local name="$1"
+    shift
+    local times=()
+    for ((i = 0; i < RUNS; i++)); do
+        times+=("$(first_paint "$@")")
+    done
+    local sorted=($(printf '%s\n' "${times[@]}" | grep -v '^$' | sort -n))
+    if [ ${#sorted[@]} -eq 0 ]; then
+        echo "$name: no measurement, is a display available?"
+        return
+    fi
+    echo "$name: median ${sorted[$((${#sorted[@]} / 2))]} ms, min ${sorted[0]} ms, max ${sorted[-1]} ms (${#sorted[@]} runs)"
+}
+
+measure "off" -Xshare:off
+measure "jdk" -Xshare:auto
+if [ -f "$HERE/cryptpad.jsa" ]; then
+    measure "app" -XX:SharedArchiveFile="$HERE/cryptpad.jsa" -Xshare:auto
+else
+    echo "app: cryptpad.jsa not found, build with: mvn package -Pcds"
+fi
@@ -6,10 +6,14 @@ import com.formdev.flatlaf.FlatIntelliJLaf;
 import com.formdev.flatlaf.FlatLightLaf;
 import de.dasoftware.cryptpad.ui.MainWindow;
 import de.dasoftware.cryptpad.ui.SplashScreen;
+import de.dasoftware.cryptpad.ui.UIResources;
 import de.dasoftware.cryptpad.i18n.Messages;
 import de.dasoftware.cryptpad.model.DataModel;
 import de.dasoftware.cryptpad.settings.AppSettings;
 
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.lang.management.ManagementFactory;
 import java.util.Locale;
 
 import javax.swing.*;
@@ -20,12 +24,24 @@ import javax.swing.*;
  */
 public class CryptPadMain {
     
+    // Prints the duration of the startup phases
+    private static final String STARTUP_TIMING_PROPERTY = "cryptpad.startup.timing";
+    
+    // Exits once the main window is painted, used for the class data sharing
+    // training run and for startup measurements
+    private static final String STARTUP_TRAINING_PROPERTY = "cryptpad.startup.training";
+    
+    // Shown until the main window is visible, only used on the EDT
+    private static SplashScreen splash;
+    
     /**
      * Application entry point
      * 
      * @param args Command line arguments (optional: file to open)
      */
     public static void main(String[] args) {
+        long startTime = System.nanoTime();
+        
         // Load settings first
         AppSettings.load();
         
@@ -35,25 +51,45 @@ public class CryptPadMain {
         
         // Also set for updater
         de.dasoftware.updater.i18n.Messages.setLocale(locale);
-    	    	
-        // Show splash screen
-        SplashScreen splash = new SplashScreen();
-        splash.setVisible(true);    	
-    	
-        // Set FlatLaf Look and Feel (before creating GUI components!)
-        initializeLookAndFeel();
+        startupPhase("settings", startTime);
         
-        // Give splash screen time to display
-        try {
-            Thread.sleep(1500); // Show for 1.5 seconds
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }        
+        // Fonts, editor theme and icons are loaded in the background
+        // while the splash screen is shown and the look and feel is set up
+        long resourcesStart = System.nanoTime();
+        UIResources.preload().whenComplete((ignored, error) -> {
+            if (error != null) {
+                System.err.println("Could not preload UI resources: " + error.getMessage());
+            }
+            startupPhase("resources", resourcesStart);
+        });
+        
+        // Everything else runs on the Event Dispatch Thread in order, so the
+        // look and feel is never changed while Swing components are created
+        SwingUtilities.invokeLater(() -> {
+            long splashStart = System.nanoTime();
+            splash = new SplashScreen();
+            splash.setVisible(true);
+            startupPhase("splash", splashStart);
+        });
+        
+        // Set FlatLaf Look and Feel (before creating GUI components!)
+        SwingUtilities.invokeLater(() -> {
+            long lafStart = System.nanoTime();
+            initializeLookAndFeel();
+            startupPhase("lookandfeel", lafStart);
+        });
         
-        // Start GUI on Event Dispatch Thread
         SwingUtilities.invokeLater(() -> {
-            splash.close(); // Close splash before showing main window
-            startApplication(args);
+            long windowStart = System.nanoTime();
+            MainWindow mainWindow = startApplication(startTime);
+            startupPhase("mainwindow", windowStart);
+            startupPhase("total", startTime);
+            
+            // If command line argument present: open file once the window is shown
+            if (args.length > 0) {
+                String filePath = args[0];
+                SwingUtilities.invokeLater(() -> mainWindow.openFile(filePath));
+            }
         });
     }
     
@@ -132,23 +168,53 @@ public class CryptPadMain {
     /**
      * Starts the main application
      * 
-     * @param args Command line arguments
+     * @param startTime Start of the application from System.nanoTime()
+     * @return Main window
      */
-    private static void startApplication(String[] args) {
+    private static MainWindow startApplication(long startTime) {
         // Create data model
         DataModel dataModel = new DataModel();
         
-        // Create main window
+        // Create main window, picks up the preloaded resources
         MainWindow mainWindow = new MainWindow(dataModel);
         
-        // If command line argument present: open file
-        if (args.length > 0) {
-            String filePath = args[0];
-            mainWindow.openFile(filePath);
-        }
+        // The first paint is queued when the window opens and done before
+        // any event queued after it
+        mainWindow.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowOpened(WindowEvent e) {
+                SwingUtilities.invokeLater(() -> {
+                    startupPhase("firstpaint", startTime);
+                    if (Boolean.getBoolean(STARTUP_TRAINING_PROPERTY)) {
+                        System.exit(0);
+                    }
+                });
+            }
+        });
         
-        // Show window
+        // Show window, the splash is no longer needed
         mainWindow.setLocationByPlatform(true);
         mainWindow.setVisible(true);
+        splash.close();
+        splash = null;
+        return mainWindow;
+    }
+    
+    /**
+     * Records the duration of a startup phase
+     * Printed if the system property cryptpad.startup.timing is set
+     * 
+     * @param phase Phase name
+     * @param phaseStart Start of the phase from System.nanoTime()
+     */
+    private static void startupPhase(String phase, long phaseStart) {
+        if (!Boolean.getBoolean(STARTUP_TIMING_PROPERTY)) {
+            return;
+        }
+        long millis = (System.nanoTime() - phaseStart) / 1_000_000;
+        synchronized (CryptPadMain.class) {
+            System.out.println("Startup " + phase + ": " + millis + " ms (JVM uptime "
+                    + ManagementFactory.getRuntimeMXBean().getUptime() + " ms)");
+        }
     }
-}
\ No newline at end of file
+}
@@ -136,6 +136,65 @@ public class AESEncryption implements IEncryption {
         return new String(plaintextBytes, StandardCharsets.UTF_8);
     }
     
+    /**
+     * Derives a key for encrypting many small messages with the same passphrase
+     * The slow key derivation runs only here, encryptBytes and decryptBytes
+     * just cost the AES-GCM pass
+     * 
+     * @param passphrase Password to derive the key from
+     * @param salt Random salt, stored next to the encrypted data
+     * @return Derived secret key
+     * @throws Exception If key derivation fails
+     */
+    public SecretKey deriveSessionKey(String passphrase, byte[] salt) throws Exception {
+        return deriveKey(passphrase, salt);
+    }
+    
+    /**
+     * Encrypts bytes with a key from deriveSessionKey
+     * Encrypted format: [iv(12)][ciphertext][auth_tag(16)]
+     * 
+     * @param key Session key
+     * @param plaintext Bytes to encrypt
+     * @param associatedData Data authenticated but not encrypted, may be null
+     * @return IV followed by ciphertext and auth tag
+     * @throws Exception If encryption fails
+     */
+    public byte[] encryptBytes(SecretKey key, byte[] plaintext, byte[] associatedData) throws Exception {
+        byte[] iv = generateIV();
+        
+        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_LENGTH, iv));
+        if (associatedData != null) {
+            cipher.updateAAD(associatedData);
+        }
+        byte[] ciphertextWithTag = cipher.doFinal(plaintext);
+        
+        ByteBuffer buffer = ByteBuffer.allocate(GCM_IV_LENGTH + ciphertextWithTag.length);
+        buffer.put(iv);
+        buffer.put(ciphertextWithTag);
+        return buffer.array();
+    }
+    
+    /**
+     * Decrypts bytes encrypted with encryptBytes
+     * 
+     * @param key Session key
+     * @param encrypted IV followed by ciphertext and auth tag
+     * @param associatedData Data authenticated on encryption, may be null
+     * @return Decrypted bytes
+     * @throws Exception If decryption or authentication fails
+     */
+    public byte[] decryptBytes(SecretKey key, byte[] encrypted, byte[] associatedData) throws Exception {
+        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        cipher.init(Cipher.DECRYPT_MODE, key,
+                new GCMParameterSpec(GCM_TAG_LENGTH, encrypted, 0, GCM_IV_LENGTH));
+        if (associatedData != null) {
+            cipher.updateAAD(associatedData);
+        }
+        return cipher.doFinal(encrypted, GCM_IV_LENGTH, encrypted.length - GCM_IV_LENGTH);
+    }
+    
     /**
      * Derives a secret key from a passphrase using PBKDF2
      * 
@@ -163,7 +222,7 @@ public class AESEncryption implements IEncryption {
      * 
      * @return Random salt bytes
      */
-    private byte[] generateSalt() {
+    public byte[] generateSalt() {
         byte[] salt = new byte[SALT_LENGTH];
         secureRandom.nextBytes(salt);
         return salt;
@@ -0,0 +1,137 @@
+package de.dasoftware.cryptpad.model;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Immutable compact form of a node content
+ * Holds the UTF-8 bytes of the text, Deflate-compressed for cold nodes
+ */
+final class CompactContent implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    static final CompactContent EMPTY = new CompactContent(new byte[0], 0, false);
+
+    // Smaller contents are not worth compressing
+    private static final int MIN_COMPRESS_BYTES = 256;
+
+    private final byte[] data;
+    private final int rawLength;
+    private final boolean deflated;
+
+    private CompactContent(byte[] data, int rawLength, boolean deflated) {
+        this.data = data;
+        this.rawLength = rawLength;
+        this.deflated = deflated;
+    }
+
+    /**
+     * Encodes a text
+     *
+     * @param text Text to encode
+     * @return Compact content
+     */
+    static CompactContent encode(String text) {
+        if (text == null || text.isEmpty()) {
+            return EMPTY;
+        }
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        return new CompactContent(bytes, bytes.length, false);
+    }
+
+    /**
+     * Decodes the text
+     *
+     * @return Decoded text
+     */
+    String decode() {
+        if (rawLength == 0) {
+            return "";
+        }
+        if (!deflated) {
+            return new String(data, StandardCharsets.UTF_8);
+        }
+
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            byte[] bytes = new byte[rawLength];
+            int length = 0;
+            while (length < rawLength && !inflater.finished()) {
+                length += inflater.inflate(bytes, length, rawLength - length);
+            }
+            return new String(bytes, 0, length, StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            // Only produced by compress(), so this cannot happen
+            throw new IllegalStateException("Corrupt node content", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Gets the UTF-8 bytes of the text
+     *
+     * @return UTF-8 bytes, must not be modified
+     */
+    byte[] toUtf8() {
+        if (!deflated) {
+            return data;
+        }
+        return decode().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Compresses the content if worthwhile
+     *
+     * @return Compressed content, or this if already compressed or too small
+     */
+    CompactContent compress() {
+        if (deflated || rawLength < MIN_COMPRESS_BYTES) {
+            return this;
+        }
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+
+            // Keep the result only if it saves at least a quarter
+            int limit = rawLength - rawLength / 4;
+            byte[] buffer = new byte[limit];
+            int length = 0;
+            while (!deflater.finished() && length < limit) {
+                length += deflater.deflate(buffer, length, limit - length);
+            }
+            if (!deflater.finished()) {
+                return this;
+            }
+            return new CompactContent(Arrays.copyOf(buffer, length), rawLength, true);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Gets the number of bytes held in memory
+     *
+     * @return Stored size in bytes
+     */
+    int storedSize() {
+        return data.length;
+    }
+
+    /**
+     * Checks if there is no content
+     *
+     * @return true if empty
+     */
+    boolean isEmpty() {
+        return rawLength == 0;
+    }
+}
@@ -0,0 +1,157 @@
+package de.dasoftware.cryptpad.model;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Bounded LRU of decoded node contents
+ *
+ * Nodes keep their content in compact form, only recently used nodes also
+ * keep the decoded String here. Nodes dropping out of the cache are
+ * considered cold and get their content compressed on a background thread,
+ * so the EDT never waits for the compression.
+ * All methods are thread-safe so content can be read from worker threads.
+ */
+final class ContentCache {
+
+    // Total number of cached characters
+    private static final long MAX_CHARS = 4L * 1024 * 1024;
+
+    private static final LinkedHashMap<EntryTreeNode, Entry> entries =
+            new LinkedHashMap<>(64, 0.75f, true);
+    private static long cachedChars = 0;
+
+    // Last used node larger than the whole cache, cold once another node is used
+    private static EntryTreeNode largeNode = null;
+
+    // Compresses cold nodes off the calling thread
+    private static final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "content-compactor");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    private ContentCache() {
+    }
+
+    /**
+     * Decoded text together with the compact form it was decoded from
+     */
+    private static final class Entry {
+        final CompactContent source;
+        final String text;
+
+        Entry(CompactContent source, String text) {
+            this.source = source;
+            this.text = text;
+        }
+    }
+
+    /**
+     * Gets the cached text of a node
+     *
+     * @param node Node
+     * @param source Current compact content of the node
+     * @return Text, or null if not cached or decoded from an older content
+     */
+    static String get(EntryTreeNode node, CompactContent source) {
+        synchronized (entries) {
+            Entry entry = entries.get(node);
+            return entry != null && entry.source == source ? entry.text : null;
+        }
+    }
+
+    /**
+     * Caches the text of a node, evicting the least recently used nodes
+     * Evicted nodes are compacted in the background. A text larger than the
+     * whole cache is not cached, but its node is only compacted once another
+     * node is used, so a large note is not compressed again while it is edited.
+     *
+     * @param node Node
+     * @param source Compact content the text belongs to
+     * @param text Decoded text
+     */
+    static void put(EntryTreeNode node, CompactContent source, String text) {
+        List<EntryTreeNode> evicted = new ArrayList<>();
+
+        synchronized (entries) {
+            Entry old = entries.remove(node);
+            if (old != null) {
+                cachedChars -= old.text.length();
+            }
+
+            if (largeNode != null && !largeNode.equals(node)) {
+                evicted.add(largeNode);
+                largeNode = null;
+            }
+
+            if (text.length() > MAX_CHARS) {
+                largeNode = node;
+            } else {
+                largeNode = null;
+                entries.put(node, new Entry(source, text));
+                cachedChars += text.length();
+
+                Iterator<Map.Entry<EntryTreeNode, Entry>> it = entries.entrySet().iterator();
+                while (cachedChars > MAX_CHARS && it.hasNext()) {
+                    Map.Entry<EntryTreeNode, Entry> eldest = it.next();
+                    cachedChars -= eldest.getValue().text.length();
+                    evicted.add(eldest.getKey());
+                    it.remove();
+                }
+            }
+        }
+
+        if (!evicted.isEmpty()) {
+            compactor.execute(() -> compact(evicted));
+        }
+    }
+
+    /**
+     * Compacts evicted nodes unless they have been used again in the meantime
+     */
+    private static void compact(List<EntryTreeNode> evicted) {
+        for (EntryTreeNode cold : evicted) {
+            synchronized (entries) {
+                if (cold.equals(largeNode) || entries.containsKey(cold)) {
+                    continue;
+                }
+            }
+            cold.compact();
+        }
+    }
+
+    /**
+     * Removes a node from the cache
+     *
+     * @param node Node
+     */
+    static void remove(EntryTreeNode node) {
+        synchronized (entries) {
+            Entry old = entries.remove(node);
+            if (old != null) {
+                cachedChars -= old.text.length();
+            }
+            if (node.equals(largeNode)) {
+                largeNode = null;
+            }
+        }
+    }
+
+    /**
+     * Removes all nodes from the cache
+     */
+    static void clear() {
+        synchronized (entries) {
+            entries.clear();
+            cachedChars = 0;
+            largeNode = null;
+        }
+    }
+}
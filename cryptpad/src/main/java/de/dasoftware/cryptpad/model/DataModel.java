@@ -1,32 +1,51 @@
 package de.dasoftware.cryptpad.model;
 
 import de.dasoftware.cryptpad.i18n.Messages;
+import de.dasoftware.cryptpad.search.TrigramIndex;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
-import javax.swing.tree.DefaultTreeModel;
+import java.util.Set;
 
 /**
  * Data model for managing the application's tree structure and encrypted content
  */
 public class DataModel implements IDataModel {
     
+    private NodeStore store;
     private EntryTreeNode rootNode;
     private List<IObserver> observers;
     private String password = "";
-    private DefaultTreeModel treeModel;
+    private EntryTreeModel treeModel;
     private IXMLManager xmlManager;
+    private final TrigramIndex titleIndex = new TrigramIndex();
+    private final UndoLog undoLog = new UndoLog();
+    
+    // Nesting depth of batch() calls, observers are notified once at the end
+    private int batchDepth = 0;
+    private boolean changedInBatch = false;
+    
+    // Incremented on every change of content, structure or password
+    private long modCount = 0;
+    
+    // Autosave journal of the vault file, null if there is none
+    private Journal journal = null;
+    private int journalEpoch = 0;
+    private String journalSavePassword = null;
     
     public DataModel() {
-        rootNode = new EntryTreeNode(Messages.getString("tree.rootnode"));
+        store = new NodeStore();
+        rootNode = store.createNode(Messages.getString("tree.rootnode"));
         observers = new ArrayList<>();
         
         // Add default node with better name
-        EntryTreeNode defaultNode = new EntryTreeNode(Messages.getString("tree.defaultnode"));
+        EntryTreeNode defaultNode = rootNode.addChild(Messages.getString("tree.defaultnode"));
         defaultNode.setContent(Messages.getString("tree.defaultcontent"));
-        rootNode.add(defaultNode);
         
-        treeModel = new DefaultTreeModel(rootNode);
+        treeModel = new EntryTreeModel(rootNode);
+        titleIndex.rebuild(rootNode);
     }
     
     /**
@@ -42,6 +61,30 @@ public class DataModel implements IDataModel {
         xmlManager.saveDocument();
     }
     
+    /**
+     * Takes an immutable snapshot of the whole tree
+     * 
+     * @return Snapshot of the root node
+     */
+    @Override
+    public NodeSnapshot createSnapshot() {
+        return rootNode.getSnapshot();
+    }
+    
+    /**
+     * Saves a snapshot to an encrypted file
+     * Uses its own XMLManager so it can run on a background thread
+     * 
+     * @param snapshot Snapshot of the root node
+     * @param password Encryption password
+     * @param file File path to save to
+     * @throws Exception If save operation fails
+     */
+    @Override
+    public void saveSnapshot(NodeSnapshot snapshot, String password, String file) throws Exception {
+        new XMLManager(file, this).saveSnapshot(snapshot, password);
+    }
+    
     /**
      * Loads data from an encrypted file
      * Delegates to XMLManager for actual file operations
@@ -53,6 +96,9 @@ public class DataModel implements IDataModel {
     public void loadFile(String file) throws Exception {
         xmlManager = new XMLManager(file, this);
         xmlManager.loadDocument(file);
+        titleIndex.rebuild(rootNode);
+        undoLog.clear();
+        modCount++;
         refreshObservers();
     }
     
@@ -66,18 +112,70 @@ public class DataModel implements IDataModel {
      */
     @Override
     public EntryTreeNode addNode(EntryTreeNode parent, String nodeTitle) {
-        EntryTreeNode newNode = new EntryTreeNode(nodeTitle);
+        EntryTreeNode newNode = store.createNode(nodeTitle);
         
-        if (parent != null) {
-            parent.add(newNode);
-        } else {
-            rootNode.add(newNode);
+        if (parent == null) {
+            parent = rootNode;
         }
         
-        refreshObservers();
+        int index = parent.getChildCount();
+        attachNode(newNode, parent, index);
+        undoLog.record(new UndoLog.AddCommand(newNode, parent, index));
+        fireChanged();
         return newNode;
     }
     
+    /**
+     * Adds several nodes below the same parent
+     * 
+     * @param parent Parent node (null for root level)
+     * @param titles Titles of the new nodes
+     * @return The newly created nodes, in the order of the titles
+     */
+    @Override
+    public List<EntryTreeNode> addNodes(EntryTreeNode parent, List<String> titles) {
+        List<EntryTreeNode> nodes = new ArrayList<>(titles.size());
+        batch(() -> {
+            for (String title : titles) {
+                nodes.add(addNode(parent, title));
+            }
+        });
+        return nodes;
+    }
+    
+    /**
+     * Runs several changes as one operation
+     * Observers are notified once at the end and the changes are undone
+     * in a single step. Batches can be nested.
+     * 
+     * @param changes Changes to run
+     */
+    @Override
+    public void batch(Runnable changes) {
+        batchDepth++;
+        undoLog.beginGroup();
+        try {
+            changes.run();
+        } finally {
+            undoLog.endGroup();
+            if (--batchDepth == 0 && changedInBatch) {
+                changedInBatch = false;
+                refreshObservers();
+            }
+        }
+    }
+    
+    /**
+     * Notifies the observers, or defers it to the end of the running batch
+     */
+    private void fireChanged() {
+        if (batchDepth > 0) {
+            changedInBatch = true;
+        } else {
+            refreshObservers();
+        }
+    }
+    
     /**
      * Subscribes an observer to model changes
      * 
@@ -128,8 +226,117 @@ public class DataModel implements IDataModel {
      */
     @Override
     public void deleteNode(EntryTreeNode node) {
-        treeModel.removeNodeFromParent(node);
-        refreshObservers();
+        EntryTreeNode parent = (EntryTreeNode) node.getParent();
+        int index = parent.getIndex(node);
+        
+        detachNode(node);
+        undoLog.record(new UndoLog.DeleteCommand(node, parent, index));
+        fireChanged();
+    }
+    
+    /**
+     * Deletes several nodes and all their children
+     * Nodes inside another deleted subtree are skipped
+     * 
+     * @param nodes Nodes to delete
+     */
+    @Override
+    public void deleteNodes(Collection<EntryTreeNode> nodes) {
+        List<EntryTreeNode> topmost = topmostNodes(nodes);
+        batch(() -> {
+            for (EntryTreeNode node : topmost) {
+                deleteNode(node);
+            }
+        });
+    }
+    
+    /**
+     * Moves several nodes to consecutive positions below a new parent
+     * Nodes keep the given order, nodes inside another moved subtree are
+     * skipped and so are nodes that contain the new parent
+     * 
+     * @param nodes Nodes to move
+     * @param newParent New parent node
+     * @param index Index in the new parent's children before the move, or -1 to append
+     */
+    @Override
+    public void moveNodes(List<EntryTreeNode> nodes, EntryTreeNode newParent, int index) {
+        List<EntryTreeNode> topmost = topmostNodes(nodes);
+        batch(() -> {
+            int target = index;
+            for (EntryTreeNode node : topmost) {
+                if (newParent.isNodeAncestor(node)) {
+                    continue;
+                }
+                moveNode(node, newParent, target);
+                
+                // Next node goes right behind this one
+                if (target >= 0) {
+                    target = newParent.getIndex(node) + 1;
+                }
+            }
+        });
+    }
+    
+    /**
+     * Filters out the root and all nodes having an ancestor in the collection
+     * 
+     * @param nodes Nodes to filter
+     * @return Remaining nodes in their original order
+     */
+    private List<EntryTreeNode> topmostNodes(Collection<EntryTreeNode> nodes) {
+        Set<EntryTreeNode> selected = new HashSet<>(nodes);
+        
+        List<EntryTreeNode> topmost = new ArrayList<>();
+        Set<EntryTreeNode> added = new HashSet<>();
+        for (EntryTreeNode node : nodes) {
+            if (node.equals(rootNode) || node.getParent() == null || !added.add(node)) {
+                continue;
+            }
+            
+            boolean covered = false;
+            for (EntryTreeNode ancestor = (EntryTreeNode) node.getParent(); ancestor != null;
+                    ancestor = (EntryTreeNode) ancestor.getParent()) {
+                if (selected.contains(ancestor)) {
+                    covered = true;
+                    break;
+                }
+            }
+            if (!covered) {
+                topmost.add(node);
+            }
+        }
+        return topmost;
+    }
+    
+    /**
+     * Moves a node and its children to a new position
+     * 
+     * @param node Node to move
+     * @param newParent New parent node
+     * @param index Index in the new parent's children before the move, or -1 to append
+     */
+    @Override
+    public void moveNode(EntryTreeNode node, EntryTreeNode newParent, int index) {
+        EntryTreeNode oldParent = (EntryTreeNode) node.getParent();
+        int oldIndex = oldParent.getIndex(node);
+        
+        if (index < 0) {
+            index = newParent.getChildCount();
+        }
+        
+        // Index was taken with the node still in place
+        if (oldParent.equals(newParent) && oldIndex < index) {
+            index--;
+        }
+        
+        if (oldParent.equals(newParent) && oldIndex == index) {
+            return;
+        }
+        
+        relinkNode(node, newParent, index);
+        undoLog.record(new UndoLog.MoveCommand(node, oldParent, oldIndex, newParent, index));
+        fireChanged();
     }
     
     /**
@@ -149,7 +356,11 @@ public class DataModel implements IDataModel {
      */
     @Override
     public void setPassword(String password) {
-        this.password = password != null ? password : "";
+        String newPassword = password != null ? password : "";
+        if (!newPassword.equals(this.password)) {
+            this.password = newPassword;
+            modCount++;
+        }
     }
     
     /**
@@ -158,7 +369,7 @@ public class DataModel implements IDataModel {
      * @return Swing tree model
      */
     @Override
-    public DefaultTreeModel getTreeModel() {
+    public EntryTreeModel getTreeModel() {
         return treeModel;
     }
     
@@ -170,8 +381,11 @@ public class DataModel implements IDataModel {
      */
     @Override
     public void setNodeTitle(EntryTreeNode node, String title) {
-        node.setUserObject(title);
-        refreshObservers();
+        String oldTitle = node.toString();
+        
+        renameNode(node, title);
+        undoLog.record(new UndoLog.RenameCommand(node, oldTitle, title));
+        fireChanged();
     }
     
     /**
@@ -183,6 +397,10 @@ public class DataModel implements IDataModel {
     @Override
     public void setNodeContent(EntryTreeNode node, String content) {
         node.setContent(content);
+        modCount++;
+        if (journal != null) {
+            journal.contentChanged(node);
+        }
     }
     
     /**
@@ -191,8 +409,231 @@ public class DataModel implements IDataModel {
      */
     @Override
     public void clearModel() {
-        rootNode = new EntryTreeNode(Messages.getString("tree.rootnode"));
+        store = new NodeStore();
+        rootNode = store.createNode(Messages.getString("tree.rootnode"));
         treeModel.setRoot(rootNode);
+        titleIndex.clear();
+        ContentCache.clear();
+        undoLog.clear();
+        modCount++;
         refreshObservers();
     }
+    
+    /**
+     * Gets the modification counter of the model
+     * Compare two values to find out if anything changed in between
+     * 
+     * @return Number of changes so far
+     */
+    @Override
+    public long getModCount() {
+        return modCount;
+    }
+    
+    /**
+     * Finds nodes by fuzzy matching their title path
+     * Backed by a trigram index that is kept up to date on every change
+     * 
+     * @param query Search query (e.g. "clients/acme/vpn")
+     * @param maxResults Maximum number of results
+     * @return Matching nodes, best match first
+     */
+    @Override
+    public List<EntryTreeNode> findNodes(String query, int maxResults) {
+        return titleIndex.search(query, maxResults);
+    }
+    
+    /**
+     * Reverts the last structural change (add, delete, rename, move)
+     * 
+     * @return true if a change was reverted
+     */
+    @Override
+    public boolean undo() {
+        if (!undoLog.undo(this)) {
+            return false;
+        }
+        fireChanged();
+        return true;
+    }
+    
+    /**
+     * Applies the last reverted structural change again
+     * 
+     * @return true if a change was applied
+     */
+    @Override
+    public boolean redo() {
+        if (!undoLog.redo(this)) {
+            return false;
+        }
+        fireChanged();
+        return true;
+    }
+    
+    @Override
+    public boolean canUndo() {
+        return undoLog.canUndo();
+    }
+    
+    @Override
+    public boolean canRedo() {
+        return undoLog.canRedo();
+    }
+    
+    // ========== Autosave Journal ==========
+    
+    /**
+     * Starts the autosave journal of a vault that has just been loaded
+     * A journal left behind by a crashed session is replayed first, if it
+     * was written for the vault version on disk. Any previous journal of
+     * this model is discarded.
+     * 
+     * @param file Vault file path
+     * @return Number of replayed journal records, 0 if nothing was recovered
+     */
+    @Override
+    public int openJournal(String file) {
+        closeJournal();
+        try {
+            journal = Journal.open(this, file, password);
+            return journal.getReplayedRecords();
+        } catch (Exception e) {
+            System.err.println("Could not open autosave journal: " + e.getMessage());
+            return 0;
+        }
+    }
+    
+    /**
+     * Collects the changes since the last journal write
+     * 
+     * @return Task encrypting and appending them, to be run on the save thread,
+     *         or null if there is nothing to write
+     */
+    @Override
+    public Runnable prepareJournalWrite() {
+        return journal != null ? journal.prepareWrite(rootNode) : null;
+    }
+    
+    /**
+     * Pauses journal writes while the current tree is saved
+     * Must be called together with createSnapshot
+     * 
+     * @return Token to pass to journalSaved or journalSaveFailed
+     */
+    @Override
+    public int beginJournalSave() {
+        if (journal == null) {
+            journal = new Journal();
+        }
+        journal.suspend(rootNode);
+        journalSavePassword = password;
+        return ++journalEpoch;
+    }
+    
+    /**
+     * Starts a new journal for the saved vault
+     * Ignored if another save or file change happened since beginJournalSave
+     * 
+     * @param token Token from beginJournalSave
+     * @param file Saved vault file
+     */
+    @Override
+    public void journalSaved(int token, String file) {
+        if (token == journalEpoch && journal != null) {
+            journal.resume(file, journalSavePassword);
+        }
+    }
+    
+    /**
+     * Continues the previous journal after a failed save
+     * 
+     * @param token Token from beginJournalSave
+     */
+    @Override
+    public void journalSaveFailed(int token) {
+        if (token == journalEpoch && journal != null && !journal.resumeAfterFailedSave()) {
+            journal = null;
+        }
+    }
+    
+    /**
+     * Stops the autosave journal and deletes its file
+     */
+    @Override
+    public void closeJournal() {
+        journalEpoch++;
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+    }
+    
+    // ========== Tree Operations (used by commands) ==========
+    
+    /**
+     * Creates a detached node in the current tree, used when replaying a journal
+     */
+    EntryTreeNode createNode(String title) {
+        return store.createNode(title);
+    }
+    
+    /**
+     * Inserts a node with its children into the tree
+     */
+    void attachNode(EntryTreeNode node, EntryTreeNode parent, int index) {
+        treeModel.insertNodeInto(node, parent, index);
+        titleIndex.addSubtree(node);
+        modCount++;
+        if (journal != null) {
+            journal.nodeAttached(node, parent, index);
+        }
+    }
+    
+    /**
+     * Removes a node with its children from the tree
+     */
+    void detachNode(EntryTreeNode node) {
+        treeModel.removeNodeFromParent(node);
+        titleIndex.removeSubtree(node);
+        modCount++;
+        if (journal != null) {
+            journal.nodeDetached(node);
+        }
+    }
+    
+    /**
+     * Moves a node with its children, the title index is not affected
+     */
+    void relinkNode(EntryTreeNode node, EntryTreeNode parent, int index) {
+        treeModel.removeNodeFromParent(node);
+        treeModel.insertNodeInto(node, parent, index);
+        modCount++;
+        if (journal != null) {
+            journal.nodeMoved(node, parent, index);
+        }
+    }
+    
+    /**
+     * Changes the title of a node
+     */
+    void renameNode(EntryTreeNode node, String title) {
+        node.setTitle(title);
+        treeModel.nodeChanged(node);
+        titleIndex.update(node);
+        modCount++;
+        if (journal != null) {
+            journal.nodeRenamed(node);
+        }
+    }
+    
+    /**
+     * Replaces the whole tree, used when replaying a journal
+     */
+    void replaceTree(EntryTreeNode root) {
+        rootNode = root;
+        treeModel.setRoot(root);
+        titleIndex.rebuild(root);
+        modCount++;
+    }
 }
\ No newline at end of file
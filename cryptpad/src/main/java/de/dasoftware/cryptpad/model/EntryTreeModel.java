@@ -0,0 +1,177 @@
+package de.dasoftware.cryptpad.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.swing.event.EventListenerList;
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+import javax.swing.tree.TreeModel;
+import javax.swing.tree.TreePath;
+
+/**
+ * Swing tree model on top of the node store
+ *
+ * Nodes are handed out as {@link EntryTreeNode} handles created on demand,
+ * so the JTree only keeps objects for the rows it has expanded. Changes
+ * are made by the data model, which reports them through the methods
+ * named like the ones of DefaultTreeModel.
+ */
+public class EntryTreeModel implements TreeModel {
+
+    private final EventListenerList listeners = new EventListenerList();
+    private EntryTreeNode root;
+
+    /**
+     * Constructor
+     *
+     * @param root Root node
+     */
+    public EntryTreeModel(EntryTreeNode root) {
+        this.root = root;
+    }
+
+    @Override
+    public Object getRoot() {
+        return root;
+    }
+
+    /**
+     * Replaces the whole tree
+     *
+     * @param root New root node
+     */
+    void setRoot(EntryTreeNode root) {
+        this.root = root;
+        reload();
+    }
+
+    @Override
+    public Object getChild(Object parent, int index) {
+        return ((EntryTreeNode) parent).getChildAt(index);
+    }
+
+    @Override
+    public int getChildCount(Object parent) {
+        return ((EntryTreeNode) parent).getChildCount();
+    }
+
+    @Override
+    public boolean isLeaf(Object node) {
+        return ((EntryTreeNode) node).isLeaf();
+    }
+
+    @Override
+    public int getIndexOfChild(Object parent, Object child) {
+        if (parent == null || child == null) {
+            return -1;
+        }
+        return ((EntryTreeNode) parent).getIndex((EntryTreeNode) child);
+    }
+
+    @Override
+    public void valueForPathChanged(TreePath path, Object newValue) {
+        // Titles are only changed through the data model
+    }
+
+    /**
+     * Builds the path from the root to a node
+     *
+     * @param node Node
+     * @return Nodes from the root down to the node
+     */
+    public EntryTreeNode[] getPathToRoot(EntryTreeNode node) {
+        List<EntryTreeNode> path = new ArrayList<>();
+        for (EntryTreeNode current = node; current != null;
+                current = (EntryTreeNode) current.getParent()) {
+            path.add(current);
+        }
+        Collections.reverse(path);
+        return path.toArray(new EntryTreeNode[0]);
+    }
+
+    /**
+     * Inserts a detached node and notifies the listeners
+     *
+     * @param node Node without parent
+     * @param parent New parent
+     * @param index Index in the children of the parent
+     */
+    void insertNodeInto(EntryTreeNode node, EntryTreeNode parent, int index) {
+        parent.insert(node, index);
+        fire(new TreeModelEvent(this, getPathToRoot(parent), new int[] {index}, new Object[] {node}),
+                EventType.INSERTED);
+    }
+
+    /**
+     * Detaches a node from its parent and notifies the listeners
+     *
+     * @param node Node to detach
+     */
+    void removeNodeFromParent(EntryTreeNode node) {
+        EntryTreeNode parent = (EntryTreeNode) node.getParent();
+        if (parent == null) {
+            throw new IllegalArgumentException("node does not have a parent");
+        }
+        int index = parent.getIndex(node);
+        node.removeFromParent();
+        fire(new TreeModelEvent(this, getPathToRoot(parent), new int[] {index}, new Object[] {node}),
+                EventType.REMOVED);
+    }
+
+    /**
+     * Notifies the listeners that the title of a node changed
+     *
+     * @param node Changed node
+     */
+    void nodeChanged(EntryTreeNode node) {
+        EntryTreeNode parent = (EntryTreeNode) node.getParent();
+        if (parent == null) {
+            fire(new TreeModelEvent(this, getPathToRoot(node), null, null), EventType.CHANGED);
+        } else {
+            fire(new TreeModelEvent(this, getPathToRoot(parent),
+                    new int[] {parent.getIndex(node)}, new Object[] {node}), EventType.CHANGED);
+        }
+    }
+
+    /**
+     * Notifies the listeners that the whole tree may have changed
+     */
+    public void reload() {
+        fire(new TreeModelEvent(this, new Object[] {root}, null, null), EventType.STRUCTURE);
+    }
+
+    @Override
+    public void addTreeModelListener(TreeModelListener listener) {
+        listeners.add(TreeModelListener.class, listener);
+    }
+
+    @Override
+    public void removeTreeModelListener(TreeModelListener listener) {
+        listeners.remove(TreeModelListener.class, listener);
+    }
+
+    private enum EventType {
+        INSERTED, REMOVED, CHANGED, STRUCTURE
+    }
+
+    private void fire(TreeModelEvent event, EventType type) {
+        TreeModelListener[] current = listeners.getListeners(TreeModelListener.class);
+        for (int i = current.length - 1; i >= 0; i--) {
+            switch (type) {
+                case INSERTED:
+                    current[i].treeNodesInserted(event);
+                    break;
+                case REMOVED:
+                    current[i].treeNodesRemoved(event);
+                    break;
+                case CHANGED:
+                    current[i].treeNodesChanged(event);
+                    break;
+                default:
+                    current[i].treeStructureChanged(event);
+                    break;
+            }
+        }
+    }
+}
@@ -1,68 +1,316 @@
 package de.dasoftware.cryptpad.model;
 
-import javax.swing.tree.DefaultMutableTreeNode;
+import java.util.Enumeration;
+import java.util.NoSuchElementException;
+import javax.swing.tree.TreeNode;
 
 /**
  * Tree node representing an entry in the navigation tree
- * Extends DefaultMutableTreeNode with content and selection handling
+ *
+ * A node is only a handle into the {@link NodeStore} of its tree, the
+ * structure, title and content live in the arrays of the store. Nodes are
+ * created on demand and compared by store and handle, so two instances
+ * for the same handle are equal. Changes go through the data model.
+ *
+ * The content is kept as compact UTF-8 bytes, compressed while the node is
+ * not in use. Decoded text of recently used nodes is kept in a shared LRU.
  */
-public class EntryTreeNode extends DefaultMutableTreeNode {
-    
-    private static final long serialVersionUID = -8527091360079777899L;
-	private String content = "";
-    private boolean selected = false;
-    
+public final class EntryTreeNode implements TreeNode {
+
+    private final NodeStore store;
+    private final int handle;
+
+    EntryTreeNode(NodeStore store, int handle) {
+        this.store = store;
+        this.handle = handle;
+    }
+
     /**
-     * Constructor with object
-     * 
-     * @param userObject Object to store in the node
+     * Gets the handle of this node in its tree
+     * Handles stay the same for the lifetime of the tree
+     *
+     * @return Node handle
      */
-    public EntryTreeNode(Object userObject) {
-        super(userObject);
+    public int getHandle() {
+        return handle;
     }
-    
+
     /**
-     * Constructor with title string
-     * 
-     * @param nodeTitle Title of the node
+     * Gets another node of the same tree by its handle
+     *
+     * @param nodeHandle Node handle, see {@link #getHandle()}
+     * @return Node
      */
-    public EntryTreeNode(String nodeTitle) {
-        super(nodeTitle);
+    public EntryTreeNode getNode(int nodeHandle) {
+        return store.node(nodeHandle);
     }
-    
+
     /**
      * Gets the content of this node
-     * 
+     *
      * @return Node content
      */
     public String getContent() {
-        return content;
+        CompactContent current = store.getContent(handle);
+        String text = ContentCache.get(this, current);
+        if (text == null) {
+            text = current.decode();
+            if (!current.isEmpty()) {
+                ContentCache.put(this, current, text);
+            }
+        }
+        return text;
+    }
+
+    /**
+     * Gets the content of this node without adding it to the LRU
+     * Used for bulk reads such as searching or saving all nodes,
+     * which would otherwise push the recently used nodes out
+     *
+     * @return Node content
+     */
+    public String readContent() {
+        CompactContent current = store.getContent(handle);
+        String text = ContentCache.get(this, current);
+        return text != null ? text : current.decode();
     }
-    
+
     /**
      * Sets the content of this node
-     * 
+     *
      * @param content Content to set
      */
-    public void setContent(String content) {
-        this.content = content;
+    void setContent(String content) {
+        CompactContent encoded = CompactContent.encode(content);
+        store.setContent(handle, encoded);
+
+        if (encoded.isEmpty()) {
+            ContentCache.remove(this);
+        } else {
+            ContentCache.put(this, encoded, content);
+        }
+    }
+
+    /**
+     * Gets the content in its compact form, without decoding it
+     *
+     * @return Compact content
+     */
+    CompactContent getCompactContent() {
+        return store.getContent(handle);
     }
-    
+
+    /**
+     * Gets the modification counter of the content
+     * Incremented whenever the content is set
+     *
+     * @return Number of content changes so far
+     */
+    public int getModCount() {
+        return store.getModCount(handle);
+    }
+
     /**
-     * Checks if this node is selected
-     * 
-     * @return true if selected, false otherwise
+     * Gets the number of content bytes held in memory by this node
+     *
+     * @return Stored content size in bytes
      */
-    public boolean isSelected() {
-        return selected;
+    int getStoredSize() {
+        return store.getContent(handle).storedSize();
     }
-    
+
+    /**
+     * Compresses the content after the node dropped out of the LRU
+     */
+    void compact() {
+        CompactContent current = store.getContent(handle);
+        CompactContent compressed = current.compress();
+
+        // Skipped if the content was replaced in the meantime
+        if (compressed != current) {
+            store.replaceContent(handle, current, compressed);
+        }
+    }
+
+    /**
+     * Frees title and content of this node and its subtree
+     * Called once a detached subtree can no longer be attached by undo
+     */
+    void release() {
+        releaseCache(this);
+        store.release(handle);
+    }
+
+    private static void releaseCache(EntryTreeNode node) {
+        ContentCache.remove(node);
+        for (int child = node.store.getFirstChild(node.handle); child != NodeStore.NONE;
+                child = node.store.getNextSibling(child)) {
+            releaseCache(node.store.node(child));
+        }
+    }
+
+    /**
+     * Gets an immutable snapshot of this node and its subtree
+     * Must be called on the thread modifying the tree (EDT)
+     *
+     * @return Snapshot of the subtree
+     */
+    public NodeSnapshot getSnapshot() {
+        return store.snapshot(handle);
+    }
+
+    // ========== Tree Structure ==========
+
+    /**
+     * Gets the title of this node
+     *
+     * @return Title
+     */
+    public Object getUserObject() {
+        return toString();
+    }
+
     /**
-     * Sets the selection state of this node
-     * 
-     * @param selected Selection state
+     * Changes the title of this node
+     *
+     * @param title New title
      */
-    public void setSelected(boolean selected) {
-        this.selected = selected;
+    void setTitle(String title) {
+        store.setTitle(handle, title);
+    }
+
+    /**
+     * Creates a new node and appends it to the children
+     * Used to build a tree while loading, without notifying anyone
+     *
+     * @param title Title of the new node
+     * @return New child
+     */
+    EntryTreeNode addChild(String title) {
+        EntryTreeNode child = store.createNode(title);
+        insert(child, store.getChildCount(handle));
+        return child;
+    }
+
+    /**
+     * Inserts a detached node as a child
+     *
+     * @param child Node without parent
+     * @param childIndex Index in the children
+     */
+    void insert(EntryTreeNode child, int childIndex) {
+        if (child.store != store) {
+            throw new IllegalArgumentException("new child belongs to another tree");
+        }
+        store.insert(child.handle, handle, childIndex);
+    }
+
+    /**
+     * Detaches this node with its subtree from its parent
+     */
+    void removeFromParent() {
+        store.remove(handle);
+    }
+
+    @Override
+    public TreeNode getParent() {
+        int parent = store.getParent(handle);
+        return parent != NodeStore.NONE ? new EntryTreeNode(store, parent) : null;
+    }
+
+    @Override
+    public TreeNode getChildAt(int childIndex) {
+        return new EntryTreeNode(store, store.getChildAt(handle, childIndex));
+    }
+
+    @Override
+    public int getChildCount() {
+        return store.getChildCount(handle);
+    }
+
+    @Override
+    public int getIndex(TreeNode aChild) {
+        if (aChild == null) {
+            throw new IllegalArgumentException("argument is null");
+        }
+        if (!(aChild instanceof EntryTreeNode) || ((EntryTreeNode) aChild).store != store) {
+            return -1;
+        }
+        return store.getIndex(handle, ((EntryTreeNode) aChild).handle);
+    }
+
+    @Override
+    public boolean getAllowsChildren() {
+        return true;
+    }
+
+    @Override
+    public boolean isLeaf() {
+        return store.getChildCount(handle) == 0;
+    }
+
+    @Override
+    public Enumeration<TreeNode> children() {
+        return new Enumeration<TreeNode>() {
+            private int child = store.getFirstChild(handle);
+
+            @Override
+            public boolean hasMoreElements() {
+                return child != NodeStore.NONE;
+            }
+
+            @Override
+            public TreeNode nextElement() {
+                if (child == NodeStore.NONE) {
+                    throw new NoSuchElementException();
+                }
+                EntryTreeNode node = new EntryTreeNode(store, child);
+                child = store.getNextSibling(child);
+                return node;
+            }
+        };
+    }
+
+    /**
+     * Gets the root of the tree this node belongs to
+     *
+     * @return Topmost ancestor, or this node if it has no parent
+     */
+    public TreeNode getRoot() {
+        int node = handle;
+        while (store.getParent(node) != NodeStore.NONE) {
+            node = store.getParent(node);
+        }
+        return new EntryTreeNode(store, node);
+    }
+
+    /**
+     * Checks if a node is this node or one of its ancestors
+     *
+     * @param anotherNode Node to check
+     * @return true if anotherNode is this node or an ancestor
+     */
+    public boolean isNodeAncestor(TreeNode anotherNode) {
+        return anotherNode instanceof EntryTreeNode
+                && ((EntryTreeNode) anotherNode).store == store
+                && store.isAncestor(handle, ((EntryTreeNode) anotherNode).handle);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof EntryTreeNode
+                && ((EntryTreeNode) other).store == store
+                && ((EntryTreeNode) other).handle == handle;
+    }
+
+    @Override
+    public int hashCode() {
+        return handle;
+    }
+
+    @Override
+    public String toString() {
+        String title = store.getTitle(handle);
+        return title == null ? "" : title;
     }
-}
\ No newline at end of file
+}
@@ -1,6 +1,7 @@
 package de.dasoftware.cryptpad.model;
 
-import javax.swing.tree.DefaultTreeModel;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * Data model interface for managing encrypted content
@@ -18,6 +19,25 @@ public interface IDataModel {
      */
     void saveFile(String file) throws Exception;
     
+    /**
+     * Takes an immutable snapshot of the whole tree
+     * Shares the tree arrays, which are copied in chunks when changed later
+     * 
+     * @return Snapshot of the root node
+     */
+    NodeSnapshot createSnapshot();
+    
+    /**
+     * Saves a snapshot to an encrypted file
+     * Thread-safe, the tree may be modified while saving
+     * 
+     * @param snapshot Snapshot of the root node, see {@link #createSnapshot()}
+     * @param password Encryption password
+     * @param file File path to save to
+     * @throws Exception If save operation fails
+     */
+    void saveSnapshot(NodeSnapshot snapshot, String password, String file) throws Exception;
+    
     /**
      * Loads data from an encrypted file
      * 
@@ -54,6 +74,15 @@ public interface IDataModel {
      */
     EntryTreeNode addNode(EntryTreeNode parent, String title);
     
+    /**
+     * Adds several nodes below the same parent, notifying observers once
+     * 
+     * @param parent Parent node (null for root level)
+     * @param titles Titles of the new nodes
+     * @return The created nodes
+     */
+    List<EntryTreeNode> addNodes(EntryTreeNode parent, List<String> titles);
+    
     /**
      * Deletes a node and all its children from the tree
      * 
@@ -61,6 +90,39 @@ public interface IDataModel {
      */
     void deleteNode(EntryTreeNode node);
     
+    /**
+     * Deletes several nodes and all their children, notifying observers once
+     * 
+     * @param nodes Nodes to delete
+     */
+    void deleteNodes(Collection<EntryTreeNode> nodes);
+    
+    /**
+     * Moves a node and all its children to a new position
+     * 
+     * @param node Node to move
+     * @param newParent New parent node
+     * @param index Index in the new parent's children, or -1 to append
+     */
+    void moveNode(EntryTreeNode node, EntryTreeNode newParent, int index);
+    
+    /**
+     * Moves several nodes to consecutive positions, notifying observers once
+     * 
+     * @param nodes Nodes to move, in the order they should end up in
+     * @param newParent New parent node
+     * @param index Index in the new parent's children, or -1 to append
+     */
+    void moveNodes(List<EntryTreeNode> nodes, EntryTreeNode newParent, int index);
+    
+    /**
+     * Runs several changes as one operation
+     * Observers are notified once at the end, undo reverts all changes at once
+     * 
+     * @param changes Changes to run
+     */
+    void batch(Runnable changes);
+    
     /**
      * Gets the root node of the tree
      * 
@@ -103,10 +165,98 @@ public interface IDataModel {
      * 
      * @return Swing tree model
      */
-    DefaultTreeModel getTreeModel();
+    EntryTreeModel getTreeModel();
     
     /**
      * Clears all data from the model
      */
     void clearModel();
+    
+    /**
+     * Gets the modification counter of the model
+     * Incremented on every change of content, structure or password
+     * 
+     * @return Number of changes so far
+     */
+    long getModCount();
+    
+    /**
+     * Starts the autosave journal of a loaded vault, replaying a journal
+     * left behind by a crashed session
+     * 
+     * @param file Vault file path
+     * @return Number of replayed journal records
+     */
+    int openJournal(String file);
+    
+    /**
+     * Collects the changes since the last journal write
+     * 
+     * @return Task writing them, or null if there is nothing to write
+     */
+    Runnable prepareJournalWrite();
+    
+    /**
+     * Pauses journal writes while the current tree is saved
+     * 
+     * @return Token for journalSaved or journalSaveFailed
+     */
+    int beginJournalSave();
+    
+    /**
+     * Starts a new journal after the vault has been saved
+     * 
+     * @param token Token from beginJournalSave
+     * @param file Saved vault file
+     */
+    void journalSaved(int token, String file);
+    
+    /**
+     * Continues the previous journal after a failed save
+     * 
+     * @param token Token from beginJournalSave
+     */
+    void journalSaveFailed(int token);
+    
+    /**
+     * Stops the autosave journal and deletes its file
+     */
+    void closeJournal();
+    
+    /**
+     * Finds nodes by fuzzy matching their title path
+     * 
+     * @param query Search query, path segments separated by "/"
+     * @param maxResults Maximum number of results
+     * @return Matching nodes, best match first
+     */
+    List<EntryTreeNode> findNodes(String query, int maxResults);
+    
+    /**
+     * Reverts the last structural change (add, delete, rename, move)
+     * 
+     * @return true if a change was reverted
+     */
+    boolean undo();
+    
+    /**
+     * Applies the last reverted structural change again
+     * 
+     * @return true if a change was applied
+     */
+    boolean redo();
+    
+    /**
+     * Checks if there is a structural change to revert
+     * 
+     * @return true if undo is possible
+     */
+    boolean canUndo();
+    
+    /**
+     * Checks if there is a reverted structural change to apply again
+     * 
+     * @return true if redo is possible
+     */
+    boolean canRedo();
 }
\ No newline at end of file
@@ -16,6 +16,16 @@ public interface IXMLManager {
      */
     void saveDocument() throws Exception;
     
+    /**
+     * Saves a snapshot of the tree to XML format
+     * Must not access the live model, may be called from a background thread
+     * 
+     * @param root Snapshot of the root node
+     * @param password Encryption password
+     * @throws Exception If save operation fails
+     */
+    void saveSnapshot(NodeSnapshot root, String password) throws Exception;
+    
     /**
      * Loads a document from XML format
      * 
@@ -0,0 +1,761 @@
+package de.dasoftware.cryptpad.model;
+
+import de.dasoftware.cryptpad.crypto.AESEncryption;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.crypto.SecretKey;
+import javax.swing.tree.TreeNode;
+
+/**
+ * Encrypted autosave journal kept next to a vault file
+ *
+ * Changes of the tree are collected as small operations and appended as
+ * encrypted records to "vault.journal" every few seconds. Replaying the
+ * records on top of the vault restores the state after a crash. The key
+ * is derived once per journal file, so a write costs one AES-GCM pass
+ * over the changed nodes and no key derivation.
+ *
+ * Nodes are referred to by ids, numbered in preorder from the tree as it
+ * is stored in the vault. The journal starts over after every save, and
+ * with a record of the whole tree once it grows to a multiple of the
+ * content it describes, so editing a large note for hours does not fill
+ * the disk. A new journal file is written next to the old one and moved
+ * in place, so starting over never loses the recorded changes.
+ *
+ * File format: [magic(4)][version(1)][salt(16)][vault size(8)][vault modified(8)]
+ * followed by records [length(4)][iv(12)][ciphertext][auth_tag(16)].
+ * Each record authenticates the header and its position, so records can
+ * neither be reordered nor moved to another journal. The vault size and
+ * modification time tie the journal to the vault version it is based on.
+ */
+final class Journal {
+
+    private static final String SUFFIX = ".journal";
+    private static final int MAGIC = 0x43504A4C;
+    private static final byte VERSION = 1;
+    private static final int SALT_LENGTH = 16;
+    private static final int HEADER_LENGTH = 4 + 1 + SALT_LENGTH + 8 + 8;
+
+    // Operation types
+    private static final byte OP_TREE = 1;
+    private static final byte OP_ADD = 2;
+    private static final byte OP_ATTACH = 3;
+    private static final byte OP_DETACH = 4;
+    private static final byte OP_MOVE = 5;
+    private static final byte OP_RENAME = 6;
+    private static final byte OP_CONTENT = 7;
+
+    // Start over with the whole tree once the journal is this many times the live content
+    private static final long CHECKPOINT_FACTOR = 4;
+
+    // Smallest live content size assumed, small vaults are not checkpointed on every write
+    private static final long MIN_CHECKPOINT_SIZE = 1024 * 1024;
+
+    private static final AESEncryption encryption = new AESEncryption();
+
+    // Tree state, only used on the EDT
+    // Journal id per node handle, -1 for nodes without id
+    private int[] ids = new int[0];
+    private int nextId = 0;
+    private final List<Op> pendingOps = new ArrayList<>();
+    private final Set<EntryTreeNode> changedContents = new HashSet<>();
+
+    // While a save is running, changes are collected but not written
+    private boolean suspended = false;
+
+    // Next write starts a new file with the whole tree
+    private boolean checkpoint = false;
+
+    private JournalFile file = null;
+    private int replayedRecords = 0;
+
+    /**
+     * An operation, encoded when its record is written
+     */
+    @FunctionalInterface
+    private interface Op {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Gets the journal path of a vault file
+     *
+     * @param vaultFile Vault file path
+     * @return Journal path
+     */
+    static Path journalPath(String vaultFile) {
+        return Paths.get(vaultFile + SUFFIX);
+    }
+
+    /**
+     * Starts the journal of a vault that has just been loaded
+     * A journal left behind for this vault version is replayed into the model
+     *
+     * @param model Model holding the loaded vault
+     * @param vaultFile Vault file path
+     * @param password Password of the vault
+     * @return Journal appending to the vault's journal file
+     * @throws IOException If the vault file cannot be accessed
+     */
+    static Journal open(DataModel model, String vaultFile, String password) throws IOException {
+        Path vault = Paths.get(vaultFile);
+        long vaultSize = Files.size(vault);
+        long vaultModified = Files.getLastModifiedTime(vault).toMillis();
+
+        Journal journal = new Journal();
+        journal.rebase(model.getRootNode());
+
+        Path path = journalPath(vaultFile);
+        Files.deleteIfExists(JournalFile.pendingPath(path));
+        if (Files.exists(path)) {
+            journal.replay(model, path, password, vaultSize, vaultModified);
+        }
+        if (journal.file == null) {
+            journal.file = new JournalFile(path, password, vaultSize, vaultModified);
+        }
+        return journal;
+    }
+
+    /**
+     * Gets the number of records replayed when the journal was opened
+     *
+     * @return Number of replayed records
+     */
+    int getReplayedRecords() {
+        return replayedRecords;
+    }
+
+    // ========== Recording (EDT) ==========
+
+    /**
+     * Numbers the nodes of a tree and drops all collected changes
+     */
+    private void rebase(EntryTreeNode root) {
+        Arrays.fill(ids, -1);
+        nextId = 0;
+        pendingOps.clear();
+        changedContents.clear();
+        assignIds(root);
+    }
+
+    private void assignIds(EntryTreeNode node) {
+        setId(node, nextId++);
+        Enumeration<TreeNode> children = node.children();
+        while (children.hasMoreElements()) {
+            assignIds((EntryTreeNode) children.nextElement());
+        }
+    }
+
+    private void setId(EntryTreeNode node, int id) {
+        int handle = node.getHandle();
+        if (handle >= ids.length) {
+            int oldLength = ids.length;
+            ids = Arrays.copyOf(ids, Math.max(handle + 1, oldLength + (oldLength >> 1)));
+            Arrays.fill(ids, oldLength, ids.length, -1);
+        }
+        ids[handle] = id;
+    }
+
+    private int getId(EntryTreeNode node) {
+        int handle = node.getHandle();
+        return handle < ids.length ? ids[handle] : -1;
+    }
+
+    void nodeAttached(EntryTreeNode node, EntryTreeNode parent, int index) {
+        int parentId = getId(parent);
+        if (parentId < 0) {
+            checkpoint = true;
+            return;
+        }
+
+        // Reattached after undoing a delete
+        int id = getId(node);
+        if (id >= 0) {
+            pendingOps.add(out -> {
+                out.writeByte(OP_ATTACH);
+                out.writeInt(id);
+                out.writeInt(parentId);
+                out.writeInt(index);
+            });
+            return;
+        }
+
+        int firstId = nextId;
+        assignIds(node);
+        NodeSnapshot subtree = node.getSnapshot();
+        pendingOps.add(out -> {
+            out.writeByte(OP_ADD);
+            out.writeInt(parentId);
+            out.writeInt(index);
+            out.writeInt(firstId);
+            writeTree(out, subtree);
+        });
+    }
+
+    void nodeDetached(EntryTreeNode node) {
+        int id = getId(node);
+        if (id < 0) {
+            checkpoint = true;
+            return;
+        }
+        pendingOps.add(out -> {
+            out.writeByte(OP_DETACH);
+            out.writeInt(id);
+        });
+    }
+
+    void nodeMoved(EntryTreeNode node, EntryTreeNode parent, int index) {
+        int id = getId(node);
+        int parentId = getId(parent);
+        if (id < 0 || parentId < 0) {
+            checkpoint = true;
+            return;
+        }
+        pendingOps.add(out -> {
+            out.writeByte(OP_MOVE);
+            out.writeInt(id);
+            out.writeInt(parentId);
+            out.writeInt(index);
+        });
+    }
+
+    void nodeRenamed(EntryTreeNode node) {
+        int id = getId(node);
+        if (id < 0) {
+            checkpoint = true;
+            return;
+        }
+        String title = node.toString();
+        pendingOps.add(out -> {
+            out.writeByte(OP_RENAME);
+            out.writeInt(id);
+            writeString(out, title);
+        });
+    }
+
+    void contentChanged(EntryTreeNode node) {
+        // Only the latest content of a node is written
+        changedContents.add(node);
+    }
+
+    /**
+     * Collects the changes since the last write into a record
+     * The returned task encrypts and appends the record, it can run on
+     * any thread but tasks must run in the order they were prepared
+     *
+     * @param root Current root node
+     * @return Task writing the record, or null if there is nothing to write
+     */
+    Runnable prepareWrite(EntryTreeNode root) {
+        if (suspended || file == null) {
+            return null;
+        }
+
+        List<Op> ops;
+        boolean fullTree = checkpoint || file.failed || file.isOversized();
+        if (fullTree) {
+            checkpoint = false;
+            rebase(root);
+            NodeSnapshot tree = root.getSnapshot();
+            file = file.restart();
+            ops = Collections.singletonList(out -> {
+                out.writeByte(OP_TREE);
+                writeTree(out, tree);
+            });
+        } else {
+            if (pendingOps.isEmpty() && changedContents.isEmpty()) {
+                return null;
+            }
+            ops = new ArrayList<>(pendingOps);
+            for (EntryTreeNode node : changedContents) {
+                int id = getId(node);
+                if (id >= 0) {
+                    CompactContent content = node.getCompactContent();
+                    ops.add(out -> {
+                        out.writeByte(OP_CONTENT);
+                        out.writeInt(id);
+                        writeBytes(out, content.toUtf8());
+                    });
+                }
+            }
+            pendingOps.clear();
+            changedContents.clear();
+        }
+
+        JournalFile target = file;
+        return () -> {
+            try {
+                target.append(ops, fullTree);
+            } catch (Exception ex) {
+                throw new RuntimeException(ex.getMessage(), ex);
+            }
+        };
+    }
+
+    // ========== Lifecycle (EDT) ==========
+
+    /**
+     * Stops writing while a save is running
+     * Changes are collected relative to the tree being saved
+     *
+     * @param root Root node of the tree being saved
+     */
+    void suspend(EntryTreeNode root) {
+        suspended = true;
+        checkpoint = false;
+        rebase(root);
+    }
+
+    /**
+     * Continues with a new journal file after the vault has been saved
+     *
+     * @param vaultFile Saved vault file
+     * @param password Password the vault was saved with
+     */
+    void resume(String vaultFile, String password) {
+        suspended = false;
+        if (file != null) {
+            file.close(true);
+            file = null;
+        }
+
+        Path path = journalPath(vaultFile);
+        try {
+            Path vault = Paths.get(vaultFile);
+            Files.deleteIfExists(path);
+            file = new JournalFile(path, password, Files.size(vault),
+                    Files.getLastModifiedTime(vault).toMillis());
+        } catch (IOException e) {
+            System.err.println("Could not start autosave journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Continues on the previous journal file after a save failed
+     * The vault on disk is unchanged, so the next write records the whole tree
+     *
+     * @return false if there is no previous journal file
+     */
+    boolean resumeAfterFailedSave() {
+        suspended = false;
+        checkpoint = true;
+        return file != null;
+    }
+
+    /**
+     * Closes the journal and deletes its file
+     */
+    void close() {
+        if (file != null) {
+            file.close(true);
+            file = null;
+        }
+    }
+
+    // ========== Replay ==========
+
+    /**
+     * Applies the records of a journal file to the model
+     * Stops at the first incomplete or corrupt record, which is cut off
+     * when the journal is continued
+     */
+    private void replay(DataModel model, Path path, String password,
+                        long vaultSize, long vaultModified) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            long fileSize = Files.size(path);
+            if (fileSize < HEADER_LENGTH) {
+                return;
+            }
+
+            byte[] header = new byte[HEADER_LENGTH];
+            in.readFully(header);
+            ByteBuffer buffer = ByteBuffer.wrap(header);
+            byte[] salt = new byte[SALT_LENGTH];
+            if (buffer.getInt() != MAGIC || buffer.get() != VERSION) {
+                System.err.println("Unknown autosave journal format, ignored: " + path);
+                return;
+            }
+            buffer.get(salt);
+            if (buffer.getLong() != vaultSize || buffer.getLong() != vaultModified) {
+                System.err.println("Autosave journal belongs to another vault version, ignored: " + path);
+                return;
+            }
+
+            SecretKey key = encryption.deriveSessionKey(password, salt);
+
+            List<EntryTreeNode> nodes = new ArrayList<>(Collections.nCopies(nextId, null));
+            EntryTreeNode root = model.getRootNode();
+            for (int handle = 0; handle < ids.length; handle++) {
+                if (ids[handle] >= 0) {
+                    nodes.set(ids[handle], root.getNode(handle));
+                }
+            }
+
+            // Records are read one at a time, only the current one is in memory
+            long index = 0;
+            long end = HEADER_LENGTH;
+            while (fileSize - end >= 4) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (length <= 0 || length > fileSize - end - 4) {
+                    break;
+                }
+                byte[] record = new byte[length];
+                try {
+                    in.readFully(record);
+                } catch (EOFException e) {
+                    break;
+                }
+
+                try {
+                    byte[] plain = encryption.decryptBytes(key, record, associatedData(header, index));
+                    applyRecord(model, plain, nodes);
+                } catch (Exception e) {
+                    System.err.println("Autosave journal replay stopped: " + e.getMessage());
+                    break;
+                }
+                index++;
+                end += 4 + length;
+            }
+
+            // Continue numbering from the replayed tree
+            Arrays.fill(ids, -1);
+            for (int i = 0; i < nodes.size(); i++) {
+                setId(nodes.get(i), i);
+            }
+            nextId = nodes.size();
+            replayedRecords = (int) index;
+            file = new JournalFile(path, password, key, header, index, end);
+        } catch (Exception e) {
+            System.err.println("Could not read autosave journal: " + e.getMessage());
+        }
+    }
+
+    private static void applyRecord(DataModel model, byte[] plain, List<EntryTreeNode> nodes)
+            throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(plain));
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            byte type = in.readByte();
+            switch (type) {
+                case OP_TREE: {
+                    nodes.clear();
+                    model.replaceTree(readTree(model, in, nodes));
+                    break;
+                }
+                case OP_ADD: {
+                    EntryTreeNode parent = node(nodes, in.readInt());
+                    int index = in.readInt();
+                    if (in.readInt() != nodes.size()) {
+                        throw new IOException("Unexpected node id");
+                    }
+                    model.attachNode(readTree(model, in, nodes), parent, index);
+                    break;
+                }
+                case OP_ATTACH: {
+                    EntryTreeNode node = node(nodes, in.readInt());
+                    model.attachNode(node, node(nodes, in.readInt()), in.readInt());
+                    break;
+                }
+                case OP_DETACH:
+                    model.detachNode(node(nodes, in.readInt()));
+                    break;
+                case OP_MOVE: {
+                    EntryTreeNode node = node(nodes, in.readInt());
+                    model.relinkNode(node, node(nodes, in.readInt()), in.readInt());
+                    break;
+                }
+                case OP_RENAME: {
+                    EntryTreeNode node = node(nodes, in.readInt());
+                    model.renameNode(node, readString(in));
+                    break;
+                }
+                case OP_CONTENT: {
+                    EntryTreeNode node = node(nodes, in.readInt());
+                    model.setNodeContent(node, readString(in));
+                    break;
+                }
+                default:
+                    throw new IOException("Unknown journal operation " + type);
+            }
+        }
+    }
+
+    private static EntryTreeNode node(List<EntryTreeNode> nodes, int id) throws IOException {
+        if (id < 0 || id >= nodes.size()) {
+            throw new IOException("Unknown node id " + id);
+        }
+        return nodes.get(id);
+    }
+
+    // ========== Encoding ==========
+
+    /**
+     * Writes a subtree in preorder, matching the id assignment
+     */
+    private static void writeTree(DataOutputStream out, NodeSnapshot node) throws IOException {
+        writeString(out, node.getTitle());
+        writeBytes(out, node.getCompactContent().toUtf8());
+        out.writeInt(node.getChildCount());
+        for (NodeSnapshot child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            writeTree(out, child);
+        }
+    }
+
+    private static EntryTreeNode readTree(DataModel model, DataInputStream in, List<EntryTreeNode> nodes)
+            throws IOException {
+        EntryTreeNode node = model.createNode(readString(in));
+        readSubtree(node, in, nodes);
+        return node;
+    }
+
+    private static void readSubtree(EntryTreeNode node, DataInputStream in, List<EntryTreeNode> nodes)
+            throws IOException {
+        node.setContent(readString(in));
+        nodes.add(node);
+
+        int childCount = in.readInt();
+        for (int i = 0; i < childCount; i++) {
+            readSubtree(node.addChild(readString(in)), in, nodes);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String text) throws IOException {
+        writeBytes(out, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > in.available()) {
+            throw new IOException("Invalid string length");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] associatedData(byte[] header, long index) {
+        return ByteBuffer.allocate(header.length + 8).put(header).putLong(index).array();
+    }
+
+    // ========== File ==========
+
+    /**
+     * Journal file, written by the background tasks from prepareWrite
+     */
+    private static final class JournalFile {
+
+        private final Path path;
+        private final String password;
+        private final long vaultSize;
+        private final long vaultModified;
+
+        private SecretKey key;
+        private byte[] header;
+        private long recordIndex;
+        private long appendPosition;
+        private FileChannel channel = null;
+        private boolean closed = false;
+
+        // New file being written next to the journal until its first record is complete
+        private Path pendingPath = null;
+
+        // Set if a write failed, the file content is unknown then
+        volatile boolean failed = false;
+
+        // File size, and the size of the content it describes, for checkpoints
+        private volatile long size;
+        private volatile long liveSize;
+
+        /**
+         * New journal file, created on the first write
+         */
+        JournalFile(Path path, String password, long vaultSize, long vaultModified) {
+            this.path = path;
+            this.password = password;
+            this.vaultSize = vaultSize;
+            this.vaultModified = vaultModified;
+            this.liveSize = vaultSize;
+        }
+
+        /**
+         * Existing journal file, continued after its replay
+         */
+        JournalFile(Path path, String password, SecretKey key, byte[] header,
+                    long recordIndex, long appendPosition) {
+            this(path, password, ByteBuffer.wrap(header).getLong(4 + 1 + SALT_LENGTH),
+                    ByteBuffer.wrap(header).getLong(4 + 1 + SALT_LENGTH + 8));
+            this.key = key;
+            this.header = header;
+            this.recordIndex = recordIndex;
+            this.appendPosition = appendPosition;
+            this.size = appendPosition;
+        }
+
+        /**
+         * Gets the path a new journal file is written to before it replaces the journal
+         */
+        static Path pendingPath(Path path) {
+            return path.resolveSibling(path.getFileName() + ".tmp");
+        }
+
+        /**
+         * Checks if the journal has grown to a multiple of the content it describes
+         * The live content is the vault, or the tree of the last full tree record
+         */
+        boolean isOversized() {
+            return size > CHECKPOINT_FACTOR * Math.max(liveSize, MIN_CHECKPOINT_SIZE);
+        }
+
+        /**
+         * Replaces this file by a new one for the same vault version
+         * The old file stays in place until the new one has its first record
+         */
+        JournalFile restart() {
+            close(false);
+            return new JournalFile(path, password, vaultSize, vaultModified);
+        }
+
+        /**
+         * Encrypts the operations into one record and appends it
+         *
+         * @param ops Operations of the record
+         * @param fullTree true if the record holds the whole tree
+         */
+        synchronized void append(List<Op> ops, boolean fullTree) throws Exception {
+            if (closed) {
+                return;
+            }
+            try {
+                if (channel == null) {
+                    openChannel();
+                }
+
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                DataOutputStream out = new DataOutputStream(bytes);
+                out.writeInt(ops.size());
+                for (Op op : ops) {
+                    op.write(out);
+                }
+                byte[] record = encryption.encryptBytes(key, bytes.toByteArray(),
+                        associatedData(header, recordIndex));
+
+                ByteBuffer buffer = ByteBuffer.allocate(4 + record.length);
+                buffer.putInt(record.length).put(record).flip();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+                recordIndex++;
+
+                if (pendingPath != null) {
+                    replaceJournal();
+                }
+                size = channel.position();
+                if (fullTree) {
+                    liveSize = record.length;
+                }
+            } catch (Exception e) {
+                failed = true;
+                throw e;
+            }
+        }
+
+        private void openChannel() throws Exception {
+            if (header == null) {
+                byte[] salt = encryption.generateSalt();
+                key = encryption.deriveSessionKey(password, salt);
+                header = ByteBuffer.allocate(HEADER_LENGTH)
+                        .putInt(MAGIC)
+                        .put(VERSION)
+                        .put(salt)
+                        .putLong(vaultSize)
+                        .putLong(vaultModified)
+                        .array();
+
+                pendingPath = pendingPath(path);
+                channel = FileChannel.open(pendingPath, StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                channel.write(ByteBuffer.wrap(header));
+            } else {
+                // Cut off an incomplete record left by a crash
+                channel = FileChannel.open(path, StandardOpenOption.WRITE);
+                channel.truncate(appendPosition);
+                channel.position(appendPosition);
+            }
+        }
+
+        /**
+         * Moves the new file over the journal once it holds a complete record
+         * The channel is closed for the move, as open files cannot be replaced on Windows
+         */
+        private void replaceJournal() throws IOException {
+            long position = channel.position();
+            channel.close();
+            channel = null;
+            try {
+                Files.move(pendingPath, path,
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(pendingPath, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+            pendingPath = null;
+            channel = FileChannel.open(path, StandardOpenOption.WRITE);
+            channel.position(position);
+        }
+
+        /**
+         * Closes the file, later writes are ignored
+         *
+         * @param delete true to delete the file
+         */
+        synchronized void close(boolean delete) {
+            closed = true;
+            try {
+                if (channel != null) {
+                    channel.close();
+                    channel = null;
+                }
+                if (pendingPath != null) {
+                    Files.deleteIfExists(pendingPath);
+                }
+                if (delete) {
+                    Files.deleteIfExists(path);
+                }
+            } catch (IOException e) {
+                System.err.println("Could not close autosave journal: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package de.dasoftware.cryptpad.model;
+
+/**
+ * Immutable point-in-time view of a node and its subtree
+ *
+ * A snapshot holds the chunks of the node store as they were when it was
+ * taken. The store copies a chunk before changing it, so a snapshot costs
+ * no walk over the tree and only the chunks changed later are duplicated.
+ * It can be read from any thread while the tree keeps changing, e.g. to
+ * save in the background.
+ */
+public final class NodeSnapshot {
+
+    private final Tree tree;
+    private final int index;
+
+    NodeSnapshot(Tree tree, int index) {
+        this.tree = tree;
+        this.index = index;
+    }
+
+    /**
+     * Frozen chunks of the node store, indexed by node handle
+     */
+    static final class Tree {
+        final int root;
+        final int[][] firstChildren;
+        final int[][] nextSiblings;
+        final int[][] childCounts;
+        final String[][] titles;
+        final CompactContent[][] contents;
+
+        Tree(int root, int[][] firstChildren, int[][] nextSiblings, int[][] childCounts,
+                String[][] titles, CompactContent[][] contents) {
+            this.root = root;
+            this.firstChildren = firstChildren;
+            this.nextSiblings = nextSiblings;
+            this.childCounts = childCounts;
+            this.titles = titles;
+            this.contents = contents;
+        }
+    }
+
+    /**
+     * Gets the title of the node
+     *
+     * @return Node title
+     */
+    public String getTitle() {
+        String title = NodeStore.at(tree.titles, index);
+        return title == null ? "" : title;
+    }
+
+    /**
+     * Gets the content of the node, decoded on every call
+     *
+     * @return Node content
+     */
+    public String getContent() {
+        return NodeStore.at(tree.contents, index).decode();
+    }
+
+    /**
+     * Gets the content of the node without decoding it
+     */
+    CompactContent getCompactContent() {
+        return NodeStore.at(tree.contents, index);
+    }
+
+    public int getChildCount() {
+        return NodeStore.at(tree.childCounts, index);
+    }
+
+    /**
+     * Gets the first child of the node
+     *
+     * @return First child, or null if the node has no children
+     */
+    public NodeSnapshot getFirstChild() {
+        int first = NodeStore.at(tree.firstChildren, index);
+        return first != NodeStore.NONE ? new NodeSnapshot(tree, first) : null;
+    }
+
+    /**
+     * Gets the next sibling of the node
+     *
+     * @return Next sibling, or null if this is the last child
+     */
+    public NodeSnapshot getNextSibling() {
+        // The siblings of the snapshot root are not part of the snapshot
+        if (index == tree.root) {
+            return null;
+        }
+        int next = NodeStore.at(tree.nextSiblings, index);
+        return next != NodeStore.NONE ? new NodeSnapshot(tree, next) : null;
+    }
+}
@@ -0,0 +1,473 @@
+package de.dasoftware.cryptpad.model;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * Struct-of-arrays storage of a node tree
+ *
+ * Nodes are int handles into parallel arrays instead of objects, so a tree
+ * costs about 32 bytes per node plus its titles and contents, and the
+ * garbage collector only sees a handful of large arrays. Children form a
+ * doubly linked sibling list; the previous sibling of the first child is
+ * the last child, so appending and unlinking never walk the list.
+ *
+ * Handles are not reused, a detached subtree keeps its handles so undo can
+ * attach it again. A new store is created whenever the whole tree is
+ * replaced, e.g. when another file is loaded. Titles are interned, equal
+ * titles such as "Login" share one String.
+ *
+ * The arrays read by snapshots are split into chunks that are copied on
+ * write: a snapshot only copies the chunk tables and marks all chunks as
+ * shared, the first change of a shared chunk afterwards copies that chunk.
+ * Taking a snapshot is therefore independent of the tree size, and only
+ * the chunks changed while the snapshot is in use are duplicated.
+ *
+ * The structure is only modified and read on the EDT. Contents are also
+ * compacted from a background thread, so content writes hold the store lock.
+ */
+final class NodeStore {
+
+    static final int NONE = -1;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    // Nodes per copy-on-write chunk
+    private static final int CHUNK_SHIFT = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    // Read by snapshots, copied on write
+    private final IntChunks firstChild = new IntChunks();
+    private final IntChunks nextSibling = new IntChunks();
+    private final IntChunks childCount = new IntChunks();
+    private final RefChunks<String> title = new RefChunks<>(new String[0][], String[]::new);
+    private final RefChunks<CompactContent> content =
+            new RefChunks<>(new CompactContent[0][], CompactContent[]::new);
+
+    // Only used on the EDT, never part of a snapshot
+    private int[] parent = new int[INITIAL_CAPACITY];
+    private int[] prevSibling = new int[INITIAL_CAPACITY];
+    private int[] modCount = new int[INITIAL_CAPACITY];
+    private int size = 0;
+
+    // Last child looked up by index, makes walking the children in order O(1) per child
+    private int cursorParent = NONE;
+    private int cursorIndex;
+    private int cursorChild;
+
+    /**
+     * Array of ints in copy-on-write chunks
+     */
+    private static final class IntChunks {
+
+        private int[][] chunks = new int[0][];
+        private boolean[] shared = new boolean[0];
+
+        int get(int index) {
+            return chunks[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+        }
+
+        void set(int index, int value) {
+            int chunk = index >>> CHUNK_SHIFT;
+            if (shared[chunk]) {
+                chunks[chunk] = chunks[chunk].clone();
+                shared[chunk] = false;
+            }
+            chunks[chunk][index & CHUNK_MASK] = value;
+        }
+
+        void addChunk() {
+            int count = chunks.length;
+            chunks = Arrays.copyOf(chunks, count + 1);
+            chunks[count] = new int[CHUNK_SIZE];
+            shared = Arrays.copyOf(shared, count + 1);
+        }
+
+        /**
+         * Gets the current chunks, they are no longer changed afterwards
+         */
+        int[][] freeze() {
+            Arrays.fill(shared, true);
+            return chunks.clone();
+        }
+    }
+
+    /**
+     * Array of references in copy-on-write chunks
+     * The chunk table is volatile, contents are read from other threads.
+     */
+    private static final class RefChunks<T> {
+
+        private final IntFunction<T[]> newChunk;
+        private volatile T[][] chunks;
+        private boolean[] shared = new boolean[0];
+
+        RefChunks(T[][] empty, IntFunction<T[]> newChunk) {
+            this.chunks = empty;
+            this.newChunk = newChunk;
+        }
+
+        T get(int index) {
+            return chunks[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+        }
+
+        void set(int index, T value) {
+            T[][] current = chunks;
+            int chunk = index >>> CHUNK_SHIFT;
+            if (shared[chunk]) {
+                current[chunk] = current[chunk].clone();
+                shared[chunk] = false;
+            }
+            current[chunk][index & CHUNK_MASK] = value;
+        }
+
+        void addChunk() {
+            int count = chunks.length;
+            T[][] grown = Arrays.copyOf(chunks, count + 1);
+            grown[count] = newChunk.apply(CHUNK_SIZE);
+            shared = Arrays.copyOf(shared, count + 1);
+            chunks = grown;
+        }
+
+        T[][] freeze() {
+            Arrays.fill(shared, true);
+            return chunks.clone();
+        }
+    }
+
+    /**
+     * Reads an entry of frozen int chunks
+     */
+    static int at(int[][] chunks, int handle) {
+        return chunks[handle >>> CHUNK_SHIFT][handle & CHUNK_MASK];
+    }
+
+    /**
+     * Reads an entry of frozen reference chunks
+     */
+    static <T> T at(T[][] chunks, int handle) {
+        return chunks[handle >>> CHUNK_SHIFT][handle & CHUNK_MASK];
+    }
+
+    /**
+     * Creates a detached node without children and content
+     *
+     * @param nodeTitle Title of the node
+     * @return Node
+     */
+    EntryTreeNode createNode(String nodeTitle) {
+        if (size == parent.length) {
+            grow();
+        }
+        int handle = size;
+        if ((handle & CHUNK_MASK) == 0) {
+            addChunk();
+        }
+        size++;
+        parent[handle] = NONE;
+        firstChild.set(handle, NONE);
+        nextSibling.set(handle, NONE);
+        prevSibling[handle] = NONE;
+        title.set(handle, intern(nodeTitle));
+        synchronized (this) {
+            content.set(handle, CompactContent.EMPTY);
+        }
+        return new EntryTreeNode(this, handle);
+    }
+
+    private void grow() {
+        int capacity = parent.length + (parent.length >> 1);
+        parent = Arrays.copyOf(parent, capacity);
+        prevSibling = Arrays.copyOf(prevSibling, capacity);
+        modCount = Arrays.copyOf(modCount, capacity);
+    }
+
+    private void addChunk() {
+        firstChild.addChunk();
+        nextSibling.addChunk();
+        childCount.addChunk();
+        title.addChunk();
+        synchronized (this) {
+            content.addChunk();
+        }
+    }
+
+    private static String intern(String nodeTitle) {
+        return nodeTitle == null ? null : nodeTitle.intern();
+    }
+
+    /**
+     * Gets a node by its handle
+     *
+     * @param handle Node handle
+     * @return Node
+     */
+    EntryTreeNode node(int handle) {
+        if (handle < 0 || handle >= size) {
+            throw new IllegalArgumentException("Unknown node handle " + handle);
+        }
+        return new EntryTreeNode(this, handle);
+    }
+
+    // ========== Structure ==========
+
+    int getParent(int handle) {
+        return parent[handle];
+    }
+
+    int getChildCount(int handle) {
+        return childCount.get(handle);
+    }
+
+    int getFirstChild(int handle) {
+        return firstChild.get(handle);
+    }
+
+    int getNextSibling(int handle) {
+        return nextSibling.get(handle);
+    }
+
+    /**
+     * Gets a child by its index
+     * Continues from the last lookup, so iterating the children in order
+     * does not walk the sibling list again for every child
+     *
+     * @param handle Parent node
+     * @param index Child index
+     * @return Child node
+     */
+    int getChildAt(int handle, int index) {
+        int count = childCount.get(handle);
+        if (index < 0 || index >= count) {
+            throw new ArrayIndexOutOfBoundsException(index);
+        }
+
+        int child;
+        int position;
+        if (cursorParent == handle && index >= cursorIndex) {
+            child = cursorChild;
+            position = cursorIndex;
+        } else {
+            child = firstChild.get(handle);
+            position = 0;
+        }
+
+        if (count - 1 - index < index - position) {
+            // Closer to the end, walk backwards from the last child
+            child = prevSibling[firstChild.get(handle)];
+            for (position = count - 1; position > index; position--) {
+                child = prevSibling[child];
+            }
+        } else {
+            for (; position < index; position++) {
+                child = nextSibling.get(child);
+            }
+        }
+
+        cursorParent = handle;
+        cursorIndex = index;
+        cursorChild = child;
+        return child;
+    }
+
+    /**
+     * Gets the index of a child
+     *
+     * @param handle Parent node
+     * @param child Child node
+     * @return Index, or -1 if child is not a child of the node
+     */
+    int getIndex(int handle, int child) {
+        if (parent[child] != handle) {
+            return -1;
+        }
+        if (cursorParent == handle && cursorChild == child) {
+            return cursorIndex;
+        }
+
+        int index = 0;
+        for (int node = firstChild.get(handle); node != child; node = nextSibling.get(node)) {
+            index++;
+        }
+        cursorParent = handle;
+        cursorIndex = index;
+        cursorChild = child;
+        return index;
+    }
+
+    /**
+     * Checks if a node is the given node or one of its ancestors
+     *
+     * @param handle Node to start at
+     * @param ancestor Possible ancestor
+     * @return true if ancestor is the node or an ancestor of it
+     */
+    boolean isAncestor(int handle, int ancestor) {
+        for (int node = handle; node != NONE; node = parent[node]) {
+            if (node == ancestor) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Inserts a detached node as a child
+     *
+     * @param child Detached node
+     * @param handle New parent
+     * @param index Index in the children of the parent
+     */
+    void insert(int child, int handle, int index) {
+        if (parent[child] != NONE) {
+            throw new IllegalArgumentException("node already has a parent");
+        }
+        if (isAncestor(handle, child)) {
+            throw new IllegalArgumentException("new child is an ancestor");
+        }
+        int count = childCount.get(handle);
+        if (index < 0 || index > count) {
+            throw new ArrayIndexOutOfBoundsException(index);
+        }
+
+        if (count == 0) {
+            firstChild.set(handle, child);
+            prevSibling[child] = child;
+            nextSibling.set(child, NONE);
+        } else if (index == count) {
+            int first = firstChild.get(handle);
+            int last = prevSibling[first];
+            nextSibling.set(last, child);
+            prevSibling[child] = last;
+            nextSibling.set(child, NONE);
+            prevSibling[first] = child;
+        } else {
+            int next = getChildAt(handle, index);
+            prevSibling[child] = prevSibling[next];
+            nextSibling.set(child, next);
+            if (index == 0) {
+                firstChild.set(handle, child);
+            } else {
+                nextSibling.set(prevSibling[next], child);
+            }
+            prevSibling[next] = child;
+        }
+
+        parent[child] = handle;
+        childCount.set(handle, count + 1);
+        cursorParent = NONE;
+    }
+
+    /**
+     * Detaches a node with its subtree from its parent
+     *
+     * @param child Node to detach
+     */
+    void remove(int child) {
+        int handle = parent[child];
+        if (handle == NONE) {
+            return;
+        }
+
+        int first = firstChild.get(handle);
+        int next = nextSibling.get(child);
+        int prev = prevSibling[child];
+        if (child == first) {
+            firstChild.set(handle, next);
+            if (next != NONE) {
+                prevSibling[next] = prev;
+            }
+        } else {
+            nextSibling.set(prev, next);
+            if (next != NONE) {
+                prevSibling[next] = prev;
+            } else {
+                prevSibling[first] = prev;
+            }
+        }
+
+        parent[child] = NONE;
+        nextSibling.set(child, NONE);
+        prevSibling[child] = NONE;
+        childCount.set(handle, childCount.get(handle) - 1);
+        cursorParent = NONE;
+    }
+
+    // ========== Data ==========
+
+    String getTitle(int handle) {
+        return title.get(handle);
+    }
+
+    void setTitle(int handle, String nodeTitle) {
+        title.set(handle, intern(nodeTitle));
+    }
+
+    CompactContent getContent(int handle) {
+        return content.get(handle);
+    }
+
+    /**
+     * Replaces the content and counts the change
+     */
+    synchronized void setContent(int handle, CompactContent newContent) {
+        content.set(handle, newContent);
+        modCount[handle]++;
+    }
+
+    /**
+     * Replaces the content unless it has been changed in the meantime
+     * Used to store the compressed form, which is not counted as a change
+     *
+     * @return true if the content was replaced
+     */
+    synchronized boolean replaceContent(int handle, CompactContent expected, CompactContent newContent) {
+        if (content.get(handle) != expected) {
+            return false;
+        }
+        content.set(handle, newContent);
+        return true;
+    }
+
+    int getModCount(int handle) {
+        return modCount[handle];
+    }
+
+    /**
+     * Drops title and content of a subtree that can no longer be attached
+     * The handles stay allocated, only the data they refer to is freed
+     *
+     * @param handle Root of the subtree
+     */
+    void release(int handle) {
+        title.set(handle, null);
+        synchronized (this) {
+            content.set(handle, CompactContent.EMPTY);
+        }
+        for (int child = firstChild.get(handle); child != NONE; child = nextSibling.get(child)) {
+            release(child);
+        }
+    }
+
+    // ========== Snapshots ==========
+
+    /**
+     * Takes an immutable snapshot of a subtree
+     * Only the chunk tables are copied, the chunks themselves are shared
+     * until the tree changes them. The snapshot reads the whole store, the
+     * subtree is limited by not following the siblings of its root.
+     *
+     * @param handle Root of the subtree
+     * @return Snapshot of the subtree root
+     */
+    NodeSnapshot snapshot(int handle) {
+        CompactContent[][] contents;
+        synchronized (this) {
+            contents = content.freeze();
+        }
+        NodeSnapshot.Tree tree = new NodeSnapshot.Tree(handle, firstChild.freeze(),
+                nextSibling.freeze(), childCount.freeze(), title.freeze(), contents);
+        return new NodeSnapshot(tree, handle);
+    }
+}
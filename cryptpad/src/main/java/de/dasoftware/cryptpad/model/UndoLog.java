@@ -0,0 +1,349 @@
+package de.dasoftware.cryptpad.model;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.List;
+import javax.swing.tree.TreeNode;
+
+/**
+ * Command log for undoing and redoing structural changes of the tree
+ *
+ * Every command only relinks nodes or swaps a title, so applying and
+ * reverting it costs the same no matter how large the affected subtree is.
+ * Deleted subtrees are kept by reference, not copied. The log is bounded
+ * by the number of commands and by the memory held by deleted subtrees,
+ * which are released once their command is dropped.
+ * Commands recorded within a group are undone and redone as one step.
+ */
+final class UndoLog {
+
+    // Maximum number of undoable commands
+    private static final int MAX_COMMANDS = 100;
+
+    // Maximum memory kept alive by deleted subtrees
+    private static final long MAX_RETAINED_BYTES = 32L * 1024 * 1024;
+
+    // Rough heap cost of a node without its content
+    private static final int NODE_OVERHEAD_BYTES = 48;
+
+    // First element is the most recent command
+    private final Deque<Command> undoStack = new ArrayDeque<>();
+    private final Deque<Command> redoStack = new ArrayDeque<>();
+    private long retainedBytes = 0;
+
+    // Commands of the currently open group, null if no group is open
+    private List<Command> group = null;
+    private int groupDepth = 0;
+
+    /**
+     * Records a command that has just been applied
+     * Clears the redo history
+     *
+     * @param command Applied command
+     */
+    void record(Command command) {
+        if (group != null) {
+            group.add(command);
+            return;
+        }
+
+        for (Command undone : redoStack) {
+            retainedBytes -= undone.retainedBytes;
+            undone.discard(true);
+        }
+        redoStack.clear();
+
+        undoStack.addFirst(command);
+        retainedBytes += command.retainedBytes;
+
+        // Drop the oldest commands until the log fits its budget
+        while (undoStack.size() > MAX_COMMANDS
+                || (retainedBytes > MAX_RETAINED_BYTES && undoStack.size() > 1)) {
+            Command oldest = undoStack.removeLast();
+            retainedBytes -= oldest.retainedBytes;
+            oldest.discard(false);
+        }
+    }
+
+    /**
+     * Reverts the most recent command
+     *
+     * @param model Model to operate on
+     * @return true if a command was reverted
+     */
+    boolean undo(DataModel model) {
+        Command command = undoStack.pollFirst();
+        if (command == null) {
+            return false;
+        }
+        command.revert(model);
+        redoStack.addFirst(command);
+        return true;
+    }
+
+    /**
+     * Applies the most recently reverted command again
+     *
+     * @param model Model to operate on
+     * @return true if a command was applied
+     */
+    boolean redo(DataModel model) {
+        Command command = redoStack.pollFirst();
+        if (command == null) {
+            return false;
+        }
+        command.apply(model);
+        undoStack.addFirst(command);
+        return true;
+    }
+
+    /**
+     * Starts collecting commands into a single undo step
+     * Groups can be nested, only the outermost group is recorded
+     */
+    void beginGroup() {
+        if (groupDepth++ == 0) {
+            group = new ArrayList<>();
+        }
+    }
+
+    /**
+     * Ends a group and records its commands as one step
+     */
+    void endGroup() {
+        if (--groupDepth > 0) {
+            return;
+        }
+
+        List<Command> commands = group;
+        group = null;
+        if (commands.size() == 1) {
+            record(commands.get(0));
+        } else if (!commands.isEmpty()) {
+            record(new GroupCommand(commands));
+        }
+    }
+
+    boolean canUndo() {
+        return !undoStack.isEmpty();
+    }
+
+    boolean canRedo() {
+        return !redoStack.isEmpty();
+    }
+
+    /**
+     * Removes all commands, e.g. after loading another file
+     */
+    void clear() {
+        if (group != null) {
+            group.clear();
+        }
+        undoStack.clear();
+        redoStack.clear();
+        retainedBytes = 0;
+    }
+
+    /**
+     * Estimates the memory held by a subtree
+     */
+    private static long subtreeBytes(EntryTreeNode node) {
+        long bytes = NODE_OVERHEAD_BYTES + node.getStoredSize();
+        Enumeration<TreeNode> children = node.children();
+        while (children.hasMoreElements()) {
+            bytes += subtreeBytes((EntryTreeNode) children.nextElement());
+        }
+        return bytes;
+    }
+
+    // ========== Commands ==========
+
+    /**
+     * A reversible change of the tree
+     */
+    abstract static class Command {
+
+        // Memory only reachable through this command while it is undone
+        final long retainedBytes;
+
+        Command(long retainedBytes) {
+            this.retainedBytes = retainedBytes;
+        }
+
+        abstract void apply(DataModel model);
+
+        abstract void revert(DataModel model);
+
+        /**
+         * Called when the command is dropped from the log
+         * Frees the nodes that can no longer be attached again
+         *
+         * @param reverted true if the command was undone when it was dropped
+         */
+        void discard(boolean reverted) {
+        }
+    }
+
+    /**
+     * Node added below a parent
+     */
+    static final class AddCommand extends Command {
+
+        private final EntryTreeNode node;
+        private final EntryTreeNode parent;
+        private final int index;
+
+        AddCommand(EntryTreeNode node, EntryTreeNode parent, int index) {
+            super(0);
+            this.node = node;
+            this.parent = parent;
+            this.index = index;
+        }
+
+        @Override
+        void apply(DataModel model) {
+            model.attachNode(node, parent, index);
+        }
+
+        @Override
+        void revert(DataModel model) {
+            model.detachNode(node);
+        }
+
+        @Override
+        void discard(boolean reverted) {
+            if (reverted) {
+                node.release();
+            }
+        }
+    }
+
+    /**
+     * Subtree removed from its parent, kept by reference for undo
+     */
+    static final class DeleteCommand extends Command {
+
+        private final EntryTreeNode node;
+        private final EntryTreeNode parent;
+        private final int index;
+
+        DeleteCommand(EntryTreeNode node, EntryTreeNode parent, int index) {
+            super(subtreeBytes(node));
+            this.node = node;
+            this.parent = parent;
+            this.index = index;
+        }
+
+        @Override
+        void apply(DataModel model) {
+            model.detachNode(node);
+        }
+
+        @Override
+        void revert(DataModel model) {
+            model.attachNode(node, parent, index);
+        }
+
+        @Override
+        void discard(boolean reverted) {
+            if (!reverted) {
+                node.release();
+            }
+        }
+    }
+
+    /**
+     * Title of a node changed
+     */
+    static final class RenameCommand extends Command {
+
+        private final EntryTreeNode node;
+        private final String oldTitle;
+        private final String newTitle;
+
+        RenameCommand(EntryTreeNode node, String oldTitle, String newTitle) {
+            super(0);
+            this.node = node;
+            this.oldTitle = oldTitle;
+            this.newTitle = newTitle;
+        }
+
+        @Override
+        void apply(DataModel model) {
+            model.renameNode(node, newTitle);
+        }
+
+        @Override
+        void revert(DataModel model) {
+            model.renameNode(node, oldTitle);
+        }
+    }
+
+    /**
+     * Subtree moved to another position
+     */
+    static final class MoveCommand extends Command {
+
+        private final EntryTreeNode node;
+        private final EntryTreeNode oldParent;
+        private final int oldIndex;
+        private final EntryTreeNode newParent;
+        private final int newIndex;
+
+        MoveCommand(EntryTreeNode node, EntryTreeNode oldParent, int oldIndex,
+                     EntryTreeNode newParent, int newIndex) {
+            super(0);
+            this.node = node;
+            this.oldParent = oldParent;
+            this.oldIndex = oldIndex;
+            this.newParent = newParent;
+            this.newIndex = newIndex;
+        }
+
+        @Override
+        void apply(DataModel model) {
+            model.relinkNode(node, newParent, newIndex);
+        }
+
+        @Override
+        void revert(DataModel model) {
+            model.relinkNode(node, oldParent, oldIndex);
+        }
+    }
+
+    /**
+     * Several commands undone and redone together
+     */
+    static final class GroupCommand extends Command {
+
+        private final Command[] commands;
+
+        GroupCommand(List<Command> commands) {
+            super(commands.stream().mapToLong(command -> command.retainedBytes).sum());
+            this.commands = commands.toArray(new Command[0]);
+        }
+
+        @Override
+        void apply(DataModel model) {
+            for (Command command : commands) {
+                command.apply(model);
+            }
+        }
+
+        @Override
+        void revert(DataModel model) {
+            for (int i = commands.length - 1; i >= 0; i--) {
+                commands[i].revert(model);
+            }
+        }
+
+        @Override
+        void discard(boolean reverted) {
+            for (Command command : commands) {
+                command.discard(reverted);
+            }
+        }
+    }
+}
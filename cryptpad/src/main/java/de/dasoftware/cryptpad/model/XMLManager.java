@@ -13,7 +13,6 @@ import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
-import java.util.Enumeration;
 
 /**
  * XML Manager for saving and loading encrypted XML files
@@ -53,22 +52,37 @@ public class XMLManager implements IXMLManager {
      */
     @Override
     public void saveDocument() throws Exception {
+        saveSnapshot(model.createSnapshot(), model.getPassword());
+    }
+    
+    /**
+     * Saves a snapshot of the tree to an encrypted XML file
+     * Does not access the model, so it can run on a background thread
+     * 
+     * @param root Snapshot of the root node
+     * @param password Encryption password
+     * @throws Exception If save operation fails
+     */
+    @Override
+    public void saveSnapshot(NodeSnapshot root, String password) throws Exception {
         // Create DOM document
         DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
         DocumentBuilder db = dbf.newDocumentBuilder();
         dom = db.newDocument();
         
         // Build XML tree structure
-        createDOMTree();
+        createDOMTree(root);
         
         // Write to encrypted file
-        writeToEncryptedFile();
+        writeToEncryptedFile(password);
     }
     
     /**
-     * Creates the DOM tree structure from the data model
+     * Creates the DOM tree structure from a snapshot of the data model
+     * 
+     * @param root Snapshot of the root node
      */
-    private void createDOMTree() {
+    private void createDOMTree(NodeSnapshot root) {
         // Create root element
         Element rootElement = dom.createElement("xml");
         dom.appendChild(rootElement);
@@ -85,7 +99,7 @@ public class XMLManager implements IXMLManager {
         
         // Create entries section
         Element entries = dom.createElement("entries");
-        Element rootEntry = nodeToXML(model.getRootNode());
+        Element rootEntry = nodeToXML(root);
         entries.appendChild(rootEntry);
         rootElement.appendChild(entries);
     }
@@ -93,15 +107,15 @@ public class XMLManager implements IXMLManager {
     /**
      * Converts a tree node to XML element (recursive)
      * 
-     * @param node Tree node to convert
+     * @param node Snapshot of the tree node to convert
      * @return XML element representing the node
      */
-    private Element nodeToXML(EntryTreeNode node) {
+    private Element nodeToXML(NodeSnapshot node) {
         Element element = dom.createElement("entry");
         
         // Create title element
         Element title = dom.createElement("title");
-        Text titleText = dom.createTextNode(node.toString());
+        Text titleText = dom.createTextNode(node.getTitle());
         title.appendChild(titleText);
         element.appendChild(title);
         
@@ -113,10 +127,8 @@ public class XMLManager implements IXMLManager {
         element.appendChild(content);
         
         // Recursively process child nodes
-        Enumeration<?> children = node.children();
-        while (children.hasMoreElements()) {
-            EntryTreeNode childNode = (EntryTreeNode) children.nextElement();
-            element.appendChild(nodeToXML(childNode));
+        for (NodeSnapshot child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            element.appendChild(nodeToXML(child));
         }
         
         return element;
@@ -125,9 +137,10 @@ public class XMLManager implements IXMLManager {
     /**
      * Writes the DOM document to an encrypted file
      * 
+     * @param password Encryption password
      * @throws Exception If write operation fails
      */
-    private void writeToEncryptedFile() throws Exception {
+    private void writeToEncryptedFile(String password) throws Exception {
         // Transform DOM to string
         TransformerFactory factory = TransformerFactory.newInstance();
         Transformer transformer = factory.newTransformer();
@@ -141,7 +154,7 @@ public class XMLManager implements IXMLManager {
         
         // Encrypt the XML content
         EncryptionWrapper encryption = new EncryptionWrapper();
-        String encryptedText = encryption.encryptFile(xmlText, model.getPassword());
+        String encryptedText = encryption.encryptFile(xmlText, password);
         
         // Write encrypted content to file
         try (FileWriter fileWriter = new FileWriter(filename, StandardCharsets.UTF_8)) {
@@ -228,9 +241,8 @@ public class XMLManager implements IXMLManager {
                     String title = getTextValue(childElement, "title");
                     String content = getTextValue(childElement, "content");
                     
-                    EntryTreeNode treeNode = new EntryTreeNode(title);
+                    EntryTreeNode treeNode = parentNode.addChild(title);
                     treeNode.setContent(content);
-                    parentNode.add(treeNode);
                     
                     // Recursively parse children
                     if (childElement.hasChildNodes()) {
@@ -0,0 +1,325 @@
+package de.dasoftware.cryptpad.search;
+
+import de.dasoftware.cryptpad.model.EntryTreeNode;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import javax.swing.tree.TreeNode;
+
+/**
+ * Exact substring and regular expression search over the content of all nodes
+ *
+ * The nodes are split into work units which are matched in parallel on the
+ * common ForkJoin pool. Hits are streamed to a listener as soon as a node
+ * has been searched, so results appear while the search is still running.
+ * A running search can be cancelled at any time, e.g. when the query changes.
+ * A node the pattern fails on, e.g. with a stack overflow of a deeply
+ * recursive regular expression, is reported and the search goes on.
+ *
+ * @author DA-Software
+ * @version 1.0.0
+ */
+public class ContentSearch {
+
+    // Nodes per work unit before a task is split further
+    private static final int NODES_PER_TASK = 32;
+
+    // Limits to keep the result list usable
+    public static final int MAX_HITS_PER_NODE = 200;
+    public static final int MAX_HITS = 10000;
+
+    // Maximum length of a result snippet
+    private static final int MAX_SNIPPET_LENGTH = 160;
+
+    /**
+     * Receives hits while a search is running
+     * Called from worker threads, implementations must hand over to the EDT
+     */
+    public interface HitListener {
+
+        /**
+         * Called with all hits of one node
+         *
+         * @param hits Hits in document order
+         */
+        void hitsFound(List<SearchHit> hits);
+
+        /**
+         * Called once after all nodes have been searched
+         * Not called if the search was cancelled
+         *
+         * @param totalHits Total number of hits
+         * @param failedNodes Number of nodes the pattern failed on, their hits
+         *                    up to the error are reported
+         */
+        void searchFinished(int totalHits, int failedNodes);
+    }
+
+    /**
+     * Compiles a query into a pattern
+     *
+     * @param query Search text
+     * @param regex true to interpret the query as regular expression
+     * @param matchCase true for case-sensitive matching
+     * @return Compiled pattern
+     * @throws PatternSyntaxException If the regular expression is invalid
+     */
+    public static Pattern compile(String query, boolean regex, boolean matchCase) {
+        int flags = Pattern.MULTILINE;
+        if (!matchCase) {
+            flags |= Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE;
+        }
+        return Pattern.compile(regex ? query : Pattern.quote(query), flags);
+    }
+
+    /**
+     * Collects all nodes below the root in tree order
+     * Must be called on the EDT since the tree is not thread-safe
+     *
+     * @param root Root node (not included)
+     * @return List of nodes
+     */
+    public static List<EntryTreeNode> collectNodes(EntryTreeNode root) {
+        List<EntryTreeNode> nodes = new ArrayList<>();
+        collectChildren(root, nodes);
+        return nodes;
+    }
+
+    /**
+     * Starts a search in the background
+     *
+     * @param nodes Nodes to search, see {@link #collectNodes(EntryTreeNode)}
+     * @param pattern Pattern to search for
+     * @param listener Listener receiving the hits
+     * @return Handle to cancel the running search
+     */
+    public static SearchTask start(List<EntryTreeNode> nodes, Pattern pattern, HitListener listener) {
+        SearchTask task = new SearchTask(nodes, pattern, listener);
+        ForkJoinPool.commonPool().execute(task.root);
+        return task;
+    }
+
+    private static void collectChildren(EntryTreeNode node, List<EntryTreeNode> nodes) {
+        Enumeration<TreeNode> children = node.children();
+        while (children.hasMoreElements()) {
+            EntryTreeNode child = (EntryTreeNode) children.nextElement();
+            nodes.add(child);
+            collectChildren(child, nodes);
+        }
+    }
+
+    /**
+     * Handle of a running search
+     */
+    public static final class SearchTask {
+
+        private final EntryTreeNode[] nodes;
+        private final Pattern pattern;
+        private final HitListener listener;
+        private final AtomicInteger hitCount = new AtomicInteger();
+        private final AtomicInteger failedCount = new AtomicInteger();
+        private final RangeTask root;
+        private volatile boolean cancelled = false;
+
+        private SearchTask(List<EntryTreeNode> nodes, Pattern pattern, HitListener listener) {
+            this.nodes = nodes.toArray(new EntryTreeNode[0]);
+            this.pattern = pattern;
+            this.listener = listener;
+            this.root = new RangeTask(this, 0, this.nodes.length);
+        }
+
+        /**
+         * Cancels the search, no further hits are reported
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        /**
+         * Checks if the search was cancelled
+         *
+         * @return true if cancelled
+         */
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * Searches a single node and reports its hits
+         */
+        private void searchNode(EntryTreeNode node) {
+            String content = node.readContent();
+            if (content == null || content.isEmpty()) {
+                return;
+            }
+
+            Matcher matcher = pattern.matcher(new CancellableText(content, this));
+            List<SearchHit> hits = new ArrayList<>();
+
+            int line = 1;
+            int lineCounted = 0;
+
+            try {
+                while (hits.size() < MAX_HITS_PER_NODE && matcher.find()) {
+                    int start = matcher.start();
+
+                    // Count line breaks incrementally up to the match
+                    for (int i = lineCounted; i < start; i++) {
+                        if (content.charAt(i) == '\n') {
+                            line++;
+                        }
+                    }
+                    lineCounted = start;
+
+                    hits.add(new SearchHit(node, line, start, matcher.end(),
+                            snippet(content, start)));
+                }
+            } catch (CancellationException e) {
+                return;
+            } catch (RuntimeException | StackOverflowError e) {
+                // E.g. "(.|\n)*" recurses once per character and overflows the stack on long notes
+                System.err.println("Search failed in node: " + e);
+                failedCount.incrementAndGet();
+            }
+
+            if (hits.isEmpty() || cancelled) {
+                return;
+            }
+
+            if (hitCount.addAndGet(hits.size()) >= MAX_HITS) {
+                cancelled = true;
+            }
+            listener.hitsFound(hits);
+        }
+
+        /**
+         * Called when the whole tree has been searched
+         */
+        private void finished() {
+            if (!cancelled || hitCount.get() >= MAX_HITS) {
+                listener.searchFinished(hitCount.get(), failedCount.get());
+            }
+        }
+    }
+
+    /**
+     * Work unit searching a range of nodes, split in halves until small enough
+     */
+    private static final class RangeTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final SearchTask search;
+        private final int from;
+        private final int to;
+
+        RangeTask(SearchTask search, int from, int to) {
+            this.search = search;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                if (search.cancelled) {
+                    return;
+                }
+
+                if (to - from > NODES_PER_TASK) {
+                    int middle = (from + to) >>> 1;
+                    invokeAll(new RangeTask(search, from, middle),
+                              new RangeTask(search, middle, to));
+                } else {
+                    for (int i = from; i < to && !search.cancelled; i++) {
+                        search.searchNode(search.nodes[i]);
+                    }
+                }
+            } finally {
+                // Also when a subtask died, so the listener is never left waiting
+                if (this == search.root) {
+                    search.finished();
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds the snippet for a match: the matching line, shortened if needed
+     */
+    private static String snippet(String content, int position) {
+        int lineStart = content.lastIndexOf('\n', position - 1) + 1;
+        int lineEnd = content.indexOf('\n', position);
+        if (lineEnd < 0) {
+            lineEnd = content.length();
+        }
+
+        // Keep the match visible in very long lines
+        int from = lineStart;
+        if (lineEnd - lineStart > MAX_SNIPPET_LENGTH) {
+            from = Math.max(lineStart, position - MAX_SNIPPET_LENGTH / 4);
+        }
+        int to = Math.min(lineEnd, from + MAX_SNIPPET_LENGTH);
+
+        String text = content.substring(from, to).trim();
+        return from > lineStart ? "..." + text : text;
+    }
+
+    /**
+     * Thrown inside the regex engine to abort a cancelled search
+     */
+    private static final class CancellationException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        CancellationException() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * Text wrapper that aborts matching once the search is cancelled
+     * Keeps runaway regular expressions from blocking the pool
+     */
+    private static final class CancellableText implements CharSequence {
+
+        private final String text;
+        private final SearchTask search;
+        private int reads = 0;
+
+        CancellableText(String text, SearchTask search) {
+            this.text = text;
+            this.search = search;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if ((++reads & 0xFFFF) == 0 && search.cancelled) {
+                throw new CancellationException();
+            }
+            return text.charAt(index);
+        }
+
+        @Override
+        public int length() {
+            return text.length();
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return text.subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package de.dasoftware.cryptpad.search;
+
+import de.dasoftware.cryptpad.model.EntryTreeNode;
+
+/**
+ * A single match found by the content search
+ */
+public class SearchHit {
+
+    private final EntryTreeNode node;
+    private final int lineNumber;
+    private final int start;
+    private final int end;
+    private final String snippet;
+
+    /**
+     * Constructor
+     *
+     * @param node Node containing the match
+     * @param lineNumber Line number of the match (1-based)
+     * @param start Start offset of the match in the node content
+     * @param end End offset (exclusive) of the match in the node content
+     * @param snippet Text of the matching line, shortened if needed
+     */
+    public SearchHit(EntryTreeNode node, int lineNumber, int start, int end, String snippet) {
+        this.node = node;
+        this.lineNumber = lineNumber;
+        this.start = start;
+        this.end = end;
+        this.snippet = snippet;
+    }
+
+    // ========== Getters ==========
+
+    public EntryTreeNode getNode() {
+        return node;
+    }
+
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public int getEnd() {
+        return end;
+    }
+
+    public String getSnippet() {
+        return snippet;
+    }
+}
@@ -0,0 +1,525 @@
+package de.dasoftware.cryptpad.search;
+
+import de.dasoftware.cryptpad.model.EntryTreeNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import javax.swing.tree.TreeNode;
+
+/**
+ * Trigram index over node titles for fuzzy quick-open
+ *
+ * Every title is split into overlapping three-character sequences which
+ * point back to the nodes containing them. A query only looks at the nodes
+ * sharing trigrams with its last path segment, so lookups stay fast even
+ * for very large trees. Earlier path segments (e.g. "Clients/Acme" in
+ * "Clients/Acme/VPN") are matched against the ancestors of each candidate.
+ *
+ * The index only stores titles. Moving a node does not change its title,
+ * so paths are always resolved from the live tree at query time.
+ *
+ * Nodes are addressed by their handles and posting lists are plain int
+ * arrays, so the index holds no objects per node. Removed nodes are only
+ * marked dead and skipped at query time; the posting lists are compacted
+ * once more entries are dead than alive.
+ *
+ * Not thread-safe, the index is maintained and queried on the EDT.
+ *
+ * @author DA-Software
+ * @version 1.0.0
+ */
+public class TrigramIndex {
+
+    // Minimum share of query trigrams a title must contain to be a candidate
+    private static final double MIN_TRIGRAM_SHARE = 1.0 / 3.0;
+
+    // Initial capacity of the id based arrays
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // Path separator used in queries and displayed paths
+    public static final String PATH_SEPARATOR = "/";
+
+    private final Map<Long, IntList> postings = new HashMap<>();
+
+    // Normalized title per node handle, null if the node is not indexed
+    private String[] titles = new String[INITIAL_CAPACITY];
+
+    // Per-handle trigram hit counter, reused across queries
+    private int[] hits = new int[INITIAL_CAPACITY];
+
+    // Any indexed node, used to get the nodes of the tree by handle
+    private EntryTreeNode anyNode = null;
+
+    // One past the highest indexed handle
+    private int nextId = 0;
+
+    private int size = 0;
+
+    // Removed handles still listed in the posting lists
+    private final BitSet dead = new BitSet();
+    private int deadCount = 0;
+
+    /**
+     * Adds a single node to the index
+     *
+     * @param node Node to add
+     */
+    public void add(EntryTreeNode node) {
+        int id = node.getHandle();
+        ensureCapacity(id + 1);
+        if (titles[id] != null) {
+            update(node);
+            return;
+        }
+
+        // A node added again must not be listed twice
+        if (dead.get(id)) {
+            compact();
+        }
+
+        String title = normalize(node.toString());
+        titles[id] = title;
+        anyNode = node;
+        nextId = Math.max(nextId, id + 1);
+        size++;
+
+        for (long trigram : distinctTrigrams(title)) {
+            postings.computeIfAbsent(trigram, k -> new IntList()).add(id);
+        }
+    }
+
+    /**
+     * Adds a node and all of its descendants to the index
+     *
+     * @param node Root of the subtree to add
+     */
+    public void addSubtree(EntryTreeNode node) {
+        add(node);
+
+        Enumeration<TreeNode> children = node.children();
+        while (children.hasMoreElements()) {
+            addSubtree((EntryTreeNode) children.nextElement());
+        }
+    }
+
+    /**
+     * Removes a single node from the index
+     *
+     * @param node Node to remove
+     */
+    public void remove(EntryTreeNode node) {
+        int id = node.getHandle();
+        if (id >= nextId || titles[id] == null) {
+            return;
+        }
+
+        // Posting entries of dead ids are skipped and dropped on compaction
+        titles[id] = null;
+        size--;
+        dead.set(id);
+        deadCount++;
+
+        if (deadCount > INITIAL_CAPACITY && deadCount > size) {
+            compact();
+        }
+    }
+
+    /**
+     * Removes a node and all of its descendants from the index
+     *
+     * @param node Root of the subtree to remove
+     */
+    public void removeSubtree(EntryTreeNode node) {
+        remove(node);
+
+        Enumeration<TreeNode> children = node.children();
+        while (children.hasMoreElements()) {
+            removeSubtree((EntryTreeNode) children.nextElement());
+        }
+    }
+
+    /**
+     * Re-indexes a node after its title changed
+     *
+     * @param node Renamed node
+     */
+    public void update(EntryTreeNode node) {
+        int id = node.getHandle();
+        if (id < nextId && titles[id] != null) {
+            // Renamed nodes stay live, so their old entries are removed right away
+            for (long trigram : distinctTrigrams(titles[id])) {
+                IntList posting = postings.get(trigram);
+                if (posting != null && posting.remove(id) && posting.size == 0) {
+                    postings.remove(trigram);
+                }
+            }
+            titles[id] = null;
+            size--;
+        }
+        add(node);
+    }
+
+    /**
+     * Rebuilds the index from the given root
+     * The root itself is not indexed since it is hidden in the tree
+     *
+     * @param root Root node of the tree
+     */
+    public void rebuild(EntryTreeNode root) {
+        clear();
+
+        Enumeration<TreeNode> children = root.children();
+        while (children.hasMoreElements()) {
+            addSubtree((EntryTreeNode) children.nextElement());
+        }
+    }
+
+    /**
+     * Removes all entries from the index
+     */
+    public void clear() {
+        postings.clear();
+        titles = new String[INITIAL_CAPACITY];
+        hits = new int[INITIAL_CAPACITY];
+        anyNode = null;
+        nextId = 0;
+        size = 0;
+        dead.clear();
+        deadCount = 0;
+    }
+
+    /**
+     * Gets the number of indexed nodes
+     *
+     * @return Number of nodes
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Finds the nodes best matching a path query
+     *
+     * @param query Query, optionally with path segments (e.g. "acme/vpn")
+     * @param maxResults Maximum number of results
+     * @return Matching nodes, best match first
+     */
+    public List<EntryTreeNode> search(String query, int maxResults) {
+        String[] segments = splitQuery(query);
+        if (segments.length == 0 || maxResults <= 0) {
+            return Collections.emptyList();
+        }
+
+        String term = segments[segments.length - 1];
+        long[] queryTrigrams = distinctTrigrams(term);
+        PriorityQueue<ScoredNode> best = new PriorityQueue<>();
+
+        if (queryTrigrams.length > 0) {
+            // Count shared trigrams per live id
+            IntList touched = new IntList();
+            for (long trigram : queryTrigrams) {
+                IntList posting = postings.get(trigram);
+                if (posting == null) {
+                    continue;
+                }
+                for (int i = 0; i < posting.size; i++) {
+                    int id = posting.values[i];
+                    if (titles[id] != null && hits[id]++ == 0) {
+                        touched.add(id);
+                    }
+                }
+            }
+
+            int minShared = (int) Math.ceil(queryTrigrams.length * MIN_TRIGRAM_SHARE);
+            for (int i = 0; i < touched.size; i++) {
+                int id = touched.values[i];
+                if (hits[id] >= minShared) {
+                    offer(best, id, segments, hits[id], queryTrigrams.length, maxResults);
+                }
+                hits[id] = 0;
+            }
+        } else {
+            // Terms shorter than a trigram are matched against all titles
+            for (int id = 0; id < nextId; id++) {
+                if (titles[id] != null) {
+                    offer(best, id, segments, 0, 0, maxResults);
+                }
+            }
+        }
+
+        List<EntryTreeNode> result = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            result.add(best.poll().node);
+        }
+        Collections.reverse(result);
+
+        return result;
+    }
+
+    /**
+     * Builds the display path of a node (e.g. "Clients/Acme/VPN")
+     * The hidden root node is not part of the path
+     *
+     * @param node Node to build the path for
+     * @return Path string
+     */
+    public static String getPath(EntryTreeNode node) {
+        StringBuilder path = new StringBuilder(node.toString());
+        TreeNode parent = node.getParent();
+
+        while (parent != null && parent.getParent() != null) {
+            path.insert(0, PATH_SEPARATOR).insert(0, parent.toString());
+            parent = parent.getParent();
+        }
+
+        return path.toString();
+    }
+
+    /**
+     * Scores a candidate and keeps it if it is among the best results
+     */
+    private void offer(PriorityQueue<ScoredNode> best, int id, String[] segments,
+            int shared, int total, int maxResults) {
+        double score = scoreTitle(id, segments[segments.length - 1], shared, total);
+        if (score <= 0) {
+            return;
+        }
+
+        // Skip the ancestor walk if even a perfect path match cannot make it
+        boolean full = best.size() >= maxResults;
+        if (full && score + segments.length - 1 <= best.peek().score) {
+            return;
+        }
+
+        if (segments.length > 1) {
+            double pathScore = scoreAncestors(id, segments);
+            if (pathScore <= 0) {
+                return;
+            }
+            score += pathScore;
+        }
+
+        if (!full) {
+            best.add(new ScoredNode(anyNode.getNode(id), score));
+        } else if (score > best.peek().score) {
+            best.poll();
+            best.add(new ScoredNode(anyNode.getNode(id), score));
+        }
+    }
+
+    /**
+     * Scores the title of a candidate node against the last query segment
+     *
+     * @param id Id of the candidate node
+     * @param term Normalized last query segment
+     * @param shared Number of query trigrams found in the title
+     * @param total Number of distinct query trigrams
+     * @return Score, or 0 if the title does not match
+     */
+    private double scoreTitle(int id, String term, int shared, int total) {
+        String title = titles[id];
+
+        double score;
+        int position = title.indexOf(term);
+
+        if (position == 0) {
+            score = 3.0;
+        } else if (position > 0) {
+            score = 2.0;
+        } else if (total > 0) {
+            // Fuzzy match, weighted by the share of matching trigrams
+            score = (double) shared / total;
+        } else if (isSubsequence(term, title)) {
+            score = 0.5;
+        } else {
+            return 0;
+        }
+
+        // Prefer shorter titles for equally good matches
+        return score + 1.0 / (title.length() + 1);
+    }
+
+    /**
+     * Matches the earlier query segments against the ancestors of a node
+     * Segments must match in order, the closest ancestor first
+     *
+     * @param id Id of the candidate node
+     * @param segments Normalized query segments
+     * @return Score of at most 1 per segment, or 0 if not all segments match
+     */
+    private double scoreAncestors(int id, String[] segments) {
+        double score = 0;
+        int segment = segments.length - 2;
+        TreeNode ancestor = anyNode.getNode(id).getParent();
+
+        while (segment >= 0 && ancestor != null && ancestor.getParent() != null) {
+            int ancestorId = ((EntryTreeNode) ancestor).getHandle();
+            String ancestorTitle = ancestorId < nextId && titles[ancestorId] != null
+                    ? titles[ancestorId] : normalize(ancestor.toString());
+
+            if (isSubsequence(segments[segment], ancestorTitle)) {
+                score += ancestorTitle.contains(segments[segment]) ? 1.0 : 0.5;
+                segment--;
+            }
+            ancestor = ancestor.getParent();
+        }
+
+        return segment >= 0 ? 0 : score;
+    }
+
+    /**
+     * Drops dead ids from the posting lists
+     */
+    private void compact() {
+        postings.values().removeIf(posting -> {
+            int live = 0;
+            for (int i = 0; i < posting.size; i++) {
+                if (titles[posting.values[i]] != null) {
+                    posting.values[live++] = posting.values[i];
+                }
+            }
+            posting.size = live;
+            return live == 0;
+        });
+        dead.clear();
+        deadCount = 0;
+    }
+
+    /**
+     * Grows the id based arrays if needed
+     */
+    private void ensureCapacity(int capacity) {
+        if (capacity > titles.length) {
+            int newLength = Math.max(capacity, titles.length * 2);
+            titles = Arrays.copyOf(titles, newLength);
+            hits = Arrays.copyOf(hits, newLength);
+        }
+    }
+
+    /**
+     * Splits a query into normalized, non-empty path segments
+     */
+    private static String[] splitQuery(String query) {
+        if (query == null) {
+            return new String[0];
+        }
+
+        List<String> segments = new ArrayList<>();
+        for (String segment : query.split(PATH_SEPARATOR)) {
+            String normalized = normalize(segment.trim());
+            if (!normalized.isEmpty()) {
+                segments.add(normalized);
+            }
+        }
+
+        return segments.toArray(new String[0]);
+    }
+
+    /**
+     * Checks whether all characters of needle appear in haystack in order
+     */
+    private static boolean isSubsequence(String needle, String haystack) {
+        int pos = 0;
+        for (int i = 0; i < needle.length(); i++) {
+            pos = haystack.indexOf(needle.charAt(i), pos);
+            if (pos < 0) {
+                return false;
+            }
+            pos++;
+        }
+        return true;
+    }
+
+    /**
+     * Normalizes a title for indexing and matching
+     */
+    private static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Gets the distinct trigrams of a normalized string
+     * Each trigram is packed into a long (three 16 bit chars)
+     */
+    private static long[] distinctTrigrams(String text) {
+        int count = Math.max(0, text.length() - 2);
+        long[] trigrams = new long[count];
+
+        for (int i = 0; i < count; i++) {
+            trigrams[i] = ((long) text.charAt(i) << 32)
+                        | ((long) text.charAt(i + 1) << 16)
+                        | text.charAt(i + 2);
+        }
+
+        Arrays.sort(trigrams);
+
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || trigrams[i] != trigrams[i - 1]) {
+                trigrams[distinct++] = trigrams[i];
+            }
+        }
+
+        return Arrays.copyOf(trigrams, distinct);
+    }
+
+    /**
+     * Growable list of primitive ints
+     */
+    private static final class IntList {
+
+        private int[] values = new int[4];
+        private int size = 0;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        /**
+         * Removes all occurrences of a value
+         *
+         * @return true if the value was found
+         */
+        boolean remove(int value) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (values[i] != value) {
+                    values[kept++] = values[i];
+                }
+            }
+            boolean found = kept < size;
+            size = kept;
+            return found;
+        }
+    }
+
+    /**
+     * Node with its match score, ordered by ascending score
+     */
+    private static final class ScoredNode implements Comparable<ScoredNode> {
+
+        private final EntryTreeNode node;
+        private final double score;
+
+        ScoredNode(EntryTreeNode node, double score) {
+            this.node = node;
+            this.score = score;
+        }
+
+        @Override
+        public int compareTo(ScoredNode other) {
+            return Double.compare(score, other.score);
+        }
+    }
+}
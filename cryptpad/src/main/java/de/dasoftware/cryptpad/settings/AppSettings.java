@@ -6,6 +6,12 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -14,6 +20,9 @@ import de.dasoftware.cryptpad.Constants;
 /**
  * Application settings manager
  * Stores settings in a properties file in user's home directory
+ * 
+ * Settings are kept in memory. Changes are written in the background a short
+ * time after the last change, by replacing the file atomically, and at exit.
  */
 public class AppSettings {
     
@@ -24,19 +33,60 @@ public class AppSettings {
     private static final String KEY_LANGUAGE = "language";
     private static final String KEY_THEME = "theme";
     private static final String RECENT_FILES_KEY = "recent.files";
+    private static final String KEY_LARGE_NOTE_CHARS = "editor.largenote.chars";
+    private static final String KEY_LARGE_NOTE_LINES = "editor.largenote.lines";
+    private static final String KEY_AUTOSAVE_INTERVAL = "autosave.interval";
+    private static final String KEY_UPDATE_CHECK = "update.check";
+    private static final String KEY_UPDATE_CHECK_INTERVAL = "update.check.interval";
+    private static final String KEY_UPDATE_LAST_CHECK = "update.lastcheck";
+    private static final String KEY_BREACH_FILE = "breach.file";
     
     // Default values
     private static final String DEFAULT_LANGUAGE = "system";
     private static final String DEFAULT_THEME = "System";
+    private static final int DEFAULT_LARGE_NOTE_CHARS = 1_000_000;
+    private static final int DEFAULT_LARGE_NOTE_LINES = 50_000;
+    private static final int DEFAULT_AUTOSAVE_INTERVAL = 10;
+    private static final int DEFAULT_UPDATE_CHECK_INTERVAL = 24;
+    private static final String DEFAULT_BREACH_FILENAME = "breached-passwords.bin";
     
     // Recent files settings
     private static final int MAX_RECENT_FILES = 10;
     private static final String RECENT_FILES_SEPARATOR = "|";
     
+    // Delay between the last change and writing the file
+    private static final long SAVE_DELAY_MS = 500;
+    
     private static Properties properties = new Properties();
     
+    // Writes the settings file, never blocks the caller
+    private static final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "settings-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    // Checks the recent files, on its own thread so a stalled network share
+    // neither delays the shared ForkJoin pool nor writing the settings
+    private static final ExecutorService fileChecker = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "recent-files-check");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    // Serializes writing the file
+    private static final Object writeLock = new Object();
+    
+    // Number of changes, and the number already written, guarded by AppSettings.class
+    private static long changeCount = 0;
+    private static long writtenCount = 0;
+    private static ScheduledFuture<?> pendingSave = null;
+    
     static {
         load();
+        
+        // Write pending changes on every way of exiting
+        Runtime.getRuntime().addShutdownHook(new Thread(AppSettings::flush, "settings-flush"));
     }
     
     /**
@@ -46,6 +96,16 @@ public class AppSettings {
      * @return Path to settings file
      */
     private static Path getSettingsPath() {
+        return getSettingsDirectory().resolve(SETTINGS_FILENAME);
+    }
+    
+    /**
+     * Gets the directory holding the settings
+     * Creates directory if it doesn't exist
+     * 
+     * @return Path to settings directory
+     */
+    static Path getSettingsDirectory() {
         String userHome = System.getProperty("user.home");
         
         // Use .config directory on Linux/Mac, AppData on Windows
@@ -67,7 +127,7 @@ public class AppSettings {
             System.err.println("Error creating settings directory: " + e.getMessage());
         }
         
-        return appDir.resolve(SETTINGS_FILENAME);
+        return appDir;
     }
     
     /**
@@ -91,14 +151,68 @@ public class AppSettings {
     
     /**
      * Saves settings to file
+     * The file is written in the background, several changes in a row
+     * result in a single write
      */
     public static void save() {
-        Path settingsFile = getSettingsPath();
-        
-        try (OutputStream output = Files.newOutputStream(settingsFile)) {
-            properties.store(output, "DA-CryptPad Settings");
-        } catch (IOException e) {
-            System.err.println("Error saving settings: " + e.getMessage());
+        synchronized (AppSettings.class) {
+            changeCount++;
+            if (pendingSave != null) {
+                pendingSave.cancel(false);
+            }
+            pendingSave = writer.schedule(AppSettings::writeSettings, SAVE_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    /**
+     * Writes pending changes immediately
+     * Blocks until the file is written
+     */
+    public static void flush() {
+        synchronized (AppSettings.class) {
+            if (pendingSave != null) {
+                pendingSave.cancel(false);
+                pendingSave = null;
+            }
+        }
+        writeSettings();
+    }
+    
+    /**
+     * Writes the current settings if they changed since the last write
+     * The file is replaced atomically, so it is never left half written
+     */
+    private static void writeSettings() {
+        synchronized (writeLock) {
+            long count;
+            Properties snapshot;
+            synchronized (AppSettings.class) {
+                count = changeCount;
+                if (count == writtenCount) {
+                    return;
+                }
+                snapshot = (Properties) properties.clone();
+            }
+            
+            Path settingsFile = getSettingsPath();
+            Path tempFile = settingsFile.resolveSibling(SETTINGS_FILENAME + ".tmp");
+            try {
+                try (OutputStream output = Files.newOutputStream(tempFile)) {
+                    snapshot.store(output, "DA-CryptPad Settings");
+                }
+                try {
+                    Files.move(tempFile, settingsFile,
+                            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tempFile, settingsFile, StandardCopyOption.REPLACE_EXISTING);
+                }
+                
+                synchronized (AppSettings.class) {
+                    writtenCount = count;
+                }
+            } catch (IOException e) {
+                System.err.println("Error saving settings: " + e.getMessage());
+            }
         }
     }
     
@@ -113,7 +227,7 @@ public class AppSettings {
     /**
      * Resets all settings to defaults
      */
-    public static void resetToDefaults() {
+    public static synchronized void resetToDefaults() {
         properties.clear();
         initDefaults();
         save();
@@ -200,16 +314,126 @@ public class AppSettings {
         return theme.contains("Dark") || theme.equals("FlatLaf Darcula");
     }
     
+    // ========== Editor Settings ==========
+    
+    /**
+     * Gets the number of characters above which a note is edited
+     * without syntax highlighting and code folding
+     * 
+     * @return Character threshold for large notes
+     */
+    public static int getLargeNoteChars() {
+        return getIntProperty(KEY_LARGE_NOTE_CHARS, DEFAULT_LARGE_NOTE_CHARS);
+    }
+    
+    /**
+     * Gets the number of lines above which a note is edited
+     * without syntax highlighting and code folding
+     * 
+     * @return Line threshold for large notes
+     */
+    public static int getLargeNoteLines() {
+        return getIntProperty(KEY_LARGE_NOTE_LINES, DEFAULT_LARGE_NOTE_LINES);
+    }
+    
+    /**
+     * Gets the interval of the autosave journal
+     * 
+     * @return Seconds between two journal writes
+     */
+    public static int getAutosaveInterval() {
+        return getIntProperty(KEY_AUTOSAVE_INTERVAL, DEFAULT_AUTOSAVE_INTERVAL);
+    }
+    
+    // ========== Update Check ==========
+    
+    /**
+     * Checks if updates are searched for in the background
+     * 
+     * @return true unless switched off in the settings file
+     */
+    public static boolean isUpdateCheckEnabled() {
+        return Boolean.parseBoolean(properties.getProperty(KEY_UPDATE_CHECK, "true").trim());
+    }
+    
+    /**
+     * Gets the interval of the background update check
+     * 
+     * @return Hours between two checks
+     */
+    public static int getUpdateCheckInterval() {
+        return getIntProperty(KEY_UPDATE_CHECK_INTERVAL, DEFAULT_UPDATE_CHECK_INTERVAL);
+    }
+    
+    /**
+     * Gets the time of the last successful update check
+     * 
+     * @return Epoch milliseconds, 0 if there was none
+     */
+    public static long getLastUpdateCheck() {
+        try {
+            return Long.parseLong(properties.getProperty(KEY_UPDATE_LAST_CHECK, "0").trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+    
+    /**
+     * Sets the time of the last successful update check
+     * 
+     * @param time Epoch milliseconds
+     */
+    public static void setLastUpdateCheck(long time) {
+        properties.setProperty(KEY_UPDATE_LAST_CHECK, Long.toString(time));
+        save();
+    }
+    
+    // ========== Breached Passwords ==========
+    
+    /**
+     * Gets the file with the hashes of breached passwords
+     * Set in the settings file, by default breached-passwords.bin in the settings directory
+     * 
+     * @return Path to the hash file, which may not exist
+     */
+    public static Path getBreachFile() {
+        String value = properties.getProperty(KEY_BREACH_FILE);
+        if (value != null && !value.trim().isEmpty()) {
+            return Paths.get(value.trim());
+        }
+        return getSettingsDirectory().resolve(DEFAULT_BREACH_FILENAME);
+    }
+    
+    /**
+     * Reads a positive integer setting
+     * 
+     * @param key Setting key
+     * @param defaultValue Value used if the setting is missing or invalid
+     * @return Setting value
+     */
+    private static int getIntProperty(String key, int defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            int parsed = Integer.parseInt(value.trim());
+            return parsed > 0 ? parsed : defaultValue;
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+    
     // ========== Recent Files ==========
     
     /**
      * Adds a file to the recent files list.
      * If the file already exists in the list, it will be moved to the front.
      * 
-     * @param file The file to add
+     * @param file The file to add, just opened or saved
      */
-    public static void addRecentFile(File file) {
-        if (file == null || !file.exists()) {
+    public static synchronized void addRecentFile(File file) {
+        if (file == null) {
             return;
         }
         
@@ -233,11 +457,11 @@ public class AppSettings {
     
     /**
      * Gets the list of recent files.
-     * Non-existing files are automatically removed from the list.
+     * Does not access the files, use checkRecentFiles() to drop missing ones.
      * 
      * @return List of recent files (most recent first)
      */
-    public static List<File> getRecentFiles() {
+    public static synchronized List<File> getRecentFiles() {
         String value = properties.getProperty(RECENT_FILES_KEY, "");
         List<File> files = new ArrayList<>();
         
@@ -245,26 +469,53 @@ public class AppSettings {
             String[] paths = value.split(Pattern.quote(RECENT_FILES_SEPARATOR));
             for (String path : paths) {
                 if (!path.trim().isEmpty()) {
-                    File file = new File(path.trim());
-                    if (file.exists()) {
-                        files.add(file);
-                    }
+                    files.add(new File(path.trim()));
                 }
             }
-            
-            // If any files were removed, save the cleaned list
-            if (files.size() != paths.length) {
-                saveRecentFiles(files);
-            }
         }
         
         return files;
     }
     
+    /**
+     * Removes non-existing files from the recent files list.
+     * The files are checked in the background, as a file on an unreachable
+     * network share can take a long time to check.
+     * 
+     * @return Future with the remaining recent files (most recent first)
+     */
+    public static CompletableFuture<List<File>> checkRecentFiles() {
+        List<File> files = getRecentFiles();
+        return CompletableFuture.supplyAsync(() -> {
+            List<File> missing = new ArrayList<>();
+            for (File file : files) {
+                if (!file.exists()) {
+                    missing.add(file);
+                }
+            }
+            return removeRecentFiles(missing);
+        }, fileChecker);
+    }
+    
+    /**
+     * Removes files from the recent files list.
+     * Files added in the meantime are kept.
+     * 
+     * @param missing Files to remove
+     * @return Remaining recent files
+     */
+    private static synchronized List<File> removeRecentFiles(List<File> missing) {
+        List<File> files = getRecentFiles();
+        if (!missing.isEmpty() && files.removeAll(missing)) {
+            saveRecentFiles(files);
+        }
+        return files;
+    }
+    
     /**
      * Clears all recent files.
      */
-    public static void clearRecentFiles() {
+    public static synchronized void clearRecentFiles() {
         properties.remove(RECENT_FILES_KEY);
         save();
     }
@@ -0,0 +1,242 @@
+package de.dasoftware.cryptpad.settings;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * View state of a vault: expanded and selected nodes, tree scroll position
+ * and split pane divider
+ *
+ * Stored in a small file per vault in the settings directory. The file name
+ * is a hash of the vault path, so the path itself is not written to disk.
+ * Nodes are identified by their child indexes from the root, e.g. "0/3/1".
+ */
+public final class ViewState {
+
+    private static final String DIRECTORY_NAME = "views";
+    private static final String FILE_EXTENSION = ".properties";
+
+    // Oldest view states are deleted above this number
+    private static final int MAX_VIEW_STATES = 100;
+
+    // Setting keys
+    private static final String KEY_EXPANDED = "expanded";
+    private static final String KEY_SELECTED = "selected";
+    private static final String KEY_SCROLL_X = "scroll.x";
+    private static final String KEY_SCROLL_Y = "scroll.y";
+    private static final String KEY_DIVIDER = "divider";
+
+    private static final String NODE_SEPARATOR = ",";
+
+    private final List<String> expandedNodes = new ArrayList<>();
+    private final List<String> selectedNodes = new ArrayList<>();
+    private int scrollX = 0;
+    private int scrollY = 0;
+    private int dividerLocation = -1;
+
+    // ========== Persistence ==========
+
+    /**
+     * Loads the view state of a vault
+     *
+     * @param vaultPath Path of the vault file
+     * @return View state, or null if none was stored
+     */
+    public static ViewState load(String vaultPath) {
+        Path file = getStatePath(vaultPath);
+        if (!Files.exists(file)) {
+            return null;
+        }
+
+        Properties properties = new Properties();
+        try (InputStream input = Files.newInputStream(file)) {
+            properties.load(input);
+        } catch (IOException e) {
+            System.err.println("Error loading view state: " + e.getMessage());
+            return null;
+        }
+
+        ViewState state = new ViewState();
+        state.expandedNodes.addAll(splitNodes(properties.getProperty(KEY_EXPANDED, "")));
+        state.selectedNodes.addAll(splitNodes(properties.getProperty(KEY_SELECTED, "")));
+        state.scrollX = parseInt(properties.getProperty(KEY_SCROLL_X), 0);
+        state.scrollY = parseInt(properties.getProperty(KEY_SCROLL_Y), 0);
+        state.dividerLocation = parseInt(properties.getProperty(KEY_DIVIDER), -1);
+        return state;
+    }
+
+    /**
+     * Stores the view state of a vault
+     * The file is replaced atomically
+     *
+     * @param vaultPath Path of the vault file
+     */
+    public void save(String vaultPath) {
+        Properties properties = new Properties();
+        properties.setProperty(KEY_EXPANDED, String.join(NODE_SEPARATOR, expandedNodes));
+        properties.setProperty(KEY_SELECTED, String.join(NODE_SEPARATOR, selectedNodes));
+        properties.setProperty(KEY_SCROLL_X, Integer.toString(scrollX));
+        properties.setProperty(KEY_SCROLL_Y, Integer.toString(scrollY));
+        properties.setProperty(KEY_DIVIDER, Integer.toString(dividerLocation));
+
+        Path file = getStatePath(vaultPath);
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(file.getParent());
+            try (OutputStream output = Files.newOutputStream(tempFile)) {
+                properties.store(output, "DA-CryptPad View State");
+            }
+            try {
+                Files.move(tempFile, file,
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            System.err.println("Error saving view state: " + e.getMessage());
+            return;
+        }
+
+        deleteOldStates(file.getParent());
+    }
+
+    /**
+     * Gets the file of a vault's view state
+     */
+    private static Path getStatePath(String vaultPath) {
+        String key = Paths.get(vaultPath).toAbsolutePath().normalize().toString();
+        return AppSettings.getSettingsDirectory()
+                .resolve(DIRECTORY_NAME)
+                .resolve(hash(key) + FILE_EXTENSION);
+    }
+
+    /**
+     * Hashes a vault path into a file name
+     */
+    private static String hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < 16; i++) {
+                hex.append(String.format("%02x", digest[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is available in every Java runtime
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Deletes the least recently written view states above the limit
+     */
+    private static void deleteOldStates(Path directory) {
+        try (Stream<Path> files = Files.list(directory)) {
+            Path[] states = files
+                    .filter(path -> path.getFileName().toString().endsWith(FILE_EXTENSION))
+                    .toArray(Path[]::new);
+            if (states.length <= MAX_VIEW_STATES) {
+                return;
+            }
+
+            Arrays.sort(states, Comparator.comparingLong(ViewState::lastModified));
+            for (int i = 0; i < states.length - MAX_VIEW_STATES; i++) {
+                Files.deleteIfExists(states[i]);
+            }
+        } catch (IOException e) {
+            System.err.println("Error deleting old view states: " + e.getMessage());
+        }
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static List<String> splitNodes(String value) {
+        List<String> nodes = new ArrayList<>();
+        for (String node : value.split(Pattern.quote(NODE_SEPARATOR))) {
+            if (!node.trim().isEmpty()) {
+                nodes.add(node.trim());
+            }
+        }
+        return nodes;
+    }
+
+    private static int parseInt(String value, int defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    // ========== State ==========
+
+    /**
+     * Gets the expanded nodes
+     *
+     * @return Node ids, modifiable
+     */
+    public List<String> getExpandedNodes() {
+        return expandedNodes;
+    }
+
+    /**
+     * Gets the selected nodes
+     *
+     * @return Node ids, modifiable, lead selection last
+     */
+    public List<String> getSelectedNodes() {
+        return selectedNodes;
+    }
+
+    public int getScrollX() {
+        return scrollX;
+    }
+
+    public int getScrollY() {
+        return scrollY;
+    }
+
+    /**
+     * Sets the scroll position of the tree
+     *
+     * @param x Horizontal position
+     * @param y Vertical position
+     */
+    public void setScrollPosition(int x, int y) {
+        this.scrollX = x;
+        this.scrollY = y;
+    }
+
+    /**
+     * Gets the split pane divider location
+     *
+     * @return Location in pixels, or -1 if not stored
+     */
+    public int getDividerLocation() {
+        return dividerLocation;
+    }
+
+    public void setDividerLocation(int dividerLocation) {
+        this.dividerLocation = dividerLocation;
+    }
+}
@@ -0,0 +1,159 @@
+package de.dasoftware.cryptpad.strength;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Converts the Have I Been Pwned password download into the file read by BreachedPasswords
+ *
+ * Input is the SHA-1 download ordered by hash, one "HASH:COUNT" line per
+ * password. The input is streamed, so memory use does not depend on its
+ * size. The output is written next to the target and moved in place when
+ * complete.
+ *
+ * Usage: java -cp cryptpad.jar de.dasoftware.cryptpad.strength.BreachFileConverter
+ * pwned-passwords-sha1-ordered-by-hash.txt breached-passwords.bin
+ *
+ * @author DA-Software
+ * @version 1.0.0
+ */
+public final class BreachFileConverter {
+
+    // Progress is printed after this many hashes
+    private static final long PROGRESS_INTERVAL = 50_000_000;
+
+    private BreachFileConverter() {
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: BreachFileConverter <pwned-passwords-ordered-by-hash.txt> <output.bin>");
+            System.exit(1);
+        }
+        try {
+            long count = convert(Paths.get(args[0]), Paths.get(args[1]));
+            System.out.println("Converted " + count + " hashes");
+        } catch (IOException e) {
+            System.err.println("Conversion failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Converts a hash list into a breached password file
+     *
+     * @param input Text file with one SHA-1 hash in hex per line, sorted, optionally followed by ":count"
+     * @param output Breached password file
+     * @return Number of hashes written
+     * @throws IOException If reading or writing fails, or the input is not sorted
+     */
+    public static long convert(Path input, Path output) throws IOException {
+        Path temp = output.resolveSibling(output.getFileName() + ".tmp");
+        long[] bucketCounts = new long[BreachedPasswords.BUCKETS];
+        long count = 0;
+
+        try {
+            // Records first, header and index are filled in afterwards
+            try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8);
+                 OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp), 1 << 20)) {
+                out.write(new byte[BreachedPasswords.HEADER_LENGTH + BreachedPasswords.INDEX_LENGTH]);
+
+                byte[] hash = new byte[BreachedPasswords.HASH_LENGTH];
+                byte[] previous = null;
+                long lineNumber = 0;
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lineNumber++;
+                    line = line.replace("\uFEFF", "").trim();
+                    if (line.isEmpty()) {
+                        continue;
+                    }
+                    int end = line.indexOf(':');
+                    parseHash(end < 0 ? line : line.substring(0, end), hash, lineNumber);
+
+                    if (previous != null) {
+                        int comparison = compare(previous, hash);
+                        if (comparison == 0) {
+                            continue;
+                        }
+                        if (comparison > 0) {
+                            throw new IOException("Input is not sorted by hash at line " + lineNumber
+                                    + ", use the download ordered by hash");
+                        }
+                    } else {
+                        previous = new byte[BreachedPasswords.HASH_LENGTH];
+                    }
+                    System.arraycopy(hash, 0, previous, 0, hash.length);
+
+                    bucketCounts[((hash[0] & 0xff) << 8) | (hash[1] & 0xff)]++;
+                    out.write(hash, BreachedPasswords.PREFIX_LENGTH, BreachedPasswords.SUFFIX_LENGTH);
+                    count++;
+                    if (count % PROGRESS_INTERVAL == 0) {
+                        System.out.println(count + " hashes...");
+                    }
+                }
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(BreachedPasswords.HEADER_LENGTH + BreachedPasswords.INDEX_LENGTH);
+            header.put(BreachedPasswords.MAGIC);
+            header.putLong(count);
+            long start = 0;
+            for (long bucketCount : bucketCounts) {
+                header.putLong(start);
+                start += bucketCount;
+            }
+            header.putLong(start);
+            header.flip();
+
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+                channel.force(true);
+            }
+            try {
+                Files.move(temp, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, output, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return count;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void parseHash(String hex, byte[] hash, long lineNumber) throws IOException {
+        if (hex.length() != 2 * BreachedPasswords.HASH_LENGTH) {
+            throw new IOException("Invalid SHA-1 hash at line " + lineNumber);
+        }
+        for (int i = 0; i < hash.length; i++) {
+            int high = Character.digit(hex.charAt(2 * i), 16);
+            int low = Character.digit(hex.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0) {
+                throw new IOException("Invalid SHA-1 hash at line " + lineNumber);
+            }
+            hash[i] = (byte) ((high << 4) | low);
+        }
+    }
+
+    private static int compare(byte[] a, byte[] b) {
+        for (int i = 0; i < a.length; i++) {
+            int difference = (a[i] & 0xff) - (b[i] & 0xff);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,212 @@
+package de.dasoftware.cryptpad.strength;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Offline check of passwords against known data breaches
+ *
+ * Uses a local file with the SHA-1 hashes of breached passwords, converted
+ * once from the Have I Been Pwned download by BreachFileConverter. The file
+ * is memory-mapped and searched in place, so even files of many gigabytes
+ * are never loaded onto the heap and a lookup takes a few microseconds.
+ *
+ * File layout, all numbers big-endian:
+ * - magic "CPBRCH01" and the number of hashes (long)
+ * - index of 65537 longs: the first record of each 2 byte hash prefix
+ * - records of the remaining 18 bytes of each hash, sorted
+ *
+ * Read only after opening, safe to use from any thread.
+ *
+ * @author DA-Software
+ * @version 1.0.0
+ */
+public final class BreachedPasswords {
+
+    static final byte[] MAGIC = "CPBRCH01".getBytes(StandardCharsets.US_ASCII);
+    static final int HASH_LENGTH = 20;
+    static final int PREFIX_LENGTH = 2;
+    static final int SUFFIX_LENGTH = HASH_LENGTH - PREFIX_LENGTH;
+    static final int BUCKETS = 1 << (8 * PREFIX_LENGTH);
+    static final int HEADER_LENGTH = MAGIC.length + Long.BYTES;
+    static final int INDEX_LENGTH = (BUCKETS + 1) * Long.BYTES;
+
+    // Records per mapped chunk, a single buffer can map at most 2 GB
+    private static final long RECORDS_PER_CHUNK = Integer.MAX_VALUE / SUFFIX_LENGTH;
+
+    // Last opened file, reused while it is unchanged
+    private static Path cachedPath;
+    private static FileTime cachedModified;
+    private static BreachedPasswords cached;
+
+    private final MappedByteBuffer index;
+    private final MappedByteBuffer[] chunks;
+    private final long count;
+
+    private BreachedPasswords(MappedByteBuffer index, MappedByteBuffer[] chunks, long count) {
+        this.index = index;
+        this.chunks = chunks;
+        this.count = count;
+    }
+
+    /**
+     * Gets the checker for a hash file, reusing it while the file is unchanged
+     *
+     * @param file Hash file
+     * @return Checker, or null if the file does not exist or is invalid
+     */
+    public static synchronized BreachedPasswords get(Path file) {
+        try {
+            if (file == null || !Files.isRegularFile(file)) {
+                cached = null;
+                cachedPath = null;
+                return null;
+            }
+            FileTime modified = Files.getLastModifiedTime(file);
+            if (cached == null || !file.equals(cachedPath) || !modified.equals(cachedModified)) {
+                cached = open(file);
+                cachedPath = file;
+                cachedModified = modified;
+            }
+            return cached;
+        } catch (IOException e) {
+            System.err.println("Could not open breached password file: " + e.getMessage());
+            cached = null;
+            cachedPath = null;
+            return null;
+        }
+    }
+
+    /**
+     * Opens a hash file
+     * The mappings stay valid after the file channel is closed
+     *
+     * @param file Hash file
+     * @return Checker
+     * @throws IOException If the file cannot be read or is no valid hash file
+     */
+    public static BreachedPasswords open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_LENGTH + INDEX_LENGTH) {
+                throw new IOException("File too short: " + file);
+            }
+
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_LENGTH);
+            byte[] magic = new byte[MAGIC.length];
+            header.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not a breached password file: " + file);
+            }
+            long count = header.getLong();
+            if (count < 0 || fileSize != HEADER_LENGTH + INDEX_LENGTH + count * SUFFIX_LENGTH) {
+                throw new IOException("Breached password file is damaged: " + file);
+            }
+
+            MappedByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_LENGTH, INDEX_LENGTH);
+            long previous = 0;
+            for (int bucket = 0; bucket <= BUCKETS; bucket++) {
+                long start = index.getLong(bucket * Long.BYTES);
+                if (start < previous || start > count || (bucket == 0 && start != 0)) {
+                    throw new IOException("Breached password file is damaged: " + file);
+                }
+                previous = start;
+            }
+            if (previous != count) {
+                throw new IOException("Breached password file is damaged: " + file);
+            }
+
+            int chunkCount = (int) ((count + RECORDS_PER_CHUNK - 1) / RECORDS_PER_CHUNK);
+            MappedByteBuffer[] chunks = new MappedByteBuffer[chunkCount];
+            for (int i = 0; i < chunkCount; i++) {
+                long first = i * RECORDS_PER_CHUNK;
+                long records = Math.min(RECORDS_PER_CHUNK, count - first);
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        HEADER_LENGTH + INDEX_LENGTH + first * SUFFIX_LENGTH, records * SUFFIX_LENGTH);
+            }
+            return new BreachedPasswords(index, chunks, count);
+        }
+    }
+
+    /**
+     * Gets the number of hashes in the file
+     *
+     * @return Number of breached passwords
+     */
+    public long size() {
+        return count;
+    }
+
+    /**
+     * Checks if a password appears in a known data breach
+     *
+     * @param password Password, not modified
+     * @return true if the password is breached
+     */
+    public boolean contains(char[] password) {
+        ByteBuffer bytes = StandardCharsets.UTF_8.encode(CharBuffer.wrap(password));
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            sha1.update(bytes.duplicate());
+            return containsHash(sha1.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 not available", e);
+        } finally {
+            if (bytes.hasArray()) {
+                Arrays.fill(bytes.array(), (byte) 0);
+            }
+        }
+    }
+
+    /**
+     * Checks if a SHA-1 hash is in the file
+     * Binary search within the records of the hash prefix
+     *
+     * @param hash SHA-1 hash of 20 bytes
+     * @return true if found
+     */
+    boolean containsHash(byte[] hash) {
+        int bucket = ((hash[0] & 0xff) << 8) | (hash[1] & 0xff);
+        long low = index.getLong(bucket * Long.BYTES);
+        long high = index.getLong((bucket + 1) * Long.BYTES) - 1;
+
+        while (low <= high) {
+            long middle = (low + high) >>> 1;
+            int comparison = compareRecord(middle, hash);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compares a record with the suffix of a hash, bytes unsigned
+     */
+    private int compareRecord(long record, byte[] hash) {
+        MappedByteBuffer chunk = chunks[(int) (record / RECORDS_PER_CHUNK)];
+        int offset = (int) (record % RECORDS_PER_CHUNK) * SUFFIX_LENGTH;
+        for (int i = 0; i < SUFFIX_LENGTH; i++) {
+            int difference = (chunk.get(offset + i) & 0xff) - (hash[PREFIX_LENGTH + i] & 0xff);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,188 @@
+package de.dasoftware.cryptpad.strength;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Ranked word lists packed into a trie
+ *
+ * The word lists are gzip compressed resources with one lowercase word per
+ * line, most common first. They are read on first use and merged into two
+ * tries, one of the words and one of the reversed words, each stored as a
+ * few parallel arrays instead of node objects. A word found in several
+ * lists keeps its best rank.
+ *
+ * Both tries are walked from the end of a match towards its start, so all
+ * words ending at a position are found with a single walk: the reversed
+ * word trie finds the words as typed, the word trie finds reversed words.
+ *
+ * Immutable after loading, safe to use from any thread.
+ *
+ * @author DA-Software
+ * @version 1.0.0
+ */
+final class Dictionary {
+
+    private static final String[] WORD_LISTS = {
+        "/strength/passwords.txt.gz",
+        "/strength/english.txt.gz",
+        "/strength/german.txt.gz"
+    };
+
+    static final int ROOT = 0;
+    static final int NONE = -1;
+
+    /**
+     * Holder of the shared instance, loaded on first use
+     */
+    private static final class Holder {
+        static final Dictionary INSTANCE = load();
+    }
+
+    private final Trie words = new Trie();
+    private final Trie reversedWords = new Trie();
+
+    private Dictionary() {
+    }
+
+    /**
+     * Gets the shared dictionary, loading it on first use
+     *
+     * @return Dictionary, empty if the word lists could not be read
+     */
+    static Dictionary get() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Gets the trie of the words as typed, read backwards
+     */
+    Trie reversedWords() {
+        return reversedWords;
+    }
+
+    /**
+     * Gets the trie of the words, which read backwards finds reversed words
+     */
+    Trie words() {
+        return words;
+    }
+
+    private static Dictionary load() {
+        Dictionary dictionary = new Dictionary();
+        for (String resource : WORD_LISTS) {
+            try (InputStream input = Dictionary.class.getResourceAsStream(resource)) {
+                if (input == null) {
+                    throw new IOException("Resource not found: " + resource);
+                }
+                BufferedReader reader = new BufferedReader(new InputStreamReader(
+                        new GZIPInputStream(input), StandardCharsets.UTF_8));
+                int rank = 0;
+                String word;
+                while ((word = reader.readLine()) != null) {
+                    word = word.trim();
+                    if (word.isEmpty()) {
+                        continue;
+                    }
+                    rank++;
+                    dictionary.words.add(word, rank);
+                    dictionary.reversedWords.add(new StringBuilder(word).reverse().toString(), rank);
+                }
+            } catch (IOException e) {
+                System.err.println("Could not load password dictionary: " + e.getMessage());
+            }
+        }
+        dictionary.words.trim();
+        dictionary.reversedWords.trim();
+        return dictionary;
+    }
+
+    /**
+     * Trie in parallel arrays
+     * The children of a node are a linked list of siblings
+     */
+    static final class Trie {
+
+        private char[] labels = new char[1024];
+        private int[] firstChild = new int[1024];
+        private int[] nextSibling = new int[1024];
+        private int[] ranks = new int[1024];
+        private int size;
+
+        private Trie() {
+            size = 1;
+            firstChild[ROOT] = NONE;
+            nextSibling[ROOT] = NONE;
+        }
+
+        /**
+         * Gets the child of a node
+         *
+         * @param node Parent node
+         * @param c Label of the child
+         * @return Child node, or NONE
+         */
+        int child(int node, char c) {
+            for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+                if (labels[child] == c) {
+                    return child;
+                }
+            }
+            return NONE;
+        }
+
+        /**
+         * Gets the rank of the word ending at a node
+         *
+         * @param node Node
+         * @return Rank starting at 1, or 0 if no word ends here
+         */
+        int rank(int node) {
+            return ranks[node];
+        }
+
+        private void add(String word, int rank) {
+            int node = ROOT;
+            for (int i = 0; i < word.length(); i++) {
+                char c = word.charAt(i);
+                int child = child(node, c);
+                if (child == NONE) {
+                    child = newNode(c);
+                    nextSibling[child] = firstChild[node];
+                    firstChild[node] = child;
+                }
+                node = child;
+            }
+            if (ranks[node] == 0 || rank < ranks[node]) {
+                ranks[node] = rank;
+            }
+        }
+
+        private int newNode(char c) {
+            if (size == labels.length) {
+                int capacity = size * 2;
+                labels = Arrays.copyOf(labels, capacity);
+                firstChild = Arrays.copyOf(firstChild, capacity);
+                nextSibling = Arrays.copyOf(nextSibling, capacity);
+                ranks = Arrays.copyOf(ranks, capacity);
+            }
+            int node = size++;
+            labels[node] = c;
+            firstChild[node] = NONE;
+            nextSibling[node] = NONE;
+            return node;
+        }
+
+        private void trim() {
+            labels = Arrays.copyOf(labels, size);
+            firstChild = Arrays.copyOf(firstChild, size);
+            nextSibling = Arrays.copyOf(nextSibling, size);
+            ranks = Arrays.copyOf(ranks, size);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package de.dasoftware.cryptpad.strength;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Key positions of a keyboard layout, for finding typing patterns like "qwert" or "zaq1"
+ *
+ * Rows are given as strings, indented so that a key sits below the key to
+ * its upper left and the key to its upper right, like on a real keyboard.
+ * Every key has up to six neighbours.
+ *
+ * @author DA-Software
+ * @version 1.0.0
+ */
+final class Keyboard {
+
+    // Neighbour offsets as {row, column}: left, right, upper left, upper right, lower left, lower right
+    private static final int[][] NEIGHBOURS = {{0, -1}, {0, 1}, {-1, 0}, {-1, 1}, {1, -1}, {1, 0}};
+
+    static final Keyboard QWERTY = new Keyboard(
+            new String[] {"`1234567890-=", " qwertyuiop[]\\", " asdfghjkl;'", " zxcvbnm,./"},
+            new String[] {"~!@#$%^&*()_+", " QWERTYUIOP{}|", " ASDFGHJKL:\"", " ZXCVBNM<>?"});
+
+    static final Keyboard QWERTZ = new Keyboard(
+            new String[] {"^1234567890ß´", " qwertzuiopü+", " asdfghjklöä#", "<yxcvbnm,.-"},
+            new String[] {"°!\"§$%&/()=?`", " QWERTZUIOPÜ*", " ASDFGHJKLÖÄ'", ">YXCVBNM;:_"});
+
+    // Key position of each character: row, column and 1 if shifted
+    private final Map<Character, int[]> positions = new HashMap<>();
+    private final String[] rows;
+    private final int keyCount;
+    private final double averageDegree;
+
+    private Keyboard(String[] rows, String[] shiftedRows) {
+        this.rows = rows;
+        for (int row = 0; row < rows.length; row++) {
+            addKeys(rows[row], row, 0);
+            addKeys(shiftedRows[row], row, 1);
+        }
+
+        int keys = 0;
+        int neighbours = 0;
+        for (int row = 0; row < rows.length; row++) {
+            for (int column = 0; column < rows[row].length(); column++) {
+                if (keyAt(row, column) != ' ') {
+                    keys++;
+                    for (int[] offset : NEIGHBOURS) {
+                        if (keyAt(row + offset[0], column + offset[1]) != ' ') {
+                            neighbours++;
+                        }
+                    }
+                }
+            }
+        }
+        this.keyCount = keys;
+        this.averageDegree = (double) neighbours / keys;
+    }
+
+    private void addKeys(String row, int rowIndex, int shifted) {
+        for (int column = 0; column < row.length(); column++) {
+            char c = row.charAt(column);
+            if (c != ' ') {
+                positions.putIfAbsent(c, new int[] {rowIndex, column, shifted});
+            }
+        }
+    }
+
+    private char keyAt(int row, int column) {
+        if (row < 0 || row >= rows.length || column < 0 || column >= rows[row].length()) {
+            return ' ';
+        }
+        return rows[row].charAt(column);
+    }
+
+    /**
+     * Gets the direction from one key to the next
+     *
+     * @param from Previous character
+     * @param to Next character
+     * @return Direction 0 to 5, or -1 if the keys are not neighbours
+     */
+    int direction(char from, char to) {
+        int[] a = positions.get(from);
+        int[] b = positions.get(to);
+        if (a == null || b == null) {
+            return -1;
+        }
+        for (int i = 0; i < NEIGHBOURS.length; i++) {
+            if (b[0] - a[0] == NEIGHBOURS[i][0] && b[1] - a[1] == NEIGHBOURS[i][1]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Checks if a character is typed with shift
+     */
+    boolean isShifted(char c) {
+        int[] position = positions.get(c);
+        return position != null && position[2] == 1;
+    }
+
+    /**
+     * Gets the number of keys a pattern can start on
+     */
+    int getKeyCount() {
+        return keyCount;
+    }
+
+    /**
+     * Gets the average number of neighbours of a key
+     */
+    double getAverageDegree() {
+        return averageDegree;
+    }
+}
@@ -0,0 +1,55 @@
+package de.dasoftware.cryptpad.strength;
+
+/**
+ * Estimated strength of a password
+ *
+ * @author DA-Software
+ * @version 1.0.0
+ */
+public final class Strength {
+
+    // Guesses per second of an offline attack on a slow key derivation like PBKDF2
+    private static final double GUESSES_PER_SECOND = 1e4;
+
+    private final double guessesLog10;
+
+    Strength(double guessesLog10) {
+        this.guessesLog10 = guessesLog10;
+    }
+
+    /**
+     * Gets the estimated number of guesses needed to find the password
+     *
+     * @return Base 10 logarithm of the guesses
+     */
+    public double getGuessesLog10() {
+        return guessesLog10;
+    }
+
+    /**
+     * Gets the score of the password
+     *
+     * @return 0 (too guessable) to 4 (very unguessable)
+     */
+    public int getScore() {
+        if (guessesLog10 < 3) {
+            return 0;
+        } else if (guessesLog10 < 6) {
+            return 1;
+        } else if (guessesLog10 < 8) {
+            return 2;
+        } else if (guessesLog10 < 10) {
+            return 3;
+        }
+        return 4;
+    }
+
+    /**
+     * Gets the time an offline attack would need, at 10,000 guesses per second
+     *
+     * @return Seconds, may be infinite for very strong passwords
+     */
+    public double getCrackTimeSeconds() {
+        return Math.pow(10, guessesLog10) / GUESSES_PER_SECOND;
+    }
+}
@@ -0,0 +1,589 @@
+package de.dasoftware.cryptpad.strength;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Password strength estimator in the style of zxcvbn
+ *
+ * A password is split into the patterns an attacker would try first:
+ * dictionary words (also reversed, capitalized or with l33t substitutions),
+ * keyboard patterns on QWERTY and QWERTZ, sequences like "abcd" or "9753",
+ * repeats and dates. Every pattern is rated with the number of guesses
+ * needed to find it, and characters outside of patterns count as random.
+ * The cheapest split gives the estimate.
+ *
+ * The estimate is incremental: patterns and cheapest splits are kept per
+ * end position, so after a keystroke only the positions from the first
+ * changed character on are evaluated again. Typing at the end of a
+ * password costs well below a millisecond.
+ *
+ * The estimator keeps a copy of the last password, call clear() when done.
+ * Not thread-safe, meant to be used on the EDT.
+ *
+ * @author DA-Software
+ * @version 1.0.0
+ */
+public class StrengthEstimator {
+
+    // Only the start of longer passwords is analysed, the rest counts as random
+    private static final int MAX_LENGTH = 100;
+
+    // Guesses of a random character, in digits of the guess count
+    private static final double BRUTEFORCE_LOG10 = 1.0;
+
+    // Guesses of one repeated character
+    private static final double REPEAT_CHAR_GUESSES = 10;
+
+    // Splits into many patterns are penalized by this base, so the cheapest split
+    // does not consist of single characters
+    private static final double MIN_GUESSES_BEFORE_GROWING_SEQUENCE_LOG10 = 4.0;
+
+    private static final int REFERENCE_YEAR = LocalDate.now().getYear();
+    private static final int MIN_YEAR_SPACE = 20;
+
+    // Date with separators, e.g. "24.12.1990" or "1990-12-24"
+    private static final Pattern DATE_WITH_SEPARATOR =
+            Pattern.compile("(\\d{1,4})([\\s/\\\\_.-])(\\d{1,2})\\2(\\d{1,4})");
+
+    private static final double LOG10_2 = Math.log10(2);
+
+    /**
+     * Pattern found in the password
+     */
+    private static final class Match {
+        final int start;
+        final double guessesLog10;
+
+        Match(int start, double guessesLog10) {
+            this.start = start;
+            this.guessesLog10 = guessesLog10;
+        }
+    }
+
+    // Analysed characters of the last password
+    private char[] password = new char[0];
+    private int length = 0;
+
+    // Patterns by end position (exclusive)
+    private final List<List<Match>> matchesByEnd = new ArrayList<>();
+
+    // best[end][count]: fewest guesses (log10) of the first characters as a product of count patterns
+    private double[][] best = {{0}};
+
+    // Estimates the bases of repeats, reused so consecutive bases are only analysed from their first difference
+    private StrengthEstimator baseEstimator = null;
+
+    // Base lengths repeating at the current end position, and the length of their runs
+    private final int[] repeatBases = new int[MAX_LENGTH / 2 + 1];
+    private final int[] repeatRuns = new int[MAX_LENGTH / 2 + 1];
+
+    /**
+     * Loads the dictionaries in the background, so the first estimate is fast
+     */
+    public static void preload() {
+        CompletableFuture.runAsync(Dictionary::get);
+    }
+
+    /**
+     * Estimates the strength of a password
+     * Only the characters from the first change since the last call are analysed again
+     *
+     * @param input Password
+     * @return Estimated strength
+     */
+    public Strength update(char[] input) {
+        int newLength = Math.min(input.length, MAX_LENGTH);
+        int unchanged = 0;
+        int common = Math.min(newLength, length);
+        while (unchanged < common && password[unchanged] == input[unchanged]) {
+            unchanged++;
+        }
+
+        ensureCapacity(newLength);
+        System.arraycopy(input, unchanged, password, unchanged, newLength - unchanged);
+        if (length > newLength) {
+            Arrays.fill(password, newLength, length, '\0');
+        }
+        length = newLength;
+
+        for (int end = unchanged + 1; end <= length; end++) {
+            List<Match> matches = matchesByEnd.get(end);
+            matches.clear();
+            findMatches(end, matches);
+            updateBest(end, matches);
+        }
+
+        double guessesLog10 = length == 0 ? 0 : minimumGuesses(length);
+        guessesLog10 += (input.length - length) * BRUTEFORCE_LOG10;
+        return new Strength(guessesLog10);
+    }
+
+    /**
+     * Removes the last password from memory
+     */
+    public void clear() {
+        Arrays.fill(password, '\0');
+        length = 0;
+        if (baseEstimator != null) {
+            baseEstimator.clear();
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (password.length < capacity) {
+            password = Arrays.copyOf(password, Math.max(capacity, password.length * 2));
+        }
+        while (matchesByEnd.size() <= capacity) {
+            matchesByEnd.add(new ArrayList<>());
+        }
+        if (best.length <= capacity) {
+            double[][] grown = Arrays.copyOf(best, capacity + 1);
+            for (int end = best.length; end <= capacity; end++) {
+                grown[end] = new double[end + 1];
+            }
+            best = grown;
+        }
+    }
+
+    // ========== Cheapest Split ==========
+
+    /**
+     * Computes the cheapest splits of the first characters up to an end position
+     */
+    private void updateBest(int end, List<Match> matches) {
+        double[] row = best[end];
+        Arrays.fill(row, Double.POSITIVE_INFINITY);
+
+        for (Match match : matches) {
+            relax(row, best[match.start], match.guessesLog10);
+        }
+
+        // Random characters since any earlier position
+        for (int start = 0; start < end; start++) {
+            relax(row, best[start], (end - start) * BRUTEFORCE_LOG10);
+        }
+    }
+
+    private static void relax(double[] row, double[] from, double guessesLog10) {
+        for (int count = 0; count < from.length; count++) {
+            double guesses = from[count] + guessesLog10;
+            if (guesses < row[count + 1]) {
+                row[count + 1] = guesses;
+            }
+        }
+    }
+
+    /**
+     * Gets the guesses of the whole password
+     * As in zxcvbn, the patterns may come in any order (count!) and short
+     * passwords of many patterns get a minimum growing with the count
+     */
+    private double minimumGuesses(int end) {
+        double result = Double.POSITIVE_INFINITY;
+        double factorialLog10 = 0;
+        for (int count = 1; count <= end; count++) {
+            factorialLog10 += Math.log10(count);
+            double product = best[end][count];
+            if (product == Double.POSITIVE_INFINITY) {
+                continue;
+            }
+            double guesses = addLog10(factorialLog10 + product,
+                    (count - 1) * MIN_GUESSES_BEFORE_GROWING_SEQUENCE_LOG10);
+            result = Math.min(result, guesses);
+        }
+        return result;
+    }
+
+    // ========== Pattern Matching ==========
+
+    /**
+     * Finds all patterns ending at a position
+     */
+    private void findMatches(int end, List<Match> matches) {
+        Dictionary dictionary = Dictionary.get();
+        findWords(dictionary.reversedWords(), Dictionary.ROOT, end, end - 1, 0, false, matches);
+        findWords(dictionary.words(), Dictionary.ROOT, end, end - 1, 0, true, matches);
+        findKeyboardPattern(end, Keyboard.QWERTY, matches);
+        findKeyboardPattern(end, Keyboard.QWERTZ, matches);
+        findSequence(end, matches);
+        findRepeats(end, matches);
+        findDates(end, matches);
+    }
+
+    /**
+     * Finds dictionary words ending at a position by walking a trie backwards
+     *
+     * @param substitutions Bit set of the letters replaced by l33t characters so far
+     * @param reversed true if the trie finds reversed words
+     */
+    private void findWords(Dictionary.Trie trie, int node, int end, int position,
+                           int substitutions, boolean reversed, List<Match> matches) {
+        if (position < 0) {
+            return;
+        }
+        char c = Character.toLowerCase(password[position]);
+        visitWord(trie, trie.child(node, c), end, position, substitutions, reversed, matches);
+
+        String letters = getL33tLetters(c);
+        for (int i = 0; i < letters.length(); i++) {
+            char letter = letters.charAt(i);
+            visitWord(trie, trie.child(node, letter), end, position,
+                    substitutions | (1 << (letter - 'a')), reversed, matches);
+        }
+    }
+
+    private void visitWord(Dictionary.Trie trie, int node, int end, int position,
+                           int substitutions, boolean reversed, List<Match> matches) {
+        if (node == Dictionary.NONE) {
+            return;
+        }
+        int rank = trie.rank(node);
+        if (rank > 0) {
+            double guesses = Math.log10(rank)
+                    + getUppercaseVariations(position, end)
+                    + Integer.bitCount(substitutions) * LOG10_2
+                    + (reversed ? LOG10_2 : 0);
+            matches.add(new Match(position, guesses));
+        }
+        findWords(trie, node, end, position - 1, substitutions, reversed, matches);
+    }
+
+    /**
+     * Gets the letters a l33t character may stand for
+     */
+    private static String getL33tLetters(char c) {
+        switch (c) {
+            case '4': case '@': return "a";
+            case '8': return "b";
+            case '(': case '{': case '[': case '<': return "c";
+            case '3': return "e";
+            case '6': case '9': return "g";
+            case '1': case '!': case '|': return "il";
+            case '0': return "o";
+            case '$': case '5': return "s";
+            case '7': case '+': return "t";
+            case '%': return "x";
+            case '2': return "z";
+            default: return "";
+        }
+    }
+
+    /**
+     * Gets the guesses (log10) for the capitalization of a word
+     */
+    private double getUppercaseVariations(int start, int end) {
+        int upper = 0;
+        int lower = 0;
+        for (int i = start; i < end; i++) {
+            if (Character.isUpperCase(password[i])) {
+                upper++;
+            } else if (Character.isLowerCase(password[i])) {
+                lower++;
+            }
+        }
+        if (upper == 0) {
+            return 0;
+        }
+        boolean firstOnly = upper == 1 && Character.isUpperCase(password[start]);
+        boolean lastOnly = upper == 1 && Character.isUpperCase(password[end - 1]);
+        if (lower == 0 || firstOnly || lastOnly) {
+            return LOG10_2;
+        }
+        return Math.log10(sumOfBinomials(upper + lower, Math.min(upper, lower)));
+    }
+
+    /**
+     * Finds the longest keyboard pattern ending at a position, like "qwert" or "1qaz"
+     */
+    private void findKeyboardPattern(int end, Keyboard keyboard, List<Match> matches) {
+        int start = end - 1;
+        int turns = 0;
+        int lastDirection = -1;
+        while (start > 0) {
+            int direction = keyboard.direction(password[start - 1], password[start]);
+            if (direction < 0) {
+                break;
+            }
+            if (direction != lastDirection) {
+                turns++;
+                lastDirection = direction;
+            }
+            start--;
+        }
+        int patternLength = end - start;
+        if (patternLength < 3) {
+            return;
+        }
+
+        // Guesses of all patterns of this length with at most this many turns, as in zxcvbn
+        double keys = keyboard.getKeyCount();
+        double degree = keyboard.getAverageDegree();
+        double guesses = 0;
+        for (int i = 2; i <= patternLength; i++) {
+            for (int j = 1; j <= Math.min(turns, i - 1); j++) {
+                guesses += binomial(i - 1, j - 1) * keys * Math.pow(degree, j);
+            }
+        }
+
+        int shifted = 0;
+        for (int i = start; i < end; i++) {
+            if (keyboard.isShifted(password[i])) {
+                shifted++;
+            }
+        }
+        int unshifted = patternLength - shifted;
+        if (shifted > 0) {
+            guesses *= unshifted == 0 ? 2 : sumOfBinomials(patternLength, Math.min(shifted, unshifted));
+        }
+        matches.add(new Match(start, Math.log10(guesses)));
+    }
+
+    /**
+     * Finds the longest sequence ending at a position, like "abcd", "2468" or "zyx"
+     */
+    private void findSequence(int end, List<Match> matches) {
+        if (end < 3) {
+            return;
+        }
+        int delta = password[end - 1] - password[end - 2];
+        if (delta == 0 || Math.abs(delta) > 5) {
+            return;
+        }
+        int start = end - 2;
+        while (start > 0 && password[start] - password[start - 1] == delta) {
+            start--;
+        }
+        int sequenceLength = end - start;
+        if (sequenceLength < 3) {
+            return;
+        }
+
+        char first = password[start];
+        double guesses;
+        if ("aAzZ019".indexOf(first) >= 0) {
+            // Obvious starts
+            guesses = 4;
+        } else if (Character.isDigit(first)) {
+            guesses = 10;
+        } else {
+            guesses = 26;
+        }
+        if (delta < 0) {
+            guesses *= 2;
+        }
+        matches.add(new Match(start, Math.log10(guesses * sequenceLength)));
+    }
+
+    /**
+     * Finds repeats ending at a position, like "aaaa" or "abcabc"
+     * A base made of a shorter repeating base (e.g. "aa" in "aaaaaa") is
+     * skipped if the run of the shorter base holds two copies of it, the
+     * shorter base then already covers it with a higher count.
+     * Without this, every base of a long run would be estimated again.
+     */
+    private void findRepeats(int end, List<Match> matches) {
+        int found = 0;
+        for (int baseLength = 1; baseLength * 2 <= end; baseLength++) {
+            if (isMultipleOfAny(baseLength, found)) {
+                continue;
+            }
+            int start = end - baseLength;
+            while (start >= baseLength && regionMatches(start - baseLength, end - baseLength, baseLength)) {
+                start -= baseLength;
+            }
+            int count = (end - start) / baseLength;
+            if (count < 2) {
+                continue;
+            }
+            repeatBases[found] = baseLength;
+            repeatRuns[found++] = end - start;
+            if (baseLength == 1 && count < 3) {
+                continue;
+            }
+
+            double baseGuesses;
+            if (baseLength == 1) {
+                baseGuesses = Math.log10(REPEAT_CHAR_GUESSES);
+            } else {
+                if (baseEstimator == null) {
+                    baseEstimator = new StrengthEstimator();
+                }
+                char[] base = Arrays.copyOfRange(password, end - baseLength, end);
+                baseGuesses = baseEstimator.update(base).getGuessesLog10();
+                Arrays.fill(base, '\0');
+            }
+            matches.add(new Match(start, baseGuesses + Math.log10(count)));
+        }
+    }
+
+    private boolean isMultipleOfAny(int baseLength, int found) {
+        for (int i = 0; i < found; i++) {
+            if (baseLength % repeatBases[i] == 0 && repeatRuns[i] >= 2 * baseLength) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean regionMatches(int first, int second, int regionLength) {
+        for (int i = 0; i < regionLength; i++) {
+            if (password[first + i] != password[second + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds dates and recent years ending at a position
+     */
+    private void findDates(int end, List<Match> matches) {
+        for (int dateLength = 4; dateLength <= 10 && dateLength <= end; dateLength++) {
+            int start = end - dateLength;
+            String token = new String(password, start, dateLength);
+
+            if (isDigits(token)) {
+                if (dateLength == 4) {
+                    int year = Integer.parseInt(token);
+                    if (year >= 1900 && year <= 2099) {
+                        matches.add(new Match(start, Math.log10(getYearSpace(year))));
+                    }
+                }
+                if (dateLength <= 8) {
+                    int year = findDateWithoutSeparator(token);
+                    if (year > 0) {
+                        matches.add(new Match(start, Math.log10(365.0 * getYearSpace(year))));
+                    }
+                }
+            } else if (dateLength >= 6) {
+                Matcher matcher = DATE_WITH_SEPARATOR.matcher(token);
+                if (matcher.matches()) {
+                    int year = findDateYear(matcher.group(1), matcher.group(3), matcher.group(4));
+                    if (year > 0) {
+                        // Four kinds of separators
+                        matches.add(new Match(start, Math.log10(365.0 * getYearSpace(year) * 4)));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Tries all ways to split digits into day, month and year
+     *
+     * @return Year of the date closest to today, or -1 if the digits are no date
+     */
+    private static int findDateWithoutSeparator(String digits) {
+        int result = -1;
+        for (int first = 1; first <= 4 && first < digits.length() - 1; first++) {
+            for (int second = 1; second <= 2 && first + second < digits.length(); second++) {
+                int year = findDateYear(digits.substring(0, first),
+                        digits.substring(first, first + second),
+                        digits.substring(first + second));
+                result = closerYear(result, year);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Interprets three numbers as year-month-day, day-month-year or month-day-year
+     *
+     * @return Year of the date closest to today, or -1 if it is no date
+     */
+    private static int findDateYear(String first, String second, String third) {
+        int result = -1;
+        if (first.length() == 2 || first.length() == 4) {
+            int year = toYear(first);
+            if (isDayMonth(second, third) || isDayMonth(third, second)) {
+                result = closerYear(result, year);
+            }
+        }
+        if (third.length() == 2 || third.length() == 4) {
+            int year = toYear(third);
+            if (isDayMonth(first, second) || isDayMonth(second, first)) {
+                result = closerYear(result, year);
+            }
+        }
+        return result;
+    }
+
+    private static boolean isDayMonth(String day, String month) {
+        if (day.length() > 2 || month.length() > 2) {
+            return false;
+        }
+        int d = Integer.parseInt(day);
+        int m = Integer.parseInt(month);
+        return d >= 1 && d <= 31 && m >= 1 && m <= 12;
+    }
+
+    /**
+     * Converts a two or four digit year, -1 if out of range
+     */
+    private static int toYear(String digits) {
+        int year = Integer.parseInt(digits);
+        if (digits.length() == 2) {
+            return year > 50 ? 1900 + year : 2000 + year;
+        }
+        return year >= 1000 && year <= 2099 ? year : -1;
+    }
+
+    private static int closerYear(int a, int b) {
+        if (a < 0) {
+            return b;
+        }
+        if (b < 0) {
+            return a;
+        }
+        return Math.abs(b - REFERENCE_YEAR) < Math.abs(a - REFERENCE_YEAR) ? b : a;
+    }
+
+    private static double getYearSpace(int year) {
+        return Math.max(Math.abs(year - REFERENCE_YEAR), MIN_YEAR_SPACE);
+    }
+
+    private static boolean isDigits(String token) {
+        for (int i = 0; i < token.length(); i++) {
+            if (!Character.isDigit(token.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // ========== Math Helpers ==========
+
+    private static double binomial(int n, int k) {
+        double result = 1;
+        for (int i = 1; i <= k; i++) {
+            result = result * (n - k + i) / i;
+        }
+        return result;
+    }
+
+    /**
+     * Gets the sum of binomial(n, i) for i from 1 to k
+     */
+    private static double sumOfBinomials(int n, int k) {
+        double sum = 0;
+        for (int i = 1; i <= k; i++) {
+            sum += binomial(n, i);
+        }
+        return sum;
+    }
+
+    /**
+     * Adds two numbers given as logarithms
+     */
+    private static double addLog10(double a, double b) {
+        double max = Math.max(a, b);
+        double min = Math.min(a, b);
+        return max + Math.log10(1 + Math.pow(10, min - max));
+    }
+}
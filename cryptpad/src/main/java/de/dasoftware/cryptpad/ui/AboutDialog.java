@@ -52,10 +52,10 @@ public class AboutDialog extends JDialog {
         
         // Logo/Image
         logoLabel = new JLabel();
-        try {
-            ImageIcon icon = new ImageIcon(getClass().getResource("/icons/splash.png"));
+        ImageIcon icon = UIResources.getIcon("/icons/splash.png");
+        if (icon != null) {
             logoLabel.setIcon(icon);
-        } catch (Exception e) {
+        } else {
             // If image not found, display text instead
             logoLabel.setText(Constants.APP_NAME);
             logoLabel.setFont(baseFont.deriveFont(Font.BOLD, baseFont.getSize2D() + 10f));
@@ -0,0 +1,332 @@
+package de.dasoftware.cryptpad.ui;
+
+import de.dasoftware.cryptpad.model.EntryTreeNode;
+import de.dasoftware.cryptpad.settings.AppSettings;
+
+import java.awt.Point;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.AttributeSet;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DocumentFilter;
+import javax.swing.undo.UndoManager;
+
+import org.fife.ui.rsyntaxtextarea.RSyntaxDocument;
+import org.fife.ui.rsyntaxtextarea.SyntaxConstants;
+
+/**
+ * LRU of editor documents for recently visited nodes
+ *
+ * Switching to a cached node just swaps the document into the editor,
+ * so the text is not copied or highlighted again and the undo history,
+ * caret and scroll position of the node are kept.
+ *
+ * Notes above the large note thresholds from the settings are kept as plain
+ * text without highlighting. The mode is switched before an edit makes the
+ * note large, so pasting a huge text is never run through the lexer, and
+ * switched back once the note has shrunk well below the thresholds.
+ */
+class DocumentCache {
+
+    // Limits for the cached documents
+    private static final int MAX_DOCUMENTS = 16;
+    private static final long MAX_CHARS = 16L * 1024 * 1024;
+
+    private final LinkedHashMap<EntryTreeNode, CachedDocument> documents =
+            new LinkedHashMap<>(MAX_DOCUMENTS, 0.75f, true);
+    private final DocumentListener changeListener;
+    private long cachedChars = 0;
+
+    /**
+     * Editor state of one node
+     */
+    static final class CachedDocument {
+
+        final RSyntaxDocument document;
+        final UndoManager undoManager = new UndoManager();
+        int caretPosition = 0;
+        Point viewPosition = null;
+
+        // Number of edits, and the number already written to the node
+        long editCount = 0;
+        long committedEditCount = 0;
+        
+        // Content version of the node the document was loaded or committed from
+        int nodeModCount;
+        
+        // Edited as plain text because of its size
+        boolean largeNote = false;
+
+        // Current length, kept up to date by the edit listener for the size limit
+        int length;
+
+        // Still held by the cache, only then edits count towards the size limit
+        boolean inCache = false;
+
+        CachedDocument(RSyntaxDocument document) {
+            this.document = document;
+            this.length = document.getLength();
+        }
+
+        /**
+         * Checks if there are edits not yet written to the node
+         *
+         * @return true if modified since the last commit
+         */
+        boolean isModified() {
+            return editCount != committedEditCount;
+        }
+        
+        /**
+         * Records that the document text has been written to the node
+         *
+         * @param nodeModCount Content version of the node after writing
+         */
+        void markCommitted(int nodeModCount) {
+            this.committedEditCount = editCount;
+            this.nodeModCount = nodeModCount;
+        }
+        
+        /**
+         * Gets the full text of the document
+         *
+         * @return Document text
+         */
+        String getText() {
+            try {
+                return document.getText(0, document.getLength());
+            } catch (BadLocationException e) {
+                // Cannot happen for the full range
+                return "";
+            }
+        }
+    }
+
+    /**
+     * Constructor
+     *
+     * @param changeListener Listener added to every document, e.g. to mark the file dirty
+     */
+    DocumentCache(DocumentListener changeListener) {
+        this.changeListener = changeListener;
+    }
+
+    /**
+     * Gets the document of a node, creating it from the node content if needed
+     *
+     * @param node Node
+     * @return Cached document
+     */
+    CachedDocument open(EntryTreeNode node) {
+        CachedDocument cached = documents.get(node);
+        if (cached != null) {
+            // Reload if the content was set somewhere else in the meantime
+            if (cached.isModified() || cached.nodeModCount == node.getModCount()) {
+                return cached;
+            }
+            documents.remove(node);
+            cached.inCache = false;
+            cachedChars -= cached.length;
+        }
+
+        cached = createDocument(node.getContent());
+        cached.nodeModCount = node.getModCount();
+        documents.put(node, cached);
+        cached.inCache = true;
+        cachedChars += cached.length;
+        evict();
+        return cached;
+    }
+
+    /**
+     * Gets the document of a node if it is cached
+     *
+     * @param node Node
+     * @return Cached document, or null
+     */
+    CachedDocument get(EntryTreeNode node) {
+        return documents.get(node);
+    }
+
+    /**
+     * Removes all documents, e.g. after loading another file
+     */
+    void clear() {
+        for (CachedDocument cached : documents.values()) {
+            cached.inCache = false;
+        }
+        documents.clear();
+        cachedChars = 0;
+    }
+
+    /**
+     * Creates a document holding the given text
+     * Listeners are added after the text so loading is neither undoable
+     * nor reported as a change
+     */
+    private CachedDocument createDocument(String text) {
+        // Choose the style up front, the lexer would otherwise run over the whole text
+        boolean largeNote = exceedsLimits(text.length(), countLines(text));
+        RSyntaxDocument document = new RSyntaxDocument(largeNote
+                ? SyntaxConstants.SYNTAX_STYLE_NONE
+                : SyntaxConstants.SYNTAX_STYLE_MARKDOWN);
+        try {
+            document.insertString(0, text, null);
+        } catch (BadLocationException e) {
+            // Cannot happen at offset 0
+        }
+
+        CachedDocument cached = new CachedDocument(document);
+        cached.largeNote = largeNote;
+        document.setDocumentFilter(new LargeNoteFilter(cached));
+        document.addUndoableEditListener(cached.undoManager);
+        
+        // Listeners are notified in reverse order, so the edit is counted
+        // before the change listener sees it
+        document.addDocumentListener(changeListener);
+        document.addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                cached.editCount++;
+                resized(cached, e.getLength());
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                cached.editCount++;
+                resized(cached, -e.getLength());
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                // Attribute changes from highlighting are no edits
+            }
+        });
+        return cached;
+    }
+
+    /**
+     * Keeps the cached size current after an edit
+     * A paste that takes the cache over the limit drops other documents
+     * right away, not only when the next node is opened
+     */
+    private void resized(CachedDocument cached, int delta) {
+        cached.length += delta;
+        if (cached.inCache) {
+            cachedChars += delta;
+            if (delta > 0 && cachedChars > MAX_CHARS) {
+                evict();
+            }
+        }
+    }
+
+    /**
+     * Checks if a note of the given size is edited in large note mode
+     */
+    private static boolean exceedsLimits(int chars, int lines) {
+        return chars > AppSettings.getLargeNoteChars() || lines > AppSettings.getLargeNoteLines();
+    }
+
+    /**
+     * Checks if a large note has shrunk enough to get all features back
+     * The margin keeps the mode from flipping while editing near a threshold
+     */
+    private static boolean belowLimits(int chars, int lines) {
+        return chars < AppSettings.getLargeNoteChars() / 4 * 3
+                && lines < AppSettings.getLargeNoteLines() / 4 * 3;
+    }
+
+    /**
+     * Counts the lines of a text
+     */
+    private static int countLines(CharSequence text) {
+        int lines = 1;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Switches a document between Markdown and plain text
+     */
+    private static void setLargeNote(CachedDocument cached, boolean largeNote) {
+        cached.largeNote = largeNote;
+        cached.document.setSyntaxStyle(largeNote
+                ? SyntaxConstants.SYNTAX_STYLE_NONE
+                : SyntaxConstants.SYNTAX_STYLE_MARKDOWN);
+    }
+
+    /**
+     * Switches the large note mode of a document as its size changes
+     */
+    private static final class LargeNoteFilter extends DocumentFilter {
+
+        private final CachedDocument cached;
+
+        LargeNoteFilter(CachedDocument cached) {
+            this.cached = cached;
+        }
+
+        @Override
+        public void insertString(FilterBypass fb, int offset, String string, AttributeSet attr)
+                throws BadLocationException {
+            beforeInsert(string, 0);
+            super.insertString(fb, offset, string, attr);
+        }
+
+        @Override
+        public void replace(FilterBypass fb, int offset, int length, String text, AttributeSet attrs)
+                throws BadLocationException {
+            beforeInsert(text, length);
+            super.replace(fb, offset, length, text, attrs);
+            afterRemove();
+        }
+
+        @Override
+        public void remove(FilterBypass fb, int offset, int length) throws BadLocationException {
+            super.remove(fb, offset, length);
+            afterRemove();
+        }
+
+        private void beforeInsert(String text, int removedLength) {
+            if (cached.largeNote || text == null) {
+                return;
+            }
+            int chars = cached.document.getLength() - removedLength + text.length();
+            int lines = cached.document.getDefaultRootElement().getElementCount() + countLines(text) - 1;
+            if (exceedsLimits(chars, lines)) {
+                setLargeNote(cached, true);
+            }
+        }
+
+        private void afterRemove() {
+            if (cached.largeNote && belowLimits(cached.document.getLength(),
+                    cached.document.getDefaultRootElement().getElementCount())) {
+                setLargeNote(cached, false);
+            }
+        }
+    }
+
+    /**
+     * Drops the least recently used documents until the limits are met
+     * The most recently used document is always kept. Only the document of
+     * the node shown in the editor can be modified, and that one is the most
+     * recently used, so evicted documents never hold uncommitted text.
+     */
+    private void evict() {
+        Iterator<Map.Entry<EntryTreeNode, CachedDocument>> it = documents.entrySet().iterator();
+        while ((documents.size() > MAX_DOCUMENTS || cachedChars > MAX_CHARS)
+                && documents.size() > 1) {
+            CachedDocument eldest = it.next().getValue();
+            eldest.inCache = false;
+            cachedChars -= eldest.length;
+            it.remove();
+        }
+    }
+}
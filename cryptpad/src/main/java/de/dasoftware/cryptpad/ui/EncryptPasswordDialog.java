@@ -1,8 +1,12 @@
 package de.dasoftware.cryptpad.ui;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 
 import de.dasoftware.cryptpad.i18n.Messages;
+import de.dasoftware.cryptpad.settings.AppSettings;
+import de.dasoftware.cryptpad.strength.BreachedPasswords;
 import de.dasoftware.cryptpad.util.IconUtil;
 
 import java.awt.*;
@@ -27,6 +31,7 @@ public class EncryptPasswordDialog extends JDialog {
     private JLabel retypeLabel;
     private JPasswordField passwordField1;
     private JPasswordField passwordField2;
+    private StrengthMeter strengthMeter;
     private JButton okButton;
     private JButton cancelButton;
     
@@ -69,6 +74,9 @@ public class EncryptPasswordDialog extends JDialog {
         passwordField1 = new JPasswordField(20);
         passwordField2 = new JPasswordField(20);
         
+        // Strength of the first password, updated while typing
+        strengthMeter = new StrengthMeter();
+        
         // Buttons
         okButton = new JButton(Messages.getString("button.ok"));
         cancelButton = new JButton(Messages.getString("button.cancel"));
@@ -96,6 +104,7 @@ public class EncryptPasswordDialog extends JDialog {
                         .addComponent(retypeLabel))
                     .addGroup(layout.createParallelGroup(GroupLayout.Alignment.LEADING, false)
                         .addComponent(passwordField1, GroupLayout.DEFAULT_SIZE, 166, Short.MAX_VALUE)
+                        .addComponent(strengthMeter, GroupLayout.DEFAULT_SIZE, GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
                         .addComponent(passwordField2)))
                 .addGroup(layout.createSequentialGroup()
                     .addComponent(okButton)
@@ -108,6 +117,7 @@ public class EncryptPasswordDialog extends JDialog {
                 .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
                     .addComponent(passwordLabel)
                     .addComponent(passwordField1))
+                .addComponent(strengthMeter)
                 .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
                     .addComponent(retypeLabel)
                     .addComponent(passwordField2))
@@ -128,6 +138,24 @@ public class EncryptPasswordDialog extends JDialog {
         okButton.addActionListener(this::onOk);
         cancelButton.addActionListener(this::onCancel);
         
+        // Update the strength meter on every change of the first password
+        passwordField1.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                updateStrength();
+            }
+            
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                updateStrength();
+            }
+            
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                updateStrength();
+            }
+        });
+        
         // Enter key in second password field triggers OK
         passwordField2.addKeyListener(new KeyAdapter() {
             @Override
@@ -146,6 +174,18 @@ public class EncryptPasswordDialog extends JDialog {
         );
     }
     
+    /**
+     * Shows the strength of the first password
+     */
+    private void updateStrength() {
+        char[] password = passwordField1.getPassword();
+        try {
+            strengthMeter.setPassword(password);
+        } finally {
+            Arrays.fill(password, '0');
+        }
+    }
+    
     /**
      * Handler for OK button
      * Validates that passwords match and are not empty
@@ -179,8 +219,21 @@ public class EncryptPasswordDialog extends JDialog {
                 return;
             }
             
+            // Check against the local list of breached passwords, if there is one
+            BreachedPasswords breachedPasswords = BreachedPasswords.get(AppSettings.getBreachFile());
+            if (breachedPasswords != null && breachedPasswords.contains(password1)) {
+                JOptionPane.showMessageDialog(this,
+                        Messages.getString("password.encrypt.breached"),
+                        Messages.getString("password.encrypt.breached.title"),
+                        JOptionPane.WARNING_MESSAGE);
+                passwordField1.requestFocusInWindow();
+                passwordField1.selectAll();
+                return;
+            }
+            
             // All validation passed
             modalResult = true;
+            strengthMeter.clear();
             setVisible(false);
             
         } finally {
@@ -198,6 +251,7 @@ public class EncryptPasswordDialog extends JDialog {
         // Clear passwords from memory
         Arrays.fill(passwordField1.getPassword(), '0');
         Arrays.fill(passwordField2.getPassword(), '0');
+        strengthMeter.clear();
         
         setVisible(false);
     }
@@ -240,5 +294,6 @@ public class EncryptPasswordDialog extends JDialog {
         Arrays.fill(passwordField2.getPassword(), '0');
         passwordField1.setText("");
         passwordField2.setText("");
+        strengthMeter.clear();
     }
 }
\ No newline at end of file
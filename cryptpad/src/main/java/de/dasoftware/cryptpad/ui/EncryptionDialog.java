@@ -66,26 +66,26 @@ public class EncryptionDialog extends JFrame {
         setDefaultCloseOperation(DISPOSE_ON_CLOSE);
         
         // Toolbar buttons
-        newButton = createToolbarButton("/icons/tb_new.png", 
+        newButton = createToolbarButton(UIResources.getThemedIcon("tb_new.png"), 
             Messages.getString("encryption.tooltip.new"));
-        openButton = createToolbarButton("/icons/tb_open.png", 
+        openButton = createToolbarButton(UIResources.getThemedIcon("tb_open.png"), 
             Messages.getString("encryption.tooltip.open"));
-        saveButton = createToolbarButton("/icons/tb_save.png", 
+        saveButton = createToolbarButton(UIResources.getThemedIcon("tb_save.png"), 
             Messages.getString("encryption.tooltip.save"));
-        cutButton = createToolbarButton("/icons/cut16.png", 
+        cutButton = createToolbarButton(UIResources.getThemedIcon("cut16.png"), 
             Messages.getString("encryption.tooltip.cut"));
-        copyButton = createToolbarButton("/icons/copy16.png", 
+        copyButton = createToolbarButton(UIResources.getThemedIcon("copy16.png"), 
             Messages.getString("encryption.tooltip.copy"));
-        pasteButton = createToolbarButton("/icons/paste16.png", 
+        pasteButton = createToolbarButton(UIResources.getThemedIcon("paste16.png"), 
             Messages.getString("encryption.tooltip.paste"));
-        encryptButton = createToolbarButton("/icons/lock.png", 
+        encryptButton = createToolbarButton(UIResources.getThemedIcon("lock.png"), 
             Messages.getString("encryption.tooltip.encrypt"));
-        exitButton = createToolbarButton("/icons/exit.png", 
+        exitButton = createToolbarButton(UIResources.getThemedIcon("exit.png"), 
             Messages.getString("encryption.tooltip.exit"));
         
         // Text area
         textArea = new JTextArea();
-        textArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        textArea.setFont(UIResources.getMonospaceFont(12));
         textArea.setLineWrap(true);
         textArea.setWrapStyleWord(true);
         
@@ -144,15 +144,15 @@ public class EncryptionDialog extends JFrame {
         fileMenu.add(createMenuItem(
             Messages.getString("encryption.menu.file.new"),
             Messages.getMnemonic("encryption.menu.file.new.mnemonic"),
-            "control N", "/icons/tb_new.png", this::onNew));
+            "control N", UIResources.getThemedIcon("tb_new.png"), this::onNew));
         fileMenu.add(createMenuItem(
             Messages.getString("encryption.menu.file.open"),
             Messages.getMnemonic("encryption.menu.file.open.mnemonic"),
-            "control O", "/icons/tb_open.png", this::onOpen));
+            "control O", UIResources.getThemedIcon("tb_open.png"), this::onOpen));
         fileMenu.add(createMenuItem(
             Messages.getString("encryption.menu.file.save"),
             Messages.getMnemonic("encryption.menu.file.save.mnemonic"),
-            "control S", "/icons/tb_save.png", this::onSave));
+            "control S", UIResources.getThemedIcon("tb_save.png"), this::onSave));
         fileMenu.add(createMenuItem(
             Messages.getString("encryption.menu.file.saveas"),
             Messages.getMnemonic("encryption.menu.file.saveas.mnemonic"),
@@ -161,7 +161,7 @@ public class EncryptionDialog extends JFrame {
         fileMenu.add(createMenuItem(
             Messages.getString("encryption.menu.file.exit"),
             Messages.getMnemonic("encryption.menu.file.exit.mnemonic"),
-            "control F4", "/icons/exit.png", e -> dispose()));
+            "control F4", UIResources.getThemedIcon("exit.png"), e -> dispose()));
         
         // Edit menu
         editMenu = new JMenu(Messages.getString("encryption.menu.edit"));
@@ -170,15 +170,15 @@ public class EncryptionDialog extends JFrame {
         editMenu.add(createMenuItem(
             Messages.getString("encryption.menu.edit.cut"),
             Messages.getMnemonic("encryption.menu.edit.cut.mnemonic"),
-            "control X", "/icons/cut16.png", e -> textArea.cut()));
+            "control X", UIResources.getThemedIcon("cut16.png"), e -> textArea.cut()));
         editMenu.add(createMenuItem(
             Messages.getString("encryption.menu.edit.copy"),
             Messages.getMnemonic("encryption.menu.edit.copy.mnemonic"),
-            "control C", "/icons/copy16.png", e -> textArea.copy()));
+            "control C", UIResources.getThemedIcon("copy16.png"), e -> textArea.copy()));
         editMenu.add(createMenuItem(
             Messages.getString("encryption.menu.edit.paste"),
             Messages.getMnemonic("encryption.menu.edit.paste.mnemonic"),
-            "control V", "/icons/paste16.png", e -> textArea.paste()));
+            "control V", UIResources.getThemedIcon("paste16.png"), e -> textArea.paste()));
         
         // Encryption menu
         encryptionMenu = new JMenu(Messages.getString("encryption.menu.encryption"));
@@ -206,10 +206,10 @@ public class EncryptionDialog extends JFrame {
     private JButton createToolbarButton(String iconPath, String tooltip) {
         JButton button = new JButton();
         
-        try {
-            ImageIcon icon = new ImageIcon(getClass().getResource(iconPath));
+        ImageIcon icon = UIResources.getIcon(iconPath);
+        if (icon != null) {
             button.setIcon(icon);
-        } catch (Exception e) {
+        } else {
             button.setText(tooltip);
         }
         
@@ -235,11 +235,10 @@ public class EncryptionDialog extends JFrame {
         }
         
         if (iconPath != null) {
-            try {
-                ImageIcon icon = new ImageIcon(getClass().getResource(iconPath));
+            // Continue without icon if not found
+            ImageIcon icon = UIResources.getIcon(iconPath);
+            if (icon != null) {
                 item.setIcon(icon);
-            } catch (Exception e) {
-                // Icon not found, continue without icon
             }
         }
         
@@ -4,7 +4,12 @@ import de.dasoftware.cryptpad.Constants;
 import de.dasoftware.cryptpad.model.EntryTreeNode;
 import de.dasoftware.cryptpad.model.IDataModel;
 import de.dasoftware.cryptpad.model.IObserver;
+import de.dasoftware.cryptpad.model.NodeSnapshot;
 import de.dasoftware.cryptpad.settings.AppSettings;
+import de.dasoftware.cryptpad.settings.ViewState;
+import de.dasoftware.cryptpad.search.SearchHit;
+import de.dasoftware.updater.RemoteUpdateData;
+import de.dasoftware.updater.UpdateScheduler;
 import de.dasoftware.updater.UpdaterData;
 import de.dasoftware.updater.ui.UpdaterDialog;
 import de.dasoftware.cryptpad.i18n.Messages;
@@ -20,9 +25,15 @@ import java.awt.event.ActionEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.io.File;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import org.fife.ui.rsyntaxtextarea.RSyntaxDocument;
 import org.fife.ui.rsyntaxtextarea.RSyntaxTextArea;
 import org.fife.ui.rsyntaxtextarea.SyntaxConstants;
 import org.fife.ui.rsyntaxtextarea.Theme;
@@ -34,18 +45,40 @@ import org.fife.ui.rtextarea.RTextScrollPane;
 public class MainWindow extends JFrame implements IObserver {
     
     private static final long serialVersionUID = 1L;
+    
+    // Idle time after the last keystroke before the editor text is written to the model
+    private static final int WRITE_THROUGH_DELAY_MS = 500;
+    private static final int LARGE_NOTE_WRITE_THROUGH_DELAY_MS = 3000;
 	// Model
     private IDataModel model;
     private boolean saved = false;
     private boolean dirty = false;
+    private long savedModCount = 0;
     private String savedFileName = "";
     
+    // Saves run one after another on a background thread
+    private final ExecutorService saveExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "save");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private CompletableFuture<Void> pendingSave = CompletableFuture.completedFuture(null);
+    private Timer writeThroughTimer;
+    private Timer autosaveTimer;
+    
     // Main components
     private JSplitPane splitPane;
     private JTree navigationTree;
     private JScrollPane treeScrollPane;
     private RSyntaxTextArea contentEditor; 
     private RTextScrollPane editorScrollPane;
+    private JPanel editorPanel;
+    private JLabel largeNoteBanner;
+    private boolean largeNoteMode = false;
+    private DocumentCache documentCache;
+    private final RSyntaxDocument emptyDocument = new RSyntaxDocument(SyntaxConstants.SYNTAX_STYLE_MARKDOWN);
+    private EntryTreeNode editorNode = null;
+    private SearchDialog searchDialog;
     
     // Toolbar
     private JToolBar toolBar;
@@ -61,6 +94,10 @@ public class MainWindow extends JFrame implements IObserver {
     private JButton btnCopy;
     private JButton btnPaste;
     private JButton btnAbout;
+    private JButton btnUpdateAvailable;
+    
+    // Background update check, null if switched off
+    private UpdateScheduler updateScheduler;
     
     // Menu
     private JMenuBar menuBar;
@@ -80,10 +117,14 @@ public class MainWindow extends JFrame implements IObserver {
     private JMenu recentFilesMenu;    
     
     // Edit menu items
+    private JMenuItem menuItemUndoNode;
+    private JMenuItem menuItemRedoNode;
     private JMenuItem menuItemCut;
     private JMenuItem menuItemCopy;
     private JMenuItem menuItemPaste;
     private JMenuItem menuItemDeleteNode;
+    private JMenuItem menuItemQuickOpen;
+    private JMenuItem menuItemSearch;
     private JMenuItem menuItemSettings;
     
     // Encryption menu items
@@ -109,6 +150,7 @@ public class MainWindow extends JFrame implements IObserver {
      */
     public MainWindow(IDataModel model) {
         this.model = model;
+        this.savedModCount = model.getModCount();
                 
         initComponents();
         setupLayout();
@@ -117,6 +159,7 @@ public class MainWindow extends JFrame implements IObserver {
         this.model.subscribe(this);
         
         updateTitle();
+        startUpdateCheck();
     }
     
     /**
@@ -126,8 +169,7 @@ public class MainWindow extends JFrame implements IObserver {
      * @return Full icon path with theme folder
      */
     private String getThemedIcon(String iconName) {
-        String themeFolder = AppSettings.isDarkTheme() ? "dark" : "light";
-        return "/icons/" + themeFolder + "/" + iconName;
+        return UIResources.getThemedIcon(iconName);
     }
     
     /**
@@ -153,7 +195,7 @@ public class MainWindow extends JFrame implements IObserver {
         navigationTree = new JTree(model.getTreeModel());
         navigationTree.setRootVisible(false);
         navigationTree.setShowsRootHandles(true);
-        navigationTree.getSelectionModel().setSelectionMode(TreeSelectionModel.SINGLE_TREE_SELECTION);
+        navigationTree.getSelectionModel().setSelectionMode(TreeSelectionModel.DISCONTIGUOUS_TREE_SELECTION);
         
         // Enable drag and drop
         navigationTree.setDragEnabled(true);
@@ -161,47 +203,39 @@ public class MainWindow extends JFrame implements IObserver {
         navigationTree.setTransferHandler(new TreeTransferHandler(navigationTree, model));        
         
         // Tree icons
-        try {
-            ImageIcon leafIcon = new ImageIcon(getClass().getResource(getThemedIcon("leaf.png")));
-            ImageIcon folderIcon = new ImageIcon(getClass().getResource(getThemedIcon("folder_closed16.png")));
-            ImageIcon openIcon = new ImageIcon(getClass().getResource(getThemedIcon("folder_open16.png")));
-            
+        ImageIcon leafIcon = UIResources.getIcon(getThemedIcon("leaf.png"));
+        ImageIcon folderIcon = UIResources.getIcon(getThemedIcon("folder_closed16.png"));
+        ImageIcon openIcon = UIResources.getIcon(getThemedIcon("folder_open16.png"));
+        
+        if (leafIcon != null && folderIcon != null && openIcon != null) {
             DefaultTreeCellRenderer renderer = new DefaultTreeCellRenderer();
             renderer.setLeafIcon(leafIcon);
             renderer.setClosedIcon(folderIcon);
             renderer.setOpenIcon(openIcon);
             navigationTree.setCellRenderer(renderer);
-        } catch (Exception e) {
-            System.err.println("Could not load tree icons: " + e.getMessage());
+        } else {
+            System.err.println("Could not load tree icons");
         }
         
         treeScrollPane = new JScrollPane(navigationTree);
         treeScrollPane.setMinimumSize(new Dimension(200, 300));
         
         // Initialize editor with Markdown syntax highlighting
-        contentEditor = new RSyntaxTextArea();
+        contentEditor = new RSyntaxTextArea(emptyDocument);
+        contentEditor.setEditable(false);
         contentEditor.setSyntaxEditingStyle(SyntaxConstants.SYNTAX_STYLE_MARKDOWN);
         contentEditor.setCodeFoldingEnabled(true);
         contentEditor.setAntiAliasingEnabled(true);
         contentEditor.setAutoIndentEnabled(true);
         contentEditor.setTabSize(4);
 
-        // Apply theme based on settings
-        try {
-            String themePath;
-            if (AppSettings.isDarkTheme()) {
-                themePath = "/org/fife/ui/rsyntaxtextarea/themes/monokai.xml";
-            } else {
-                themePath = "/org/fife/ui/rsyntaxtextarea/themes/default.xml";
-            }
-            
-            Theme theme = Theme.load(getClass().getResourceAsStream(themePath));
+        // Apply theme based on settings, usually already parsed during startup
+        Theme theme = UIResources.getEditorTheme();
+        if (theme != null) {
             theme.apply(contentEditor);
-        } catch (Exception e) {
-            System.err.println("Could not load RSyntaxTextArea theme: " + e.getMessage());
         }
         
-        Font editorFont = getMonospaceFont(12);
+        Font editorFont = UIResources.getMonospaceFont(12);
         contentEditor.setFont(editorFont);
         
         // Use RTextScrollPane for line numbers and code folding
@@ -209,8 +243,33 @@ public class MainWindow extends JFrame implements IObserver {
         editorScrollPane.setLineNumbersEnabled(true);
         editorScrollPane.setFoldIndicatorEnabled(true);        
         
+        // Undo history is kept per node, the one of the text area is reset on every switch
+        contentEditor.getInputMap().put(KeyStroke.getKeyStroke("control Z"), "undoNodeText");
+        contentEditor.getInputMap().put(KeyStroke.getKeyStroke("control Y"), "redoNodeText");
+        contentEditor.getActionMap().put("undoNodeText", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                onUndoText();
+            }
+        });
+        contentEditor.getActionMap().put("redoNodeText", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                onRedoText();
+            }
+        });
+        
+        // Banner shown while a large note is edited with reduced features
+        largeNoteBanner = new JLabel(Messages.getString("editor.largenote.banner"));
+        largeNoteBanner.setBorder(BorderFactory.createEmptyBorder(4, 8, 4, 8));
+        largeNoteBanner.setVisible(false);
+        
+        editorPanel = new JPanel(new BorderLayout());
+        editorPanel.add(largeNoteBanner, BorderLayout.NORTH);
+        editorPanel.add(editorScrollPane, BorderLayout.CENTER);
+        
         // Initialize split pane
-        splitPane = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, treeScrollPane, editorScrollPane);
+        splitPane = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, treeScrollPane, editorPanel);
         splitPane.setDividerLocation(240);
         
         // Initialize tree popup menu
@@ -218,70 +277,25 @@ public class MainWindow extends JFrame implements IObserver {
         navigationTree.setComponentPopupMenu(treePopupMenu);
     }
     
-    /**
-     * Gets a monospace font that works cross-platform
-     * 
-     * @param size Font size
-     * @return Monospace Font
-     */
-    private Font getMonospaceFont(int size) {
-        // Try to find a good monospace font
-        String[] preferredFonts = {
-            "Consolas",        // Windows
-            "Monaco",          // macOS
-            "Ubuntu Mono",     // Linux
-            "DejaVu Sans Mono",// Linux
-            "Courier New",     // Fallback - everywhere
-            "Monospaced"       // Java logical font
-        };
-        
-        // Get all available fonts
-        GraphicsEnvironment ge = GraphicsEnvironment.getLocalGraphicsEnvironment();
-        String[] availableFonts = ge.getAvailableFontFamilyNames();
-        
-        // Try to find first available preferred font
-        for (String fontName : preferredFonts) {
-            for (String available : availableFonts) {
-                if (available.equals(fontName)) {
-                    return new Font(fontName, Font.PLAIN, size);
-                }
-            }
-        }
-        
-        // Ultimate fallback
-        return new Font(Font.MONOSPACED, Font.PLAIN, size);
-    }
-
     /**
      * Sets the application icon for this window
      */
     private void setApplicationIcon() {
-        try {
-            // Load icon image(s)
-            ImageIcon icon16 = new ImageIcon(getClass().getResource(getThemedIcon("app-icon-16.png")));
-            ImageIcon icon32 = new ImageIcon(getClass().getResource(getThemedIcon("app-icon-32.png")));
-            ImageIcon icon48 = new ImageIcon(getClass().getResource(getThemedIcon("app-icon-48.png")));
-            ImageIcon icon64 = new ImageIcon(getClass().getResource(getThemedIcon("app-icon-64.png")));
-            
-            // Set multiple icon sizes (for different contexts)
-            java.util.List<Image> icons = new java.util.ArrayList<>();
-            icons.add(icon16.getImage());
-            icons.add(icon32.getImage());
-            icons.add(icon48.getImage());
-            icons.add(icon64.getImage());
-            
+        // Set multiple icon sizes (for different contexts)
+        List<Image> icons = UIResources.getApplicationIcons();
+        if (!icons.isEmpty()) {
             setIconImages(icons);
-            
-        } catch (Exception e) {
-            System.err.println("Could not load application icon: " + e.getMessage());
-            
-            // Fallback: Try to load just one icon
-            try {
-                ImageIcon icon = new ImageIcon(getClass().getResource(getThemedIcon("app-icon.png")));
-                setIconImage(icon.getImage());
-            } catch (Exception ex) {
-                System.err.println("Could not load fallback icon: " + ex.getMessage());
-            }
+            return;
+        }
+        
+        System.err.println("Could not load application icon");
+        
+        // Fallback: Try to load just one icon
+        ImageIcon icon = UIResources.getIcon(getThemedIcon("app-icon.png"));
+        if (icon != null) {
+            setIconImage(icon.getImage());
+        } else {
+            System.err.println("Could not load fallback icon");
         }
     }
     
@@ -341,6 +355,13 @@ public class MainWindow extends JFrame implements IObserver {
         btnAbout = createToolBarButton(getThemedIcon("Info.png"), 
             Messages.getString("tooltip.about", Constants.APP_NAME));
         toolBar.add(btnAbout);
+        
+        // Shown by the background update check
+        btnUpdateAvailable = new JButton();
+        btnUpdateAvailable.setFocusable(false);
+        btnUpdateAvailable.setVisible(false);
+        toolBar.add(Box.createHorizontalGlue());
+        toolBar.add(btnUpdateAvailable);
     }
     
     /**
@@ -349,10 +370,10 @@ public class MainWindow extends JFrame implements IObserver {
     private JButton createToolBarButton(String iconPath, String tooltip) {
         JButton button = new JButton();
         
-        try {
-            ImageIcon icon = new ImageIcon(getClass().getResource(iconPath));
+        ImageIcon icon = UIResources.getIcon(iconPath);
+        if (icon != null) {
             button.setIcon(icon);
-        } catch (Exception e) {
+        } else {
             System.err.println("Could not load icon: " + iconPath);
             button.setText(tooltip.substring(0, 3));
         }
@@ -418,6 +439,7 @@ public class MainWindow extends JFrame implements IObserver {
         recentFilesMenu.setMnemonic(Messages.getMnemonic("menu.file.recent.mnemonic"));
         menuFile.add(recentFilesMenu);
         updateRecentFilesMenu();
+        checkRecentFiles();
         
         menuFile.addSeparator();
         menuFile.add(menuItemExit);
@@ -426,6 +448,20 @@ public class MainWindow extends JFrame implements IObserver {
         menuEdit = new JMenu(Messages.getString("menu.edit"));
         menuEdit.setMnemonic(Messages.getMnemonic("menu.edit.mnemonic"));
 
+        menuItemUndoNode = createMenuItem(
+            Messages.getString("menu.edit.undonode"),
+            null, 
+            Messages.getMnemonic("menu.edit.undonode.mnemonic"),
+            KeyStroke.getKeyStroke("control alt Z")
+        );
+        
+        menuItemRedoNode = createMenuItem(
+            Messages.getString("menu.edit.redonode"),
+            null, 
+            Messages.getMnemonic("menu.edit.redonode.mnemonic"),
+            KeyStroke.getKeyStroke("control alt Y")
+        );
+
         menuItemCut = createMenuItem(
             Messages.getString("menu.edit.cut"),
             getThemedIcon("cut16.png"), 
@@ -454,6 +490,20 @@ public class MainWindow extends JFrame implements IObserver {
             null
         );
         
+        menuItemQuickOpen = createMenuItem(
+            Messages.getString("menu.edit.quickopen"),
+            null, 
+            Messages.getMnemonic("menu.edit.quickopen.mnemonic"),
+            KeyStroke.getKeyStroke("control P")
+        );
+        
+        menuItemSearch = createMenuItem(
+            Messages.getString("menu.edit.search"),
+            null, 
+            Messages.getMnemonic("menu.edit.search.mnemonic"),
+            KeyStroke.getKeyStroke("control shift F")
+        );
+        
         menuItemSettings = createMenuItem(
             Messages.getString("menu.edit.settings"),
             null, 
@@ -461,11 +511,16 @@ public class MainWindow extends JFrame implements IObserver {
             KeyStroke.getKeyStroke("control COMMA")
         );
 
+        menuEdit.add(menuItemUndoNode);
+        menuEdit.add(menuItemRedoNode);
+        menuEdit.addSeparator();
         menuEdit.add(menuItemCut);
         menuEdit.add(menuItemCopy);
         menuEdit.add(menuItemPaste);
         menuEdit.addSeparator();
         menuEdit.add(menuItemDeleteNode);
+        menuEdit.add(menuItemQuickOpen);
+        menuEdit.add(menuItemSearch);
         menuEdit.addSeparator();
         menuEdit.add(menuItemSettings);
         
@@ -536,6 +591,16 @@ public class MainWindow extends JFrame implements IObserver {
      * Handler for Check Updates
      */
     private void onCheckUpdates(ActionEvent e) {    
+        btnUpdateAvailable.setVisible(false);
+        
+        UpdaterDialog dialog = new UpdaterDialog(this, createUpdaterData());
+        dialog.setVisible(true);
+    }
+    
+    /**
+     * Creates the updater settings of this application
+     */
+    private UpdaterData createUpdaterData() {
         UpdaterData data = new UpdaterData();
         data.setUpdateUrl("https://da-software.net/versions/cryptpad.php");
         data.setVersionString(Constants.APP_VERSION);
@@ -543,9 +608,33 @@ public class MainWindow extends JFrame implements IObserver {
         data.setUpdaterTitle(Constants.APP_NAME + " Updater");
         data.setAutoUpdate(false);
         data.setAutoClose(false);
+        return data;
+    }
+    
+    /**
+     * Starts the background update check, unless switched off in the settings
+     * A found update is shown as a button in the toolbar, no dialog interrupts the user
+     */
+    private void startUpdateCheck() {
+        if (!AppSettings.isUpdateCheckEnabled()) {
+            return;
+        }
         
-        UpdaterDialog dialog = new UpdaterDialog(this, data);
-        dialog.setVisible(true);
+        updateScheduler = new UpdateScheduler(createUpdaterData(),
+                Duration.ofHours(AppSettings.getUpdateCheckInterval()),
+                AppSettings::getLastUpdateCheck,
+                AppSettings::setLastUpdateCheck,
+                remote -> SwingUtilities.invokeLater(() -> showUpdateAvailable(remote)));
+        updateScheduler.start();
+    }
+    
+    /**
+     * Shows the toolbar button of an available update
+     */
+    private void showUpdateAvailable(RemoteUpdateData remote) {
+        btnUpdateAvailable.setText(Messages.getString("update.available", remote.getVersionString()));
+        btnUpdateAvailable.setToolTipText(Messages.getString("tooltip.update.available"));
+        btnUpdateAvailable.setVisible(true);
     }
     
     /**
@@ -562,10 +651,10 @@ public class MainWindow extends JFrame implements IObserver {
         JMenuItem item = new JMenuItem(text);
         
         if (iconPath != null) {
-            try {
-                ImageIcon icon = new ImageIcon(getClass().getResource(iconPath));
+            ImageIcon icon = UIResources.getIcon(iconPath);
+            if (icon != null) {
                 item.setIcon(icon);
-            } catch (Exception e) {
+            } else {
                 System.err.println("Could not load icon: " + iconPath);
             }
         }
@@ -655,21 +744,28 @@ public class MainWindow extends JFrame implements IObserver {
         // Tree selection
         navigationTree.addTreeSelectionListener(this::onTreeSelectionChanged);
 
-        // Content editor changes - mark as dirty
-        contentEditor.getDocument().addDocumentListener(new DocumentListener() {
+        // Content editor changes - written to the model once typing pauses
+        writeThroughTimer = new Timer(WRITE_THROUGH_DELAY_MS, e -> commitEditorContent());
+        writeThroughTimer.setRepeats(false);
+        
+        // Changes are appended to the encrypted autosave journal periodically
+        autosaveTimer = new Timer(AppSettings.getAutosaveInterval() * 1000, e -> onAutosave());
+        autosaveTimer.start();
+        
+        documentCache = new DocumentCache(new DocumentListener() {
             @Override
             public void insertUpdate(DocumentEvent e) {
-                markDirty();
+                onEditorChanged();
             }
             
             @Override
             public void removeUpdate(DocumentEvent e) {
-                markDirty();
+                onEditorChanged();
             }
             
             @Override
             public void changedUpdate(DocumentEvent e) {
-                markDirty();
+                // Attribute changes, e.g. from switching the highlighting, are no edits
             }
         });        
         
@@ -686,6 +782,7 @@ public class MainWindow extends JFrame implements IObserver {
         btnCopy.addActionListener(this::onCopy);
         btnPaste.addActionListener(this::onPaste);
         btnAbout.addActionListener(this::onAbout);
+        btnUpdateAvailable.addActionListener(this::onCheckUpdates);
         
         // Menu items - File
         menuItemNew.addActionListener(this::onNewFile);
@@ -696,10 +793,14 @@ public class MainWindow extends JFrame implements IObserver {
         menuItemSettings.addActionListener(this::onSettings);
         
         // Menu items - Edit
+        menuItemUndoNode.addActionListener(this::onUndoNode);
+        menuItemRedoNode.addActionListener(this::onRedoNode);
         menuItemCut.addActionListener(this::onCut);
         menuItemCopy.addActionListener(this::onCopy);
         menuItemPaste.addActionListener(this::onPaste);
         menuItemDeleteNode.addActionListener(this::onDeleteNode);
+        menuItemQuickOpen.addActionListener(this::onQuickOpen);
+        menuItemSearch.addActionListener(this::onSearch);
         
         // Menu items - Encryption
         menuItemSetPassword.addActionListener(this::onSetPassword);
@@ -721,37 +822,174 @@ public class MainWindow extends JFrame implements IObserver {
     // ========== Event Handlers ==========
     
     /**
-     * Marks the file as dirty (unsaved changes)
+     * Updates the dirty indicator after a change
+     * The file is dirty if the model changed since the last save or load,
+     * or the editor holds edits not yet written to the model
      */
-    public void markDirty() {
-        if (!dirty) {
-            dirty = true;
+    public void updateDirtyState() {
+        boolean changed = model.getModCount() != savedModCount || hasUncommittedEdits();
+        if (changed != dirty) {
+            dirty = changed;
             updateTitle();
         }
-    }  
+    }
+    
+    /**
+     * Checks if the editor holds edits not yet written to the model
+     * 
+     * @return true if there are uncommitted edits
+     */
+    private boolean hasUncommittedEdits() {
+        DocumentCache.CachedDocument cached = editorNode != null ? documentCache.get(editorNode) : null;
+        return cached != null && cached.isModified();
+    }
+    
+    /**
+     * Records that the file on disk matches the model
+     */
+    private void markSaved() {
+        savedModCount = model.getModCount();
+        dirty = false;
+    }
+    
+    /**
+     * Appends the changes since the last run to the autosave journal
+     * The record is encrypted and written on the save thread, after any
+     * save queued before it
+     */
+    private void onAutosave() {
+        commitEditorContent();
+        Runnable write = model.prepareJournalWrite();
+        if (write != null) {
+            CompletableFuture.runAsync(write, saveExecutor).exceptionally(error -> {
+                System.err.println("Could not write autosave journal: " + error.getMessage());
+                return null;
+            });
+        }
+    }
+    
+    /**
+     * Called on every edit in the editor
+     */
+    private void onEditorChanged() {
+        writeThroughTimer.setInitialDelay(largeNoteMode
+                ? LARGE_NOTE_WRITE_THROUGH_DELAY_MS
+                : WRITE_THROUGH_DELAY_MS);
+        writeThroughTimer.restart();
+        updateDirtyState();
+        checkEditorMode();
+    }
     
     /**
      * Handles tree selection changes
      */
     private void onTreeSelectionChanged(TreeSelectionEvent evt) {
-        TreePath oldPath = evt.getOldLeadSelectionPath();
         TreePath newPath = evt.getNewLeadSelectionPath();
         
-        // Save content of previously selected node
-        if (oldPath != null) {
-            try {
-                EntryTreeNode oldNode = (EntryTreeNode) oldPath.getLastPathComponent();
-                model.setNodeContent(oldNode, contentEditor.getText());
-            } catch (Exception e) {
-                // Node might not be EntryTreeNode
+        if (newPath != null) {
+            showNode((EntryTreeNode) newPath.getLastPathComponent());
+        } else {
+            showNode(null);
+        }
+    }
+    
+    /**
+     * Shows the content of a node in the editor
+     * The document of the previous node is kept in the cache together with
+     * its undo history, caret and scroll position. Its text is written to
+     * the model only if it was edited.
+     * 
+     * @param node Node to show, null to show an empty, read-only editor
+     */
+    private void showNode(EntryTreeNode node) {
+        if (Objects.equals(node, editorNode)) {
+            return;
+        }
+        
+        // Keep the state of the previous node
+        if (editorNode != null) {
+            DocumentCache.CachedDocument previous = documentCache.get(editorNode);
+            if (previous != null) {
+                previous.caretPosition = contentEditor.getCaretPosition();
+                previous.viewPosition = editorScrollPane.getViewport().getViewPosition();
             }
+            commitEditorContent();
         }
         
-        // Load content of newly selected node
-        if (newPath != null) {
-            EntryTreeNode newNode = (EntryTreeNode) newPath.getLastPathComponent();
-            contentEditor.setText(newNode.getContent());
-            contentEditor.setCaretPosition(0);
+        editorNode = node;
+        if (node == null) {
+            contentEditor.setDocument(emptyDocument);
+            contentEditor.setEditable(false);
+            applyEditorMode();
+            return;
+        }
+        
+        DocumentCache.CachedDocument cached = documentCache.open(node);
+        contentEditor.setDocument(cached.document);
+        contentEditor.setEditable(true);
+        applyEditorMode();
+        contentEditor.setCaretPosition(Math.min(cached.caretPosition, cached.document.getLength()));
+        
+        // Restore the scroll position once the editor has been laid out again
+        Point viewPosition = cached.viewPosition;
+        if (viewPosition != null) {
+            SwingUtilities.invokeLater(() -> {
+                if (node.equals(editorNode)) {
+                    editorScrollPane.getViewport().setViewPosition(viewPosition);
+                }
+            });
+        }
+    }
+    
+    /**
+     * Updates the editor features once an edit has moved the note
+     * across the large note thresholds
+     * Called from document notifications, which must not change the editor
+     */
+    private void checkEditorMode() {
+        DocumentCache.CachedDocument cached = editorNode != null ? documentCache.get(editorNode) : null;
+        if (cached != null && cached.largeNote != largeNoteMode) {
+            SwingUtilities.invokeLater(this::applyEditorMode);
+        }
+    }
+    
+    /**
+     * Turns the expensive editor features off for large notes and back on for all others
+     */
+    private void applyEditorMode() {
+        DocumentCache.CachedDocument cached = editorNode != null ? documentCache.get(editorNode) : null;
+        boolean large = cached != null && cached.largeNote;
+        if (large == largeNoteMode) {
+            return;
+        }
+        largeNoteMode = large;
+        
+        contentEditor.setSyntaxEditingStyle(large
+                ? SyntaxConstants.SYNTAX_STYLE_NONE
+                : SyntaxConstants.SYNTAX_STYLE_MARKDOWN);
+        contentEditor.setCodeFoldingEnabled(!large);
+        contentEditor.setBracketMatchingEnabled(!large);
+        editorScrollPane.setFoldIndicatorEnabled(!large);
+        largeNoteBanner.setVisible(large);
+    }
+    
+    /**
+     * Undoes the last text edit of the node shown in the editor
+     */
+    private void onUndoText() {
+        DocumentCache.CachedDocument cached = editorNode != null ? documentCache.get(editorNode) : null;
+        if (cached != null && cached.undoManager.canUndo()) {
+            cached.undoManager.undo();
+        }
+    }
+    
+    /**
+     * Redoes the last undone text edit of the node shown in the editor
+     */
+    private void onRedoText() {
+        DocumentCache.CachedDocument cached = editorNode != null ? documentCache.get(editorNode) : null;
+        if (cached != null && cached.undoManager.canRedo()) {
+            cached.undoManager.redo();
         }
     }
     
@@ -760,7 +998,9 @@ public class MainWindow extends JFrame implements IObserver {
      */
     private void onNewFile(ActionEvent e) {
         int result = showSaveConfirmation();
-        if (result != JOptionPane.CANCEL_OPTION) {
+        
+        // Keep the current tree and journal if the save started above fails
+        if (result != JOptionPane.CANCEL_OPTION && waitForPendingSaves()) {
             createNewFile();
         }
     }
@@ -812,7 +1052,7 @@ public class MainWindow extends JFrame implements IObserver {
             navigationTree.setSelectionPath(path);
             navigationTree.scrollPathToVisible(path);
             
-            markDirty();
+            updateDirtyState();
         }
     }
     
@@ -844,7 +1084,7 @@ public class MainWindow extends JFrame implements IObserver {
             navigationTree.setSelectionPath(newPath);
             navigationTree.scrollPathToVisible(newPath);
 
-            markDirty();
+            updateDirtyState();
         }
     }
     
@@ -876,7 +1116,7 @@ public class MainWindow extends JFrame implements IObserver {
             navigationTree.setSelectionPath(newPath);
             navigationTree.scrollPathToVisible(newPath);
 
-            markDirty();
+            updateDirtyState();
         }
     }
     
@@ -903,7 +1143,7 @@ public class MainWindow extends JFrame implements IObserver {
             String newTitle = dialog.getNodeTitle();
             model.setNodeTitle(node, newTitle);
 
-            markDirty();
+            updateDirtyState();
         }
     }
     
@@ -911,8 +1151,8 @@ public class MainWindow extends JFrame implements IObserver {
      * Handler for Delete Node
      */
     private void onDeleteNode(ActionEvent e) {
-        TreePath path = navigationTree.getSelectionPath();
-        if (path == null) {
+        TreePath[] paths = navigationTree.getSelectionPaths();
+        if (paths == null || paths.length == 0) {
             JOptionPane.showMessageDialog(this,
                     Messages.getString("dialog.noselection.message"),
                     Messages.getString("dialog.noselection.title"),
@@ -920,21 +1160,70 @@ public class MainWindow extends JFrame implements IObserver {
             return;
         }
 
-        EntryTreeNode node = (EntryTreeNode) path.getLastPathComponent();
+        List<EntryTreeNode> nodes = new java.util.ArrayList<>(paths.length);
+        for (TreePath path : paths) {
+            nodes.add((EntryTreeNode) path.getLastPathComponent());
+        }
 
+        String message = nodes.size() == 1
+                ? Messages.getString("dialog.deletenode.message")
+                : Messages.getString("dialog.deletenodes.message", nodes.size());
+        
         int result = JOptionPane.showConfirmDialog(this,
-                Messages.getString("dialog.deletenode.message"),
+                message,
                 Messages.getString("dialog.deletenode.title"),
                 JOptionPane.YES_NO_OPTION,
                 JOptionPane.QUESTION_MESSAGE);
 
         if (result == JOptionPane.YES_OPTION) {
-            model.deleteNode(node);
-            contentEditor.setText("");
-            markDirty();
+            model.deleteNodes(nodes);
+            updateDirtyState();
+        }
+    }
+    
+    /**
+     * Handler for Undo Node Change
+     */
+    private void onUndoNode(ActionEvent e) {
+        commitEditorContent();
+        if (model.undo()) {
+            updateDirtyState();
+        }
+    }
+    
+    /**
+     * Handler for Redo Node Change
+     */
+    private void onRedoNode(ActionEvent e) {
+        commitEditorContent();
+        if (model.redo()) {
+            updateDirtyState();
         }
     }
     
+    /**
+     * Handler for Quick Open
+     */
+    private void onQuickOpen(ActionEvent e) {
+        QuickOpenDialog dialog = new QuickOpenDialog(this, model);
+        dialog.setVisible(true);
+        
+        EntryTreeNode node = dialog.getSelectedNode();
+        if (node != null) {
+            selectNode(node);
+        }
+    }
+    
+    /**
+     * Handler for Search in Notes
+     */
+    private void onSearch(ActionEvent e) {
+        if (searchDialog == null) {
+            searchDialog = new SearchDialog(this, model);
+        }
+        searchDialog.showDialog();
+    }
+    
     /**
      * Handler for Cut
      */
@@ -1006,24 +1295,23 @@ public class MainWindow extends JFrame implements IObserver {
      * Handler for window closing
      */
     private void onWindowClose() {
+        saveViewState();
+        
         // Auto-save if file is already saved with password
+        updateDirtyState();
         if (dirty && saved && !savedFileName.isEmpty() &&
             model.getPassword() != null && !model.getPassword().isEmpty()) {
 
             // Save current editor content first
-            TreePath currentPath = navigationTree.getLeadSelectionPath();
-            if (currentPath != null) {
-                try {
-                    EntryTreeNode node = (EntryTreeNode) currentPath.getLastPathComponent();
-                    model.setNodeContent(node, contentEditor.getText());
-                } catch (Exception e) {
-                    // Ignore
-                }
-            }
+            commitEditorContent();
 
-            // Auto-save
+            // Auto-save, after any save still running in the background
+            if (!waitForPendingSaves()) {
+                return;
+            }
             try {
                 model.saveFile(savedFileName);
+                model.closeJournal();
                 dispose();
                 System.exit(0);
             } catch (Exception ex) {
@@ -1039,6 +1327,15 @@ public class MainWindow extends JFrame implements IObserver {
                         JOptionPane.WARNING_MESSAGE);
 
                 if (result == JOptionPane.YES_OPTION) {
+                    // Keep the journal, the changes can be recovered on the next start
+                    Runnable write = model.prepareJournalWrite();
+                    if (write != null) {
+                        try {
+                            CompletableFuture.runAsync(write, saveExecutor).join();
+                        } catch (Exception journalError) {
+                            System.err.println("Could not write autosave journal: " + journalError.getMessage());
+                        }
+                    }
                     dispose();
                     System.exit(0);
                 }
@@ -1046,7 +1343,8 @@ public class MainWindow extends JFrame implements IObserver {
         } else {
             // Show save confirmation
             int result = showSaveConfirmation();
-            if (result != JOptionPane.CANCEL_OPTION) {
+            if (result != JOptionPane.CANCEL_OPTION && waitForPendingSaves()) {
+                model.closeJournal();
                 dispose();
                 System.exit(0);
             }
@@ -1062,6 +1360,7 @@ public class MainWindow extends JFrame implements IObserver {
      */
     private int showSaveConfirmation() {
         // Don't ask if no changes
+        updateDirtyState();
         if (!dirty) {
             return JOptionPane.NO_OPTION;
         }
@@ -1083,10 +1382,12 @@ public class MainWindow extends JFrame implements IObserver {
      * Creates a new file
      */
     private void createNewFile() {
+        saveViewState();
+        model.closeJournal();
         model.clearModel();
-        contentEditor.setText("");
+        resetEditor();
         saved = false;
-        dirty = false;
+        markSaved();
         savedFileName = "";
         updateTitle();
         
@@ -1118,33 +1419,46 @@ public class MainWindow extends JFrame implements IObserver {
      * @param filename File path to open
      */
     public void openFile(String filename) {
+        // The file may still be written by a background save
+        if (!waitForPendingSaves()) {
+            return;
+        }
+        
         DecryptPasswordDialog dialog = new DecryptPasswordDialog(this, true);
         dialog.setVisible(true);
 
         if (dialog.getModalResult()) {
+            saveViewState();
+            
             char[] password = dialog.getPassword();
             model.setPassword(new String(password));
 
             try {
                 model.loadFile(filename);
                 saved = true;
-                dirty = false;
                 savedFileName = filename;
-                contentEditor.setText("");
+                resetEditor();
+                markSaved();
+                
+                // Recover changes a crashed session left in the autosave journal
+                int recovered = model.openJournal(filename);
+                updateDirtyState();
                 updateTitle();
                 
                 // Add to recent files
                 AppSettings.addRecentFile(new File(filename));
                 updateRecentFilesMenu();
 
-                // Expand first level of tree
-                for (int i = 0; i < navigationTree.getRowCount(); i++) {
-                    navigationTree.expandRow(i);
+                // Expand and select the nodes of the last session
+                restoreViewState();
+                
+                if (recovered > 0) {
+                    JOptionPane.showMessageDialog(this,
+                            Messages.getString("dialog.journal.recovered.message"),
+                            Messages.getString("dialog.journal.recovered.title"),
+                            JOptionPane.INFORMATION_MESSAGE);
                 }
 
-                // Select first node after loading
-                selectFirstNode();
-
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(this,
                         Messages.getString("dialog.error.load", ex.getMessage()),
@@ -1157,6 +1471,202 @@ public class MainWindow extends JFrame implements IObserver {
         }
     }
     
+    /**
+     * Selects a node in the tree and scrolls it into view
+     * 
+     * @param node Node to select
+     */
+    private void selectNode(EntryTreeNode node) {
+        TreePath path = new TreePath(model.getTreeModel().getPathToRoot(node));
+        navigationTree.setSelectionPath(path);
+        navigationTree.scrollPathToVisible(path);
+    }
+    
+    /**
+     * Writes the editor text to the node shown in the editor if it was edited
+     * The model is otherwise only updated when the selection changes
+     */
+    void commitEditorContent() {
+        if (editorNode == null) {
+            return;
+        }
+        DocumentCache.CachedDocument cached = documentCache.get(editorNode);
+        if (cached != null && cached.isModified()) {
+            model.setNodeContent(editorNode, cached.getText());
+            cached.markCommitted(editorNode.getModCount());
+        }
+    }
+    
+    /**
+     * Drops all cached documents and clears the editor
+     * Used after the model has been replaced by a new or loaded file
+     */
+    private void resetEditor() {
+        editorNode = null;
+        documentCache.clear();
+        contentEditor.setDocument(emptyDocument);
+        contentEditor.setEditable(false);
+        applyEditorMode();
+    }
+    
+    /**
+     * Selects the node of a search hit and highlights the match in the editor
+     * 
+     * @param hit Search hit to show
+     */
+    void showSearchHit(SearchHit hit) {
+        EntryTreeNode node = hit.getNode();
+        
+        // Node may have been deleted or another file loaded since the search
+        if (!node.getRoot().equals(model.getRootNode())) {
+            return;
+        }
+        
+        selectNode(node);
+        
+        // Content may have been edited since the search
+        int length = contentEditor.getDocument().getLength();
+        int start = Math.min(hit.getStart(), length);
+        int end = Math.min(hit.getEnd(), length);
+        contentEditor.setCaretPosition(start);
+        contentEditor.select(start, end);
+        contentEditor.requestFocusInWindow();
+    }
+    
+    /**
+     * Stores expanded and selected nodes, scroll position and divider of the open vault
+     */
+    private void saveViewState() {
+        EntryTreeNode root = model.getRootNode();
+        if (savedFileName.isEmpty() || root == null) {
+            return;
+        }
+        
+        ViewState state = new ViewState();
+        java.util.Enumeration<TreePath> expanded = navigationTree.getExpandedDescendants(new TreePath(root));
+        while (expanded != null && expanded.hasMoreElements()) {
+            TreePath path = expanded.nextElement();
+            if (path.getPathCount() > 1) {
+                state.getExpandedNodes().add(getNodeId(path));
+            }
+        }
+        
+        // The lead selection is stored last
+        TreePath[] selected = navigationTree.getSelectionPaths();
+        TreePath lead = navigationTree.getLeadSelectionPath();
+        if (selected != null) {
+            for (TreePath path : selected) {
+                if (!path.equals(lead)) {
+                    state.getSelectedNodes().add(getNodeId(path));
+                }
+            }
+            if (lead != null && navigationTree.isPathSelected(lead)) {
+                state.getSelectedNodes().add(getNodeId(lead));
+            }
+        }
+        
+        Point scroll = treeScrollPane.getViewport().getViewPosition();
+        state.setScrollPosition(scroll.x, scroll.y);
+        state.setDividerLocation(splitPane.getDividerLocation());
+        state.save(savedFileName);
+    }
+    
+    /**
+     * Restores the view state of the open vault
+     * Only the stored nodes are expanded. Without a stored state only the
+     * first level is expanded, so deep trees stay collapsed.
+     */
+    private void restoreViewState() {
+        EntryTreeNode root = model.getRootNode();
+        ViewState state = ViewState.load(savedFileName);
+        if (root == null || state == null) {
+            for (int i = 0; root != null && i < root.getChildCount(); i++) {
+                navigationTree.expandPath(new TreePath(
+                        model.getTreeModel().getPathToRoot((EntryTreeNode) root.getChildAt(i))));
+            }
+            selectFirstNode();
+            return;
+        }
+        
+        for (String id : state.getExpandedNodes()) {
+            TreePath path = findNodePath(id);
+            if (path != null) {
+                navigationTree.expandPath(path);
+            }
+        }
+        if (state.getDividerLocation() > 0) {
+            splitPane.setDividerLocation(state.getDividerLocation());
+        }
+        
+        List<TreePath> selected = new java.util.ArrayList<>();
+        for (String id : state.getSelectedNodes()) {
+            TreePath path = findNodePath(id);
+            if (path != null) {
+                selected.add(path);
+            }
+        }
+        if (selected.isEmpty()) {
+            selectFirstNode();
+        } else {
+            SwingUtilities.invokeLater(() -> {
+                // The last path becomes the lead selection
+                navigationTree.setSelectionPaths(selected.toArray(new TreePath[0]));
+                showNode((EntryTreeNode) selected.get(selected.size() - 1).getLastPathComponent());
+            });
+        }
+        
+        // Scroll once the tree has been laid out with the expanded nodes
+        SwingUtilities.invokeLater(() -> {
+            JViewport viewport = treeScrollPane.getViewport();
+            Dimension view = viewport.getViewSize();
+            Dimension extent = viewport.getExtentSize();
+            viewport.setViewPosition(new Point(
+                    Math.max(0, Math.min(state.getScrollX(), view.width - extent.width)),
+                    Math.max(0, Math.min(state.getScrollY(), view.height - extent.height))));
+        });
+    }
+    
+    /**
+     * Gets the id of a node as stored in the view state
+     * 
+     * @param path Tree path of the node
+     * @return Child indexes from the root, e.g. "0/3/1"
+     */
+    private static String getNodeId(TreePath path) {
+        StringBuilder id = new StringBuilder();
+        for (int i = 1; i < path.getPathCount(); i++) {
+            TreeNode parent = (TreeNode) path.getPathComponent(i - 1);
+            TreeNode node = (TreeNode) path.getPathComponent(i);
+            if (id.length() > 0) {
+                id.append('/');
+            }
+            id.append(parent.getIndex(node));
+        }
+        return id.toString();
+    }
+    
+    /**
+     * Finds a node by its view state id
+     * 
+     * @param id Child indexes from the root
+     * @return Tree path of the node, or null if the tree has no such node
+     */
+    private TreePath findNodePath(String id) {
+        EntryTreeNode node = model.getRootNode();
+        try {
+            for (String index : id.split("/")) {
+                int i = Integer.parseInt(index);
+                if (node == null || i < 0 || i >= node.getChildCount()) {
+                    return null;
+                }
+                node = (EntryTreeNode) node.getChildAt(i);
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return new TreePath(model.getTreeModel().getPathToRoot(node));
+    }
+    
     /**
      * Selects the first visible node in the tree
      * Should be called after creating new file or loading a file
@@ -1173,12 +1683,11 @@ public class MainWindow extends JFrame implements IObserver {
                 navigationTree.setSelectionPath(path);
                 navigationTree.scrollPathToVisible(path);
                 
-                // Load content into editor
-                contentEditor.setText(firstChild.getContent());
-                contentEditor.setCaretPosition(0);
+                // Load content into editor, in case the node was already selected
+                showNode(firstChild);
             } else {
                 // No nodes exist - clear editor
-                contentEditor.setText("");
+                showNode(null);
             }
         });
     }
@@ -1190,15 +1699,7 @@ public class MainWindow extends JFrame implements IObserver {
      */
     private void saveFile(boolean showDialog) {
         // Save current editor content
-        TreePath currentPath = navigationTree.getLeadSelectionPath();
-        if (currentPath != null) {
-            try {
-                EntryTreeNode node = (EntryTreeNode) currentPath.getLastPathComponent();
-                model.setNodeContent(node, contentEditor.getText());
-            } catch (Exception e) {
-                // Ignore
-            }
-        }
+        commitEditorContent();
         
         // Check if password is set
         if (model.getPassword() == null || model.getPassword().isEmpty()) {
@@ -1249,27 +1750,109 @@ public class MainWindow extends JFrame implements IObserver {
     }
     
     /**
-     * Saves data to file
-     *
-     * @param fileName File path
+     * Saves the file in the background
+     * A snapshot of the tree is taken here, so editing can go on while
+     * the snapshot is encrypted and written
+     * 
+     * @param fileName File path to save to
      */
     private void saveToFile(String fileName) {
-        try {
-            model.saveFile(fileName);
-            saved = true;
-            dirty = false;
-            savedFileName = fileName;
-            updateTitle();
+        NodeSnapshot snapshot = model.createSnapshot();
+        String password = model.getPassword();
+        long modCount = model.getModCount();
+        int journalToken = model.beginJournalSave();
+        
+        boolean wasSaved = saved;
+        String previousFileName = savedFileName;
+        saved = true;
+        savedFileName = fileName;
+        
+        pendingSave = CompletableFuture.runAsync(() -> {
+            try {
+                model.saveSnapshot(snapshot, password, fileName);
+            } catch (Exception ex) {
+                throw new RuntimeException(ex.getMessage(), ex);
+            }
+        }, saveExecutor);
+        
+        pendingSave.whenComplete((result, error) -> SwingUtilities.invokeLater(() -> {
+            if (error == null) {
+                onSaveFinished(fileName, modCount, journalToken);
+            } else {
+                onSaveFailed(fileName, wasSaved, previousFileName, journalToken,
+                        error.getCause() != null ? error.getCause() : error);
+            }
+        }));
+    }
+    
+    /**
+     * Called on the EDT after a background save succeeded
+     * 
+     * @param fileName Saved file
+     * @param modCount Model modification counter the snapshot was taken at
+     * @param journalToken Token of the autosave journal for this save
+     */
+    private void onSaveFinished(String fileName, long modCount, int journalToken) {
+        // The vault now holds everything the journal had
+        model.journalSaved(journalToken, fileName);
+        
+        // Changes made while saving are still unsaved
+        if (fileName.equals(savedFileName)) {
+            savedModCount = modCount;
+            updateDirtyState();
+        }
+        
+        // Add to recent files
+        AppSettings.addRecentFile(new File(fileName));
+        updateRecentFilesMenu();
+    }
+    
+    /**
+     * Called on the EDT after a background save failed
+     * 
+     * @param fileName File that could not be written
+     * @param wasSaved Saved state before the save
+     * @param previousFileName File name before the save
+     * @param journalToken Token of the autosave journal for this save
+     * @param error Cause of the failure
+     */
+    private void onSaveFailed(String fileName, boolean wasSaved, String previousFileName,
+                              int journalToken, Throwable error) {
+        model.journalSaveFailed(journalToken);
+        
+        // Reported once, later saves and exits must not be blocked by it
+        if (pendingSave.isCompletedExceptionally()) {
+            pendingSave = CompletableFuture.completedFuture(null);
+        }
+        
+        if (fileName.equals(savedFileName)) {
+            saved = wasSaved;
+            savedFileName = previousFileName;
             
-            // Add to recent files
-            AppSettings.addRecentFile(new File(fileName));
-            updateRecentFilesMenu();
-
-        } catch (Exception ex) {
-            JOptionPane.showMessageDialog(this,
-                    Messages.getString("dialog.error.save", ex.getMessage()),
-                    Messages.getString("dialog.error.title"),
-                    JOptionPane.ERROR_MESSAGE);
+            // No model state matches the file anymore
+            savedModCount = -1;
+            updateDirtyState();
+        }
+        
+        JOptionPane.showMessageDialog(this,
+                Messages.getString("dialog.error.save", error.getMessage()),
+                Messages.getString("dialog.error.title"),
+                JOptionPane.ERROR_MESSAGE);
+    }
+    
+    /**
+     * Blocks until all background saves are written
+     * 
+     * @return true if the last save succeeded, false if it failed
+     */
+    private boolean waitForPendingSaves() {
+        try {
+            pendingSave.join();
+            return true;
+        } catch (Exception e) {
+            // Error is reported by onSaveFailed
+            pendingSave = CompletableFuture.completedFuture(null);
+            return false;
         }
     }
     
@@ -1305,22 +1888,33 @@ public class MainWindow extends JFrame implements IObserver {
             return;
         }
         
-        // Save currently selected path and expanded state
-        TreePath selectedPath = navigationTree.getSelectionPath();
+        // Structural changes can be undone
+        menuItemUndoNode.setEnabled(model.canUndo());
+        menuItemRedoNode.setEnabled(model.canRedo());
+        
+        // Save currently selected paths and expanded state
+        TreePath[] selectedPaths = navigationTree.getSelectionPaths();
+        TreePath leadPath = navigationTree.getLeadSelectionPath();
         java.util.List<TreePath> expandedPaths = getExpandedPaths();
         
-        DefaultTreeModel treeModel = (DefaultTreeModel) navigationTree.getModel();
-        treeModel.reload();
+        model.getTreeModel().reload();
         
         // Restore expanded state
         restoreExpandedPaths(expandedPaths);
         
         navigationTree.repaint();
         
-        // Try to restore selection
-        if (selectedPath != null) {
-            navigationTree.setSelectionPath(selectedPath);
-            navigationTree.scrollPathToVisible(selectedPath);
+        // Try to restore selection, the last path becomes the lead selection
+        if (selectedPaths != null && selectedPaths.length > 0) {
+            for (int i = 0; i < selectedPaths.length - 1; i++) {
+                if (selectedPaths[i].equals(leadPath)) {
+                    selectedPaths[i] = selectedPaths[selectedPaths.length - 1];
+                    selectedPaths[selectedPaths.length - 1] = leadPath;
+                    break;
+                }
+            }
+            navigationTree.setSelectionPaths(selectedPaths);
+            navigationTree.scrollPathToVisible(selectedPaths[selectedPaths.length - 1]);
         } else {
             // No selection - select first node
             selectFirstNode();
@@ -1427,8 +2021,17 @@ public class MainWindow extends JFrame implements IObserver {
         return new TreePath(newPath);
     }
     
+    /**
+     * Removes missing files from the recent files menu.
+     * The files are checked in the background, the menu is updated afterwards.
+     */
+    private void checkRecentFiles() {
+        AppSettings.checkRecentFiles().thenRun(() -> SwingUtilities.invokeLater(this::updateRecentFilesMenu));
+    }
+    
     /**
      * Updates the recent files menu with current list.
+     * Does not access the files, see checkRecentFiles()
      */
     private void updateRecentFilesMenu() {
         recentFilesMenu.removeAll();
@@ -1487,7 +2090,7 @@ public class MainWindow extends JFrame implements IObserver {
                 Messages.getString("dialog.error.title"),
                 JOptionPane.ERROR_MESSAGE
             );
-            updateRecentFilesMenu(); // Refresh menu (file will be removed by getRecentFiles())
+            checkRecentFiles(); // Refresh menu (file will be removed by the check)
             return;
         }
         
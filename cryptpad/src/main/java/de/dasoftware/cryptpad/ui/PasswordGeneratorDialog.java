@@ -1,16 +1,21 @@
 package de.dasoftware.cryptpad.ui;
 
 import de.dasoftware.cryptpad.i18n.Messages;
+import de.dasoftware.cryptpad.settings.AppSettings;
+import de.dasoftware.cryptpad.strength.BreachedPasswords;
 import de.dasoftware.cryptpad.util.IconUtil;
+import de.dasoftware.cryptpad.util.PassphraseGenerator;
 import de.dasoftware.cryptpad.util.PasswordGenerator;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.datatransfer.StringSelection;
 import java.awt.event.ActionEvent;
+import java.util.Arrays;
+import java.util.function.Supplier;
 
 /**
- * Dialog for generating random passwords with configurable options
+ * Dialog for generating random passwords or passphrases with configurable options
  */
 public class PasswordGeneratorDialog extends JDialog {
     
@@ -22,8 +27,23 @@ public class PasswordGeneratorDialog extends JDialog {
     private static final int MAX_PASSWORD_LENGTH = 128;
     private static final int MIN_PASSWORD_COUNT = 1;
     private static final int MAX_PASSWORD_COUNT = 100;
+    private static final int DEFAULT_WORD_COUNT = 6;
+    private static final int MIN_WORD_COUNT = 3;
+    private static final int MAX_WORD_COUNT = 20;
+    private static final String DEFAULT_SEPARATOR = "-";
+    // Tries to replace a breached password, short ones may nearly all be breached
+    private static final int MAX_BREACHED_RETRIES = 10;
+    
+    // Modes in the combo box
+    private static final int MODE_CHARACTERS = 0;
+    private static final int MODE_PASSPHRASE = 1;
     
     // Components
+    private JLabel modeLabel;
+    private JComboBox<String> modeComboBox;
+    private JLabel separatorLabel;
+    private JTextField separatorField;
+    private JLabel entropyLabel;
     private JLabel lengthLabel;
     private JLabel countLabel;
     private JTextField lengthField;
@@ -36,6 +56,7 @@ public class PasswordGeneratorDialog extends JDialog {
     private JScrollPane scrollPane;
     private JList<String> passwordsList;
     private DefaultListModel<String> listModel;
+    private StrengthMeter strengthMeter;
     
     // Popup menu
     private JPopupMenu popupMenu;
@@ -67,6 +88,13 @@ public class PasswordGeneratorDialog extends JDialog {
         setDefaultCloseOperation(DISPOSE_ON_CLOSE);
         setResizable(false);
         
+        // Mode selection
+        modeLabel = new JLabel(Messages.getString("passwordgen.mode"));
+        modeComboBox = new JComboBox<>(new String[] {
+            Messages.getString("passwordgen.mode.characters"),
+            Messages.getString("passwordgen.mode.passphrase")
+        });
+        
         // Labels
         lengthLabel = new JLabel(Messages.getString("passwordgen.length"));
         countLabel = new JLabel(Messages.getString("passwordgen.count"));
@@ -75,6 +103,12 @@ public class PasswordGeneratorDialog extends JDialog {
         lengthField = new JTextField(String.valueOf(DEFAULT_PASSWORD_LENGTH), 10);
         countField = new JTextField(String.valueOf(DEFAULT_PASSWORD_COUNT), 10);
         
+        // Passphrase separator, only shown in passphrase mode
+        separatorLabel = new JLabel(Messages.getString("passwordgen.separator"));
+        separatorField = new JTextField(DEFAULT_SEPARATOR, 10);
+        separatorLabel.setVisible(false);
+        separatorField.setVisible(false);
+        
         // Checkboxes
         specialCharsCheckBox = new JCheckBox(Messages.getString("passwordgen.specialchars"));
         numbersCheckBox = new JCheckBox(Messages.getString("passwordgen.numbers"));
@@ -83,10 +117,13 @@ public class PasswordGeneratorDialog extends JDialog {
         // Generate button
         generateButton = new JButton(Messages.getString("passwordgen.generate"));
         
+        // Strength of the generated passwords, set when generating
+        entropyLabel = new JLabel(" ");
+        
         // List with model
         listModel = new DefaultListModel<>();
         passwordsList = new JList<>(listModel);
-        passwordsList.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 11));
+        passwordsList.setFont(UIResources.getMonospaceFont(11));
         passwordsList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         
         scrollPane = new JScrollPane(passwordsList);
@@ -98,14 +135,16 @@ public class PasswordGeneratorDialog extends JDialog {
             Messages.getString("passwordgen.passwords")));
         passwordsPanel.add(scrollPane, BorderLayout.CENTER);
         
+        // Strength of the selected password
+        strengthMeter = new StrengthMeter();
+        
         // Popup menu
         popupMenu = new JPopupMenu();
         copyMenuItem = new JMenuItem(Messages.getString("passwordgen.copy"));
-        try {
-            ImageIcon icon = new ImageIcon(getClass().getResource("/icons/copy16.png"));
+        // Continue without icon if not found
+        ImageIcon icon = UIResources.getIcon(UIResources.getThemedIcon("copy16.png"));
+        if (icon != null) {
             copyMenuItem.setIcon(icon);
-        } catch (Exception e) {
-            // Icon not found, continue without icon
         }
         popupMenu.add(copyMenuItem);
         
@@ -124,25 +163,35 @@ public class PasswordGeneratorDialog extends JDialog {
         // Horizontal layout
         layout.setHorizontalGroup(
             layout.createParallelGroup(GroupLayout.Alignment.LEADING)
+                .addGroup(layout.createSequentialGroup()
+                    .addComponent(modeLabel)
+                    .addComponent(modeComboBox, GroupLayout.DEFAULT_SIZE, GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE))
                 .addGroup(layout.createSequentialGroup()
                     .addGroup(layout.createParallelGroup(GroupLayout.Alignment.LEADING)
                         .addComponent(lengthLabel)
-                        .addComponent(countLabel))
+                        .addComponent(countLabel)
+                        .addComponent(separatorLabel))
                     .addGroup(layout.createParallelGroup(GroupLayout.Alignment.LEADING, false)
                         .addComponent(lengthField, GroupLayout.DEFAULT_SIZE, 76, Short.MAX_VALUE)
-                        .addComponent(countField))
+                        .addComponent(countField)
+                        .addComponent(separatorField))
                     .addGap(18)
                     .addGroup(layout.createParallelGroup(GroupLayout.Alignment.LEADING)
                         .addComponent(specialCharsCheckBox)
                         .addComponent(numbersCheckBox)
                         .addComponent(capitalsCheckBox)))
                 .addComponent(generateButton, GroupLayout.DEFAULT_SIZE, GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
+                .addComponent(entropyLabel)
                 .addComponent(passwordsPanel, GroupLayout.DEFAULT_SIZE, GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
+                .addComponent(strengthMeter, GroupLayout.DEFAULT_SIZE, GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
         );
         
         // Vertical layout
         layout.setVerticalGroup(
             layout.createSequentialGroup()
+                .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
+                    .addComponent(modeLabel)
+                    .addComponent(modeComboBox))
                 .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
                     .addComponent(lengthLabel)
                     .addComponent(lengthField)
@@ -151,9 +200,14 @@ public class PasswordGeneratorDialog extends JDialog {
                     .addComponent(countLabel)
                     .addComponent(countField)
                     .addComponent(numbersCheckBox))
-                .addComponent(capitalsCheckBox)
+                .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
+                    .addComponent(separatorLabel)
+                    .addComponent(separatorField)
+                    .addComponent(capitalsCheckBox))
                 .addComponent(generateButton)
+                .addComponent(entropyLabel)
                 .addComponent(passwordsPanel, GroupLayout.PREFERRED_SIZE, GroupLayout.DEFAULT_SIZE, GroupLayout.PREFERRED_SIZE)
+                .addComponent(strengthMeter)
         );
     }
     
@@ -162,7 +216,9 @@ public class PasswordGeneratorDialog extends JDialog {
      */
     private void setupListeners() {
         generateButton.addActionListener(this::onGenerate);
+        modeComboBox.addActionListener(this::onModeChanged);
         copyMenuItem.addActionListener(this::onCopy);
+        passwordsList.addListSelectionListener(e -> updateStrength());
         
         // Double-click on password to copy
         passwordsList.addMouseListener(new java.awt.event.MouseAdapter() {
@@ -182,10 +238,40 @@ public class PasswordGeneratorDialog extends JDialog {
         );
     }
     
+    /**
+     * Handler for the mode selection
+     * Shows the options of the selected mode
+     */
+    private void onModeChanged(ActionEvent e) {
+        boolean passphrase = isPassphraseMode();
+        
+        lengthLabel.setText(Messages.getString(passphrase ? "passwordgen.words" : "passwordgen.length"));
+        lengthField.setText(String.valueOf(passphrase ? DEFAULT_WORD_COUNT : DEFAULT_PASSWORD_LENGTH));
+        capitalsCheckBox.setText(Messages.getString(
+                passphrase ? "passwordgen.capitalize" : "passwordgen.capitals"));
+        specialCharsCheckBox.setVisible(!passphrase);
+        numbersCheckBox.setVisible(!passphrase);
+        separatorLabel.setVisible(passphrase);
+        separatorField.setVisible(passphrase);
+        
+        entropyLabel.setText(" ");
+        listModel.clear();
+        pack();
+    }
+    
+    private boolean isPassphraseMode() {
+        return modeComboBox.getSelectedIndex() == MODE_PASSPHRASE;
+    }
+    
     /**
      * Handler for Generate button
      */
     private void onGenerate(ActionEvent e) {
+        if (isPassphraseMode()) {
+            generatePassphrases();
+            return;
+        }
+        
         try {
             // Parse and validate length
             int length = parseIntField(lengthField, 
@@ -224,11 +310,16 @@ public class PasswordGeneratorDialog extends JDialog {
             // Clear previous passwords
             listModel.clear();
             
-            // Generate passwords
-            for (int i = 0; i < count; i++) {
-                String password = generator.generatePassword(length);
-                listModel.addElement(password);
+            // Generate passwords, replacing breached ones
+            BreachedPasswords breachedPasswords = BreachedPasswords.get(AppSettings.getBreachFile());
+            for (char[] password : generator.generatePasswords(count, length)) {
+                if (breachedPasswords != null && breachedPasswords.contains(password)) {
+                    password = generateNotBreached(breachedPasswords,
+                            () -> generator.generatePasswords(1, length)[0]);
+                }
+                listModel.addElement(new String(password));
             }
+            showEntropy(generator.getEntropyBits(length));
             
             // Select first password
             if (listModel.getSize() > 0) {
@@ -245,6 +336,117 @@ public class PasswordGeneratorDialog extends JDialog {
         }
     }
     
+    /**
+     * Generates passphrases from the bundled wordlist
+     */
+    private void generatePassphrases() {
+        try {
+            // Parse and validate word count
+            int wordCount = parseIntField(lengthField, 
+                Messages.getString("passwordgen.words").replace(":", ""));
+            
+            if (wordCount < MIN_WORD_COUNT || wordCount > MAX_WORD_COUNT) {
+                JOptionPane.showMessageDialog(this,
+                        Messages.getString("passwordgen.error.invalidwords",
+                                MIN_WORD_COUNT, MAX_WORD_COUNT),
+                        Messages.getString("passwordgen.error.invalidinput"),
+                        JOptionPane.WARNING_MESSAGE);
+                lengthField.requestFocus();
+                return;
+            }
+            
+            // Parse and validate count
+            int count = parseIntField(countField, 
+                Messages.getString("passwordgen.count").replace("?", ""));
+            
+            if (count < MIN_PASSWORD_COUNT || count > MAX_PASSWORD_COUNT) {
+                JOptionPane.showMessageDialog(this,
+                        Messages.getString("passwordgen.error.invalidcount",
+                                MIN_PASSWORD_COUNT, MAX_PASSWORD_COUNT),
+                        Messages.getString("passwordgen.error.invalidinput"),
+                        JOptionPane.WARNING_MESSAGE);
+                countField.requestFocus();
+                return;
+            }
+            
+            // Validate separator, letters alone could be taken for part of a word
+            if (!PassphraseGenerator.isValidSeparator(separatorField.getText())) {
+                JOptionPane.showMessageDialog(this,
+                        Messages.getString("passwordgen.error.separator"),
+                        Messages.getString("passwordgen.error.invalidinput"),
+                        JOptionPane.WARNING_MESSAGE);
+                separatorField.requestFocus();
+                return;
+            }
+            
+            // Configure passphrase generator
+            PassphraseGenerator generator = new PassphraseGenerator();
+            generator.setSeparator(separatorField.getText());
+            generator.setCapitalize(capitalsCheckBox.isSelected());
+            
+            // Generate passphrases, replacing breached ones
+            BreachedPasswords breachedPasswords = BreachedPasswords.get(AppSettings.getBreachFile());
+            listModel.clear();
+            for (int i = 0; i < count; i++) {
+                listModel.addElement(new String(generateNotBreached(breachedPasswords,
+                        () -> generator.generatePassphrase(wordCount).toCharArray())));
+            }
+            showEntropy(generator.getEntropyBits(wordCount));
+            
+            // Select first passphrase
+            if (listModel.getSize() > 0) {
+                passwordsList.setSelectedIndex(0);
+            }
+            
+        } catch (NumberFormatException ex) {
+            // Error message already shown by parseIntField
+        } catch (Exception ex) {
+            JOptionPane.showMessageDialog(this,
+                    Messages.getString("passwordgen.error.generate", ex.getMessage()),
+                    Messages.getString("passwordgen.error.title"),
+                    JOptionPane.ERROR_MESSAGE);
+        }
+    }
+    
+    /**
+     * Generates a password that is not in the breached password file
+     * Gives up after a few tries, the strength meter then shows the password as breached
+     * 
+     * @param breachedPasswords Breached passwords, may be null
+     * @param generate Generates one password
+     * @return Generated password
+     */
+    private char[] generateNotBreached(BreachedPasswords breachedPasswords, Supplier<char[]> generate) {
+        char[] password = generate.get();
+        for (int i = 0; breachedPasswords != null && i < MAX_BREACHED_RETRIES
+                && breachedPasswords.contains(password); i++) {
+            password = generate.get();
+        }
+        return password;
+    }
+    
+    /**
+     * Shows the entropy of the generated passwords
+     * 
+     * @param bits Entropy in bits
+     */
+    private void showEntropy(double bits) {
+        entropyLabel.setText(Messages.getString("passwordgen.entropy", Math.round(bits)));
+    }
+    
+    /**
+     * Shows the strength of the selected password
+     */
+    private void updateStrength() {
+        String selectedPassword = passwordsList.getSelectedValue();
+        char[] password = selectedPassword != null ? selectedPassword.toCharArray() : new char[0];
+        try {
+            strengthMeter.setPassword(password);
+        } finally {
+            Arrays.fill(password, '0');
+        }
+    }
+    
     /**
      * Handler for Copy menu item
      */
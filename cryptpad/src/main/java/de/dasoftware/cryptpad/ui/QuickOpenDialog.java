@@ -0,0 +1,216 @@
+package de.dasoftware.cryptpad.ui;
+
+import de.dasoftware.cryptpad.i18n.Messages;
+import de.dasoftware.cryptpad.model.EntryTreeNode;
+import de.dasoftware.cryptpad.model.IDataModel;
+import de.dasoftware.cryptpad.search.TrigramIndex;
+import de.dasoftware.cryptpad.util.IconUtil;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.awt.*;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+
+/**
+ * Quick-open palette for jumping to a node by fuzzy matching its path
+ * Results are updated on every keystroke from the model's title index
+ */
+public class QuickOpenDialog extends JDialog {
+
+    private static final long serialVersionUID = 1L;
+    private static final int MAX_RESULTS = 50;
+
+    private final IDataModel model;
+    private EntryTreeNode selectedNode = null;
+
+    // Components
+    private JTextField queryField;
+    private JList<EntryTreeNode> resultList;
+    private DefaultListModel<EntryTreeNode> listModel;
+
+    /**
+     * Constructor
+     *
+     * @param parent Parent frame
+     * @param model Data model to search in
+     */
+    public QuickOpenDialog(Frame parent, IDataModel model) {
+        super(parent, true);
+        this.model = model;
+
+        initComponents();
+        setupLayout();
+        setupListeners();
+        IconUtil.setApplicationIcon(this);
+
+        pack();
+        setLocationRelativeTo(parent);
+    }
+
+    /**
+     * Initializes all components
+     */
+    private void initComponents() {
+        setTitle(Messages.getString("quickopen.title"));
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+
+        queryField = new JTextField(40);
+        queryField.setToolTipText(Messages.getString("quickopen.tooltip"));
+
+        listModel = new DefaultListModel<>();
+        resultList = new JList<>(listModel);
+        resultList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        resultList.setFocusable(false);
+        resultList.setVisibleRowCount(12);
+        resultList.setCellRenderer(new DefaultListCellRenderer() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value,
+                    int index, boolean isSelected, boolean cellHasFocus) {
+                EntryTreeNode node = (EntryTreeNode) value;
+                return super.getListCellRendererComponent(list,
+                        TrigramIndex.getPath(node), index, isSelected, cellHasFocus);
+            }
+        });
+    }
+
+    /**
+     * Sets up the layout
+     */
+    private void setupLayout() {
+        JPanel mainPanel = new JPanel(new BorderLayout(5, 5));
+        mainPanel.setBorder(BorderFactory.createEmptyBorder(8, 8, 8, 8));
+
+        JScrollPane scrollPane = new JScrollPane(resultList);
+        scrollPane.setPreferredSize(new Dimension(480, 260));
+
+        mainPanel.add(queryField, BorderLayout.NORTH);
+        mainPanel.add(scrollPane, BorderLayout.CENTER);
+
+        setContentPane(mainPanel);
+    }
+
+    /**
+     * Sets up event listeners
+     */
+    private void setupListeners() {
+        queryField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                updateResults();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                updateResults();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                updateResults();
+            }
+        });
+
+        // Arrow keys move the selection while typing, Enter opens
+        queryField.addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                switch (e.getKeyCode()) {
+                    case KeyEvent.VK_DOWN:
+                        moveSelection(1);
+                        e.consume();
+                        break;
+                    case KeyEvent.VK_UP:
+                        moveSelection(-1);
+                        e.consume();
+                        break;
+                    case KeyEvent.VK_ENTER:
+                        onOpen();
+                        e.consume();
+                        break;
+                    default:
+                        break;
+                }
+            }
+        });
+
+        resultList.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) {
+                    onOpen();
+                }
+            }
+        });
+
+        // Escape key closes dialog
+        getRootPane().registerKeyboardAction(
+            e -> onCancel(),
+            KeyStroke.getKeyStroke("ESCAPE"),
+            JComponent.WHEN_IN_FOCUSED_WINDOW
+        );
+    }
+
+    /**
+     * Runs the query and shows the matching nodes
+     */
+    private void updateResults() {
+        listModel.clear();
+
+        for (EntryTreeNode node : model.findNodes(queryField.getText(), MAX_RESULTS)) {
+            listModel.addElement(node);
+        }
+
+        if (!listModel.isEmpty()) {
+            resultList.setSelectedIndex(0);
+        }
+    }
+
+    /**
+     * Moves the list selection up or down
+     *
+     * @param delta Number of rows to move
+     */
+    private void moveSelection(int delta) {
+        int size = listModel.getSize();
+        if (size == 0) {
+            return;
+        }
+
+        int index = Math.max(0, Math.min(size - 1, resultList.getSelectedIndex() + delta));
+        resultList.setSelectedIndex(index);
+        resultList.ensureIndexIsVisible(index);
+    }
+
+    /**
+     * Accepts the selected result
+     */
+    private void onOpen() {
+        selectedNode = resultList.getSelectedValue();
+        if (selectedNode != null) {
+            setVisible(false);
+        }
+    }
+
+    /**
+     * Closes the dialog without a result
+     */
+    private void onCancel() {
+        selectedNode = null;
+        setVisible(false);
+    }
+
+    /**
+     * Gets the node chosen by the user
+     *
+     * @return Selected node, or null if cancelled
+     */
+    public EntryTreeNode getSelectedNode() {
+        return selectedNode;
+    }
+}
@@ -0,0 +1,313 @@
+package de.dasoftware.cryptpad.ui;
+
+import de.dasoftware.cryptpad.i18n.Messages;
+import de.dasoftware.cryptpad.model.IDataModel;
+import de.dasoftware.cryptpad.search.ContentSearch;
+import de.dasoftware.cryptpad.search.SearchHit;
+import de.dasoftware.cryptpad.search.TrigramIndex;
+import de.dasoftware.cryptpad.util.IconUtil;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.awt.*;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.text.MessageFormat;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Non-modal dialog for searching the content of all notes
+ * The search runs in the background, hits are shown while it is running
+ * and selecting a hit jumps to the matching line in the editor
+ */
+public class SearchDialog extends JDialog {
+
+    private static final long serialVersionUID = 1L;
+
+    // Delay after the last keystroke before a search is started
+    private static final int SEARCH_DELAY_MS = 200;
+
+    private final MainWindow mainWindow;
+    private final IDataModel model;
+
+    // Currently running search, replaced on every new query
+    private ContentSearch.SearchTask currentSearch = null;
+    private int searchGeneration = 0;
+    private int hitCount = 0;
+
+    // Components
+    private JTextField queryField;
+    private JCheckBox regexCheckBox;
+    private JCheckBox matchCaseCheckBox;
+    private JList<SearchHit> resultList;
+    private DefaultListModel<SearchHit> listModel;
+    private JLabel statusLabel;
+    private Timer searchTimer;
+
+    /**
+     * Constructor
+     *
+     * @param parent Main window showing the hits
+     * @param model Data model to search in
+     */
+    public SearchDialog(MainWindow parent, IDataModel model) {
+        super(parent, false);
+        this.mainWindow = parent;
+        this.model = model;
+
+        initComponents();
+        setupLayout();
+        setupListeners();
+        IconUtil.setApplicationIcon(this);
+
+        pack();
+        setLocationRelativeTo(parent);
+    }
+
+    /**
+     * Initializes all components
+     */
+    private void initComponents() {
+        setTitle(Messages.getString("search.title"));
+        setDefaultCloseOperation(HIDE_ON_CLOSE);
+
+        queryField = new JTextField(40);
+        regexCheckBox = new JCheckBox(Messages.getString("search.regex"));
+        matchCaseCheckBox = new JCheckBox(Messages.getString("search.matchcase"));
+        statusLabel = new JLabel(" ");
+
+        listModel = new DefaultListModel<>();
+        resultList = new JList<>(listModel);
+        resultList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        resultList.setVisibleRowCount(15);
+        resultList.setCellRenderer(new DefaultListCellRenderer() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value,
+                    int index, boolean isSelected, boolean cellHasFocus) {
+                SearchHit hit = (SearchHit) value;
+                String text = TrigramIndex.getPath(hit.getNode()) + ":"
+                        + hit.getLineNumber() + ": " + hit.getSnippet();
+                return super.getListCellRendererComponent(list, text, index,
+                        isSelected, cellHasFocus);
+            }
+        });
+
+        searchTimer = new Timer(SEARCH_DELAY_MS, e -> startSearch());
+        searchTimer.setRepeats(false);
+    }
+
+    /**
+     * Sets up the layout
+     */
+    private void setupLayout() {
+        JPanel mainPanel = new JPanel(new BorderLayout(5, 5));
+        mainPanel.setBorder(BorderFactory.createEmptyBorder(8, 8, 8, 8));
+
+        JPanel queryPanel = new JPanel(new BorderLayout(5, 5));
+        queryPanel.add(queryField, BorderLayout.CENTER);
+
+        JPanel optionsPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
+        optionsPanel.add(regexCheckBox);
+        optionsPanel.add(matchCaseCheckBox);
+        queryPanel.add(optionsPanel, BorderLayout.SOUTH);
+
+        JScrollPane scrollPane = new JScrollPane(resultList);
+        scrollPane.setPreferredSize(new Dimension(600, 320));
+
+        mainPanel.add(queryPanel, BorderLayout.NORTH);
+        mainPanel.add(scrollPane, BorderLayout.CENTER);
+        mainPanel.add(statusLabel, BorderLayout.SOUTH);
+
+        setContentPane(mainPanel);
+    }
+
+    /**
+     * Sets up event listeners
+     */
+    private void setupListeners() {
+        queryField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                searchTimer.restart();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                searchTimer.restart();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                searchTimer.restart();
+            }
+        });
+
+        regexCheckBox.addActionListener(e -> startSearch());
+        matchCaseCheckBox.addActionListener(e -> startSearch());
+
+        // Enter searches immediately, Down moves into the results
+        queryField.addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                if (e.getKeyCode() == KeyEvent.VK_ENTER) {
+                    searchTimer.stop();
+                    startSearch();
+                    e.consume();
+                } else if (e.getKeyCode() == KeyEvent.VK_DOWN && !listModel.isEmpty()) {
+                    resultList.requestFocusInWindow();
+                    if (resultList.getSelectedIndex() < 0) {
+                        resultList.setSelectedIndex(0);
+                    }
+                    e.consume();
+                }
+            }
+        });
+
+        resultList.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                showSelectedHit();
+            }
+        });
+
+        resultList.addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                if (e.getKeyCode() == KeyEvent.VK_ENTER) {
+                    showSelectedHit();
+                    e.consume();
+                }
+            }
+        });
+
+        // Stop a running search when the dialog is closed
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                cancelSearch();
+            }
+        });
+
+        // Escape key closes dialog
+        getRootPane().registerKeyboardAction(
+            e -> {
+                cancelSearch();
+                setVisible(false);
+            },
+            KeyStroke.getKeyStroke("ESCAPE"),
+            JComponent.WHEN_IN_FOCUSED_WINDOW
+        );
+    }
+
+    /**
+     * Shows the dialog and focuses the query field
+     * Starts a new search so the hits reflect the current notes
+     */
+    public void showDialog() {
+        setVisible(true);
+        queryField.requestFocusInWindow();
+        queryField.selectAll();
+        startSearch();
+    }
+
+    /**
+     * Cancels the running search and starts a new one for the current query
+     */
+    private void startSearch() {
+        cancelSearch();
+        listModel.clear();
+        hitCount = 0;
+
+        String query = queryField.getText();
+        if (query.isEmpty()) {
+            statusLabel.setText(" ");
+            return;
+        }
+
+        Pattern pattern;
+        try {
+            pattern = ContentSearch.compile(query, regexCheckBox.isSelected(),
+                    matchCaseCheckBox.isSelected());
+        } catch (PatternSyntaxException e) {
+            statusLabel.setText(Messages.getString("search.invalidregex"));
+            return;
+        }
+
+        // Editor text is not in the model until the node is left
+        mainWindow.commitEditorContent();
+
+        statusLabel.setText(Messages.getString("search.running"));
+        currentSearch = ContentSearch.start(
+                ContentSearch.collectNodes(model.getRootNode()), pattern,
+                new ResultListener(searchGeneration));
+    }
+
+    /**
+     * Cancels the running search, if any
+     */
+    private void cancelSearch() {
+        searchGeneration++;
+        if (currentSearch != null) {
+            currentSearch.cancel();
+            currentSearch = null;
+        }
+    }
+
+    /**
+     * Jumps to the selected hit in the main window
+     */
+    private void showSelectedHit() {
+        SearchHit hit = resultList.getSelectedValue();
+        if (hit != null) {
+            mainWindow.showSearchHit(hit);
+        }
+    }
+
+    /**
+     * Hands hits from the worker threads over to the EDT
+     * Hits of a search that has been replaced in the meantime are dropped
+     */
+    private class ResultListener implements ContentSearch.HitListener {
+
+        private final int generation;
+
+        ResultListener(int generation) {
+            this.generation = generation;
+        }
+
+        @Override
+        public void hitsFound(List<SearchHit> hits) {
+            SwingUtilities.invokeLater(() -> {
+                if (generation != searchGeneration) {
+                    return;
+                }
+                for (SearchHit hit : hits) {
+                    listModel.addElement(hit);
+                }
+                hitCount += hits.size();
+                statusLabel.setText(MessageFormat.format(
+                        Messages.getString("search.running.hits"), hitCount));
+            });
+        }
+
+        @Override
+        public void searchFinished(int totalHits, int failedNodes) {
+            SwingUtilities.invokeLater(() -> {
+                if (generation == searchGeneration) {
+                    String key = failedNodes > 0 ? "search.finished.failed" : "search.finished";
+                    statusLabel.setText(MessageFormat.format(
+                            Messages.getString(key), totalHits, failedNodes));
+                }
+            });
+        }
+    }
+}
@@ -31,10 +31,10 @@ public class SplashScreen extends JWindow {
         imageLabel = new JLabel();
         Font baseFont = UIManager.getFont("Label.font");
         
-        try {
-            ImageIcon splashIcon = new ImageIcon(getClass().getResource("/icons/splash.png"));
+        ImageIcon splashIcon = UIResources.getIcon("/icons/splash.png");
+        if (splashIcon != null) {
             imageLabel.setIcon(splashIcon);
-        } catch (Exception e) {
+        } else {
             // If image not found, show text instead
             imageLabel.setText(Constants.APP_NAME);
             imageLabel.setFont(baseFont.deriveFont(Font.BOLD, baseFont.getSize2D() + 28f));
@@ -0,0 +1,120 @@
+package de.dasoftware.cryptpad.ui;
+
+import de.dasoftware.cryptpad.i18n.Messages;
+import de.dasoftware.cryptpad.settings.AppSettings;
+import de.dasoftware.cryptpad.strength.BreachedPasswords;
+import de.dasoftware.cryptpad.strength.Strength;
+import de.dasoftware.cryptpad.strength.StrengthEstimator;
+
+import javax.swing.*;
+import java.awt.*;
+
+/**
+ * Live password strength meter
+ * Shows a colored bar with the score and the estimated time to crack,
+ * or a warning if the password appears in a known data breach
+ */
+public class StrengthMeter extends JPanel {
+
+    private static final long serialVersionUID = 1L;
+
+    // Bar colors from very weak to very strong
+    private static final Color[] SCORE_COLORS = {
+        new Color(0xD3, 0x2F, 0x2F),
+        new Color(0xF5, 0x7C, 0x00),
+        new Color(0xFB, 0xC0, 0x2D),
+        new Color(0x7C, 0xB3, 0x42),
+        new Color(0x38, 0x8E, 0x3C)
+    };
+
+    // Time units in seconds, largest first, with their message keys
+    private static final double[] UNIT_SECONDS = {
+        100 * 365.25 * 86400, 365.25 * 86400, 30.44 * 86400, 86400, 3600, 60, 1
+    };
+    private static final String[] UNIT_KEYS = {
+        "strength.time.centuries", "strength.time.years", "strength.time.months",
+        "strength.time.days", "strength.time.hours", "strength.time.minutes", "strength.time.seconds"
+    };
+
+    private final transient StrengthEstimator estimator = new StrengthEstimator();
+    private final transient BreachedPasswords breachedPasswords;
+    private final JProgressBar bar;
+    private final JLabel label;
+
+    /**
+     * Constructor
+     */
+    public StrengthMeter() {
+        super(new BorderLayout(0, 2));
+        StrengthEstimator.preload();
+        breachedPasswords = BreachedPasswords.get(AppSettings.getBreachFile());
+
+        bar = new JProgressBar(0, SCORE_COLORS.length);
+        bar.setPreferredSize(new Dimension(bar.getPreferredSize().width, 8));
+        bar.setBorderPainted(false);
+
+        label = new JLabel(" ");
+        label.setFont(label.getFont().deriveFont(Font.PLAIN, label.getFont().getSize2D() - 1));
+
+        add(bar, BorderLayout.NORTH);
+        add(label, BorderLayout.CENTER);
+    }
+
+    /**
+     * Updates the meter for a password
+     * The array is not kept, the caller should clear it afterwards
+     *
+     * @param password Password
+     */
+    public void setPassword(char[] password) {
+        if (password.length == 0) {
+            estimator.update(password);
+            bar.setValue(0);
+            label.setText(" ");
+            return;
+        }
+
+        if (breachedPasswords != null && breachedPasswords.contains(password)) {
+            estimator.update(password);
+            bar.setValue(1);
+            bar.setForeground(SCORE_COLORS[0]);
+            label.setText(Messages.getString("strength.breached"));
+            return;
+        }
+
+        Strength strength = estimator.update(password);
+        int score = strength.getScore();
+        bar.setValue(score + 1);
+        bar.setForeground(SCORE_COLORS[score]);
+        label.setText(Messages.getString("strength.label",
+                Messages.getString("strength.score." + score),
+                formatTime(strength.getCrackTimeSeconds())));
+    }
+
+    /**
+     * Resets the meter and removes the last password from memory
+     */
+    public void clear() {
+        estimator.clear();
+        bar.setValue(0);
+        label.setText(" ");
+    }
+
+    /**
+     * Formats a duration with its largest unit, like "3 days"
+     */
+    private static String formatTime(double seconds) {
+        if (seconds < 1) {
+            return Messages.getString("strength.time.instant");
+        }
+        if (seconds >= 100 * UNIT_SECONDS[0]) {
+            return Messages.getString("strength.time.forever");
+        }
+        for (int i = 0; i < UNIT_SECONDS.length; i++) {
+            if (seconds >= UNIT_SECONDS[i]) {
+                return Messages.getString(UNIT_KEYS[i], Math.round(seconds / UNIT_SECONDS[i]));
+            }
+        }
+        return Messages.getString("strength.time.instant");
+    }
+}
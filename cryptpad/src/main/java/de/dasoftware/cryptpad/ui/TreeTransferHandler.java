@@ -4,17 +4,20 @@ import de.dasoftware.cryptpad.model.EntryTreeNode;
 import de.dasoftware.cryptpad.model.IDataModel;
 
 import javax.swing.*;
-import javax.swing.tree.DefaultTreeModel;
 import javax.swing.tree.TreePath;
 
 import java.awt.Window;
 import java.awt.datatransfer.DataFlavor;
 import java.awt.datatransfer.Transferable;
 import java.awt.datatransfer.UnsupportedFlavorException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
 
 /**
  * TransferHandler for drag and drop operations in the tree
- * Allows moving nodes within the tree structure
+ * Allows moving one or several selected nodes within the tree structure
  * 
  * @author DA-Software
  * @version 1.0.0
@@ -29,8 +32,8 @@ public class TreeTransferHandler extends TransferHandler {
     private final DataFlavor nodesFlavor;
     private final DataFlavor[] flavors = new DataFlavor[1];
     
-    // The node being dragged
-    private EntryTreeNode draggedNode = null;
+    // The nodes being dragged
+    private List<EntryTreeNode> draggedNodes = null;
     
     /**
      * Constructor
@@ -44,7 +47,7 @@ public class TreeTransferHandler extends TransferHandler {
         
         try {
             String mimeType = DataFlavor.javaJVMLocalObjectMimeType +
-                             ";class=de.dasoftware.cryptpad.model.EntryTreeNode";
+                             ";class=\"" + EntryTreeNode[].class.getName() + "\"";
             nodesFlavor = new DataFlavor(mimeType);
             flavors[0] = nodesFlavor;
         } catch (ClassNotFoundException e) {
@@ -74,18 +77,16 @@ public class TreeTransferHandler extends TransferHandler {
         
         EntryTreeNode target = (EntryTreeNode) dest.getLastPathComponent();
         
-        // Don't allow dropping on itself or its children
-        if (draggedNode != null) {
-            if (target == draggedNode) {
-                return false;
-            }
-            
-            if (isNodeDescendant(draggedNode, target)) {
-                return false;
+        // Don't allow dropping on a dragged node or its children
+        if (draggedNodes != null) {
+            for (EntryTreeNode draggedNode : draggedNodes) {
+                if (target.isNodeAncestor(draggedNode)) {
+                    return false;
+                }
             }
             
             // Don't allow dropping on root
-            if (target == model.getRootNode()) {
+            if (target.equals(model.getRootNode())) {
                 return false;
             }
         }
@@ -96,15 +97,19 @@ public class TreeTransferHandler extends TransferHandler {
     @Override
     protected Transferable createTransferable(JComponent c) {
         JTree tree = (JTree) c;
-        TreePath path = tree.getSelectionPath();
+        TreePath[] paths = tree.getSelectionPaths();
         
-        if (path != null) {
-            draggedNode = (EntryTreeNode) path.getLastPathComponent();
+        if (paths != null && paths.length > 0) {
+            // Keep the order of the tree, not the order of selection
+            TreePath[] sorted = paths.clone();
+            Arrays.sort(sorted, Comparator.comparingInt(tree::getRowForPath));
             
-            // Don't allow dragging root's direct children (top-level nodes can still be moved)
-            // Actually, let's allow it - but prevent dropping on root
+            draggedNodes = new ArrayList<>(sorted.length);
+            for (TreePath path : sorted) {
+                draggedNodes.add((EntryTreeNode) path.getLastPathComponent());
+            }
             
-            return new NodeTransferable(draggedNode);
+            return new NodeTransferable(draggedNodes.toArray(new EntryTreeNode[0]));
         }
         
         return null;
@@ -127,26 +132,27 @@ public class TreeTransferHandler extends TransferHandler {
         EntryTreeNode parent = (EntryTreeNode) dest.getLastPathComponent();
         int index = dl.getChildIndex();
         
-        // Get the node being transferred
+        // Get the nodes being transferred
         try {
-            EntryTreeNode transferNode = (EntryTreeNode) support.getTransferable()
+            EntryTreeNode[] transferNodes = (EntryTreeNode[]) support.getTransferable()
                 .getTransferData(nodesFlavor);
             
             // Perform the move in the model
-            moveNode(transferNode, parent, index);
+            moveNodes(Arrays.asList(transferNodes), parent, index);
             
-            // Mark as dirty - get MainWindow reference
+            // Update the dirty indicator - get MainWindow reference
             Window window = SwingUtilities.getWindowAncestor(tree);
             if (window instanceof MainWindow) {
-                ((MainWindow) window).markDirty();  // You need to make this public!
+                ((MainWindow) window).updateDirtyState();  // You need to make this public!
             }
             
-            // Select the moved node
-            TreePath newPath = new TreePath(
-                ((DefaultTreeModel) tree.getModel()).getPathToRoot(transferNode)
-            );
-            tree.setSelectionPath(newPath);
-            tree.scrollPathToVisible(newPath);
+            // Select the moved nodes
+            TreePath[] newPaths = new TreePath[transferNodes.length];
+            for (int i = 0; i < transferNodes.length; i++) {
+                newPaths[i] = new TreePath(model.getTreeModel().getPathToRoot(transferNodes[i]));
+            }
+            tree.setSelectionPaths(newPaths);
+            tree.scrollPathToVisible(newPaths[0]);
             
             return true;
             
@@ -159,71 +165,34 @@ public class TreeTransferHandler extends TransferHandler {
     @Override
     protected void exportDone(JComponent source, Transferable data, int action) {
         // Clean up
-        draggedNode = null;
+        draggedNodes = null;
     }
     
     /**
-     * Moves a node to a new parent at the specified index
+     * Moves nodes to a new parent at the specified index
+     * The move is done by the model as one step so it can be undone
      * 
-     * @param node Node to move
+     * @param nodes Nodes to move, in tree order
      * @param newParent New parent node
      * @param index Index in parent's children, or -1 to append
      */
-    private void moveNode(EntryTreeNode node, EntryTreeNode newParent, int index) {
-        // Remove from old parent
-        EntryTreeNode oldParent = (EntryTreeNode) node.getParent();
-        oldParent.remove(node);
-        
-        // Add to new parent
-        if (index == -1) {
-            // Drop on node (append as last child)
-            newParent.add(node);
-        } else {
-            // Drop between nodes
-            newParent.insert(node, index);
-        }
-        
-        // Notify model
-        DefaultTreeModel treeModel = (DefaultTreeModel) tree.getModel();
-        treeModel.nodeStructureChanged(oldParent);
-        treeModel.nodeStructureChanged(newParent);
+    private void moveNodes(List<EntryTreeNode> nodes, EntryTreeNode newParent, int index) {
+        model.moveNodes(nodes, newParent, index);
         
         // Expand the new parent
-        TreePath parentPath = new TreePath(treeModel.getPathToRoot(newParent));
+        TreePath parentPath = new TreePath(model.getTreeModel().getPathToRoot(newParent));
         tree.expandPath(parentPath);
     }
     
-    /**
-     * Checks if a node is a descendant of another node
-     * 
-     * @param ancestor Potential ancestor
-     * @param descendant Potential descendant
-     * @return true if descendant is a child/grandchild/... of ancestor
-     */
-    private boolean isNodeDescendant(EntryTreeNode ancestor, EntryTreeNode descendant) {
-        if (ancestor == descendant) {
-            return true;
-        }
-        
-        for (int i = 0; i < ancestor.getChildCount(); i++) {
-            EntryTreeNode child = (EntryTreeNode) ancestor.getChildAt(i);
-            if (isNodeDescendant(child, descendant)) {
-                return true;
-            }
-        }
-        
-        return false;
-    }
-    
     /**
      * Inner class for making nodes transferable
      */
     private class NodeTransferable implements Transferable {
         
-        private final EntryTreeNode node;
+        private final EntryTreeNode[] nodes;
         
-        public NodeTransferable(EntryTreeNode node) {
-            this.node = node;
+        public NodeTransferable(EntryTreeNode[] nodes) {
+            this.nodes = nodes;
         }
         
         @Override
@@ -242,7 +211,7 @@ public class TreeTransferHandler extends TransferHandler {
             if (!isDataFlavorSupported(flavor)) {
                 throw new UnsupportedFlavorException(flavor);
             }
-            return node;
+            return nodes;
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,235 @@
+package de.dasoftware.cryptpad.ui;
+
+import de.dasoftware.cryptpad.settings.AppSettings;
+
+import javax.imageio.ImageIO;
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BaseMultiResolutionImage;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.fife.ui.rsyntaxtextarea.Theme;
+
+/**
+ * Shared cache of UI resources that are expensive to create
+ *
+ * Icons, the monospace font and the editor themes are loaded once and then
+ * shared by the main window and all dialogs. Icons are decoded on first use,
+ * or in the background by preload() while the splash screen is shown.
+ * A variant named like "edit@2x.png" next to an icon is used on HiDPI screens.
+ * All methods are thread safe.
+ */
+public final class UIResources {
+
+    // Preferred editor fonts, first available one wins
+    private static final String[] PREFERRED_MONOSPACE_FONTS = {
+        "Consolas",        // Windows
+        "Monaco",          // macOS
+        "Ubuntu Mono",     // Linux
+        "DejaVu Sans Mono",// Linux
+        "Courier New",     // Fallback - everywhere
+        "Monospaced"       // Java logical font
+    };
+
+    // Application icon sizes, for title bars and the task bar
+    private static final String[] APPLICATION_ICONS = {
+        "app-icon-16.png", "app-icon-32.png", "app-icon-48.png", "app-icon-64.png"
+    };
+
+    // Icons shown as soon as the main window opens
+    private static final String[] MAIN_WINDOW_ICONS = {
+        "tb_new.png", "tb_open.png", "tb_save.png", "mainnode.png", "sibling.png",
+        "childnode.png", "edit.png", "delete16.png", "cut16.png", "copy16.png",
+        "paste16.png", "Info.png", "exit.png", "leaf.png", "folder_closed16.png",
+        "folder_open16.png"
+    };
+
+    private static final Map<String, ImageIcon> icons = new ConcurrentHashMap<>();
+    private static final Map<String, CompletableFuture<Theme>> themes = new ConcurrentHashMap<>();
+    private static final Map<Integer, Font> monospaceFonts = new ConcurrentHashMap<>();
+    private static CompletableFuture<String> monospaceFamily;
+
+    private UIResources() {
+    }
+
+    /**
+     * Starts loading the resources needed by the main window in the background
+     * Must be called after the look and feel has been chosen in the settings
+     *
+     * @return Future completing when all resources are loaded
+     */
+    public static CompletableFuture<Void> preload() {
+        return CompletableFuture.allOf(
+                monospaceFamily(),
+                editorTheme(),
+                CompletableFuture.runAsync(UIResources::loadMainWindowIcons));
+    }
+
+    /**
+     * Gets the icon path for the current theme
+     *
+     * @param iconName Icon filename (e.g., "mainnode.png")
+     * @return Full icon path with theme folder
+     */
+    public static String getThemedIcon(String iconName) {
+        String themeFolder = AppSettings.isDarkTheme() ? "dark" : "light";
+        return "/icons/" + themeFolder + "/" + iconName;
+    }
+
+    /**
+     * Gets an icon, decoding it on first use
+     *
+     * @param path Resource path (e.g., "/icons/splash.png")
+     * @return Shared icon, or null if the resource does not exist
+     */
+    public static ImageIcon getIcon(String path) {
+        ImageIcon icon = icons.get(path);
+        if (icon == null) {
+            icon = loadIcon(path);
+            if (icon != null) {
+                ImageIcon cached = icons.putIfAbsent(path, icon);
+                if (cached != null) {
+                    icon = cached;
+                }
+            }
+        }
+        return icon;
+    }
+
+    /**
+     * Gets the application icon in all sizes of the current theme
+     *
+     * @return Icon images, empty if none could be loaded
+     */
+    public static List<Image> getApplicationIcons() {
+        List<Image> images = new ArrayList<>();
+        for (String iconName : APPLICATION_ICONS) {
+            ImageIcon icon = getIcon(getThemedIcon(iconName));
+            if (icon != null) {
+                images.add(icon.getImage());
+            }
+        }
+        return images;
+    }
+
+    /**
+     * Gets the editor font, waiting for the background lookup if needed
+     *
+     * @param size Font size
+     * @return Monospace font
+     */
+    public static Font getMonospaceFont(int size) {
+        return monospaceFonts.computeIfAbsent(size,
+                fontSize -> new Font(monospaceFamily().join(), Font.PLAIN, fontSize));
+    }
+
+    /**
+     * Gets the syntax highlighting theme matching the look and feel
+     *
+     * @return Parsed theme, or null if it could not be loaded
+     */
+    public static Theme getEditorTheme() {
+        return editorTheme().join();
+    }
+
+    /**
+     * Decodes an icon and its HiDPI variant
+     */
+    private static ImageIcon loadIcon(String path) {
+        URL url = UIResources.class.getResource(path);
+        if (url == null) {
+            return null;
+        }
+
+        try {
+            BufferedImage image = ImageIO.read(url);
+            if (image == null) {
+                System.err.println("Unsupported icon format: " + path);
+                return null;
+            }
+
+            URL hiDpiUrl = UIResources.class.getResource(hiDpiPath(path));
+            BufferedImage hiDpiImage = hiDpiUrl != null ? ImageIO.read(hiDpiUrl) : null;
+            if (hiDpiImage != null) {
+                return new ImageIcon(new BaseMultiResolutionImage(image, hiDpiImage));
+            }
+            return new ImageIcon(image);
+        } catch (IOException e) {
+            System.err.println("Could not load icon " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Gets the path of the double resolution variant of an icon
+     */
+    private static String hiDpiPath(String path) {
+        int dot = path.lastIndexOf('.');
+        return dot < 0 ? path + "@2x" : path.substring(0, dot) + "@2x" + path.substring(dot);
+    }
+
+    private static synchronized CompletableFuture<String> monospaceFamily() {
+        if (monospaceFamily == null) {
+            monospaceFamily = CompletableFuture.supplyAsync(UIResources::findMonospaceFamily);
+        }
+        return monospaceFamily;
+    }
+
+    private static CompletableFuture<Theme> editorTheme() {
+        String themePath;
+        if (AppSettings.isDarkTheme()) {
+            themePath = "/org/fife/ui/rsyntaxtextarea/themes/monokai.xml";
+        } else {
+            themePath = "/org/fife/ui/rsyntaxtextarea/themes/default.xml";
+        }
+        return themes.computeIfAbsent(themePath,
+                path -> CompletableFuture.supplyAsync(() -> loadTheme(path)));
+    }
+
+    /**
+     * Finds the first installed preferred monospace font
+     * Listing the installed fonts can take a few hundred milliseconds
+     */
+    private static String findMonospaceFamily() {
+        GraphicsEnvironment ge = GraphicsEnvironment.getLocalGraphicsEnvironment();
+        String[] availableFonts = ge.getAvailableFontFamilyNames();
+
+        for (String fontName : PREFERRED_MONOSPACE_FONTS) {
+            for (String available : availableFonts) {
+                if (available.equals(fontName)) {
+                    return fontName;
+                }
+            }
+        }
+
+        // Ultimate fallback
+        return Font.MONOSPACED;
+    }
+
+    private static Theme loadTheme(String themePath) {
+        try (InputStream in = UIResources.class.getResourceAsStream(themePath)) {
+            return Theme.load(in);
+        } catch (Exception e) {
+            System.err.println("Could not load RSyntaxTextArea theme: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Decodes the icons of the main window into the cache
+     */
+    private static void loadMainWindowIcons() {
+        getApplicationIcons();
+        for (String iconName : MAIN_WINDOW_ICONS) {
+            getIcon(getThemedIcon(iconName));
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package de.dasoftware.cryptpad.util;
 
-import javax.swing.*;
+import de.dasoftware.cryptpad.ui.UIResources;
+
 import java.awt.*;
+import java.util.List;
 
 /**
  * Utility class for icon handling
@@ -10,21 +12,15 @@ public class IconUtil {
     
     /**
      * Sets the application icon for any window
+     * The icon images are shared by all windows
      * 
      * @param window Window to set icon for
      */
     public static void setApplicationIcon(Window window) {
-        try {
-            ImageIcon icon = new ImageIcon(
-                IconUtil.class.getResource("/icons/app-icon.png"));
-            
-            if (window instanceof Frame) {
-                ((Frame) window).setIconImage(icon.getImage());
-            } else if (window instanceof Dialog) {
-                ((Dialog) window).setIconImage(icon.getImage());
-            }
-        } catch (Exception e) {
-            // Icon not found, ignore
+        List<Image> icons = UIResources.getApplicationIcons();
+        if (!icons.isEmpty()) {
+            window.setIconImages(icons);
         }
+        // Otherwise icon not found, ignore
     }
 }
\ No newline at end of file
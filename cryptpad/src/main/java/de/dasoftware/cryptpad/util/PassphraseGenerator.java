@@ -0,0 +1,189 @@
+package de.dasoftware.cryptpad.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * PassphraseGenerator
+ *
+ * Generates Diceware style passphrases from random words of a bundled wordlist
+ *
+ * The wordlist is a gzip compressed resource with one lowercase ASCII word per line.
+ * It is loaded on first use and kept as a single byte array with word offsets,
+ * so it costs nothing at startup and little memory afterwards.
+ * No word of the list is the beginning of another, so there are no pairs
+ * like sign and signs, and a passphrase can only be split into words one way.
+ * The separator must contain a character that is not a letter, otherwise
+ * it could be taken for part of a word and the entropy would be too high.
+ * An instance is not thread safe.
+ *
+ * @author DA-Software
+ * @version 1.0.0
+ */
+public class PassphraseGenerator {
+
+    private static final String WORDLIST_RESOURCE = "/wordlist/passphrase-words.txt.gz";
+
+    // Configuration
+    private String separator = "-";
+    private boolean capitalize = false;
+
+    // Use SecureRandom for cryptographically strong random numbers
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * Generates a random passphrase
+     *
+     * @param wordCount Number of words
+     * @return Generated passphrase
+     * @throws IllegalStateException If the wordlist could not be loaded
+     */
+    public String generatePassphrase(int wordCount) {
+        if (wordCount <= 0) {
+            throw new IllegalArgumentException("Word count must be greater than 0");
+        }
+        Wordlist words = Wordlist.INSTANCE;
+        if (words.size() == 0) {
+            throw new IllegalStateException("Wordlist not available");
+        }
+
+        StringBuilder passphrase = new StringBuilder();
+        for (int i = 0; i < wordCount; i++) {
+            if (i > 0) {
+                passphrase.append(separator);
+            }
+            int start = passphrase.length();
+            words.appendWord(random.nextInt(words.size()), passphrase);
+            if (capitalize) {
+                passphrase.setCharAt(start, Character.toUpperCase(passphrase.charAt(start)));
+            }
+        }
+        return passphrase.toString();
+    }
+
+    /**
+     * Gets the entropy of a passphrase
+     * Separator and capitalization are fixed, so only the words count
+     *
+     * @param wordCount Number of words
+     * @return Entropy in bits
+     */
+    public double getEntropyBits(int wordCount) {
+        int size = Wordlist.INSTANCE.size();
+        return size > 1 ? wordCount * Math.log(size) / Math.log(2) : 0;
+    }
+
+    /**
+     * Gets the number of words in the wordlist
+     *
+     * @return Number of words, 0 if the wordlist could not be loaded
+     */
+    public static int getWordlistSize() {
+        return Wordlist.INSTANCE.size();
+    }
+
+    // Getters and Setters
+
+    public String getSeparator() {
+        return separator;
+    }
+
+    /**
+     * Sets the separator between the words
+     *
+     * @param separator Separator, see isValidSeparator
+     * @throws IllegalArgumentException If the separator is not valid
+     */
+    public void setSeparator(String separator) {
+        if (!isValidSeparator(separator)) {
+            throw new IllegalArgumentException("Separator must contain a character that is not a letter");
+        }
+        this.separator = separator;
+    }
+
+    /**
+     * Checks if a separator keeps the words of a passphrase apart
+     *
+     * @param separator Separator
+     * @return true if the separator contains at least one character that is not a letter
+     */
+    public static boolean isValidSeparator(String separator) {
+        return separator != null && separator.chars().anyMatch(c -> !Character.isLetter(c));
+    }
+
+    public boolean isCapitalize() {
+        return capitalize;
+    }
+
+    public void setCapitalize(boolean capitalize) {
+        this.capitalize = capitalize;
+    }
+
+    /**
+     * Packed wordlist, loaded when the class is first used
+     */
+    private static final class Wordlist {
+
+        static final Wordlist INSTANCE = load();
+
+        // All words in one array, word i is at offsets[i] until offsets[i + 1]
+        private final byte[] data;
+        private final int[] offsets;
+
+        private Wordlist(byte[] data, int[] offsets) {
+            this.data = data;
+            this.offsets = offsets;
+        }
+
+        int size() {
+            return offsets.length - 1;
+        }
+
+        void appendWord(int index, StringBuilder target) {
+            for (int i = offsets[index]; i < offsets[index + 1]; i++) {
+                target.append((char) data[i]);
+            }
+        }
+
+        private static Wordlist load() {
+            byte[] text;
+            try (InputStream input = PassphraseGenerator.class.getResourceAsStream(WORDLIST_RESOURCE)) {
+                if (input == null) {
+                    throw new IOException("Resource not found: " + WORDLIST_RESOURCE);
+                }
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                try (GZIPInputStream gzip = new GZIPInputStream(input)) {
+                    gzip.transferTo(output);
+                }
+                text = output.toByteArray();
+            } catch (IOException e) {
+                System.err.println("Could not load passphrase wordlist: " + e.getMessage());
+                return new Wordlist(new byte[0], new int[] {0});
+            }
+
+            // Drop the line breaks, keep only the offsets
+            byte[] data = new byte[text.length];
+            int[] offsets = new int[text.length + 1];
+            int length = 0;
+            int count = 0;
+            for (byte b : text) {
+                if (b == '\n' || b == '\r') {
+                    if (length > offsets[count]) {
+                        offsets[++count] = length;
+                    }
+                } else {
+                    data[length++] = b;
+                }
+            }
+            if (length > offsets[count]) {
+                offsets[++count] = length;
+            }
+
+            return new Wordlist(Arrays.copyOf(data, length), Arrays.copyOf(offsets, count + 1));
+        }
+    }
+}
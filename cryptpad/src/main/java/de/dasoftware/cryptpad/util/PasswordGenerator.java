@@ -1,12 +1,20 @@
 package de.dasoftware.cryptpad.util;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.stream.IntStream;
 
 /**
  * PasswordGenerator
  * 
  * Generates random passwords with configurable character sets
  * 
+ * Random bytes are drawn from SecureRandom in blocks and mapped to the
+ * character pool by rejection sampling, so every character is equally likely.
+ * An instance is not thread safe, use copy() to get one per thread.
+ * 
  * @author DA-Software
  * @version 1.0.0
  */
@@ -18,6 +26,12 @@ public class PasswordGenerator {
     private static final String NUMBER_CHARS = "0123456789";
     private static final String SPECIAL_CHARS = "!\"§$%&/()[]{}+*#'-.,><|";
     
+    // Random bytes drawn from SecureRandom at once
+    private static final int RANDOM_BUFFER_SIZE = 512;
+    
+    // Passwords generated by one task of the parallel generation
+    private static final int PARALLEL_CHUNK_SIZE = 256;
+    
     // Configuration flags
     private boolean specialCharsAllowed = false;
     private boolean numbersAllowed = false;
@@ -25,6 +39,24 @@ public class PasswordGenerator {
     
     // Use SecureRandom for cryptographically strong random numbers
     private final SecureRandom random = new SecureRandom();
+    private final byte[] randomBytes = new byte[RANDOM_BUFFER_SIZE];
+    private int randomIndex = RANDOM_BUFFER_SIZE;
+    
+    // Character pool of the current settings, built on first use
+    private char[] characterPool;
+    
+    /**
+     * Creates a generator with the same settings and its own random source
+     * 
+     * @return New generator
+     */
+    public PasswordGenerator copy() {
+        PasswordGenerator generator = new PasswordGenerator();
+        generator.setSpecialCharsAllowed(specialCharsAllowed);
+        generator.setNumbersAllowed(numbersAllowed);
+        generator.setCapitalsAllowed(capitalsAllowed);
+        return generator;
+    }
     
     /**
      * Generates a random password with the specified length
@@ -33,27 +65,146 @@ public class PasswordGenerator {
      * @return Generated password
      */
     public String generatePassword(int length) {
-        if (length <= 0) {
-            throw new IllegalArgumentException("Password length must be greater than 0");
-        }
+        checkLength(length);
         
-        // Build the character pool based on settings
-        String characterPool = buildCharacterPool();
+        char[] password = new char[length];
+        fill(password, getCharacterPool());
+        return new String(password);
+    }
+    
+    /**
+     * Generates several random passwords
+     * The passwords are returned as char arrays, so they can be cleared after use
+     * 
+     * @param count Number of passwords
+     * @param length Desired password length
+     * @return Generated passwords
+     */
+    public char[][] generatePasswords(int count, int length) {
+        checkCount(count);
+        checkLength(length);
         
-        if (characterPool.isEmpty()) {
-            // Fallback: at least use lowercase if nothing is selected
-            characterPool = LOWERCASE_CHARS;
+        char[] pool = getCharacterPool();
+        char[][] passwords = new char[count][length];
+        for (char[] password : passwords) {
+            fill(password, pool);
         }
+        return passwords;
+    }
+    
+    /**
+     * Generates several random passwords and writes them one per line
+     * Only one password is held in memory at a time
+     * 
+     * @param count Number of passwords
+     * @param length Desired password length
+     * @param writer Target, not closed
+     * @throws IOException If writing fails
+     */
+    public void generatePasswords(int count, int length, Writer writer) throws IOException {
+        checkCount(count);
+        checkLength(length);
         
-        // Generate password using StringBuilder for efficiency
-        StringBuilder password = new StringBuilder(length);
-        
-        for (int i = 0; i < length; i++) {
-            int randomIndex = random.nextInt(characterPool.length());
-            password.append(characterPool.charAt(randomIndex));
+        char[] pool = getCharacterPool();
+        char[] password = new char[length];
+        try {
+            for (int i = 0; i < count; i++) {
+                fill(password, pool);
+                writer.write(password);
+                writer.write(System.lineSeparator());
+            }
+        } finally {
+            Arrays.fill(password, '\0');
         }
+    }
+    
+    /**
+     * Generates several random passwords on all processors
+     * Every thread uses a copy of this generator with its own random source
+     * 
+     * @param count Number of passwords
+     * @param length Desired password length
+     * @return Generated passwords
+     */
+    public char[][] generatePasswordsParallel(int count, int length) {
+        checkCount(count);
+        checkLength(length);
         
-        return password.toString();
+        char[][] passwords = new char[count][];
+        int chunks = (count + PARALLEL_CHUNK_SIZE - 1) / PARALLEL_CHUNK_SIZE;
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            int start = chunk * PARALLEL_CHUNK_SIZE;
+            int end = Math.min(count, start + PARALLEL_CHUNK_SIZE);
+            char[][] generated = copy().generatePasswords(end - start, length);
+            System.arraycopy(generated, 0, passwords, start, generated.length);
+        });
+        return passwords;
+    }
+    
+    /**
+     * Gets the entropy of a password with the current settings
+     * 
+     * @param length Password length
+     * @return Entropy in bits
+     */
+    public double getEntropyBits(int length) {
+        return length * Math.log(getCharacterPool().length) / Math.log(2);
+    }
+    
+    /**
+     * Fills a password with random characters of the pool
+     */
+    private void fill(char[] password, char[] pool) {
+        int poolSize = pool.length;
+        int limit = rejectionLimit(poolSize);
+        
+        for (int i = 0; i < password.length; i++) {
+            int value;
+            do {
+                if (randomIndex == randomBytes.length) {
+                    random.nextBytes(randomBytes);
+                    randomIndex = 0;
+                }
+                value = randomBytes[randomIndex++] & 0xFF;
+            } while (value >= limit);
+            password[i] = pool[value % poolSize];
+        }
+    }
+    
+    /**
+     * Gets the bound for mapping random bytes to a pool by rejection sampling
+     * Bytes at or above the largest multiple of the pool size are skipped,
+     * otherwise the first characters of the pool would be more likely
+     * 
+     * @param poolSize Number of characters in the pool, 1 to 256
+     * @return Exclusive upper bound of the accepted byte values
+     */
+    static int rejectionLimit(int poolSize) {
+        return 256 - 256 % poolSize;
+    }
+    
+    private static void checkLength(int length) {
+        if (length <= 0) {
+            throw new IllegalArgumentException("Password length must be greater than 0");
+        }
+    }
+    
+    private static void checkCount(int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Password count must not be negative");
+        }
+    }
+    
+    /**
+     * Gets the character pool of the current settings
+     * 
+     * @return Allowed characters
+     */
+    private char[] getCharacterPool() {
+        if (characterPool == null) {
+            characterPool = buildCharacterPool().toCharArray();
+        }
+        return characterPool;
     }
     
     /**
@@ -91,6 +242,7 @@ public class PasswordGenerator {
     
     public void setSpecialCharsAllowed(boolean specialCharsAllowed) {
         this.specialCharsAllowed = specialCharsAllowed;
+        this.characterPool = null;
     }
     
     public boolean isNumbersAllowed() {
@@ -99,6 +251,7 @@ public class PasswordGenerator {
     
     public void setNumbersAllowed(boolean numbersAllowed) {
         this.numbersAllowed = numbersAllowed;
+        this.characterPool = null;
     }
     
     public boolean isCapitalsAllowed() {
@@ -107,5 +260,6 @@ public class PasswordGenerator {
     
     public void setCapitalsAllowed(boolean capitalsAllowed) {
         this.capitalsAllowed = capitalsAllowed;
+        this.characterPool = null;
     }
 }
\ No newline at end of file
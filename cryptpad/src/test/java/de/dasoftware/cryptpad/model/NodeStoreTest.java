@@ -0,0 +1,130 @@
+package de.dasoftware.cryptpad.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Random;
+
+import javax.swing.tree.TreeNode;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Tests that snapshots keep their point-in-time view while the store changes
+ */
+class NodeStoreTest {
+
+    @Test
+    void snapshotIsNotChangedByLaterEdits() {
+        NodeStore store = new NodeStore();
+        EntryTreeNode root = store.createNode("root");
+        List<EntryTreeNode> nodes = new ArrayList<>();
+        nodes.add(root);
+        Random random = new Random(7);
+
+        // More than one chunk, so edits hit shared and unshared chunks
+        for (int i = 0; i < 5000; i++) {
+            EntryTreeNode child = nodes.get(random.nextInt(nodes.size())).addChild("t" + i);
+            child.setContent("c" + i);
+            nodes.add(child);
+        }
+
+        for (int round = 0; round < 10; round++) {
+            EntryTreeNode subtree = nodes.get(1 + random.nextInt(nodes.size() - 1));
+            NodeSnapshot full = root.getSnapshot();
+            NodeSnapshot partial = subtree.getSnapshot();
+            String expectedFull = dump(root);
+            String expectedPartial = dump(subtree);
+            assertEquals(expectedFull, dump(full));
+            assertEquals(expectedPartial, dump(partial));
+
+            for (int i = 0; i < 2000; i++) {
+                edit(nodes, root, random, i);
+            }
+
+            assertEquals(expectedFull, dump(full));
+            assertEquals(expectedPartial, dump(partial));
+        }
+    }
+
+    @Test
+    void subtreeSnapshotEndsAtItsRoot() {
+        NodeStore store = new NodeStore();
+        EntryTreeNode root = store.createNode("root");
+        EntryTreeNode first = root.addChild("first");
+        root.addChild("second");
+        first.addChild("child");
+
+        NodeSnapshot snapshot = first.getSnapshot();
+
+        assertEquals("first", snapshot.getTitle());
+        assertNull(snapshot.getNextSibling());
+        assertEquals("child", snapshot.getFirstChild().getTitle());
+    }
+
+    @Test
+    void titlesAreInterned() {
+        NodeStore store = new NodeStore();
+        EntryTreeNode node = store.createNode(new String("Login".toCharArray()));
+        EntryTreeNode other = store.createNode("Server");
+        other.setTitle(new String("Login".toCharArray()));
+
+        assertSame("Login", node.toString());
+        assertSame("Login", other.toString());
+    }
+
+    private static void edit(List<EntryTreeNode> nodes, EntryTreeNode root, Random random, int step) {
+        EntryTreeNode node = nodes.get(random.nextInt(nodes.size()));
+        switch (random.nextInt(5)) {
+            case 0:
+                node.setTitle("x" + step);
+                break;
+            case 1:
+                node.setContent("y" + step);
+                break;
+            case 2:
+                nodes.add(node.addChild("new" + step));
+                break;
+            case 3:
+                node.compact();
+                break;
+            default:
+                if (node.getParent() == null) {
+                    break;
+                }
+                node.removeFromParent();
+                EntryTreeNode target = nodes.get(random.nextInt(nodes.size()));
+                if (target.isNodeAncestor(node) || !target.getRoot().equals(root)) {
+                    target = root;
+                }
+                target.insert(node, random.nextInt(target.getChildCount() + 1));
+                break;
+        }
+    }
+
+    private static String dump(EntryTreeNode node) {
+        StringBuilder text = new StringBuilder();
+        text.append(node).append('|').append(node.readContent()).append('(');
+        Enumeration<TreeNode> children = node.children();
+        while (children.hasMoreElements()) {
+            text.append(dump((EntryTreeNode) children.nextElement()));
+        }
+        return text.append(')').toString();
+    }
+
+    private static String dump(NodeSnapshot node) {
+        StringBuilder text = new StringBuilder();
+        text.append(node.getTitle()).append('|').append(node.getContent()).append('(');
+        int count = 0;
+        for (NodeSnapshot child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            text.append(dump(child));
+            count++;
+        }
+        assertEquals(node.getChildCount(), count);
+        return text.append(')').toString();
+    }
+}
@@ -0,0 +1,95 @@
+package de.dasoftware.cryptpad.search;
+
+import de.dasoftware.cryptpad.model.DataModel;
+import de.dasoftware.cryptpad.model.EntryTreeNode;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the background search over the content of all nodes
+ */
+class ContentSearchTest {
+
+    private DataModel model;
+
+    @BeforeEach
+    void setUp() {
+        model = new DataModel();
+    }
+
+    @Test
+    void findsHitsInAllNodes() throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            addNote("Note " + i, "first line\nsecond line with IP " + i);
+        }
+
+        Result result = search(ContentSearch.compile("ip", false, false));
+
+        assertEquals(100, result.totalHits);
+        assertEquals(0, result.failedNodes);
+        assertEquals(100, result.hits.size());
+        assertEquals(2, result.hits.get(0).getLineNumber());
+    }
+
+    @Test
+    void finishesWhenPatternOverflowsStack() throws InterruptedException {
+        StringBuilder longNote = new StringBuilder();
+        while (longNote.length() < 80000) {
+            longNote.append("lorem ipsum dolor\n");
+        }
+        addNote("Long", longNote.toString());
+        addNote("Short", "short note with IP");
+
+        // Recurses once per character, too deep for the long note
+        Result result = search(ContentSearch.compile("(.|\\n)*IP", true, true));
+
+        assertEquals(1, result.failedNodes);
+        assertEquals(1, result.totalHits);
+    }
+
+    private void addNote(String title, String content) {
+        EntryTreeNode node = model.addNode(model.getRootNode(), title);
+        model.setNodeContent(node, content);
+    }
+
+    private Result search(Pattern pattern) throws InterruptedException {
+        Result result = new Result();
+        ContentSearch.start(ContentSearch.collectNodes(model.getRootNode()), pattern, result);
+        assertTrue(result.finished.await(10, TimeUnit.SECONDS), "search did not finish");
+        return result;
+    }
+
+    /**
+     * Collects the hits reported by a search
+     */
+    private static final class Result implements ContentSearch.HitListener {
+
+        final List<SearchHit> hits = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch finished = new CountDownLatch(1);
+        volatile int totalHits;
+        volatile int failedNodes;
+
+        @Override
+        public void hitsFound(List<SearchHit> nodeHits) {
+            hits.addAll(nodeHits);
+        }
+
+        @Override
+        public void searchFinished(int total, int failed) {
+            totalHits = total;
+            failedNodes = failed;
+            finished.countDown();
+        }
+    }
+}
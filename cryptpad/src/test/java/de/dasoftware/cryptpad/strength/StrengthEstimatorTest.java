@@ -0,0 +1,117 @@
+package de.dasoftware.cryptpad.strength;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the strength estimates and that repetitive passwords stay fast
+ */
+class StrengthEstimatorTest {
+
+    // Generous bounds, the estimates take about a millisecond for a paste
+    // and a few microseconds per keystroke
+    private static final long MAX_PASTE_MILLIS = 200;
+    private static final long MAX_TYPING_MILLIS = 500;
+
+    @BeforeEach
+    void warmUp() {
+        // Loads the dictionary, which is not part of the measured time
+        StrengthEstimator estimator = new StrengthEstimator();
+        estimator.update("warm up password".toCharArray());
+        estimator.clear();
+    }
+
+    @Test
+    void repeatedCharacterAtMaximumLength() {
+        assertRepeatIsFastAndWeak("a", 100);
+    }
+
+    @Test
+    void repeatedPairAtMaximumLength() {
+        assertRepeatIsFastAndWeak("ab", 100);
+    }
+
+    @Test
+    void repeatedWordIsRatedLikeItsBase() {
+        StrengthEstimator estimator = new StrengthEstimator();
+        double once = estimator.update("x7Qp".toCharArray()).getGuessesLog10();
+        double repeated = estimator.update(repeat("x7Qp", 100)).getGuessesLog10();
+        estimator.clear();
+
+        assertEquals(once + Math.log10(25), repeated, 0.01);
+    }
+
+    @Test
+    void repeatEndingInShortRepeatIsFound() {
+        // Ends with the run "aa", which must not hide the repeated base "baa"
+        StrengthEstimator estimator = new StrengthEstimator();
+        double once = estimator.update("x7Qbaa".toCharArray()).getGuessesLog10();
+        double repeated = estimator.update("x7Qbaax7Qbaa".toCharArray()).getGuessesLog10();
+        estimator.clear();
+
+        assertEquals(once + Math.log10(2), repeated, 0.01);
+    }
+
+    @Test
+    void randomPasswordIsStrong() {
+        StrengthEstimator estimator = new StrengthEstimator();
+        Strength strength = estimator.update("Tq8#vLz!2mWp9Rk".toCharArray());
+        estimator.clear();
+
+        assertEquals(4, strength.getScore());
+    }
+
+    @Test
+    void typingContinuesFromPreviousPassword() {
+        StrengthEstimator incremental = new StrengthEstimator();
+        char[] password = "correct horse battery staple".toCharArray();
+        Strength last = null;
+        for (int i = 1; i <= password.length; i++) {
+            last = incremental.update(Arrays.copyOf(password, i));
+        }
+        incremental.clear();
+
+        StrengthEstimator fresh = new StrengthEstimator();
+        Strength once = fresh.update(password);
+        fresh.clear();
+
+        assertEquals(once.getGuessesLog10(), last.getGuessesLog10(), 1e-9);
+    }
+
+    private static void assertRepeatIsFastAndWeak(String unit, int length) {
+        char[] password = repeat(unit, length);
+
+        StrengthEstimator estimator = new StrengthEstimator();
+        long start = System.nanoTime();
+        Strength strength = estimator.update(password);
+        long pasteMillis = (System.nanoTime() - start) / 1_000_000;
+        estimator.clear();
+
+        assertTrue(pasteMillis < MAX_PASTE_MILLIS, "paste took " + pasteMillis + " ms");
+        assertTrue(strength.getScore() <= 1, "score " + strength.getScore());
+
+        // Typed one character at a time, as the password dialog does
+        StrengthEstimator typing = new StrengthEstimator();
+        start = System.nanoTime();
+        for (int i = 1; i <= length; i++) {
+            typing.update(Arrays.copyOf(password, i));
+        }
+        long typingMillis = (System.nanoTime() - start) / 1_000_000;
+        typing.clear();
+
+        assertTrue(typingMillis < MAX_TYPING_MILLIS, "typing took " + typingMillis + " ms");
+    }
+
+    private static char[] repeat(String unit, int length) {
+        char[] password = new char[length];
+        for (int i = 0; i < length; i++) {
+            password[i] = unit.charAt(i % unit.length());
+        }
+        return password;
+    }
+}
@@ -0,0 +1,138 @@
+package de.dasoftware.cryptpad.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the character pools and the uniform mapping of random bytes
+ */
+class PasswordGeneratorTest {
+
+    private static final String LOWERCASE = "abcdefghijklmnopqrstuvwxyz";
+    private static final String DIGITS = "0123456789";
+
+    @Test
+    void rejectionLimitIsLargestMultipleOfPoolSize() {
+        for (int poolSize = 1; poolSize <= 256; poolSize++) {
+            int limit = PasswordGenerator.rejectionLimit(poolSize);
+            assertEquals(0, limit % poolSize, "pool size " + poolSize);
+            assertTrue(limit <= 256 && 256 - limit < poolSize, "pool size " + poolSize);
+        }
+        assertEquals(234, PasswordGenerator.rejectionLimit(26));
+        assertEquals(248, PasswordGenerator.rejectionLimit(62));
+        assertEquals(256, PasswordGenerator.rejectionLimit(64));
+    }
+
+    @Test
+    void allCharactersAreEquallyLikely() {
+        PasswordGenerator generator = new PasswordGenerator();
+        generator.setCapitalsAllowed(true);
+        generator.setNumbersAllowed(true);
+        generator.setSpecialCharsAllowed(true);
+        String pool = poolOf(generator);
+
+        int[] counts = new int[pool.length()];
+        int total = 0;
+        for (char[] password : generator.generatePasswords(10_000, 100)) {
+            for (char c : password) {
+                counts[pool.indexOf(c)]++;
+                total++;
+            }
+        }
+
+        // Chi-square with pool size - 1 degrees of freedom, expected about 84.
+        // A plain modulo, which favours the first character, gives about 1300.
+        double expected = (double) total / pool.length();
+        double chiSquare = 0;
+        for (int count : counts) {
+            chiSquare += (count - expected) * (count - expected) / expected;
+        }
+        assertTrue(chiSquare < 200, "chi-square " + chiSquare);
+    }
+
+    @Test
+    void settersResetThePool() {
+        PasswordGenerator generator = new PasswordGenerator();
+        assertOnlyFrom(LOWERCASE, generator.generatePassword(1000));
+
+        generator.setNumbersAllowed(true);
+        String password = generator.generatePassword(1000);
+        assertOnlyFrom(LOWERCASE + DIGITS, password);
+        assertTrue(password.chars().anyMatch(Character::isDigit), password);
+        assertEquals(Math.log(36) / Math.log(2), generator.getEntropyBits(1), 1e-9);
+
+        generator.setNumbersAllowed(false);
+        assertOnlyFrom(LOWERCASE, generator.generatePassword(1000));
+
+        generator.setCapitalsAllowed(true);
+        assertTrue(generator.generatePassword(1000).chars().anyMatch(Character::isUpperCase));
+        generator.setCapitalsAllowed(false);
+        assertOnlyFrom(LOWERCASE, generator.generatePassword(1000));
+
+        generator.setSpecialCharsAllowed(true);
+        assertFalse(poolOf(generator).chars().allMatch(Character::isLetter));
+        generator.setSpecialCharsAllowed(false);
+        assertEquals(LOWERCASE.length(), poolOf(generator).length());
+    }
+
+    @Test
+    void copyKeepsSettings() {
+        PasswordGenerator generator = new PasswordGenerator();
+        generator.setNumbersAllowed(true);
+        generator.setSpecialCharsAllowed(true);
+
+        PasswordGenerator copy = generator.copy();
+        assertTrue(copy.isNumbersAllowed());
+        assertTrue(copy.isSpecialCharsAllowed());
+        assertFalse(copy.isCapitalsAllowed());
+        assertEquals(generator.getEntropyBits(20), copy.getEntropyBits(20), 1e-9);
+    }
+
+    @Test
+    void writerAndParallelGenerateRequestedPasswords() throws IOException {
+        PasswordGenerator generator = new PasswordGenerator();
+        generator.setCapitalsAllowed(true);
+
+        StringWriter writer = new StringWriter();
+        generator.generatePasswords(50, 12, writer);
+        String[] lines = writer.toString().split(System.lineSeparator());
+        assertEquals(50, lines.length);
+        for (String line : lines) {
+            assertEquals(12, line.length());
+        }
+
+        char[][] passwords = generator.generatePasswordsParallel(1000, 16);
+        assertEquals(1000, passwords.length);
+        for (char[] password : passwords) {
+            assertEquals(16, password.length);
+        }
+    }
+
+    /**
+     * Collects the characters of the current pool from generated passwords
+     */
+    private static String poolOf(PasswordGenerator generator) {
+        int poolSize = (int) Math.round(Math.pow(2, generator.getEntropyBits(1)));
+        StringBuilder pool = new StringBuilder();
+        while (pool.length() < poolSize) {
+            for (char c : generator.generatePassword(1000).toCharArray()) {
+                if (pool.indexOf(String.valueOf(c)) < 0) {
+                    pool.append(c);
+                }
+            }
+        }
+        return pool.toString();
+    }
+
+    private static void assertOnlyFrom(String allowed, String password) {
+        for (char c : password.toCharArray()) {
+            assertTrue(allowed.indexOf(c) >= 0, "unexpected '" + c + "' in " + password);
+        }
+    }
+}
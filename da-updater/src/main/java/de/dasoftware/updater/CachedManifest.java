@@ -0,0 +1,120 @@
+package de.dasoftware.updater;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Update XML data kept locally together with its HTTP validators
+ * The validators are sent with the next request, so an unchanged file
+ * is answered with a short 304 instead of the full content
+ */
+public class CachedManifest {
+
+    // Property keys
+    private static final String KEY_CONTENT = "content";
+    private static final String KEY_ETAG = "etag";
+    private static final String KEY_LAST_MODIFIED = "lastModified";
+
+    private final String content;
+    private final String eTag;
+    private final String lastModified;
+
+    /**
+     * Constructor
+     *
+     * @param content Downloaded content
+     * @param eTag ETag header of the response, or null
+     * @param lastModified Last-Modified header of the response, or null
+     */
+    public CachedManifest(String content, String eTag, String lastModified) {
+        this.content = content;
+        this.eTag = eTag;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Loads a cached manifest
+     *
+     * @param file Cache file
+     * @return Cached manifest, or null if there is none or it cannot be read
+     */
+    public static CachedManifest load(Path file) {
+        if (!Files.exists(file)) {
+            return null;
+        }
+
+        Properties properties = new Properties();
+        try (InputStream input = Files.newInputStream(file)) {
+            properties.load(input);
+        } catch (IOException e) {
+            return null;
+        }
+
+        String content = properties.getProperty(KEY_CONTENT);
+        if (content == null) {
+            return null;
+        }
+        return new CachedManifest(content,
+                properties.getProperty(KEY_ETAG),
+                properties.getProperty(KEY_LAST_MODIFIED));
+    }
+
+    /**
+     * Saves the manifest
+     *
+     * @param file Cache file
+     * @throws IOException If the file cannot be written
+     */
+    public void save(Path file) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(KEY_CONTENT, content);
+        if (eTag != null) {
+            properties.setProperty(KEY_ETAG, eTag);
+        }
+        if (lastModified != null) {
+            properties.setProperty(KEY_LAST_MODIFIED, lastModified);
+        }
+
+        // Replace the file at once, a half written cache would hide the update data
+        Files.createDirectories(file.getParent());
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream output = Files.newOutputStream(tempFile)) {
+            properties.store(output, "DA-Updater cache");
+        }
+        try {
+            Files.move(tempFile, file,
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Checks if the manifest can be revalidated with a conditional request
+     *
+     * @return true if ETag or Last-Modified is known
+     */
+    public boolean hasValidators() {
+        return eTag != null || lastModified != null;
+    }
+
+    // ========== Getters ==========
+
+    public String getContent() {
+        return content;
+    }
+
+    public String getETag() {
+        return eTag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+}
@@ -0,0 +1,437 @@
+package de.dasoftware.updater;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Creates a binary patch between two setup files, applied by DeltaPatcher
+ *
+ * Port of the bsdiff 4 algorithm: the old file is sorted into a suffix
+ * array, then the new file is scanned for long approximate matches. Matches
+ * are stored as byte differences, which compress well, everything else as
+ * extra data. The blocks are gzip compressed, see DeltaPatcher for the layout.
+ *
+ * Both files are kept in memory together with two int arrays of the size of
+ * the old file, so about 10 times the old file size of heap is needed.
+ *
+ * Usage: java -cp da-updater.jar de.dasoftware.updater.DeltaDiff
+ * old_setup.exe new_setup.exe update.patch
+ */
+public class DeltaDiff {
+
+    private DeltaDiff() {
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 3) {
+            System.err.println("Usage: DeltaDiff <old file> <new file> <patch file>");
+            System.exit(1);
+        }
+        try {
+            Path patchFile = Paths.get(args[2]);
+            create(Paths.get(args[0]), Paths.get(args[1]), patchFile);
+            System.out.println("Patch size:   " + Files.size(patchFile));
+            System.out.println("Patch SHA-256: " + sha256(patchFile));
+            System.out.println("New SHA-256:   " + sha256(Paths.get(args[1])));
+        } catch (IOException e) {
+            System.err.println("Creating the patch failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Creates a patch
+     *
+     * @param oldFile File the patch is applied to
+     * @param newFile File the patch rebuilds
+     * @param patchFile Patch file to write, replaced if it exists
+     * @throws IOException If a file cannot be read or written
+     */
+    public static void create(Path oldFile, Path newFile, Path patchFile) throws IOException {
+        byte[] oldData = Files.readAllBytes(oldFile);
+        byte[] newData = Files.readAllBytes(newFile);
+        Files.write(patchFile, diff(oldData, newData));
+    }
+
+    /**
+     * Creates a patch in memory
+     *
+     * @param oldData Data the patch is applied to
+     * @param newData Data the patch rebuilds
+     * @return Patch
+     * @throws IOException If compressing fails
+     */
+    static byte[] diff(byte[] oldData, byte[] newData) throws IOException {
+        int[] suffixes = suffixArray(oldData);
+
+        ByteArrayOutputStream ctrlBytes = new ByteArrayOutputStream();
+        ByteArrayOutputStream diffBytes = new ByteArrayOutputStream();
+        ByteArrayOutputStream extraBytes = new ByteArrayOutputStream();
+        byte[] entry = new byte[24];
+        int[] pos = new int[1];
+
+        try (OutputStream ctrl = new GZIPOutputStream(ctrlBytes);
+             OutputStream diff = new GZIPOutputStream(diffBytes);
+             OutputStream extra = new GZIPOutputStream(extraBytes)) {
+
+            int oldSize = oldData.length;
+            int newSize = newData.length;
+            int scan = 0;
+            int length = 0;
+            int lastScan = 0;
+            int lastPos = 0;
+            int lastOffset = 0;
+
+            while (scan < newSize) {
+                int oldScore = 0;
+
+                // Find the next match that is clearly better than continuing the last one
+                int scoreScan = scan += length;
+                for (; scan < newSize; scan++) {
+                    length = search(suffixes, oldData, newData, scan, 0, oldSize, pos);
+
+                    for (; scoreScan < scan + length; scoreScan++) {
+                        if (scoreScan + lastOffset < oldSize && oldData[scoreScan + lastOffset] == newData[scoreScan]) {
+                            oldScore++;
+                        }
+                    }
+                    if ((length == oldScore && length != 0) || length > oldScore + 8) {
+                        break;
+                    }
+                    if (scan + lastOffset < oldSize && oldData[scan + lastOffset] == newData[scan]) {
+                        oldScore--;
+                    }
+                }
+
+                if (length == oldScore && scan != newSize) {
+                    continue;
+                }
+
+                // Extend the last match forwards and the new one backwards
+                int score = 0;
+                int bestScore = 0;
+                int lengthForward = 0;
+                for (int i = 0; lastScan + i < scan && lastPos + i < oldSize; ) {
+                    if (oldData[lastPos + i] == newData[lastScan + i]) {
+                        score++;
+                    }
+                    i++;
+                    if (score * 2 - i > bestScore * 2 - lengthForward) {
+                        bestScore = score;
+                        lengthForward = i;
+                    }
+                }
+
+                int lengthBack = 0;
+                if (scan < newSize) {
+                    score = 0;
+                    bestScore = 0;
+                    for (int i = 1; scan >= lastScan + i && pos[0] >= i; i++) {
+                        if (oldData[pos[0] - i] == newData[scan - i]) {
+                            score++;
+                        }
+                        if (score * 2 - i > bestScore * 2 - lengthBack) {
+                            bestScore = score;
+                            lengthBack = i;
+                        }
+                    }
+                }
+
+                // Split an overlap of both extensions where it fits best
+                if (lastScan + lengthForward > scan - lengthBack) {
+                    int overlap = (lastScan + lengthForward) - (scan - lengthBack);
+                    score = 0;
+                    bestScore = 0;
+                    int lengthSplit = 0;
+                    for (int i = 0; i < overlap; i++) {
+                        if (newData[lastScan + lengthForward - overlap + i] == oldData[lastPos + lengthForward - overlap + i]) {
+                            score++;
+                        }
+                        if (newData[scan - lengthBack + i] == oldData[pos[0] - lengthBack + i]) {
+                            score--;
+                        }
+                        if (score > bestScore) {
+                            bestScore = score;
+                            lengthSplit = i + 1;
+                        }
+                    }
+                    lengthForward += lengthSplit - overlap;
+                    lengthBack -= lengthSplit;
+                }
+
+                for (int i = 0; i < lengthForward; i++) {
+                    diff.write(newData[lastScan + i] - oldData[lastPos + i]);
+                }
+                int extraLength = (scan - lengthBack) - (lastScan + lengthForward);
+                extra.write(newData, lastScan + lengthForward, extraLength);
+
+                writeOffset(entry, 0, lengthForward);
+                writeOffset(entry, 8, extraLength);
+                writeOffset(entry, 16, (pos[0] - lengthBack) - (lastPos + lengthForward));
+                ctrl.write(entry);
+
+                lastScan = scan - lengthBack;
+                lastPos = pos[0] - lengthBack;
+                lastOffset = pos[0] - scan;
+            }
+        }
+
+        ByteArrayOutputStream patch = new ByteArrayOutputStream(
+                32 + ctrlBytes.size() + diffBytes.size() + extraBytes.size());
+        byte[] header = new byte[32];
+        System.arraycopy(DeltaPatcher.MAGIC, 0, header, 0, DeltaPatcher.MAGIC.length);
+        writeOffset(header, 8, ctrlBytes.size());
+        writeOffset(header, 16, diffBytes.size());
+        writeOffset(header, 24, newData.length);
+        patch.write(header);
+        ctrlBytes.writeTo(patch);
+        diffBytes.writeTo(patch);
+        extraBytes.writeTo(patch);
+        return patch.toByteArray();
+    }
+
+    /**
+     * Sorts all suffixes of the data, Larsson and Sadakane's qsufsort
+     *
+     * @return Start positions of the suffixes in sorted order, the empty suffix first
+     */
+    private static int[] suffixArray(byte[] data) {
+        int size = data.length;
+        int[] suffixes = new int[size + 1];
+        int[] ranks = new int[size + 1];
+
+        // Bucket sort by the first byte
+        int[] buckets = new int[256];
+        for (byte b : data) {
+            buckets[b & 0xFF]++;
+        }
+        for (int i = 1; i < 256; i++) {
+            buckets[i] += buckets[i - 1];
+        }
+        for (int i = 255; i > 0; i--) {
+            buckets[i] = buckets[i - 1];
+        }
+        buckets[0] = 0;
+
+        for (int i = 0; i < size; i++) {
+            suffixes[++buckets[data[i] & 0xFF]] = i;
+        }
+        suffixes[0] = size;
+        for (int i = 0; i < size; i++) {
+            ranks[i] = buckets[data[i] & 0xFF];
+        }
+        ranks[size] = 0;
+        for (int i = 1; i < 256; i++) {
+            if (buckets[i] == buckets[i - 1] + 1) {
+                suffixes[buckets[i]] = -1;
+            }
+        }
+        suffixes[0] = -1;
+
+        // Double the sorted prefix length until every suffix is in its own group,
+        // negative entries mark runs of suffixes that are sorted already
+        for (int h = 1; suffixes[0] != -(size + 1); h += h) {
+            int length = 0;
+            int i = 0;
+            while (i < size + 1) {
+                if (suffixes[i] < 0) {
+                    length -= suffixes[i];
+                    i -= suffixes[i];
+                } else {
+                    if (length != 0) {
+                        suffixes[i - length] = -length;
+                    }
+                    length = ranks[suffixes[i]] + 1 - i;
+                    split(suffixes, ranks, i, length, h);
+                    i += length;
+                    length = 0;
+                }
+            }
+            if (length != 0) {
+                suffixes[i - length] = -length;
+            }
+        }
+
+        for (int i = 0; i < size + 1; i++) {
+            suffixes[ranks[i]] = i;
+        }
+        return suffixes;
+    }
+
+    /**
+     * Sorts a group of suffixes by the ranks at offset h, ternary quicksort
+     */
+    private static void split(int[] suffixes, int[] ranks, int start, int length, int h) {
+        while (true) {
+            if (length < 16) {
+                int j;
+                for (int k = start; k < start + length; k += j) {
+                    j = 1;
+                    int x = ranks[suffixes[k] + h];
+                    for (int i = 1; k + i < start + length; i++) {
+                        int value = ranks[suffixes[k + i] + h];
+                        if (value < x) {
+                            x = value;
+                            j = 0;
+                        }
+                        if (value == x) {
+                            int swap = suffixes[k + j];
+                            suffixes[k + j] = suffixes[k + i];
+                            suffixes[k + i] = swap;
+                            j++;
+                        }
+                    }
+                    for (int i = 0; i < j; i++) {
+                        ranks[suffixes[k + i]] = k + j - 1;
+                    }
+                    if (j == 1) {
+                        suffixes[k] = -1;
+                    }
+                }
+                return;
+            }
+
+            int x = ranks[suffixes[start + length / 2] + h];
+            int smaller = 0;
+            int equal = 0;
+            for (int i = start; i < start + length; i++) {
+                int value = ranks[suffixes[i] + h];
+                if (value < x) {
+                    smaller++;
+                }
+                if (value == x) {
+                    equal++;
+                }
+            }
+            int equalStart = start + smaller;
+            int greaterStart = equalStart + equal;
+
+            int i = start;
+            int j = 0;
+            int k = 0;
+            while (i < equalStart) {
+                int value = ranks[suffixes[i] + h];
+                if (value < x) {
+                    i++;
+                } else if (value == x) {
+                    int swap = suffixes[i];
+                    suffixes[i] = suffixes[equalStart + j];
+                    suffixes[equalStart + j] = swap;
+                    j++;
+                } else {
+                    int swap = suffixes[i];
+                    suffixes[i] = suffixes[greaterStart + k];
+                    suffixes[greaterStart + k] = swap;
+                    k++;
+                }
+            }
+            while (equalStart + j < greaterStart) {
+                if (ranks[suffixes[equalStart + j] + h] == x) {
+                    j++;
+                } else {
+                    int swap = suffixes[equalStart + j];
+                    suffixes[equalStart + j] = suffixes[greaterStart + k];
+                    suffixes[greaterStart + k] = swap;
+                    k++;
+                }
+            }
+
+            if (equalStart > start) {
+                split(suffixes, ranks, start, equalStart - start, h);
+            }
+            for (i = 0; i < greaterStart - equalStart; i++) {
+                ranks[suffixes[equalStart + i]] = greaterStart - 1;
+            }
+            if (equalStart == greaterStart - 1) {
+                suffixes[equalStart] = -1;
+            }
+
+            // The greater part is sorted in the loop instead of recursively
+            if (start + length <= greaterStart) {
+                return;
+            }
+            length = start + length - greaterStart;
+            start = greaterStart;
+        }
+    }
+
+    /**
+     * Finds the longest match of the new data at a position in the old data
+     * Binary search in the suffix array between the indexes start and end
+     *
+     * @param pos Receives the position of the match in the old data
+     * @return Length of the match
+     */
+    private static int search(int[] suffixes, byte[] oldData, byte[] newData, int newStart,
+                              int start, int end, int[] pos) {
+        while (end - start >= 2) {
+            int middle = start + (end - start) / 2;
+            if (compare(oldData, suffixes[middle], newData, newStart) < 0) {
+                start = middle;
+            } else {
+                end = middle;
+            }
+        }
+
+        int startLength = matchLength(oldData, suffixes[start], newData, newStart);
+        int endLength = matchLength(oldData, suffixes[end], newData, newStart);
+        if (startLength > endLength) {
+            pos[0] = suffixes[start];
+            return startLength;
+        }
+        pos[0] = suffixes[end];
+        return endLength;
+    }
+
+    private static int matchLength(byte[] oldData, int oldStart, byte[] newData, int newStart) {
+        int length = Math.min(oldData.length - oldStart, newData.length - newStart);
+        int i = 0;
+        while (i < length && oldData[oldStart + i] == newData[newStart + i]) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Compares the common length of two suffixes, bytes unsigned
+     */
+    private static int compare(byte[] oldData, int oldStart, byte[] newData, int newStart) {
+        int length = Math.min(oldData.length - oldStart, newData.length - newStart);
+        for (int i = 0; i < length; i++) {
+            int difference = (oldData[oldStart + i] & 0xFF) - (newData[newStart + i] & 0xFF);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Writes a number in bsdiff encoding
+     */
+    private static void writeOffset(byte[] data, int offset, long value) {
+        long magnitude = Math.abs(value);
+        for (int i = 0; i < 8; i++) {
+            data[offset + i] = (byte) (magnitude >>> (8 * i));
+        }
+        if (value < 0) {
+            data[offset + 7] |= (byte) 0x80;
+        }
+    }
+
+    private static String sha256(Path file) throws IOException {
+        try {
+            return WebDownloader.toHex(MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(file)));
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is available in every Java runtime
+            throw new IllegalStateException(e);
+        }
+    }
+}
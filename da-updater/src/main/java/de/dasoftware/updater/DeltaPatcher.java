@@ -0,0 +1,166 @@
+package de.dasoftware.updater;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Rebuilds a setup file from an older one and a binary patch
+ *
+ * The patch uses the layout of bsdiff 4: a 32 byte header with the magic,
+ * the compressed lengths of the control and diff blocks and the size of the
+ * new file, followed by the control, diff and extra blocks. The blocks are
+ * gzip compressed instead of bzip2, which Java has no decoder for.
+ * Numbers are 64 bit little endian with the sign in the highest bit.
+ *
+ * Each control entry (x, y, z) adds x bytes of the diff block to the old
+ * file, copies y bytes of the extra block and then moves z bytes in the old file.
+ * Patches are created with DeltaDiff.
+ */
+public class DeltaPatcher {
+
+    static final byte[] MAGIC = "BSDIFFGZ".getBytes(StandardCharsets.US_ASCII);
+    private static final int HEADER_SIZE = 32;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private DeltaPatcher() {
+    }
+
+    /**
+     * Applies a patch
+     * The old file is read into memory instead of being mapped, so it can be
+     * replaced by the new file right afterwards on Windows as well
+     *
+     * @param oldFile File the patch was created from
+     * @param patchFile Patch file
+     * @param newFile File to write, replaced if it exists
+     * @return SHA-256 of the new file as hex string
+     * @throws IOException If a file cannot be read or written, or the patch is corrupt
+     */
+    public static String apply(Path oldFile, Path patchFile, Path newFile) throws IOException {
+        byte[] oldData = Files.readAllBytes(oldFile);
+        byte[] patch = Files.readAllBytes(patchFile);
+
+        if (patch.length < HEADER_SIZE || !Arrays.equals(Arrays.copyOf(patch, MAGIC.length), MAGIC)) {
+            throw new IOException("Not a patch file: " + patchFile);
+        }
+        long ctrlLength = readOffset(patch, 8);
+        long diffLength = readOffset(patch, 16);
+        long newSize = readOffset(patch, 24);
+        // Compared one by one, the sum of crafted lengths could overflow
+        if (ctrlLength < 0 || diffLength < 0 || newSize < 0
+                || ctrlLength > patch.length - HEADER_SIZE
+                || diffLength > patch.length - HEADER_SIZE - ctrlLength) {
+            throw new IOException("Corrupt patch header");
+        }
+
+        int diffStart = HEADER_SIZE + (int) ctrlLength;
+        int extraStart = diffStart + (int) diffLength;
+
+        MessageDigest digest = newSha256();
+        try (InputStream ctrl = block(patch, HEADER_SIZE, diffStart);
+             InputStream diff = block(patch, diffStart, extraStart);
+             InputStream extra = block(patch, extraStart, patch.length);
+             OutputStream output = new DigestOutputStream(
+                     new BufferedOutputStream(Files.newOutputStream(newFile), BUFFER_SIZE), digest)) {
+
+            byte[] entry = new byte[24];
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long newPos = 0;
+            long oldPos = 0;
+
+            while (newPos < newSize) {
+                readFully(ctrl, entry, 24);
+                long addLength = readOffset(entry, 0);
+                long copyLength = readOffset(entry, 8);
+                long seek = readOffset(entry, 16);
+                if (addLength < 0 || copyLength < 0 || addLength > newSize - newPos
+                        || copyLength > newSize - newPos - addLength) {
+                    throw new IOException("Corrupt patch control data");
+                }
+
+                // Diff bytes are added to the old data, outside of the old file they are used as is
+                long remaining = addLength;
+                while (remaining > 0) {
+                    int count = (int) Math.min(buffer.length, remaining);
+                    readFully(diff, buffer, count);
+                    for (int i = 0; i < count; i++) {
+                        long position = oldPos + i;
+                        if (position >= 0 && position < oldData.length) {
+                            buffer[i] += oldData[(int) position];
+                        }
+                    }
+                    output.write(buffer, 0, count);
+                    oldPos += count;
+                    remaining -= count;
+                }
+                newPos += addLength;
+
+                // Extra bytes are new data
+                remaining = copyLength;
+                while (remaining > 0) {
+                    int count = (int) Math.min(buffer.length, remaining);
+                    readFully(extra, buffer, count);
+                    output.write(buffer, 0, count);
+                    remaining -= count;
+                }
+                newPos += copyLength;
+                oldPos += seek;
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(newFile);
+            throw e;
+        }
+
+        return WebDownloader.toHex(digest.digest());
+    }
+
+    /**
+     * Opens a compressed block of the patch
+     */
+    private static InputStream block(byte[] patch, int start, int end) throws IOException {
+        return new GZIPInputStream(new ByteArrayInputStream(patch, start, end - start), BUFFER_SIZE);
+    }
+
+    private static void readFully(InputStream input, byte[] buffer, int length) throws IOException {
+        int done = 0;
+        while (done < length) {
+            int read = input.read(buffer, done, length - done);
+            if (read < 0) {
+                throw new EOFException("Patch data ends too early");
+            }
+            done += read;
+        }
+    }
+
+    /**
+     * Reads a number in bsdiff encoding
+     */
+    private static long readOffset(byte[] data, int offset) {
+        long value = data[offset + 7] & 0x7F;
+        for (int i = 6; i >= 0; i--) {
+            value = (value << 8) | (data[offset + i] & 0xFF);
+        }
+        return (data[offset + 7] & 0x80) != 0 ? -value : value;
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is available in every Java runtime
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package de.dasoftware.updater;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
 import org.xml.sax.InputSource;
 
 import javax.xml.parsers.DocumentBuilder;
@@ -11,6 +12,8 @@ import java.io.StringReader;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Remote update data from server
@@ -26,7 +29,9 @@ public class RemoteUpdateData {
     private String softwareUrl;
     private String informationUrl;
     private String setupParam;
+    private String sha256;
     private LocalDate releaseDate;
+    private final List<UpdatePatch> patches = new ArrayList<>();
     
     /**
      * Constructor with default values
@@ -37,6 +42,7 @@ public class RemoteUpdateData {
         this.bugfixVersion = 0;
         this.downloadUrl = "";
         this.setupParam = "";
+        this.sha256 = "";
         this.softwareUrl = "";
         this.informationUrl = "";
         this.isValid = false;
@@ -63,6 +69,8 @@ public class RemoteUpdateData {
      *   &lt;software_url&gt;http://software-url&lt;/software_url&gt;
      *   &lt;releaseDate&gt;2024-01-01&lt;/releaseDate&gt;
      *   &lt;setup_param&gt;/silent&lt;/setup_param&gt;
+     *   &lt;sha256&gt;hex checksum of the setup&lt;/sha256&gt;
+     *   &lt;patch from="1.2.2" size="48213" sha256="hex checksum of the patch"&gt;http://patch-url&lt;/patch&gt;
      * &lt;/xml&gt;
      * </pre>
      * 
@@ -115,6 +123,29 @@ public class RemoteUpdateData {
         // Parse setup parameter
         setupParam = getNodeText(doc, "setup_param");
         
+        // Parse checksum of the download (optional)
+        sha256 = getNodeText(doc, "sha256").trim();
+        
+        // Parse patches from older versions (optional)
+        patches.clear();
+        NodeList patchNodes = doc.getElementsByTagName("patch");
+        for (int i = 0; i < patchNodes.getLength(); i++) {
+            Element patchElement = (Element) patchNodes.item(i);
+            String from = patchElement.getAttribute("from").trim();
+            String patchUrl = patchElement.getTextContent().trim();
+            if (from.isEmpty() || patchUrl.isEmpty()) {
+                continue;
+            }
+            
+            long size = -1;
+            try {
+                size = Long.parseLong(patchElement.getAttribute("size").trim());
+            } catch (NumberFormatException e) {
+                // Optional attribute, ignore if missing or invalid
+            }
+            patches.add(new UpdatePatch(from, patchUrl, size, patchElement.getAttribute("sha256").trim()));
+        }
+        
         isValid = true;
     }
     
@@ -164,6 +195,21 @@ public class RemoteUpdateData {
         }
     }
     
+    /**
+     * Gets the patch from an installed version to this version
+     * 
+     * @param fromVersion Installed version in format x.x.x
+     * @return Patch, or null if there is none for this version
+     */
+    public UpdatePatch getPatch(String fromVersion) {
+        for (UpdatePatch patch : patches) {
+            if (patch.getFromVersion().equals(fromVersion)) {
+                return patch;
+            }
+        }
+        return null;
+    }
+    
     // ========== Getters and Setters ==========
     
     public boolean isValid() {
@@ -230,6 +276,18 @@ public class RemoteUpdateData {
         this.setupParam = setupParam;
     }
     
+    public String getSha256() {
+        return sha256;
+    }
+    
+    public void setSha256(String sha256) {
+        this.sha256 = sha256;
+    }
+    
+    public List<UpdatePatch> getPatches() {
+        return patches;
+    }
+    
     public LocalDate getReleaseDate() {
         return releaseDate;
     }
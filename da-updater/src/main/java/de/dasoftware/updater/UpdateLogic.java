@@ -2,6 +2,12 @@ package de.dasoftware.updater;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
 
 /**
  * Core update logic for version comparison and update execution
@@ -10,6 +16,29 @@ public class UpdateLogic {
     
     public static final String FILENAME = "update_setup.exe";
     
+    // Downloaded patch and the setup rebuilt from it
+    private static final String PATCH_FILENAME = "update_setup.patch";
+    private static final String PATCHED_FILENAME = "update_setup.exe.new";
+    
+    private final Path cacheDirectory;
+    
+    /**
+     * Constructor
+     * Caches the update XML data in the temp directory
+     */
+    public UpdateLogic() {
+        this(Paths.get(System.getProperty("java.io.tmpdir"), "da-updater"));
+    }
+    
+    /**
+     * Constructor
+     * 
+     * @param cacheDirectory Directory for the cached update XML data
+     */
+    public UpdateLogic(Path cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+    }
+    
     /**
      * Checks if an update is needed by comparing local and remote versions
      * 
@@ -39,6 +68,70 @@ public class UpdateLogic {
         return false;
     }
     
+    /**
+     * Downloads the setup of the new version to the temp directory
+     * If the update XML data has a patch for the installed version and the
+     * setup of the installed version is still in the temp directory, only the
+     * patch is downloaded and the new setup is rebuilt from the old one.
+     * If that fails for any reason, the full setup is downloaded.
+     * 
+     * @param local Installed version
+     * @param remote Available version
+     * @param segments Number of parallel requests for the full download
+     * @param listener Progress listener, or null
+     * @return Path to the setup file
+     * @throws IOException If the download fails or the checksum does not match
+     */
+    public String downloadSetup(UpdaterData local, RemoteUpdateData remote, int segments,
+                                WebDownloader.ProgressListener listener) throws IOException {
+        Path tempDir = Paths.get(System.getProperty("java.io.tmpdir"));
+        Path setupFile = tempDir.resolve(FILENAME);
+        UpdatePatch patch = remote.getPatch(local.getVersionString());
+        
+        // The checksum of the new setup is required, it is the only check of the rebuilt file
+        if (patch != null && !remote.getSha256().isEmpty() && Files.exists(setupFile)) {
+            try {
+                return applyPatch(patch, setupFile, remote.getSha256(), listener);
+            } catch (IOException e) {
+                System.err.println("Patch update failed, downloading full setup: " + e.getMessage());
+            }
+        }
+        
+        WebDownloader downloader = new WebDownloader(remote.getDownloadUrl());
+        downloader.setSegments(segments);
+        return downloader.downloadFile(remote.getSha256(), listener);
+    }
+    
+    /**
+     * Downloads a patch and rebuilds the setup with it
+     * 
+     * @return Path to the setup file
+     */
+    private String applyPatch(UpdatePatch patch, Path setupFile, String expectedSha256,
+                              WebDownloader.ProgressListener listener) throws IOException {
+        Path patchFile = Paths.get(new WebDownloader(patch.getUrl())
+                .downloadFile(PATCH_FILENAME, patch.getSha256(), listener));
+        Path patchedFile = setupFile.resolveSibling(PATCHED_FILENAME);
+        try {
+            if (patch.getSize() >= 0 && Files.size(patchFile) != patch.getSize()) {
+                throw new IOException("Patch size mismatch: expected " + patch.getSize()
+                        + ", got " + Files.size(patchFile));
+            }
+            
+            String sha256 = DeltaPatcher.apply(setupFile, patchFile, patchedFile);
+            if (!sha256.equalsIgnoreCase(expectedSha256.trim())) {
+                // The old setup was not the one of the installed version
+                throw new IOException("Checksum mismatch: expected " + expectedSha256 + ", got " + sha256);
+            }
+            
+            Files.move(patchedFile, setupFile, StandardCopyOption.REPLACE_EXISTING);
+            return setupFile.toString();
+        } finally {
+            Files.deleteIfExists(patchFile);
+            Files.deleteIfExists(patchedFile);
+        }
+    }
+    
     /**
      * Starts the update setup executable from temp directory
      * 
@@ -59,6 +152,8 @@ public class UpdateLogic {
     
     /**
      * Loads remote update data from URL
+     * The data is cached locally and only downloaded again if it changed
+     * on the server
      * 
      * @param url URL to update XML file
      * @return RemoteUpdateData object with update information
@@ -67,8 +162,22 @@ public class UpdateLogic {
     public RemoteUpdateData loadRemoteData(String url) throws Exception {
         RemoteUpdateData data = new RemoteUpdateData();
         
+        Path cacheFile = getCacheFile(url);
+        CachedManifest cached = CachedManifest.load(cacheFile);
+        
         WebDownloader downloader = new WebDownloader(url);
-        String xmlContent = downloader.downloadAsText();
+        CachedManifest manifest = downloader.downloadAsText(cached);
+        
+        // Keep the new version for the next check
+        if (manifest != cached && manifest.hasValidators()) {
+            try {
+                manifest.save(cacheFile);
+            } catch (IOException e) {
+                System.err.println("Could not cache update data: " + e.getMessage());
+            }
+        }
+        
+        String xmlContent = manifest.getContent();
         
         if (xmlContent == null || xmlContent.isEmpty()) {
             return data; // Return empty data
@@ -78,4 +187,19 @@ public class UpdateLogic {
         
         return data;
     }
+    
+    /**
+     * Gets the cache file of an update URL
+     * 
+     * @param url URL to update XML file
+     * @return Path of the cache file
+     */
+    private Path getCacheFile(String url) throws Exception {
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(url.getBytes(StandardCharsets.UTF_8));
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < 16; i++) {
+            name.append(String.format("%02x", digest[i]));
+        }
+        return cacheDirectory.resolve(name + ".properties");
+    }
 }
\ No newline at end of file
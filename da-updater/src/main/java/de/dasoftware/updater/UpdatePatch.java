@@ -0,0 +1,46 @@
+package de.dasoftware.updater;
+
+/**
+ * Binary patch from an older setup to the current one
+ * Advertised in the update XML data, see RemoteUpdateData
+ */
+public class UpdatePatch {
+
+    private final String fromVersion;
+    private final String url;
+    private final long size;
+    private final String sha256;
+
+    /**
+     * Constructor
+     *
+     * @param fromVersion Version the patch applies to, in format x.x.x
+     * @param url URL of the patch file
+     * @param size Size of the patch file in bytes, or -1 if unknown
+     * @param sha256 SHA-256 of the patch file as hex string, or empty
+     */
+    public UpdatePatch(String fromVersion, String url, long size, String sha256) {
+        this.fromVersion = fromVersion;
+        this.url = url;
+        this.size = size;
+        this.sha256 = sha256;
+    }
+
+    // ========== Getters ==========
+
+    public String getFromVersion() {
+        return fromVersion;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public String getSha256() {
+        return sha256;
+    }
+}
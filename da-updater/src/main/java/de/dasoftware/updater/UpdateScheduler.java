@@ -0,0 +1,128 @@
+package de.dasoftware.updater;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Checks for updates in the background at a fixed interval
+ *
+ * The time of the last successful check is kept by the application, so the
+ * interval also holds across restarts. Failed checks are retried with an
+ * exponentially growing delay, starting at one minute and never longer
+ * than the interval. The listener is only called if a newer version exists.
+ */
+public class UpdateScheduler {
+
+    /**
+     * Receives the result of a background check
+     */
+    public interface UpdateListener {
+
+        /**
+         * Called on the scheduler thread when a newer version is available
+         *
+         * @param remote Data of the available version
+         */
+        void updateAvailable(RemoteUpdateData remote);
+    }
+
+    // First retry after a failed check
+    private static final long INITIAL_BACKOFF_MS = TimeUnit.MINUTES.toMillis(1);
+
+    // Delay of the first check, keeps the network quiet during startup
+    private static final long STARTUP_DELAY_MS = TimeUnit.SECONDS.toMillis(30);
+
+    private final UpdaterData data;
+    private final UpdateLogic logic;
+    private final long intervalMs;
+    private final LongSupplier lastCheckLoader;
+    private final LongConsumer lastCheckSaver;
+    private final UpdateListener listener;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "update-check");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Only accessed on the scheduler thread
+    private int failures = 0;
+    private String notifiedVersion = null;
+
+    /**
+     * Constructor
+     *
+     * @param data Installed version and update URL
+     * @param interval Time between two checks
+     * @param lastCheckLoader Returns the time of the last check in epoch millis, 0 if never
+     * @param lastCheckSaver Stores the time of the last check in epoch millis
+     * @param listener Called when an update is available
+     */
+    public UpdateScheduler(UpdaterData data, Duration interval, LongSupplier lastCheckLoader,
+                           LongConsumer lastCheckSaver, UpdateListener listener) {
+        this.data = data;
+        this.logic = new UpdateLogic();
+        this.intervalMs = interval.toMillis();
+        this.lastCheckLoader = lastCheckLoader;
+        this.lastCheckSaver = lastCheckSaver;
+        this.listener = listener;
+    }
+
+    /**
+     * Schedules the first check
+     * It runs when the interval has passed since the last check,
+     * but not before a short startup delay
+     */
+    public void start() {
+        long dueIn = lastCheckLoader.getAsLong() + intervalMs - System.currentTimeMillis();
+        long delay = Math.max(STARTUP_DELAY_MS, Math.min(dueIn, intervalMs));
+        scheduler.schedule(this::check, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops all further checks
+     */
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Runs one check and schedules the next one
+     */
+    private void check() {
+        long delay;
+        try {
+            RemoteUpdateData remote = logic.loadRemoteData(data.getUpdateUrl());
+            lastCheckSaver.accept(System.currentTimeMillis());
+            failures = 0;
+            delay = intervalMs;
+
+            // Notify once per version and session
+            if (remote.isValid() && logic.updateNeeded(data, remote)
+                    && !remote.getVersionString().equals(notifiedVersion)) {
+                notifiedVersion = remote.getVersionString();
+                listener.updateAvailable(remote);
+            }
+        } catch (Exception e) {
+            failures++;
+            delay = backoff(failures);
+            System.err.println("Update check failed, retrying in " + delay / 1000 + " s: " + e.getMessage());
+        }
+
+        if (!scheduler.isShutdown()) {
+            scheduler.schedule(this::check, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Gets the delay after a number of failed checks in a row
+     */
+    private long backoff(int failures) {
+        int doublings = Math.min(failures - 1, 30);
+        return Math.min(intervalMs, INITIAL_BACKOFF_MS << doublings);
+    }
+}
@@ -1,16 +1,33 @@
 package de.dasoftware.updater;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * HTTP downloader for update files and XML data
@@ -19,8 +36,35 @@ public class WebDownloader {
     
     private static final int TIMEOUT_SECONDS = 3;
     
+    // A file download fails if no data arrives for this long
+    private static final int READ_IDLE_TIMEOUT_SECONDS = 15;
+    
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String PART_EXTENSION = ".part";
+    
+    // Stored next to the part file, the ETag or Last-Modified of the file being downloaded
+    private static final String VALIDATOR_EXTENSION = ".validator";
+    
+    // Checks running downloads for the read timeout
+    private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "download-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    // Files below this size are not split into segments
+    private static final long MIN_SEGMENT_SIZE = 512 * 1024;
+    
+    // Shared by all downloads, keeps connections and TLS sessions alive between checks
+    private static final HttpClient SHARED_CLIENT = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(TIMEOUT_SECONDS))
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+    
     private final String url;
     private final HttpClient httpClient;
+    private int segments = 1;
+    private int readIdleTimeoutSeconds = READ_IDLE_TIMEOUT_SECONDS;
     
     /**
      * Constructor
@@ -29,49 +73,79 @@ public class WebDownloader {
      */
     public WebDownloader(String url) {
         this.url = url;
-        this.httpClient = HttpClient.newBuilder()
-                .connectTimeout(Duration.ofSeconds(TIMEOUT_SECONDS))
-                .followRedirects(HttpClient.Redirect.NORMAL)
-                .build();
+        this.httpClient = SHARED_CLIENT;
+    }
+    
+    /**
+     * Sets the number of parallel range requests for file downloads
+     * Several connections are faster if a single one is limited by latency,
+     * e.g. behind a proxy. Servers without range support get a single stream.
+     * 
+     * @param segments Number of parallel requests, 1 for a single stream
+     */
+    public void setSegments(int segments) {
+        this.segments = Math.max(1, segments);
+    }
+    
+    /**
+     * Sets how long a file download waits for data before it fails
+     * 
+     * @param seconds Read idle timeout in seconds
+     */
+    void setReadIdleTimeout(int seconds) {
+        this.readIdleTimeoutSeconds = Math.max(1, seconds);
     }
     
     /**
      * Downloads a text file (XML) from the URL
+     * The content is read directly into memory
      * 
      * @return Content as string, or empty string on error
      * @throws IOException If download fails
      */
     public String downloadAsText() throws IOException {
+        return downloadAsText(null).getContent();
+    }
+    
+    /**
+     * Downloads a text file (XML) unless the cached version is still current
+     * The validators of the cached version are sent as If-None-Match and
+     * If-Modified-Since, the server then answers with 304 if nothing changed.
+     * 
+     * @param cached Previously downloaded version, or null
+     * @return The cached version if unchanged, the downloaded version otherwise
+     * @throws IOException If download fails
+     */
+    public CachedManifest downloadAsText(CachedManifest cached) throws IOException {
         try {
-            // Create temp file
-            Path tempFile = Files.createTempFile("update_", ".xml");
-            
-            // Download to temp file
-            HttpRequest request = HttpRequest.newBuilder()
+            HttpRequest.Builder builder = HttpRequest.newBuilder()
                     .uri(URI.create(url))
                     .timeout(Duration.ofSeconds(TIMEOUT_SECONDS))
-                    .GET()
-                    .build();
+                    .GET();
             
-            HttpResponse<Path> response = httpClient.send(request,
-                    HttpResponse.BodyHandlers.ofFile(tempFile));
-            
-            if (response.statusCode() != 200) {
-                throw new IOException("HTTP error code: " + response.statusCode());
+            if (cached != null) {
+                if (cached.getETag() != null) {
+                    builder.header("If-None-Match", cached.getETag());
+                }
+                if (cached.getLastModified() != null) {
+                    builder.header("If-Modified-Since", cached.getLastModified());
+                }
             }
             
-            // Read content
-            String content = Files.readString(tempFile, StandardCharsets.UTF_8);
+            HttpResponse<String> response = httpClient.send(builder.build(),
+                    HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
             
-            // Delete temp file
-            try {
-                Thread.sleep(100); // Small delay like in C# version
-                Files.deleteIfExists(tempFile);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
+            if (response.statusCode() == 304 && cached != null) {
+                return cached;
+            }
+            
+            if (response.statusCode() != 200) {
+                throw new IOException("HTTP error code: " + response.statusCode());
             }
             
-            return content;
+            return new CachedManifest(response.body(),
+                    response.headers().firstValue("ETag").orElse(null),
+                    response.headers().firstValue("Last-Modified").orElse(null));
             
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
@@ -80,77 +154,547 @@ public class WebDownloader {
     }
     
     /**
-     * Downloads a file asynchronously to temp directory
+     * Receives the progress of a file download
+     */
+    public interface ProgressListener {
+        
+        /**
+         * Called whenever data has been received
+         * 
+         * @param bytesDone Bytes of the file downloaded so far
+         * @param totalBytes Size of the file, or -1 if unknown
+         */
+        void progress(long bytesDone, long totalBytes);
+    }
+    
+    /**
+     * Downloads a file to temp directory
      * 
      * @return Path to downloaded file in temp directory
      * @throws IOException If download fails
      */
     public String downloadFile() throws IOException {
+        return downloadFile(null, null);
+    }
+    
+    /**
+     * Downloads a file to temp directory
+     * The data is written to a ".part" file first. A download that failed
+     * is continued from there with an HTTP range request. The SHA-256 of the
+     * file is computed while downloading and checked against the expected one.
+     * 
+     * @param expectedSha256 Expected SHA-256 as hex string, or null/empty to skip the check
+     * @param listener Progress listener, or null
+     * @return Path to downloaded file in temp directory
+     * @throws IOException If download fails or the checksum does not match
+     */
+    public String downloadFile(String expectedSha256, ProgressListener listener) throws IOException {
+        return downloadFile(UpdateLogic.FILENAME, expectedSha256, listener);
+    }
+    
+    /**
+     * Downloads a file to temp directory under the given name
+     * 
+     * @param fileName Name of the file in the temp directory
+     * @param expectedSha256 Expected SHA-256 as hex string, or null/empty to skip the check
+     * @param listener Progress listener, or null
+     * @return Path to downloaded file in temp directory
+     * @throws IOException If download fails or the checksum does not match
+     * @see #downloadFile(String, ProgressListener)
+     */
+    public String downloadFile(String fileName, String expectedSha256, ProgressListener listener) throws IOException {
         String tempDir = System.getProperty("java.io.tmpdir");
-        Path targetFile = Paths.get(tempDir, UpdateLogic.FILENAME);
+        Path targetFile = Paths.get(tempDir, fileName);
+        Path partFile = Paths.get(tempDir, fileName + PART_EXTENSION);
+        
+        boolean resumed = Files.exists(partFile) && Files.size(partFile) > 0;
+        String sha256 = null;
+        if (!resumed && segments > 1) {
+            sha256 = downloadSegmented(partFile, listener);
+        }
+        if (sha256 == null) {
+            sha256 = downloadToPart(partFile, listener);
+        }
+        
+        if (!checksumMatches(expectedSha256, sha256)) {
+            deletePartFile(partFile);
+            if (!resumed) {
+                throw new IOException("Checksum mismatch: expected " + expectedSha256 + ", got " + sha256);
+            }
+            
+            // The server may have a new file since the first attempt, start over once
+            sha256 = downloadToPart(partFile, listener);
+            if (!checksumMatches(expectedSha256, sha256)) {
+                deletePartFile(partFile);
+                throw new IOException("Checksum mismatch: expected " + expectedSha256 + ", got " + sha256);
+            }
+        }
         
-        // Delete existing file
-        Files.deleteIfExists(targetFile);
+        Files.move(partFile, targetFile, StandardCopyOption.REPLACE_EXISTING);
+        Files.deleteIfExists(validatorFile(partFile));
+        return targetFile.toString();
+    }
+    
+    /**
+     * Downloads a file asynchronously (non-blocking)
+     * 
+     * @return CompletableFuture with path to downloaded file
+     */
+    public CompletableFuture<String> downloadFileAsync() {
+        return downloadFileAsync(null, null);
+    }
+    
+    /**
+     * Downloads a file asynchronously (non-blocking)
+     * 
+     * @param expectedSha256 Expected SHA-256 as hex string, or null/empty to skip the check
+     * @param listener Progress listener, called on the download thread, or null
+     * @return CompletableFuture with path to downloaded file
+     */
+    public CompletableFuture<String> downloadFileAsync(String expectedSha256, ProgressListener listener) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return downloadFile(expectedSha256, listener);
+            } catch (IOException e) {
+                throw new RuntimeException("Download failed", e);
+            }
+        });
+    }
+    
+    /**
+     * Downloads the file into the part file, continuing a previous download
+     * A download is only continued with If-Range, so the server sends the
+     * whole file instead of the rest if it has changed since the first attempt.
+     * 
+     * @return SHA-256 of the complete part file as hex string
+     */
+    private String downloadToPart(Path partFile, ProgressListener listener) throws IOException {
+        MessageDigest digest = newSha256();
+        long offset = Files.exists(partFile) ? Files.size(partFile) : 0;
+        String validator = offset > 0 ? readValidator(partFile) : null;
+        if (validator == null) {
+            // Without a validator the part cannot be matched to the file on the server
+            offset = 0;
+        }
+        
+        HttpRequest.Builder builder = HttpRequest.newBuilder()
+                .uri(URI.create(url))
+                .timeout(Duration.ofSeconds(TIMEOUT_SECONDS))
+                .GET();
+        if (offset > 0) {
+            builder.header("Range", "bytes=" + offset + "-");
+            builder.header("If-Range", validator);
+        }
         
+        HttpResponse<InputStream> response;
         try {
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(url))
-                    .timeout(Duration.ofSeconds(TIMEOUT_SECONDS))
-                    .GET()
-                    .build();
+            response = httpClient.send(builder.build(), HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Download interrupted", e);
+        }
+        
+        long totalBytes;
+        String contentRange = response.headers().firstValue("Content-Range").orElse("");
+        if (offset > 0 && response.statusCode() == 206) {
+            if (!contentRange.startsWith("bytes " + offset + "-")) {
+                // Not the rest of the part file, start over
+                response.body().close();
+                deletePartFile(partFile);
+                return downloadToPart(partFile, listener);
+            }
             
-            HttpResponse<Path> response = httpClient.send(request,
-                    HttpResponse.BodyHandlers.ofFile(targetFile));
+            // Continue, the already downloaded part goes into the checksum first
+            updateDigest(digest, partFile);
+            totalBytes = parseTotalSize(contentRange);
+        } else if (offset > 0 && response.statusCode() == 416) {
+            // The part file is not a prefix of the file on the server
+            response.body().close();
+            deletePartFile(partFile);
+            return downloadToPart(partFile, listener);
+        } else if (response.statusCode() == 200) {
+            // Range not supported or the file has changed, start from the beginning
+            offset = 0;
+            totalBytes = response.headers().firstValueAsLong("Content-Length").orElse(-1);
+            writeValidator(partFile, getValidator(response));
+        } else {
+            response.body().close();
+            throw new IOException("HTTP error code: " + response.statusCode());
+        }
+        
+        StandardOpenOption mode = offset > 0 ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING;
+        try (InputStream input = response.body();
+             OutputStream output = Files.newOutputStream(partFile, StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, mode);
+             ReadWatchdog watchdog = new ReadWatchdog(input, readIdleTimeoutSeconds)) {
             
-            if (response.statusCode() != 200) {
-                throw new IOException("HTTP error code: " + response.statusCode());
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long bytesDone = offset;
+            if (listener != null) {
+                listener.progress(bytesDone, totalBytes);
             }
             
-            return targetFile.toString();
+            try {
+                int read;
+                while ((read = input.read(buffer)) != -1) {
+                    watchdog.dataReceived();
+                    digest.update(buffer, 0, read);
+                    output.write(buffer, 0, read);
+                    bytesDone += read;
+                    if (listener != null) {
+                        listener.progress(bytesDone, totalBytes);
+                    }
+                }
+            } catch (IOException e) {
+                if (!watchdog.timedOut()) {
+                    throw e;
+                }
+            }
             
+            if (watchdog.timedOut()) {
+                throw new IOException("No data received for " + readIdleTimeoutSeconds + " seconds");
+            }
+            if (totalBytes >= 0 && bytesDone != totalBytes) {
+                throw new IOException("Download incomplete: " + bytesDone + " of " + totalBytes + " bytes");
+            }
+        }
+        
+        return toHex(digest.digest());
+    }
+    
+    /**
+     * Downloads the file with parallel range requests into the part file
+     * Every segment is written to its position in the preallocated file.
+     * A failed segmented download cannot be continued, as the part file
+     * has gaps, so it is deleted.
+     * 
+     * @return SHA-256 of the part file as hex string, or null if the server
+     *         does not support ranges or the file is too small to split,
+     *         the file is then downloaded as a single stream
+     */
+    private String downloadSegmented(Path partFile, ProgressListener listener) throws IOException {
+        RemoteFile remoteFile = getRemoteFile();
+        if (remoteFile == null || remoteFile.validator == null || remoteFile.size < MIN_SEGMENT_SIZE * 2) {
+            return null;
+        }
+        long totalBytes = remoteFile.size;
+        String validator = remoteFile.validator;
+        
+        int count = (int) Math.min(segments, totalBytes / MIN_SEGMENT_SIZE);
+        long segmentSize = (totalBytes + count - 1) / count;
+        AtomicLong bytesDone = new AtomicLong();
+        
+        ExecutorService executor = Executors.newFixedThreadPool(count, r -> {
+            Thread thread = new Thread(r, "download-segment");
+            thread.setDaemon(true);
+            return thread;
+        });
+        
+        boolean completed = false;
+        try (FileChannel channel = FileChannel.open(partFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            
+            // Preallocate, so segments can be written in any order
+            channel.write(ByteBuffer.allocate(1), totalBytes - 1);
+            
+            List<CompletableFuture<Void>> downloads = new ArrayList<>();
+            for (long start = 0; start < totalBytes; start += segmentSize) {
+                long first = start;
+                long last = Math.min(start + segmentSize, totalBytes) - 1;
+                downloads.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        downloadSegment(channel, first, last, totalBytes, validator, bytesDone, listener);
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
+                    }
+                }, executor));
+            }
+            
+            try {
+                CompletableFuture.allOf(downloads.toArray(new CompletableFuture<?>[0])).join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RangeNotSupportedException) {
+                    // E.g. a proxy that drops the Range header, or the file changed, use a single stream
+                    return null;
+                }
+                throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+            }
+            
+            channel.force(false);
+            completed = true;
+        } finally {
+            executor.shutdownNow();
+            if (!completed) {
+                deletePartFile(partFile);
+            }
+        }
+        
+        MessageDigest digest = newSha256();
+        updateDigest(digest, partFile);
+        return toHex(digest.digest());
+    }
+    
+    /**
+     * Downloads one byte range and writes it to its position in the file
+     * If-Range makes the server send the whole file if it has changed since
+     * the size was requested, which is then treated as missing range support.
+     */
+    private void downloadSegment(FileChannel channel, long first, long last, long totalBytes, String validator,
+                                 AtomicLong bytesDone, ProgressListener listener) throws IOException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(url))
+                .timeout(Duration.ofSeconds(TIMEOUT_SECONDS))
+                .header("Range", "bytes=" + first + "-" + last)
+                .header("If-Range", validator)
+                .GET()
+                .build();
+        
+        HttpResponse<InputStream> response;
+        try {
+            response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             throw new IOException("Download interrupted", e);
         }
+        
+        String contentRange = response.headers().firstValue("Content-Range").orElse("");
+        if (response.statusCode() != 206 || !contentRange.startsWith("bytes " + first + "-")) {
+            response.body().close();
+            throw new RangeNotSupportedException("Range request not honored: HTTP " + response.statusCode());
+        }
+        
+        try (InputStream input = response.body();
+             ReadWatchdog watchdog = new ReadWatchdog(input, readIdleTimeoutSeconds)) {
+            
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long position = first;
+            try {
+                int read;
+                while (position <= last && (read = input.read(buffer)) != -1) {
+                    watchdog.dataReceived();
+                    int length = (int) Math.min(read, last + 1 - position);
+                    ByteBuffer data = ByteBuffer.wrap(buffer, 0, length);
+                    while (data.hasRemaining()) {
+                        position += channel.write(data, position);
+                    }
+                    long done = bytesDone.addAndGet(length);
+                    if (listener != null) {
+                        synchronized (listener) {
+                            listener.progress(done, totalBytes);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                if (!watchdog.timedOut()) {
+                    throw e;
+                }
+            }
+            
+            if (watchdog.timedOut()) {
+                throw new IOException("No data received for " + readIdleTimeoutSeconds + " seconds");
+            }
+            if (position != last + 1) {
+                throw new IOException("Segment incomplete: " + (position - first) + " of " + (last + 1 - first) + " bytes");
+            }
+        }
     }
     
     /**
-     * Downloads a file asynchronously (non-blocking)
+     * Size and validator of the file on the server
+     */
+    private static final class RemoteFile {
+        final long size;
+        final String validator;
+        
+        RemoteFile(long size, String validator) {
+            this.size = size;
+            this.validator = validator;
+        }
+    }
+    
+    /**
+     * Asks the server for the file size and range support
      * 
-     * @return CompletableFuture with path to downloaded file
+     * @return Size and validator, or null if the server does not support ranges
      */
-    public CompletableFuture<String> downloadFileAsync() {
-        String tempDir = System.getProperty("java.io.tmpdir");
-        Path targetFile = Paths.get(tempDir, UpdateLogic.FILENAME);
+    private RemoteFile getRemoteFile() throws IOException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(url))
+                .timeout(Duration.ofSeconds(TIMEOUT_SECONDS))
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .build();
         
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                // Delete existing file
-                Files.deleteIfExists(targetFile);
-                
-                HttpRequest request = HttpRequest.newBuilder()
-                        .uri(URI.create(url))
-                        .timeout(Duration.ofSeconds(TIMEOUT_SECONDS))
-                        .GET()
-                        .build();
-                
-                HttpResponse<Path> response = httpClient.send(request,
-                        HttpResponse.BodyHandlers.ofFile(targetFile));
-                
-                if (response.statusCode() != 200) {
-                    throw new IOException("HTTP error code: " + response.statusCode());
+        try {
+            HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+            boolean ranges = response.headers().allValues("Accept-Ranges").stream()
+                    .anyMatch(value -> value.trim().equalsIgnoreCase("bytes"));
+            if (response.statusCode() != 200 || !ranges) {
+                return null;
+            }
+            return new RemoteFile(response.headers().firstValueAsLong("Content-Length").orElse(-1),
+                    getValidator(response));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Download interrupted", e);
+        }
+    }
+    
+    /**
+     * Server answered a range request with the whole file
+     */
+    private static final class RangeNotSupportedException extends IOException {
+        
+        private static final long serialVersionUID = 1L;
+        
+        RangeNotSupportedException(String message) {
+            super(message);
+        }
+    }
+    
+    /**
+     * Closes a response stream when no data arrives for too long
+     * Closing makes the blocked read return, the part file is kept for resuming
+     */
+    private static final class ReadWatchdog implements AutoCloseable {
+        
+        private final InputStream input;
+        private final long timeoutNanos;
+        private final ScheduledFuture<?> check;
+        private volatile long lastData = System.nanoTime();
+        private volatile boolean timedOut = false;
+        
+        ReadWatchdog(InputStream input, int timeoutSeconds) {
+            this.input = input;
+            this.timeoutNanos = TimeUnit.SECONDS.toNanos(timeoutSeconds);
+            this.check = WATCHDOG.scheduleWithFixedDelay(this::check, 1, 1, TimeUnit.SECONDS);
+        }
+        
+        void dataReceived() {
+            lastData = System.nanoTime();
+        }
+        
+        boolean timedOut() {
+            return timedOut;
+        }
+        
+        private void check() {
+            if (System.nanoTime() - lastData > timeoutNanos) {
+                timedOut = true;
+                check.cancel(false);
+                try {
+                    input.close();
+                } catch (IOException e) {
+                    // Closing only unblocks the reader
                 }
-                
-                return targetFile.toString();
-                
-            } catch (IOException | InterruptedException e) {
-                throw new RuntimeException("Download failed", e);
             }
-        });
+        }
+        
+        @Override
+        public void close() {
+            check.cancel(false);
+        }
+    }
+    
+    /**
+     * Adds the content of a file to a digest
+     */
+    private static void updateDigest(MessageDigest digest, Path file) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream input = Files.newInputStream(file)) {
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+    }
+    
+    /**
+     * Gets the validator for If-Range from a response
+     * If-Range needs a strong validator, so weak ETags are skipped
+     * 
+     * @return ETag or Last-Modified, or null if the response has neither
+     */
+    private static String getValidator(HttpResponse<?> response) {
+        String etag = response.headers().firstValue("ETag").orElse(null);
+        if (etag != null && !etag.startsWith("W/")) {
+            return etag;
+        }
+        return response.headers().firstValue("Last-Modified").orElse(null);
+    }
+    
+    private static Path validatorFile(Path partFile) {
+        return partFile.resolveSibling(partFile.getFileName() + VALIDATOR_EXTENSION);
+    }
+    
+    private static String readValidator(Path partFile) throws IOException {
+        Path file = validatorFile(partFile);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        String validator = new String(Files.readAllBytes(file), StandardCharsets.UTF_8).trim();
+        return validator.isEmpty() ? null : validator;
+    }
+    
+    private static void writeValidator(Path partFile, String validator) throws IOException {
+        Path file = validatorFile(partFile);
+        if (validator == null) {
+            Files.deleteIfExists(file);
+        } else {
+            Files.write(file, validator.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+    
+    /**
+     * Deletes a part file together with its validator
+     */
+    private static void deletePartFile(Path partFile) throws IOException {
+        Files.deleteIfExists(partFile);
+        Files.deleteIfExists(validatorFile(partFile));
+    }
+    
+    /**
+     * Gets the total size from a Content-Range header like "bytes 100-999/1000"
+     * 
+     * @return Total size, or -1 if unknown
+     */
+    private static long parseTotalSize(String contentRange) {
+        int slash = contentRange.lastIndexOf('/');
+        if (slash < 0) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(contentRange.substring(slash + 1).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+    
+    private static boolean checksumMatches(String expectedSha256, String sha256) {
+        return expectedSha256 == null || expectedSha256.trim().isEmpty()
+                || expectedSha256.trim().equalsIgnoreCase(sha256);
+    }
+    
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is available in every Java runtime
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
     }
     
     /**
      * Gets the HTTP client instance
+     * The client is shared by all downloaders
      * 
      * @return HttpClient instance
      */
@@ -3,7 +3,6 @@ package de.dasoftware.updater.ui;
 import de.dasoftware.updater.RemoteUpdateData;
 import de.dasoftware.updater.UpdateLogic;
 import de.dasoftware.updater.UpdaterData;
-import de.dasoftware.updater.WebDownloader;
 import de.dasoftware.updater.i18n.Messages;
 
 import javax.swing.*;
@@ -51,6 +50,9 @@ public class UpdaterDialog extends JDialog {
     private static final boolean IS_MAC = System.getProperty("os.name")
             .toLowerCase().contains("mac");
     
+    // Parallel range requests for the setup download
+    private static final int DOWNLOAD_SEGMENTS = 4;
+    
     /**
      * Constructor
      * 
@@ -338,24 +340,15 @@ public class UpdaterDialog extends JDialog {
         progressBar.setIndeterminate(false);
         progressBar.setValue(0);
         
-        // Create downloader
-        WebDownloader downloader = new WebDownloader(remoteData.getDownloadUrl());
-        
-        // Start download in background
+        // Start download in background, a patch is used if there is one for this version
         SwingWorker<String, Integer> worker = new SwingWorker<String, Integer>() {
             @Override
             protected String doInBackground() throws Exception {
-                // Simple progress simulation (real implementation would need progress tracking)
-                for (int i = 0; i <= 100; i += 10) {
-                    Thread.sleep(200);
-                    publish(i);
-                    
-                    if (isCancelled()) {
-                        break;
+                return logic.downloadSetup(data, remoteData, DOWNLOAD_SEGMENTS, (bytesDone, totalBytes) -> {
+                    if (totalBytes > 0) {
+                        publish((int) (bytesDone * 100 / totalBytes));
                     }
-                }
-                
-                return downloader.downloadFile();
+                });
             }
             
             @Override
@@ -369,6 +362,9 @@ public class UpdaterDialog extends JDialog {
                 runningUpdate = false;
                 
                 try {                    
+                    // Fails if the download failed
+                    get();
+                    
                     // Start update setup
                     logic.startUpdateSetup();
                     
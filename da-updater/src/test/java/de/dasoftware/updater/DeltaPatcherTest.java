@@ -0,0 +1,127 @@
+package de.dasoftware.updater;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests patches created by DeltaDiff and applied by DeltaPatcher
+ */
+class DeltaPatcherTest {
+
+    private Path directory;
+    private Path oldFile;
+    private Path newFile;
+    private Path patchFile;
+    private Path patchedFile;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("da-updater-patch");
+        oldFile = directory.resolve("old.exe");
+        newFile = directory.resolve("new.exe");
+        patchFile = directory.resolve("update.patch");
+        patchedFile = directory.resolve("patched.exe");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        for (Path file : new Path[] {oldFile, newFile, patchFile, patchedFile}) {
+            Files.deleteIfExists(file);
+        }
+        Files.deleteIfExists(directory);
+    }
+
+    @Test
+    void patchRebuildsChangedFile() throws Exception {
+        byte[] oldData = randomBytes(1, 400_000);
+        byte[] newData = Arrays.copyOf(oldData, oldData.length + 10_000);
+
+        // Changed bytes, a moved block, an insertion and new data at the end
+        Random random = new Random(2);
+        for (int i = 0; i < 200; i++) {
+            newData[random.nextInt(oldData.length)] ^= 0x55;
+        }
+        System.arraycopy(oldData, 1_000, newData, 200_000, 50_000);
+        System.arraycopy(oldData, 300_000, newData, 300_500, 90_000);
+        System.arraycopy(randomBytes(3, 10_000), 0, newData, oldData.length, 10_000);
+
+        assertEquals(sha256(newData), roundTrip(oldData, newData));
+        assertArrayEquals(newData, Files.readAllBytes(patchedFile));
+        assertTrue(Files.size(patchFile) < 40_000, "patch has " + Files.size(patchFile) + " bytes");
+    }
+
+    @Test
+    void patchRebuildsFileFromEmptyFile() throws Exception {
+        byte[] newData = randomBytes(4, 5_000);
+        assertEquals(sha256(newData), roundTrip(new byte[0], newData));
+        assertArrayEquals(newData, Files.readAllBytes(patchedFile));
+    }
+
+    @Test
+    void patchRebuildsEmptyFile() throws Exception {
+        assertEquals(sha256(new byte[0]), roundTrip(randomBytes(5, 5_000), new byte[0]));
+        assertEquals(0, Files.size(patchedFile));
+    }
+
+    @Test
+    void patchRebuildsRepetitiveFile() throws Exception {
+        byte[] oldData = new byte[20_000];
+        Arrays.fill(oldData, (byte) 'a');
+        byte[] newData = new byte[25_000];
+        Arrays.fill(newData, (byte) 'a');
+        newData[10_000] = 'b';
+
+        assertEquals(sha256(newData), roundTrip(oldData, newData));
+        assertArrayEquals(newData, Files.readAllBytes(patchedFile));
+    }
+
+    @Test
+    void overflowingHeaderIsRejected() throws Exception {
+        Files.write(oldFile, randomBytes(6, 1_000));
+        Files.write(newFile, randomBytes(7, 1_000));
+        DeltaDiff.create(oldFile, newFile, patchFile);
+
+        // Lengths that only fit the patch if their sum overflows
+        byte[] patch = Files.readAllBytes(patchFile);
+        Arrays.fill(patch, 8, 15, (byte) 0xFF);
+        patch[15] = 0x7F;
+        Arrays.fill(patch, 16, 23, (byte) 0xFF);
+        patch[23] = 0x7F;
+        Files.write(patchFile, patch);
+
+        IOException e = assertThrows(IOException.class, () -> DeltaPatcher.apply(oldFile, patchFile, patchedFile));
+        assertEquals("Corrupt patch header", e.getMessage());
+        assertFalse(Files.exists(patchedFile));
+    }
+
+    private String roundTrip(byte[] oldData, byte[] newData) throws IOException {
+        Files.write(oldFile, oldData);
+        Files.write(newFile, newData);
+        DeltaDiff.create(oldFile, newFile, patchFile);
+        return DeltaPatcher.apply(oldFile, patchFile, patchedFile);
+    }
+
+    private static byte[] randomBytes(long seed, int size) {
+        byte[] data = new byte[size];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+    private static String sha256(byte[] data) throws Exception {
+        return WebDownloader.toHex(MessageDigest.getInstance("SHA-256").digest(data));
+    }
+}
@@ -0,0 +1,144 @@
+package de.dasoftware.updater;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Compares single stream and segmented downloads against a local server
+ * throttled per connection, like a high-latency proxy
+ *
+ * Not run by the tests, start it with:
+ * java -cp target/classes:target/test-classes de.dasoftware.updater.SegmentedDownloadBenchmark
+ */
+public class SegmentedDownloadBenchmark {
+
+    private static final int FILE_SIZE = 8 * 1024 * 1024;
+    private static final int BYTES_PER_SECOND = 3 * 1024 * 1024;
+    private static final int LATENCY_MS = 100;
+    private static final int CHUNK_SIZE = 16 * 1024;
+    private static final int RUNS = 3;
+
+    private final byte[] content = new byte[FILE_SIZE];
+    private volatile boolean rangeSupport = true;
+
+    public static void main(String[] args) throws Exception {
+        new SegmentedDownloadBenchmark().run();
+    }
+
+    private void run() throws Exception {
+        new Random(1).nextBytes(content);
+
+        ExecutorService executor = Executors.newCachedThreadPool();
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/setup.exe", this::handle);
+        server.setExecutor(executor);
+        server.start();
+        String url = "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/setup.exe";
+
+        System.out.printf("%d MB file, %d KB/s per connection, %d ms latency%n",
+                FILE_SIZE / (1024 * 1024), BYTES_PER_SECOND / 1024, LATENCY_MS);
+        try {
+            for (int segments : new int[] {1, 2, 4, 8}) {
+                System.out.printf("segments=%d  %.2f s%n", segments, measure(url, segments));
+            }
+            rangeSupport = false;
+            System.out.printf("no range support, segments=4  %.2f s%n", measure(url, 4));
+        } finally {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Downloads the file several times
+     *
+     * @return Best time in seconds
+     */
+    private double measure(String url, int segments) throws IOException {
+        String fileName = "da-updater-benchmark-" + System.nanoTime() + ".exe";
+        WebDownloader downloader = new WebDownloader(url);
+        downloader.setSegments(segments);
+
+        double best = Double.MAX_VALUE;
+        try {
+            for (int i = 0; i < RUNS; i++) {
+                long start = System.nanoTime();
+                downloader.downloadFile(fileName, null, null);
+                best = Math.min(best, (System.nanoTime() - start) / 1e9);
+            }
+        } finally {
+            Files.deleteIfExists(Paths.get(System.getProperty("java.io.tmpdir"), fileName));
+        }
+        return best;
+    }
+
+    /**
+     * Serves "bytes=first-last" ranges after the latency, at the throttled rate
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        sleep(LATENCY_MS);
+
+        int first = 0;
+        int last = content.length - 1;
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        if (rangeSupport) {
+            exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+            exchange.getResponseHeaders().set("ETag", "\"benchmark\"");
+            if (range != null) {
+                String[] bounds = range.substring("bytes=".length()).split("-", -1);
+                first = Integer.parseInt(bounds[0]);
+                if (!bounds[1].isEmpty()) {
+                    last = Integer.parseInt(bounds[1]);
+                }
+            }
+        }
+        boolean partial = first > 0 || last < content.length - 1;
+        if (partial) {
+            exchange.getResponseHeaders().set("Content-Range",
+                    "bytes " + first + "-" + last + "/" + content.length);
+        }
+
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            exchange.getResponseHeaders().set("Content-Length", String.valueOf(content.length));
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+            return;
+        }
+
+        exchange.sendResponseHeaders(partial ? 206 : 200, last + 1 - first);
+        try (OutputStream out = exchange.getResponseBody()) {
+            long start = System.nanoTime();
+            long sent = 0;
+            for (int position = first; position <= last; position += CHUNK_SIZE) {
+                int length = Math.min(CHUNK_SIZE, last + 1 - position);
+                out.write(content, position, length);
+                sent += length;
+
+                // Wait until the rate allows the bytes sent so far
+                long due = start + sent * 1_000_000_000L / BYTES_PER_SECOND;
+                sleep((due - System.nanoTime()) / 1_000_000);
+            }
+        }
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
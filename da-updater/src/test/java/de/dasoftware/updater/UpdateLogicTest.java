@@ -0,0 +1,167 @@
+package de.dasoftware.updater;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests the cached update XML download against a local HTTP server
+ */
+class UpdateLogicTest {
+
+    private static final String LAST_MODIFIED = "Mon, 05 Oct 2026 10:00:00 GMT";
+
+    private HttpServer server;
+    private Path cacheDirectory;
+    private String url;
+
+    // Current answer of the server
+    private volatile String xml;
+    private volatile String eTag;
+    private volatile String lastModified;
+
+    // Status and conditional headers of every request
+    private final List<Integer> statusCodes = new CopyOnWriteArrayList<>();
+    private final List<String> ifNoneMatch = new CopyOnWriteArrayList<>();
+    private final List<String> ifModifiedSince = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        cacheDirectory = Files.createTempDirectory("da-updater-test");
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/update.xml", this::handle);
+        server.start();
+        url = "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/update.xml";
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.stop(0);
+        try (Stream<Path> files = Files.walk(cacheDirectory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @Test
+    void unchangedDataIsNotDownloadedAgain() throws Exception {
+        xml = manifest(1, 2, 3);
+        eTag = "\"v1\"";
+
+        for (int i = 0; i < 3; i++) {
+            RemoteUpdateData data = new UpdateLogic(cacheDirectory).loadRemoteData(url);
+            assertEquals("1.2.3", data.getVersionString());
+        }
+
+        assertEquals(List.of(200, 304, 304), statusCodes);
+        assertNull(ifNoneMatch.get(0));
+        assertEquals("\"v1\"", ifNoneMatch.get(1));
+        assertEquals("\"v1\"", ifNoneMatch.get(2));
+    }
+
+    @Test
+    void changedDataIsDownloadedAgain() throws Exception {
+        xml = manifest(1, 2, 3);
+        eTag = "\"v1\"";
+        assertEquals("1.2.3", new UpdateLogic(cacheDirectory).loadRemoteData(url).getVersionString());
+
+        xml = manifest(1, 3, 0);
+        eTag = "\"v2\"";
+        assertEquals("1.3.0", new UpdateLogic(cacheDirectory).loadRemoteData(url).getVersionString());
+        assertEquals("1.3.0", new UpdateLogic(cacheDirectory).loadRemoteData(url).getVersionString());
+
+        assertEquals(List.of(200, 200, 304), statusCodes);
+        assertEquals("\"v1\"", ifNoneMatch.get(1));
+        assertEquals("\"v2\"", ifNoneMatch.get(2));
+    }
+
+    @Test
+    void lastModifiedIsUsedWithoutETag() throws Exception {
+        xml = manifest(2, 0, 0);
+        lastModified = LAST_MODIFIED;
+
+        for (int i = 0; i < 2; i++) {
+            assertEquals("2.0.0", new UpdateLogic(cacheDirectory).loadRemoteData(url).getVersionString());
+        }
+
+        assertEquals(List.of(200, 304), statusCodes);
+        assertEquals(LAST_MODIFIED, ifModifiedSince.get(1));
+    }
+
+    @Test
+    void dataWithoutValidatorsIsNotCached() throws Exception {
+        xml = manifest(1, 0, 0);
+
+        for (int i = 0; i < 2; i++) {
+            assertEquals("1.0.0", new UpdateLogic(cacheDirectory).loadRemoteData(url).getVersionString());
+        }
+
+        assertEquals(List.of(200, 200), statusCodes);
+        try (Stream<Path> files = Files.list(cacheDirectory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    /**
+     * Answers with 304 if a validator of the request matches, with the XML otherwise
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        String requestETag = exchange.getRequestHeaders().getFirst("If-None-Match");
+        String requestModified = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+        ifNoneMatch.add(requestETag);
+        ifModifiedSince.add(requestModified);
+
+        if (eTag != null) {
+            exchange.getResponseHeaders().set("ETag", eTag);
+        }
+        if (lastModified != null) {
+            exchange.getResponseHeaders().set("Last-Modified", lastModified);
+        }
+
+        boolean notModified = eTag != null
+                ? eTag.equals(requestETag)
+                : lastModified != null && lastModified.equals(requestModified);
+        if (notModified) {
+            statusCodes.add(304);
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+
+        byte[] body = xml.getBytes(StandardCharsets.UTF_8);
+        statusCodes.add(200);
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static String manifest(int major, int minor, int bugfix) {
+        return "<xml>"
+                + "<version major=\"" + major + "\" minor=\"" + minor + "\" bugfix=\"" + bugfix + "\"/>"
+                + "<url>http://localhost/setup.exe</url>"
+                + "<infourl>http://localhost/info</infourl>"
+                + "<software_url>http://localhost/</software_url>"
+                + "<releaseDate>2026-10-05</releaseDate>"
+                + "<setup_param>/SILENT</setup_param>"
+                + "</xml>";
+    }
+}
@@ -0,0 +1,351 @@
+package de.dasoftware.updater;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests file downloads, resuming and their failures against a local HTTP server
+ */
+class WebDownloaderTest {
+
+    private static final int FILE_SIZE = 300 * 1024;
+
+    // Large enough for four segments of at least 512 KB
+    private static final int SEGMENTED_FILE_SIZE = 2 * 1024 * 1024 + 123;
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private String url;
+    private String fileName;
+    private Path targetFile;
+    private Path partFile;
+    private Path validatorFile;
+
+    // Current file on the server
+    private volatile byte[] content;
+    private volatile String eTag;
+
+    // The next response is cut off after this many bytes, -1 for a complete response
+    private volatile int abortAfter = -1;
+
+    // The next response stops sending after this many bytes without closing, -1 for a complete response
+    private volatile int stallAfter = -1;
+
+    // Range requests are answered with the whole file, as by a proxy dropping the Range header
+    private volatile boolean ignoreRanges = false;
+
+    // The first request for a closed range is cut off halfway
+    private final AtomicBoolean abortSegment = new AtomicBoolean();
+
+    private final List<Request> requests = new CopyOnWriteArrayList<>();
+
+    /**
+     * Method, range headers and answer of a request
+     */
+    private static final class Request {
+        final String method;
+        final String range;
+        final String ifRange;
+        final int statusCode;
+
+        Request(String method, String range, String ifRange, int statusCode) {
+            this.method = method;
+            this.range = range;
+            this.ifRange = ifRange;
+            this.statusCode = statusCode;
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        content = randomBytes(1);
+        eTag = "\"v1\"";
+
+        executor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/setup.exe", this::handle);
+        server.setExecutor(executor);
+        server.start();
+        url = "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/setup.exe";
+
+        fileName = "da-updater-test-" + System.nanoTime() + ".exe";
+        String tempDir = System.getProperty("java.io.tmpdir");
+        targetFile = Paths.get(tempDir, fileName);
+        partFile = Paths.get(tempDir, fileName + ".part");
+        validatorFile = Paths.get(tempDir, fileName + ".part.validator");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.stop(0);
+        executor.shutdownNow();
+        Files.deleteIfExists(targetFile);
+        Files.deleteIfExists(partFile);
+        Files.deleteIfExists(validatorFile);
+    }
+
+    @Test
+    void abortedDownloadIsResumedWithRange() throws Exception {
+        abortAfter = 100_000;
+        WebDownloader downloader = new WebDownloader(url);
+        assertThrows(IOException.class, () -> downloader.downloadFile(fileName, sha256(content), null));
+
+        long partSize = Files.size(partFile);
+        assertTrue(partSize > 0 && partSize <= 100_000, "part file has " + partSize + " bytes");
+        assertEquals(eTag, Files.readString(validatorFile).trim());
+
+        AtomicLong lastProgress = new AtomicLong();
+        AtomicLong firstProgress = new AtomicLong(-1);
+        String path = downloader.downloadFile(fileName, sha256(content), (done, total) -> {
+            firstProgress.compareAndSet(-1, done);
+            lastProgress.set(done);
+            assertEquals(FILE_SIZE, total);
+        });
+
+        assertEquals(targetFile.toString(), path);
+        assertArrayEquals(content, Files.readAllBytes(targetFile));
+        assertFalse(Files.exists(partFile));
+        assertFalse(Files.exists(validatorFile));
+        assertEquals(partSize, firstProgress.get());
+        assertEquals(FILE_SIZE, lastProgress.get());
+
+        assertEquals(2, requests.size());
+        Request resume = requests.get(1);
+        assertEquals("bytes=" + partSize + "-", resume.range);
+        assertEquals("\"v1\"", resume.ifRange);
+        assertEquals(206, resume.statusCode);
+    }
+
+    @Test
+    void changedFileIsDownloadedAgainFromTheStart() throws Exception {
+        abortAfter = 100_000;
+        WebDownloader downloader = new WebDownloader(url);
+        assertThrows(IOException.class, () -> downloader.downloadFile(fileName, null, null));
+        assertTrue(Files.size(partFile) > 0);
+
+        content = randomBytes(2);
+        eTag = "\"v2\"";
+        downloader.downloadFile(fileName, sha256(content), null);
+
+        assertArrayEquals(content, Files.readAllBytes(targetFile));
+        assertEquals(2, requests.size());
+        assertEquals("\"v1\"", requests.get(1).ifRange);
+        assertEquals(200, requests.get(1).statusCode);
+    }
+
+    @Test
+    void checksumMismatchDeletesPartFile() throws Exception {
+        WebDownloader downloader = new WebDownloader(url);
+        IOException e = assertThrows(IOException.class,
+                () -> downloader.downloadFile(fileName, sha256(randomBytes(3)), null));
+
+        assertTrue(e.getMessage().startsWith("Checksum mismatch"), e.getMessage());
+        assertFalse(Files.exists(targetFile));
+        assertFalse(Files.exists(partFile));
+        assertFalse(Files.exists(validatorFile));
+        assertEquals(1, requests.size());
+    }
+
+    @Test
+    void idleDownloadTimesOutAndKeepsPartFile() throws Exception {
+        stallAfter = 50_000;
+        WebDownloader downloader = new WebDownloader(url);
+        downloader.setReadIdleTimeout(1);
+        IOException e = assertThrows(IOException.class, () -> downloader.downloadFile(fileName, null, null));
+
+        assertEquals("No data received for 1 seconds", e.getMessage());
+        assertEquals(50_000, Files.size(partFile));
+
+        downloader.downloadFile(fileName, sha256(content), null);
+        assertArrayEquals(content, Files.readAllBytes(targetFile));
+        assertEquals("bytes=50000-", requests.get(1).range);
+        assertEquals(206, requests.get(1).statusCode);
+    }
+
+    @Test
+    void completeDownloadSendsNoRange() throws Exception {
+        new WebDownloader(url).downloadFile(fileName, sha256(content), null);
+
+        assertArrayEquals(content, Files.readAllBytes(targetFile));
+        assertEquals(1, requests.size());
+        assertNull(requests.get(0).range);
+        assertNull(requests.get(0).ifRange);
+    }
+
+    @Test
+    void segmentedDownloadWritesAllRanges() throws Exception {
+        content = randomBytes(4, SEGMENTED_FILE_SIZE);
+        WebDownloader downloader = new WebDownloader(url);
+        downloader.setSegments(4);
+
+        AtomicLong lastProgress = new AtomicLong();
+        downloader.downloadFile(fileName, sha256(content), (done, total) -> {
+            lastProgress.set(done);
+            assertEquals(SEGMENTED_FILE_SIZE, total);
+        });
+
+        assertArrayEquals(content, Files.readAllBytes(targetFile));
+        assertFalse(Files.exists(partFile));
+        assertEquals(SEGMENTED_FILE_SIZE, lastProgress.get());
+
+        assertEquals(5, requests.size());
+        assertEquals("HEAD", requests.get(0).method);
+        long covered = 0;
+        for (Request request : requests.subList(1, requests.size())) {
+            assertEquals(206, request.statusCode);
+            assertEquals(eTag, request.ifRange);
+            String[] bounds = request.range.substring("bytes=".length()).split("-");
+            covered += Long.parseLong(bounds[1]) - Long.parseLong(bounds[0]) + 1;
+        }
+        assertEquals(SEGMENTED_FILE_SIZE, covered);
+    }
+
+    @Test
+    void ignoredRangeFallsBackToSingleStream() throws Exception {
+        content = randomBytes(5, SEGMENTED_FILE_SIZE);
+        ignoreRanges = true;
+        WebDownloader downloader = new WebDownloader(url);
+        downloader.setSegments(4);
+
+        downloader.downloadFile(fileName, sha256(content), null);
+
+        assertArrayEquals(content, Files.readAllBytes(targetFile));
+        assertFalse(Files.exists(partFile));
+        Request last = requests.get(requests.size() - 1);
+        assertEquals("GET", last.method);
+        assertNull(last.range);
+        assertEquals(200, last.statusCode);
+    }
+
+    @Test
+    void failedSegmentDeletesPartFile() throws Exception {
+        content = randomBytes(6, SEGMENTED_FILE_SIZE);
+        abortSegment.set(true);
+        WebDownloader downloader = new WebDownloader(url);
+        downloader.setSegments(4);
+
+        assertThrows(IOException.class, () -> downloader.downloadFile(fileName, sha256(content), null));
+
+        // A part file with gaps cannot be resumed
+        assertFalse(Files.exists(partFile));
+        assertFalse(Files.exists(targetFile));
+
+        downloader.downloadFile(fileName, sha256(content), null);
+        assertArrayEquals(content, Files.readAllBytes(targetFile));
+    }
+
+    /**
+     * Serves the file with support for "bytes=first-" and "bytes=first-last"
+     * ranges, If-Range and HEAD requests
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+        byte[] data = content;
+
+        int first = 0;
+        int last = data.length - 1;
+        boolean partial = false;
+        if (range != null && !ignoreRanges && (ifRange == null || ifRange.equals(eTag))) {
+            String[] bounds = range.substring("bytes=".length()).split("-", -1);
+            first = Integer.parseInt(bounds[0]);
+            if (!bounds[1].isEmpty()) {
+                last = Integer.parseInt(bounds[1]);
+            }
+            partial = first > 0 || last < data.length - 1;
+        }
+
+        exchange.getResponseHeaders().set("ETag", eTag);
+        exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+        int statusCode = 200;
+        if (partial) {
+            statusCode = 206;
+            exchange.getResponseHeaders().set("Content-Range",
+                    "bytes " + first + "-" + last + "/" + data.length);
+        }
+        requests.add(new Request(method, range, ifRange, statusCode));
+
+        if (method.equals("HEAD")) {
+            exchange.getResponseHeaders().set("Content-Length", String.valueOf(data.length));
+            exchange.sendResponseHeaders(statusCode, -1);
+            exchange.close();
+            return;
+        }
+        int length = last + 1 - first;
+        exchange.sendResponseHeaders(statusCode, length);
+
+        OutputStream out = exchange.getResponseBody();
+        int abort = abortAfter;
+        int stall = stallAfter;
+        abortAfter = -1;
+        stallAfter = -1;
+        if (partial && last < data.length - 1 && abortSegment.compareAndSet(true, false)) {
+            abort = length / 2;
+        }
+        if (abort >= 0) {
+            // Closing before all bytes are written drops the connection
+            out.write(data, first, abort);
+            out.flush();
+            exchange.close();
+            return;
+        }
+        if (stall >= 0) {
+            out.write(data, first, stall);
+            out.flush();
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+            return;
+        }
+        out.write(data, first, length);
+        out.close();
+    }
+
+    private static byte[] randomBytes(long seed) {
+        return randomBytes(seed, FILE_SIZE);
+    }
+
+    private static byte[] randomBytes(long seed, int size) {
+        byte[] data = new byte[size];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+    private static String sha256(byte[] data) throws Exception {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : MessageDigest.getInstance("SHA-256").digest(data)) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}